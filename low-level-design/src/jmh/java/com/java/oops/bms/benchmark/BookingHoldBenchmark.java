@@ -0,0 +1,55 @@
+package com.java.oops.bms.benchmark;
+
+import com.java.oops.bms.service.booking.HashedTimingWheel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of parking a hold and cancelling it again (the booking got paid) while a lot of other holds are
+ * still pending, timing wheel vs one ScheduledThreadPoolExecutor task per hold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class BookingHoldBenchmark {
+    private static final Runnable NO_OP = () -> { };
+
+    @Param({"10000", "1000000"})
+    int pendingHolds;
+
+    HashedTimingWheel timingWheel;
+    ScheduledThreadPoolExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        timingWheel = new HashedTimingWheel(100, TimeUnit.MILLISECONDS, 4096);
+        executor = new ScheduledThreadPoolExecutor(1);
+        // without this cancelled holds stay in the executor queue until their delay runs out
+        executor.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pendingHolds; i++) {
+            timingWheel.schedule(NO_OP, 1, TimeUnit.HOURS);
+            executor.schedule(NO_OP, 1, TimeUnit.HOURS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timingWheel.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean timingWheelHoldAndConfirm() {
+        return timingWheel.schedule(NO_OP, 10, TimeUnit.MINUTES).cancel();
+    }
+
+    @Benchmark
+    public boolean executorHoldAndConfirm() {
+        ScheduledFuture<?> future = executor.schedule(NO_OP, 10, TimeUnit.MINUTES);
+        return future.cancel(false);
+    }
+}
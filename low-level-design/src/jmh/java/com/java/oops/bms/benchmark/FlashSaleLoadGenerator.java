@@ -0,0 +1,89 @@
+package com.java.oops.bms.benchmark;
+
+import com.java.oops.bms.TicketBookingSystem;
+import com.java.oops.bms.service.booking.Booking;
+import com.java.oops.bms.service.location.Location;
+import com.java.oops.bms.service.movie.Movie;
+import com.java.oops.bms.service.movie.Seat;
+import com.java.oops.bms.service.movie.SeatMap;
+import com.java.oops.bms.service.movie.Show;
+import com.java.oops.bms.service.movie.ShowCatalog;
+import com.java.oops.bms.service.movie.Theatre;
+import com.java.oops.bms.service.movie.TheatreCompany;
+import com.java.oops.bms.service.user.Customer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Flash sale against the TicketBookingSystem: a burst of customers books 1-4 random seats on a handful of
+ * hot shows spread over a few companies. Prints p50/p99 latency from submit to completion.
+ * <p>
+ * Usage: FlashSaleLoadGenerator [requests] [shards]
+ */
+public class FlashSaleLoadGenerator {
+    private static final int COMPANIES = 8;
+    private static final int SHOWS_PER_COMPANY = 4;
+    private static final int SEATS_PER_SHOW = 5_000;
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int shardCount = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        try (TicketBookingSystem system = new TicketBookingSystem(shardCount)) {
+            List<Show> shows = createShows(system);
+            long[] latencies = new long[requests];
+            List<CompletableFuture<Boolean>> results = new ArrayList<>(requests);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                Show show = shows.get(random.nextInt(shows.size()));
+                int count = 1 + random.nextInt(4);
+                int first = random.nextInt(SEATS_PER_SHOW - count + 1);
+                List<Seat> seats = new ArrayList<>(count);
+                for (int s = 0; s < count; s++) {
+                    seats.add(new Seat(first + s, Seat.SeatType.REGULAR, null, 200.0));
+                }
+                Customer customer = new Customer(i, "customer", "customer@mail.com", "99999");
+                int request = i;
+                long submitted = System.nanoTime();
+                results.add(system.book(customer, new Booking("B" + i, show, seats))
+                        .whenComplete((booked, error) -> latencies[request] = System.nanoTime() - submitted));
+            }
+            long booked = results.stream().filter(CompletableFuture::join).count();
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf("shards=%d requests=%d booked=%d throughput=%.0f req/s%n",
+                    shardCount, requests, booked, requests / (elapsed / 1e9));
+            System.out.printf("p50=%.1f us p99=%.1f us max=%.1f us%n",
+                    latencies[requests / 2] / 1e3, latencies[(int) (requests * 0.99)] / 1e3, latencies[requests - 1] / 1e3);
+        }
+    }
+
+    private static List<Show> createShows(TicketBookingSystem system) {
+        List<Show> shows = new ArrayList<>();
+        int showId = 0;
+        ShowCatalog catalog = new ShowCatalog();
+        Movie movie = new Movie(1, "Movie", "", "Drama", "Telugu", "2025-01-10", null);
+        for (int c = 0; c < COMPANIES; c++) {
+            TheatreCompany company = new TheatreCompany(c, "Company " + c, "Office", new HashSet<>());
+            Location location = new Location("street", "City", "State", "000000", "India");
+            Theatre theatre = new Theatre(c, company, "Theatre " + c, location, new HashSet<>(), new HashSet<>(), catalog);
+            company.addTheatre(theatre);
+            for (int s = 0; s < SHOWS_PER_COMPANY; s++) {
+                Show show = new Show(showId++, 0, movie, new Date(), 150, theatre, new SeatMap(SEATS_PER_SHOW));
+                theatre.addShow(show);
+                shows.add(show);
+            }
+            system.addClient(company);
+        }
+        return shows;
+    }
+}
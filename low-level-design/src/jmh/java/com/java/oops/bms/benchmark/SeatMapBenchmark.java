@@ -0,0 +1,70 @@
+package com.java.oops.bms.benchmark;
+
+import com.java.oops.bms.service.movie.SeatMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reservations per second on a 5,000 seat show.
+ * Every operation books a random block of adjacent seats and gives it back when it wins, so the show
+ * never fills up and all threads keep fighting over the same words.
+ * Run main() to get the numbers for 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SeatMapBenchmark {
+    private static final int CAPACITY = 5_000;
+
+    @Param({"1", "4"})
+    int seatsPerBooking;
+
+    SeatMap seatMap;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        seatMap = new SeatMap(CAPACITY);
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(CAPACITY - seatsPerBooking + 1);
+        boolean reserved;
+        if (seatsPerBooking == 1) {
+            reserved = seatMap.reserve(first);
+            if (reserved) {
+                seatMap.release(first);
+            }
+            return reserved;
+        }
+        int[] seats = new int[seatsPerBooking];
+        for (int i = 0; i < seats.length; i++) {
+            seats[i] = first + i;
+        }
+        reserved = seatMap.reserve(seats);
+        if (reserved) {
+            seatMap.release(seats);
+        }
+        return reserved;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(SeatMapBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .forks(1)
+                    .warmupIterations(2)
+                    .measurementIterations(3)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.java.oops.bms.benchmark;
+
+import com.java.oops.bms.service.location.Location;
+import com.java.oops.bms.service.movie.Movie;
+import com.java.oops.bms.service.movie.SeatMap;
+import com.java.oops.bms.service.movie.Show;
+import com.java.oops.bms.service.movie.ShowCatalog;
+import com.java.oops.bms.service.movie.Theatre;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Shows of movie X in city Y between T1 and T2" on 10k theatres x 50 shows, scanning every theatre's
+ * show set vs asking the ShowCatalog.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ShowCatalogBenchmark {
+    private static final int THEATRES = 10_000;
+    private static final int SHOWS_PER_THEATRE = 50;
+    private static final int MOVIES = 200;
+    private static final int CITIES = 50;
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long WEEK = 7 * 24 * HOUR;
+
+    List<Theatre> theatres;
+    ShowCatalog catalog;
+    Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new Random(42);
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < MOVIES; i++) {
+            movies.add(new Movie(i, "Movie " + i, "", "Drama", "Telugu", "2025-01-10", null));
+        }
+        theatres = new ArrayList<>(THEATRES);
+        catalog = new ShowCatalog();
+        int showId = 0;
+        for (int t = 0; t < THEATRES; t++) {
+            Location location = new Location("street", "City " + (t % CITIES), "state", "000000", "India");
+            Theatre theatre = new Theatre(t, null, "Theatre " + t, location, new HashSet<>(), new HashSet<>(), catalog);
+            for (int s = 0; s < SHOWS_PER_THEATRE; s++) {
+                Show show = new Show(showId++, 0, movies.get(random.nextInt(MOVIES)),
+                        new Date((long) (random.nextDouble() * WEEK)), 150, theatre, new SeatMap(1));
+                theatre.addShow(show);
+            }
+            theatres.add(theatre);
+        }
+    }
+
+    @Benchmark
+    public int linearScan() {
+        int movieId = random.nextInt(MOVIES);
+        String city = "City " + random.nextInt(CITIES);
+        long from = (long) (random.nextDouble() * WEEK);
+        long to = from + 24 * HOUR;
+        int found = 0;
+        for (Theatre theatre : theatres) {
+            for (Show show : theatre.getShows()) {
+                long start = show.getStartTime().getTime();
+                if (show.getMovie().getMovieId() == movieId && city.equals(theatre.getLocation().getCity())
+                        && start >= from && start <= to) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int catalogLookup() {
+        int movieId = random.nextInt(MOVIES);
+        String city = "City " + random.nextInt(CITIES);
+        long from = (long) (random.nextDouble() * WEEK);
+        return catalog.findShows(movieId, city, from, from + 24 * HOUR).size();
+    }
+}
@@ -1,8 +1,136 @@
 package com.java.oops.bms;
 
-public class TicketBookingSystem {
+import com.java.oops.bms.service.booking.Booking;
+import com.java.oops.bms.service.booking.BookingHoldManager;
+import com.java.oops.bms.service.booking.HashedTimingWheel;
+import com.java.oops.bms.service.payment.Payment;
+import com.java.oops.bms.service.movie.TheatreCompany;
+import com.java.oops.bms.service.user.Customer;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * In process booking engine.
+ * <p>
+ * Theatre companies (clients) are sharded by company id over a fixed set of single threaded executors. Every
+ * booking or cancellation for a show runs on the shard of the company owning the show's theatre, so the seat
+ * state of a show is only ever mutated by one thread and bookings of different companies run in parallel.
+ * Callers get a {@link CompletableFuture} back instead of blocking on the shard.
+ * <p>
+ * Holds go through the same shards: placing, paying and releasing a hold run on the owning shard and the
+ * {@link BookingHoldManager} hands hold expiry back to that shard, so bookings and seat maps are never mutated
+ * from the timer thread or a caller thread.
+ */
+@Slf4j
+public class TicketBookingSystem implements AutoCloseable {
+    private static final long DEFAULT_HOLD_TTL_MINUTES = 10;
 
+    private final Map<Integer, TheatreCompany> clients = new ConcurrentHashMap<>();
+    private final ExecutorService[] shards;
+    private final BookingHoldManager holdManager;
 
+    public TicketBookingSystem() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public TicketBookingSystem(int shardCount) {
+        this(shardCount, DEFAULT_HOLD_TTL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public TicketBookingSystem(int shardCount, long holdTtl, TimeUnit unit) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive, got " + shardCount);
+        }
+        shards = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            String name = "booking-shard-" + i;
+            shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        holdManager = new BookingHoldManager(new HashedTimingWheel(100, TimeUnit.MILLISECONDS, 4096), holdTtl, unit, this::ownerOf);
+    }
+
+    public List<TheatreCompany> getTheatreCompanies() {
+        return new ArrayList<>(clients.values());
+    }
+
+    public void addClient(TheatreCompany theatreCompany) {
+        clients.put(theatreCompany.getCompanyId(), theatreCompany);
+    }
+
+    public void removeClient(TheatreCompany theatreCompany) {
+        clients.remove(theatreCompany.getCompanyId());
+    }
+
+    public CompletableFuture<Boolean> book(Customer customer, Booking booking) {
+        return submit(booking, () -> customer.makeBooking(booking));
+    }
+
+    public CompletableFuture<Boolean> cancel(Customer customer, Booking booking) {
+        return submit(booking, () -> customer.cancelBooking(booking));
+    }
+
+    // Reserve the seats of the booking until it is paid or the hold TTL runs out
+    public CompletableFuture<Boolean> hold(Booking booking) {
+        return submit(booking, () -> holdManager.hold(booking));
+    }
+
+    public CompletableFuture<Boolean> confirm(Booking booking, Payment payment) {
+        return submit(booking, () -> holdManager.confirm(booking, payment));
+    }
+
+    public CompletableFuture<Boolean> release(Booking booking) {
+        return submit(booking, () -> holdManager.release(booking));
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public void close() {
+        holdManager.close();
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        try {
+            for (ExecutorService shard : shards) {
+                if (!shard.awaitTermination(10, TimeUnit.SECONDS)) {
+                    shard.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(Booking booking, Supplier<Boolean> action) {
+        int companyId = companyOf(booking);
+        if (!clients.containsKey(companyId)) {
+            log.info("Theatre company " + companyId + " is not a client, rejecting booking " + booking.getBookingID());
+            return CompletableFuture.completedFuture(false);
+        }
+        return CompletableFuture.supplyAsync(action, ownerOf(booking));
+    }
+
+    private Executor ownerOf(Booking booking) {
+        return shards[Math.floorMod(companyOf(booking), shards.length)];
+    }
+
+    private static int companyOf(Booking booking) {
+        return booking.getShow().getPlayingAtTheatre().getTheatreCompany().getCompanyId();
+    }
 }
@@ -4,12 +4,14 @@ package com.java.oops.bms.service.booking;
 import com.java.oops.bms.service.movie.Seat;
 import com.java.oops.bms.service.movie.Show;
 import com.java.oops.bms.service.payment.Payment;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.Date;
 import java.util.List;
 
+// Booking state changes are meant to run on the shard owning the show, see TicketBookingSystem
 @Setter
 @Getter
 public class Booking {
@@ -22,6 +24,9 @@ public class Booking {
     private BookingStatus bookingStatus;
     private final List<Seat> seats;
     private Payment payment;
+    // true while the seats are reserved on the show for this booking, only then may they be confirmed or released
+    @Setter(AccessLevel.NONE)
+    private boolean seatsHeld;
 
     public Booking(String bookingID, Show show, List<Seat> seats) {
         this.bookingID = bookingID;
@@ -30,22 +35,56 @@ public class Booking {
         this.seats = seats;
     }
 
-    public boolean makePayment(Payment payment) {
+    // Hold the seats of this booking on the show, all of them or none. A booking that could not get its seats is cancelled
+    public synchronized boolean reserveSeats() {
+        if(bookingStatus != BookingStatus.PENDING || seatsHeld)
+        {
+            return false;
+        }
+        if(!show.getSeatMap().reserve(seats))
+        {
+            bookingStatus = BookingStatus.CANCELLED;
+            return false;
+        }
+        seatsHeld = true;
+        return true;
+    }
+
+    public synchronized boolean makePayment(Payment payment) {
+        // only a booking that still holds its seats can be paid, an expired hold is already CANCELLED
+        if(bookingStatus != BookingStatus.PENDING || !seatsHeld)
+        {
+            return false;
+        }
         // if payment succeeds then update the payment & confirm the seats
         this.payment = payment;
-        // success -> seats.map(seat.book())
-        // update status to CONFIRMED
-        // failure
-        // Mark the status as cancelled and seats.foreach(unreserver) and return false
+        if(payment.getPaymentStatus() == Payment.PaymentStatus.COMPLETED)
+        {
+            bookingStatus = BookingStatus.CONFIRMED;
+            return true;
+        }
+        // failure -> mark the status as cancelled and give the seats back
+        cancel();
         return false;
     }
 
-    public boolean cancel()
+    // Used by the hold expiry, a booking that got paid or cancelled meanwhile is left alone
+    public synchronized boolean cancelIfPending()
+    {
+        return bookingStatus == BookingStatus.PENDING && cancel();
+    }
+
+    public synchronized boolean cancel()
     {
-        if(bookingStatus != BookingStatus.CHECKED_IN)
+        // a cancelled booking must not release its seats twice, they may already belong to another booking
+        if(bookingStatus != BookingStatus.CHECKED_IN && bookingStatus != BookingStatus.CANCELLED)
         {
             bookingStatus = BookingStatus.CANCELLED;
-            seats.forEach(Seat::unReserve);
+            if(seatsHeld)
+            {
+                seatsHeld = false;
+                show.getSeatMap().release(seats);
+            }
             return true;
         }
         return false;
@@ -0,0 +1,114 @@
+package com.java.oops.bms.service.booking;
+
+import com.java.oops.bms.service.payment.Payment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the seats of PENDING bookings on hold for a limited time.
+ * <p>
+ * A hold reserves the seats on the show and parks the booking on a {@link HashedTimingWheel}. If the booking
+ * is not paid before the TTL runs out it is cancelled through {@link Booking#cancelIfPending()}, which gives the
+ * seats back to the show. Paying or releasing a booking cancels its timer in O(1).
+ * <p>
+ * The expiry runs on the executor owning the booking (see {@link com.java.oops.bms.TicketBookingSystem}), never
+ * on the timer thread, so a booking and its seats keep a single writer. Without an owner it runs on the timer thread.
+ */
+@Slf4j
+public class BookingHoldManager implements AutoCloseable {
+    private static final long DEFAULT_TICK_MILLIS = 100;
+    private static final int DEFAULT_TICKS_PER_WHEEL = 4096;
+
+    private final HashedTimingWheel timingWheel;
+    private final long holdTtlMillis;
+    private final Function<Booking, Executor> ownerOf;
+    private final Map<String, HashedTimingWheel.Timeout> holds = new ConcurrentHashMap<>();
+
+    public BookingHoldManager(long holdTtl, TimeUnit unit) {
+        this(new HashedTimingWheel(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL), holdTtl, unit);
+    }
+
+    public BookingHoldManager(HashedTimingWheel timingWheel, long holdTtl, TimeUnit unit) {
+        this(timingWheel, holdTtl, unit, booking -> Runnable::run);
+    }
+
+    public BookingHoldManager(HashedTimingWheel timingWheel, long holdTtl, TimeUnit unit, Function<Booking, Executor> ownerOf) {
+        if (holdTtl <= 0) {
+            throw new IllegalArgumentException("Hold TTL must be positive, got " + holdTtl);
+        }
+        this.timingWheel = timingWheel;
+        this.holdTtlMillis = unit.toMillis(holdTtl);
+        this.ownerOf = ownerOf;
+    }
+
+    // Reserve the seats of the booking and start its hold timer, false if any seat is taken
+    public boolean hold(Booking booking) {
+        if (booking.getBookingStatus() != Booking.BookingStatus.PENDING) {
+            return false;
+        }
+        if (!booking.reserveSeats()) {
+            return false;
+        }
+        HashedTimingWheel.Timeout timeout = timingWheel.schedule(() -> onExpiry(booking), holdTtlMillis, TimeUnit.MILLISECONDS);
+        holds.put(booking.getBookingID(), timeout);
+        if (timeout.isExpired()) {
+            // the timer beat us to it, don't keep a dead entry around
+            holds.remove(booking.getBookingID(), timeout);
+        }
+        return true;
+    }
+
+    // Pay for a held booking, the hold timer is stopped whatever the payment outcome is
+    public boolean confirm(Booking booking, Payment payment) {
+        stopTimer(booking);
+        return booking.makePayment(payment);
+    }
+
+    // Give up a hold before it expires
+    public boolean release(Booking booking) {
+        stopTimer(booking);
+        return booking.cancelIfPending();
+    }
+
+    public int activeHolds() {
+        return holds.size();
+    }
+
+    @Override
+    public void close() {
+        timingWheel.close();
+    }
+
+    private void stopTimer(Booking booking) {
+        HashedTimingWheel.Timeout timeout = holds.remove(booking.getBookingID());
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void onExpiry(Booking booking) {
+        try {
+            ownerOf.apply(booking).execute(() -> expire(booking));
+        } catch (RejectedExecutionException e) {
+            holds.remove(booking.getBookingID());
+            log.info("Owner of booking " + booking.getBookingID() + " is shut down, hold not expired");
+        }
+    }
+
+    // The hold is counted until the booking is cancelled, activeHolds() never reports seats that are still reserved
+    private void expire(Booking booking) {
+        try {
+            if (booking.cancelIfPending()) {
+                log.info("Hold expired for booking " + booking.getBookingID() + ", seats released");
+            }
+        } finally {
+            holds.remove(booking.getBookingID());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.java.oops.bms.service.movie;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat inventory of a single {@link Show}.
+ * <p>
+ * Every seat is one bit in an {@link AtomicLongArray} (bit set = reserved), seat id {@code n} lives in
+ * word {@code n / 64} at bit {@code n % 64}. Reservations are done with CAS on the words, so concurrent
+ * bookings for the same show never take a lock and never both win the same seat.
+ * <p>
+ * Multi seat reservations are all-or-nothing: the seats are grouped per word and the words are claimed in
+ * ascending order. If any seat of the booking is already taken, the words claimed so far are rolled back
+ * and the reservation fails.
+ */
+public class SeatMap {
+    private static final int WORD_SHIFT = 6; // 64 seats per word
+    private static final int WORD_MASK = 63;
+
+    private final int capacity;
+    private final AtomicLongArray words;
+
+    public SeatMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.words = new AtomicLongArray(((capacity - 1) >> WORD_SHIFT) + 1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isReserved(int seatId) {
+        checkSeat(seatId);
+        return (words.get(seatId >> WORD_SHIFT) & bit(seatId)) != 0;
+    }
+
+    public int availableSeats() {
+        int reserved = 0;
+        for (int i = 0; i < words.length(); i++) {
+            reserved += Long.bitCount(words.get(i));
+        }
+        return capacity - reserved;
+    }
+
+    // Reserve one seat, returns false if it is already taken
+    public boolean reserve(int seatId) {
+        checkSeat(seatId);
+        int index = seatId >> WORD_SHIFT;
+        long mask = bit(seatId);
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    public boolean reserve(List<Seat> seats) {
+        return reserve(toSeatIds(seats));
+    }
+
+    // Reserve all the given seats or none of them
+    public boolean reserve(int... seatIds) {
+        if (seatIds.length == 0) {
+            return false;
+        }
+        if (seatIds.length == 1) {
+            return reserve(seatIds[0]);
+        }
+        int[] sorted = seatIds.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            checkSeat(sorted[i]);
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                throw new IllegalArgumentException("Seat " + sorted[i] + " is requested more than once");
+            }
+        }
+
+        int start = 0;
+        while (start < sorted.length) {
+            int index = sorted[start] >> WORD_SHIFT;
+            long mask = 0L;
+            int end = start;
+            while (end < sorted.length && (sorted[end] >> WORD_SHIFT) == index) {
+                mask |= bit(sorted[end]);
+                end++;
+            }
+            if (!claim(index, mask)) {
+                // somebody else owns at least one of these seats, give back what we took so far
+                clear(sorted, start);
+                return false;
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    public void release(int seatId) {
+        checkSeat(seatId);
+        clearWord(seatId >> WORD_SHIFT, bit(seatId));
+    }
+
+    public void release(List<Seat> seats) {
+        release(toSeatIds(seats));
+    }
+
+    public void release(int... seatIds) {
+        for (int seatId : seatIds) {
+            checkSeat(seatId);
+        }
+        for (int seatId : seatIds) {
+            clearWord(seatId >> WORD_SHIFT, bit(seatId));
+        }
+    }
+
+    private boolean claim(int index, long mask) {
+        while (true) {
+            long current = words.get(index);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (words.compareAndSet(index, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    // Clears the first `count` seats of a sorted seat id array
+    private void clear(int[] sortedSeatIds, int count) {
+        int start = 0;
+        while (start < count) {
+            int index = sortedSeatIds[start] >> WORD_SHIFT;
+            long mask = 0L;
+            while (start < count && (sortedSeatIds[start] >> WORD_SHIFT) == index) {
+                mask |= bit(sortedSeatIds[start]);
+                start++;
+            }
+            clearWord(index, mask);
+        }
+    }
+
+    private void clearWord(int index, long mask) {
+        while (true) {
+            long current = words.get(index);
+            if (words.compareAndSet(index, current, current & ~mask)) {
+                return;
+            }
+        }
+    }
+
+    private void checkSeat(int seatId) {
+        if (seatId < 0 || seatId >= capacity) {
+            throw new IllegalArgumentException("Seat " + seatId + " is outside of the show capacity " + capacity);
+        }
+    }
+
+    private static long bit(int seatId) {
+        return 1L << (seatId & WORD_MASK);
+    }
+
+    private static int[] toSeatIds(List<Seat> seats) {
+        int[] seatIds = new int[seats.size()];
+        for (int i = 0; i < seatIds.length; i++) {
+            seatIds[i] = seats.get(i).getSeatId();
+        }
+        return seatIds;
+    }
+}
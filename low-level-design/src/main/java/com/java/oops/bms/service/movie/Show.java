@@ -16,15 +16,20 @@ public class Show {
     private Date startTime;
     private int durationInMinutes;
     private Theatre playingAtTheatre;
+    // seat inventory of this show, shared by every booking made against it
+    private SeatMap seatMap;
 
     public boolean isCompleted() {
-        // Get the current time
-        Date currentTime = new Date();
+        return isCompleted(System.currentTimeMillis());
+    }
 
-        // Calculate the end time of the show
-        long endTimeMillis = startTime.getTime() + ((long) durationInMinutes * 60 * 1000);
+    // Callers checking many shows read the clock once and pass it in
+    public boolean isCompleted(long currentTimeMillis) {
+        return currentTimeMillis > getEndTimeMillis();
+    }
 
-        // Compare the current time with the end time
-        return currentTime.getTime() > endTimeMillis;
+    public long getEndTimeMillis() {
+        // Calculate the end time of the show
+        return startTime.getTime() + ((long) durationInMinutes * 60 * 1000);
     }
 }
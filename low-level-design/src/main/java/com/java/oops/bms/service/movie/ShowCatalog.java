@@ -0,0 +1,240 @@
+package com.java.oops.bms.service.movie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index over all the shows of the system so that lookups don't scan every theatre.
+ * <p>
+ * Shows are indexed by (movie, city) and by theatre, each index entry is a {@link TreeMap} ordered by the
+ * show start time. "Shows of movie X in city Y between T1 and T2" is one hash lookup plus a range query on the
+ * tree, i.e. logarithmic in the number of shows of that movie in that city. Keys are packed into a {@code long}
+ * (movie id in the high half, interned city id in the low half) instead of composite key objects.
+ * <p>
+ * Completed shows sit in a queue ordered by end time, {@link #evictCompleted(long, int)} pops them from the head
+ * a bounded number at a time so eviction never walks the whole catalog. A removed show stays in the queue until it
+ * reaches the head and is skipped there, so removal never scans the queue. Shows are also indexed by (theatre, movie)
+ * ordered by end time, so whether a movie still has shows to run at a theatre is a single ceiling lookup.
+ * <p>
+ * The catalog is the only writer of {@link Theatre#getShows()}, the set changes under the catalog's write lock
+ * together with the indexes.
+ */
+public class ShowCatalog {
+
+    private final Map<Long, TimeIndex> showsByMovieAndCity = new HashMap<>();
+    private final Map<Integer, TimeIndex> showsByTheatre = new HashMap<>();
+    private final Map<Long, TimeIndex> showsByTheatreAndMovie = new HashMap<>();
+    private final Map<String, Integer> cityIds = new HashMap<>();
+    private final PriorityQueue<Show> showsByEndTime = new PriorityQueue<>(Comparator.comparingLong(Show::getEndTimeMillis));
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    // False if the show is registered at its theatre already
+    public boolean addShow(Show show) {
+        lock.writeLock().lock();
+        try {
+            if (!show.getPlayingAtTheatre().getShows().add(show)) {
+                return false;
+            }
+            long key = movieCityKey(show.getMovie().getMovieId(), cityId(show, true));
+            showsByMovieAndCity.computeIfAbsent(key, k -> TimeIndex.byStartTime()).add(show);
+            showsByTheatre.computeIfAbsent(show.getPlayingAtTheatre().getTheatreId(), k -> TimeIndex.byStartTime()).add(show);
+            showsByTheatreAndMovie.computeIfAbsent(theatreMovieKey(show), k -> TimeIndex.byEndTime()).add(show);
+            showsByEndTime.add(show);
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean removeShow(Show show) {
+        lock.writeLock().lock();
+        try {
+            if (!unindex(show)) {
+                return false;
+            }
+            show.getPlayingAtTheatre().getShows().remove(show);
+            // left in showsByEndTime, evictCompleted drops it without a match in the indexes
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Show> findShows(int movieId, String city, long fromMillis, long toMillis) {
+        lock.readLock().lock();
+        try {
+            Integer cityId = cityIds.get(city);
+            if (cityId == null) {
+                return Collections.emptyList();
+            }
+            TimeIndex index = showsByMovieAndCity.get(movieCityKey(movieId, cityId));
+            return index == null ? Collections.emptyList() : index.between(fromMillis, toMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Show> findShowsAtTheatre(int theatreId, long fromMillis, long toMillis) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = showsByTheatre.get(theatreId);
+            return index == null ? Collections.emptyList() : index.between(fromMillis, toMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // True while a show of the movie at the theatre has not completed yet
+    public boolean hasShowsRunning(int theatreId, int movieId, long currentTimeMillis) {
+        lock.readLock().lock();
+        try {
+            TimeIndex index = showsByTheatreAndMovie.get(packKey(theatreId, movieId));
+            return index != null && index.hasKeyAtOrAfter(currentTimeMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes up to {@code maxEvictions} shows that ended before {@code currentTimeMillis} from the catalog and
+     * from their theatre. Meant to be called periodically, returns the number of evicted shows.
+     */
+    public int evictCompleted(long currentTimeMillis, int maxEvictions) {
+        lock.writeLock().lock();
+        try {
+            int evicted = 0;
+            while (evicted < maxEvictions && !showsByEndTime.isEmpty() && showsByEndTime.peek().isCompleted(currentTimeMillis)) {
+                Show show = showsByEndTime.poll();
+                if (unindex(show)) {
+                    show.getPlayingAtTheatre().getShows().remove(show);
+                    evicted++;
+                }
+            }
+            return evicted;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean unindex(Show show) {
+        Integer cityId = cityId(show, false);
+        if (cityId == null) {
+            return false;
+        }
+        long key = movieCityKey(show.getMovie().getMovieId(), cityId);
+        TimeIndex byMovie = showsByMovieAndCity.get(key);
+        if (byMovie == null || !byMovie.remove(show)) {
+            return false;
+        }
+        if (byMovie.isEmpty()) {
+            showsByMovieAndCity.remove(key);
+        }
+        int theatreId = show.getPlayingAtTheatre().getTheatreId();
+        TimeIndex byTheatre = showsByTheatre.get(theatreId);
+        if (byTheatre != null && byTheatre.remove(show) && byTheatre.isEmpty()) {
+            showsByTheatre.remove(theatreId);
+        }
+        long theatreMovieKey = theatreMovieKey(show);
+        TimeIndex byTheatreAndMovie = showsByTheatreAndMovie.get(theatreMovieKey);
+        if (byTheatreAndMovie != null && byTheatreAndMovie.remove(show) && byTheatreAndMovie.isEmpty()) {
+            showsByTheatreAndMovie.remove(theatreMovieKey);
+        }
+        size--;
+        return true;
+    }
+
+    private Integer cityId(Show show, boolean register) {
+        String city = show.getPlayingAtTheatre().getLocation().getCity();
+        if (register) {
+            return cityIds.computeIfAbsent(city, c -> cityIds.size());
+        }
+        return cityIds.get(city);
+    }
+
+    private static long movieCityKey(int movieId, int cityId) {
+        return packKey(movieId, cityId);
+    }
+
+    private static long theatreMovieKey(Show show) {
+        return packKey(show.getPlayingAtTheatre().getTheatreId(), show.getMovie().getMovieId());
+    }
+
+    private static long packKey(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    // Shows ordered by start (or end) time, several shows may share the same instant
+    private static final class TimeIndex {
+        private final NavigableMap<Long, List<Show>> shows = new TreeMap<>();
+        private final ToLongFunction<Show> timeOf;
+
+        private TimeIndex(ToLongFunction<Show> timeOf) {
+            this.timeOf = timeOf;
+        }
+
+        static TimeIndex byStartTime() {
+            return new TimeIndex(show -> show.getStartTime().getTime());
+        }
+
+        static TimeIndex byEndTime() {
+            return new TimeIndex(Show::getEndTimeMillis);
+        }
+
+        void add(Show show) {
+            shows.computeIfAbsent(timeOf.applyAsLong(show), k -> new ArrayList<>(1)).add(show);
+        }
+
+        boolean remove(Show show) {
+            long time = timeOf.applyAsLong(show);
+            List<Show> sameTime = shows.get(time);
+            if (sameTime == null || !sameTime.remove(show)) {
+                return false;
+            }
+            if (sameTime.isEmpty()) {
+                shows.remove(time);
+            }
+            return true;
+        }
+
+        boolean isEmpty() {
+            return shows.isEmpty();
+        }
+
+        boolean hasKeyAtOrAfter(long millis) {
+            return shows.ceilingKey(millis) != null;
+        }
+
+        List<Show> between(long fromMillis, long toMillis) {
+            if (fromMillis > toMillis) {
+                return Collections.emptyList();
+            }
+            List<Show> result = new ArrayList<>();
+            for (Collection<Show> sameStart : shows.subMap(fromMillis, true, toMillis, true).values()) {
+                result.addAll(sameStart);
+            }
+            return result;
+        }
+    }
+}
@@ -20,18 +20,21 @@ public class Theatre {
     private String theatreName;
     private Location location;
     private Set<Movie> moviesCurrentlyPlaying;
+    // changed by the showCatalog only, under its lock
     private Set<Show> shows;
+    // system wide index the shows of this theatre are registered in
+    private ShowCatalog showCatalog;
 
     public void addMovie(Movie movie) {
         moviesCurrentlyPlaying.add(movie);
     }
 
     public void addShow(Show show) {
-        shows.add(show);
+        showCatalog.addShow(show);
     }
 
     public boolean removeMovie(Movie movie) {
-        if (shows.stream().noneMatch(show -> show.getMovie() == movie && !show.isCompleted())) {
+        if (!showCatalog.hasShowsRunning(theatreId, movie.getMovieId(), System.currentTimeMillis())) {
             moviesCurrentlyPlaying.remove(movie);
             return true;
         }
@@ -42,7 +45,7 @@ public class Theatre {
     public boolean removeShow(Show show) {
         if(show.isCompleted())
         {
-            shows.remove(show);
+            showCatalog.removeShow(show);
             return true;
         }
         log.info("There is a movie that needs to be completed before removing this show");
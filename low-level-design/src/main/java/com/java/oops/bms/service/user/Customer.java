@@ -4,10 +4,11 @@ package com.java.oops.bms.service.user;
 import com.java.oops.bms.service.booking.Booking;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Customer extends User {
 
-    private List<Booking> currentBookings;
+    private final List<Booking> currentBookings = new CopyOnWriteArrayList<>();
 
     public Customer(int id, String name, String email, String mobile) {
         super(id, name, email, mobile);
@@ -17,12 +18,20 @@ public class Customer extends User {
     public boolean makeBooking(Booking booking) {
         // if success return true and add to list of bookings
         // if failed then false
-        return false;
+        if (!booking.reserveSeats()) {
+            return false;
+        }
+        currentBookings.add(booking);
+        return true;
     }
 
     // Cancel Booking
     public boolean cancelBooking(Booking booking) {
-        return false;
+        if (!currentBookings.contains(booking) || !booking.cancel()) {
+            return false;
+        }
+        currentBookings.remove(booking);
+        return true;
     }
 
     // List all Bookings
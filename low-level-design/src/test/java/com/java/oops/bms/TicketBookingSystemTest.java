@@ -0,0 +1,121 @@
+package com.java.oops.bms;
+
+import com.java.oops.bms.service.booking.Booking;
+import com.java.oops.bms.service.location.Location;
+import com.java.oops.bms.service.movie.Movie;
+import com.java.oops.bms.service.movie.Seat;
+import com.java.oops.bms.service.movie.SeatMap;
+import com.java.oops.bms.service.movie.Show;
+import com.java.oops.bms.service.movie.ShowCatalog;
+import com.java.oops.bms.service.movie.Theatre;
+import com.java.oops.bms.service.movie.TheatreCompany;
+import com.java.oops.bms.service.user.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketBookingSystemTest {
+
+    private TicketBookingSystem system;
+    private TheatreCompany company;
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        system = new TicketBookingSystem(4);
+        company = new TheatreCompany(7, "PVR", "Hyderabad", new HashSet<>());
+        Location location = new Location("street", "Hyderabad", "Telangana", "500001", "India");
+        Theatre theatre = new Theatre(1, company, "Screen 1", location, new HashSet<>(), new HashSet<>(), new ShowCatalog());
+        company.addTheatre(theatre);
+        Movie movie = new Movie(1, "Movie", "desc", "Drama", "Telugu", "2025-01-10", null);
+        show = new Show(1, 0, movie, new Date(), 120, theatre, new SeatMap(100));
+        theatre.addShow(show);
+    }
+
+    @AfterEach
+    void tearDown() {
+        system.close();
+    }
+
+    @Test
+    void flashSaleSellsEverySeatOnce() {
+        system.addClient(company);
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        // 1000 customers fighting over 100 seats, two seats each
+        for (int i = 0; i < 1_000; i++) {
+            Customer customer = new Customer(i, "c" + i, "c" + i + "@mail.com", "99999");
+            int first = (i * 2) % 100;
+            results.add(system.book(customer, booking("B" + i, first, first + 1)));
+        }
+
+        long booked = results.stream().filter(CompletableFuture::join).count();
+
+        assertEquals(50, booked);
+        assertEquals(0, show.getSeatMap().availableSeats());
+    }
+
+    @Test
+    void cancelledBookingFreesSeats() {
+        system.addClient(company);
+        Customer customer = new Customer(1, "c1", "c1@mail.com", "99999");
+        Booking booking = booking("B1", 10, 11);
+
+        assertTrue(system.book(customer, booking).join());
+        assertTrue(system.cancel(customer, booking).join());
+
+        assertEquals(100, show.getSeatMap().availableSeats());
+        assertTrue(customer.getBookings().isEmpty());
+    }
+
+    @Test
+    void holdExpiresOnTheOwningShard() throws InterruptedException {
+        system.close();
+        system = new TicketBookingSystem(4, 200, TimeUnit.MILLISECONDS);
+        system.addClient(company);
+        AtomicReference<String> expiredOn = new AtomicReference<>();
+        Booking booking = new Booking("B1", show, List.of(new Seat(5, Seat.SeatType.REGULAR, null, 200.0))) {
+            @Override
+            public synchronized boolean cancelIfPending() {
+                expiredOn.set(Thread.currentThread().getName());
+                return super.cancelIfPending();
+            }
+        };
+
+        assertTrue(system.hold(booking).join());
+        assertEquals(99, show.getSeatMap().availableSeats());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (expiredOn.get() == null && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertEquals("booking-shard-" + Math.floorMod(company.getCompanyId(), 4), expiredOn.get());
+        assertEquals(Booking.BookingStatus.CANCELLED, booking.getBookingStatus());
+        assertEquals(100, show.getSeatMap().availableSeats());
+    }
+
+    @Test
+    void bookingForUnknownCompanyIsRejected() {
+        Customer customer = new Customer(1, "c1", "c1@mail.com", "99999");
+
+        assertFalse(system.book(customer, booking("B1", 1)).join());
+        assertEquals(100, show.getSeatMap().availableSeats());
+    }
+
+    private Booking booking(String bookingId, int... seatIds) {
+        List<Seat> seats = new ArrayList<>();
+        for (int seatId : seatIds) {
+            seats.add(new Seat(seatId, Seat.SeatType.REGULAR, null, 200.0));
+        }
+        return new Booking(bookingId, show, seats);
+    }
+}
@@ -0,0 +1,95 @@
+package com.java.oops.bms.service.booking;
+
+import com.java.oops.bms.service.movie.Seat;
+import com.java.oops.bms.service.movie.SeatMap;
+import com.java.oops.bms.service.movie.Show;
+import com.java.oops.bms.service.payment.Payment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingHoldManagerTest {
+
+    private BookingHoldManager holdManager;
+    private Show show;
+
+    @BeforeEach
+    void setUp() {
+        holdManager = new BookingHoldManager(new HashedTimingWheel(10, TimeUnit.MILLISECONDS, 64), 200, TimeUnit.MILLISECONDS);
+        show = new Show(1, System.currentTimeMillis(), null, new Date(), 120, null, new SeatMap(100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holdManager.close();
+    }
+
+    @Test
+    void abandonedHoldReleasesSeats() throws InterruptedException {
+        Booking booking = newBooking("B1", 5, 6);
+
+        assertTrue(holdManager.hold(booking));
+        assertEquals(98, show.getSeatMap().availableSeats());
+
+        awaitNoActiveHolds();
+        assertEquals(Booking.BookingStatus.CANCELLED, booking.getBookingStatus());
+        assertEquals(100, show.getSeatMap().availableSeats());
+    }
+
+    @Test
+    void paidHoldKeepsSeats() throws InterruptedException {
+        Booking booking = newBooking("B2", 7);
+        assertTrue(holdManager.hold(booking));
+
+        Payment payment = new Payment("P2", 150, Payment.PaymentMethod.CREDIT_CARD);
+        payment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
+        assertTrue(holdManager.confirm(booking, payment));
+
+        TimeUnit.MILLISECONDS.sleep(400);
+        assertEquals(Booking.BookingStatus.CONFIRMED, booking.getBookingStatus());
+        assertTrue(show.getSeatMap().isReserved(7));
+    }
+
+    @Test
+    void seatsOnHoldCannotBeHeldTwice() {
+        assertTrue(holdManager.hold(newBooking("B3", 9)));
+        assertFalse(holdManager.hold(newBooking("B4", 9, 10)));
+        assertFalse(show.getSeatMap().isReserved(10));
+    }
+
+    @Test
+    void bookingThatGotNoSeatsNeverReleasesOrConfirmsThem() {
+        assertTrue(holdManager.hold(newBooking("B5", 11)));
+        Booking loser = newBooking("B6", 11);
+        assertFalse(holdManager.hold(loser));
+        assertEquals(Booking.BookingStatus.CANCELLED, loser.getBookingStatus());
+
+        Payment payment = new Payment("P6", 150, Payment.PaymentMethod.CREDIT_CARD);
+        payment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
+        assertFalse(loser.makePayment(payment));
+        assertFalse(loser.cancel());
+        assertTrue(show.getSeatMap().isReserved(11));
+    }
+
+    private Booking newBooking(String bookingId, int... seatIds) {
+        Seat[] seats = new Seat[seatIds.length];
+        for (int i = 0; i < seatIds.length; i++) {
+            seats[i] = new Seat(seatIds[i], Seat.SeatType.REGULAR, null, 150.0);
+        }
+        return new Booking(bookingId, show, List.of(seats));
+    }
+
+    private void awaitNoActiveHolds() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (holdManager.activeHolds() > 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+        assertEquals(0, holdManager.activeHolds());
+    }
+}
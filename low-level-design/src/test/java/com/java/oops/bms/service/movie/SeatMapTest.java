@@ -0,0 +1,117 @@
+package com.java.oops.bms.service.movie;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatMapTest {
+
+    @Test
+    void reserveAndReleaseSingleSeat() {
+        SeatMap seatMap = new SeatMap(100);
+
+        assertTrue(seatMap.reserve(42));
+        assertTrue(seatMap.isReserved(42));
+        assertFalse(seatMap.reserve(42));
+        assertEquals(99, seatMap.availableSeats());
+
+        seatMap.release(42);
+        assertFalse(seatMap.isReserved(42));
+        assertEquals(100, seatMap.availableSeats());
+    }
+
+    @Test
+    void multiSeatReservationIsAllOrNothing() {
+        SeatMap seatMap = new SeatMap(200);
+        // 130 sits in the third word, so the first two words get claimed before the conflict is found
+        assertTrue(seatMap.reserve(130));
+
+        assertFalse(seatMap.reserve(1, 65, 130, 131));
+
+        assertFalse(seatMap.isReserved(1));
+        assertFalse(seatMap.isReserved(65));
+        assertFalse(seatMap.isReserved(131));
+        assertEquals(199, seatMap.availableSeats());
+    }
+
+    @Test
+    void rejectsSeatsOutsideCapacityAndDuplicates() {
+        SeatMap seatMap = new SeatMap(10);
+
+        assertThrows(IllegalArgumentException.class, () -> seatMap.reserve(10));
+        assertThrows(IllegalArgumentException.class, () -> seatMap.reserve(1, 1));
+        assertEquals(10, seatMap.availableSeats());
+    }
+
+    @Test
+    void concurrentBookingsNeverShareASeat() throws InterruptedException {
+        int capacity = 5_000;
+        int threads = 32;
+        SeatMap seatMap = new SeatMap(capacity);
+        // owner of every seat as seen by the winning threads, 0 = free
+        AtomicIntegerArray owners = new AtomicIntegerArray(capacity);
+        AtomicIntegerArray doubleBooked = new AtomicIntegerArray(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 1; t <= threads; t++) {
+            int owner = t;
+            executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (seatMap.availableSeats() > 0) {
+                    int[] seats = randomSeats(random, capacity, 1 + random.nextInt(6));
+                    if (seatMap.reserve(seats)) {
+                        for (int seat : seats) {
+                            if (!owners.compareAndSet(seat, 0, owner)) {
+                                doubleBooked.incrementAndGet(0);
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(0, doubleBooked.get(0));
+        assertEquals(0, seatMap.availableSeats());
+        for (int seat = 0; seat < capacity; seat++) {
+            assertNotEquals(0, owners.get(seat), "Seat " + seat + " is reserved but nobody booked it");
+        }
+    }
+
+    @Test
+    void seatsOfABookingAreReleasedTogether() {
+        SeatMap seatMap = new SeatMap(64);
+        List<Seat> seats = new ArrayList<>();
+        seats.add(new Seat(3, Seat.SeatType.REGULAR, null, 150.0));
+        seats.add(new Seat(4, Seat.SeatType.REGULAR, null, 150.0));
+
+        assertTrue(seatMap.reserve(seats));
+        assertEquals(62, seatMap.availableSeats());
+
+        seatMap.release(seats);
+        assertEquals(64, seatMap.availableSeats());
+    }
+
+    private static int[] randomSeats(ThreadLocalRandom random, int capacity, int count) {
+        int first = random.nextInt(capacity - count + 1);
+        int[] seats = new int[count];
+        for (int i = 0; i < count; i++) {
+            seats[i] = first + i;
+        }
+        return seats;
+    }
+}
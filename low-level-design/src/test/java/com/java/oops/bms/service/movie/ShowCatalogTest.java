@@ -0,0 +1,113 @@
+package com.java.oops.bms.service.movie;
+
+import com.java.oops.bms.service.location.Location;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShowCatalogTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private ShowCatalog catalog;
+    private Movie movie;
+    private Theatre hyderabad;
+    private Theatre chennai;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ShowCatalog();
+        movie = new Movie(1, "Movie", "desc", "Drama", "Telugu", "2025-01-10", null);
+        hyderabad = theatre(1, "Hyderabad", catalog);
+        chennai = theatre(2, "Chennai", catalog);
+    }
+
+    @Test
+    void findsShowsOfMovieInCityWithinInterval() {
+        Show morning = addShow(1, hyderabad, 10 * HOUR);
+        Show evening = addShow(2, hyderabad, 18 * HOUR);
+        addShow(3, hyderabad, 22 * HOUR);
+        addShow(4, chennai, 18 * HOUR);
+
+        List<Show> shows = catalog.findShows(1, "Hyderabad", 9 * HOUR, 20 * HOUR);
+
+        assertEquals(List.of(morning, evening), shows);
+        assertTrue(catalog.findShows(1, "Mumbai", 0, 24 * HOUR).isEmpty());
+        assertEquals(3, catalog.findShowsAtTheatre(1, 0, 24 * HOUR).size());
+    }
+
+    @Test
+    void evictsCompletedShowsInEndTimeOrder() {
+        Show first = addShow(1, hyderabad, 10 * HOUR);
+        addShow(2, hyderabad, 14 * HOUR);
+        addShow(3, chennai, 18 * HOUR);
+
+        // first two shows are over, eviction is capped at one show per call
+        assertEquals(1, catalog.evictCompleted(17 * HOUR, 1));
+        assertFalse(hyderabad.getShows().contains(first));
+        assertEquals(1, catalog.evictCompleted(17 * HOUR, 10));
+        assertEquals(0, catalog.evictCompleted(17 * HOUR, 10));
+        assertEquals(1, catalog.size());
+    }
+
+    @Test
+    void movieWithShowsLeftCannotBeRemovedFromTheatre() {
+        long now = System.currentTimeMillis();
+        Show running = addShow(1, hyderabad, now - HOUR);
+        addShow(2, chennai, now + HOUR);
+        Show over = addShow(3, hyderabad, now - 3 * HOUR);
+
+        assertTrue(catalog.hasShowsRunning(1, 1, now));
+        assertFalse(hyderabad.removeMovie(movie));
+        assertTrue(hyderabad.removeShow(over));
+        assertFalse(hyderabad.removeShow(running));
+        assertEquals(2, catalog.size());
+
+        catalog.removeShow(running);
+        assertFalse(catalog.hasShowsRunning(1, 1, now));
+        assertTrue(hyderabad.removeMovie(movie));
+    }
+
+    @Test
+    void removedShowIsNoLongerFound() {
+        Show show = addShow(1, hyderabad, 10 * HOUR);
+
+        assertTrue(catalog.removeShow(show));
+        assertFalse(catalog.removeShow(show));
+        assertTrue(catalog.findShows(1, "Hyderabad", 0, 24 * HOUR).isEmpty());
+        assertEquals(0, catalog.size());
+    }
+
+    @Test
+    void removedShowIsSkippedByEviction() {
+        Show removed = addShow(1, hyderabad, 10 * HOUR);
+        Show readded = addShow(2, hyderabad, 11 * HOUR);
+        addShow(3, hyderabad, 12 * HOUR);
+
+        assertTrue(catalog.removeShow(removed));
+        assertFalse(hyderabad.getShows().contains(removed));
+        assertTrue(catalog.removeShow(readded));
+        hyderabad.addShow(readded);
+
+        // the leftover queue entries of the removed show and of the readded one are skipped
+        assertEquals(2, catalog.evictCompleted(24 * HOUR, 10));
+        assertEquals(0, catalog.size());
+        assertTrue(hyderabad.getShows().isEmpty());
+    }
+
+    private Show addShow(int showId, Theatre theatre, long startTime) {
+        // two hour shows
+        Show show = new Show(showId, 0, movie, new Date(startTime), 120, theatre, new SeatMap(10));
+        theatre.addShow(show);
+        return show;
+    }
+
+    private static Theatre theatre(int theatreId, String city, ShowCatalog catalog) {
+        Location location = new Location("street", city, "state", "000000", "India");
+        return new Theatre(theatreId, null, "Theatre " + theatreId, location, new HashSet<>(), new HashSet<>(), catalog);
+    }
+}
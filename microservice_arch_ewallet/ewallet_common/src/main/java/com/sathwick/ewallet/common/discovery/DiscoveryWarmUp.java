@@ -0,0 +1,51 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.discovery.EurekaClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a local snapshot of the Eureka registry and warms discovery before the service reports ready, import it
+ * into a configuration of the service. Settings:
+ * <pre>
+ * ewallet.discovery.warm-up-services   service ids this one calls, waited for at start (none)
+ * ewallet.discovery.warm-up-timeout    how long to wait for them before starting anyway (30s)
+ * ewallet.discovery.snapshot-interval  how often the fetched registry is written to the snapshot (30s)
+ * eureka.instance.initial-status       STARTING, so the instance is UP only after the warm-up
+ * eureka.client.backup-registry-impl   {@link SnapshotBackupRegistry}, to start from the snapshot without Eureka
+ * </pre>
+ * The snapshot file is {@code eureka-registry.json} in the working directory, or the JVM system property
+ * {@value RegistrySnapshotFile#LOCATION_PROPERTY}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class DiscoveryWarmUp {
+
+    @Bean
+    public RegistrySnapshotWriter registrySnapshotWriter(EurekaClient eurekaClient,
+                                                         @Value("${ewallet.discovery.snapshot-interval:30s}") Duration interval) {
+        return new RegistrySnapshotWriter(eurekaClient, RegistrySnapshotFile.location(), interval);
+    }
+
+    @Bean
+    public InstanceCacheWarmer instanceCacheWarmer(DiscoveryClient discoveryClient,
+                                                   ObjectProvider<LoadBalancerClientFactory> loadBalancerClientFactory,
+                                                   ApplicationInfoManager applicationInfoManager,
+                                                   @Value("${ewallet.discovery.warm-up-services:}") String serviceIds,
+                                                   @Value("${ewallet.discovery.warm-up-timeout:30s}") Duration timeout) {
+        List<String> services = Arrays.stream(serviceIds.split(","))
+                .map(String::trim)
+                .filter(serviceId -> !serviceId.isEmpty())
+                .toList();
+        return new InstanceCacheWarmer(discoveryClient, loadBalancerClientFactory, applicationInfoManager,
+                services, timeout, Duration.ofMillis(500));
+    }
+}
@@ -0,0 +1,76 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Runs before the service reports ready. Waits until discovery knows an instance of every service this one calls,
+ * fills their load balancer instance caches, and only then turns this instance UP in Eureka. With
+ * {@code eureka.instance.initial-status=STARTING} callers don't see the instance before it can serve, which is what
+ * turned rolling deploys into 503s.
+ */
+public class InstanceCacheWarmer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(InstanceCacheWarmer.class);
+
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<LoadBalancerClientFactory> loadBalancerClientFactory;
+    private final ApplicationInfoManager applicationInfoManager;
+    private final List<String> serviceIds;
+    private final Duration timeout;
+    private final Duration pollInterval;
+
+    public InstanceCacheWarmer(DiscoveryClient discoveryClient,
+                               ObjectProvider<LoadBalancerClientFactory> loadBalancerClientFactory,
+                               ApplicationInfoManager applicationInfoManager,
+                               List<String> serviceIds, Duration timeout, Duration pollInterval) {
+        this.discoveryClient = discoveryClient;
+        this.loadBalancerClientFactory = loadBalancerClientFactory;
+        this.applicationInfoManager = applicationInfoManager;
+        this.serviceIds = serviceIds;
+        this.timeout = timeout;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (String serviceId : serviceIds) {
+            warm(serviceId, deadline);
+        }
+        // an instance set OUT_OF_SERVICE on purpose stays so
+        if (applicationInfoManager.getInfo().getStatus() == InstanceStatus.STARTING) {
+            applicationInfoManager.setInstanceStatus(InstanceStatus.UP);
+        }
+    }
+
+    private void warm(String serviceId, long deadline) throws InterruptedException {
+        while (discoveryClient.getInstances(serviceId).isEmpty()) {
+            if (System.nanoTime() >= deadline) {
+                // better degraded than never UP, calls to it fail until it shows up
+                log.warn("No instance of {} known after {}, starting without", serviceId, timeout);
+                return;
+            }
+            // the Eureka client fetches every eureka.client.registry-fetch-interval-seconds
+            Thread.sleep(pollInterval.toMillis());
+        }
+        LoadBalancerClientFactory factory = loadBalancerClientFactory.getIfAvailable();
+        ServiceInstanceListSupplier supplier = factory == null ? null : factory.getInstance(serviceId, ServiceInstanceListSupplier.class);
+        if (supplier != null) {
+            // creates the load balancer context of the service, the first call would otherwise pay for it
+            List<?> instances = supplier.get().blockFirst(Duration.ofNanos(Math.max(deadline - System.nanoTime(), 1)));
+            log.info("Warmed up {} instances of {}", instances == null ? 0 : instances.size(), serviceId);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.discovery.converters.EurekaJacksonCodec;
+import com.netflix.discovery.shared.Applications;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * The Eureka registry as last fetched by this service, kept in a local file so that on its next start the service
+ * finds the others even while Eureka is not reachable yet. Same JSON as Eureka's REST API.
+ */
+public final class RegistrySnapshotFile {
+
+    // JVM system property: the backup registry is created by the Eureka client, before Spring properties are bound
+    public static final String LOCATION_PROPERTY = "ewallet.discovery.snapshot-file";
+    private static final String DEFAULT_LOCATION = "eureka-registry.json";
+
+    private RegistrySnapshotFile() {
+    }
+
+    public static Path location() {
+        return Path.of(System.getProperty(LOCATION_PROPERTY, DEFAULT_LOCATION));
+    }
+
+    public static void write(Path file, Applications applications) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                EurekaJacksonCodec.getInstance().writeTo(applications, out);
+            }
+            // a service starting meanwhile never reads a half written snapshot
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Empty when there is no snapshot yet
+    public static Optional<Applications> read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return Optional.ofNullable(EurekaJacksonCodec.getInstance().readValue(Applications.class, in));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.discovery.EurekaClient;
+import com.netflix.discovery.shared.Applications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.context.event.EventListener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the registry to the {@link RegistrySnapshotFile} after a successful fetch from Eureka, at most once per
+ * interval. The registry read from the snapshot itself is never written back: the Eureka client only announces
+ * fetches from the server.
+ */
+public class RegistrySnapshotWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrySnapshotWriter.class);
+
+    private final EurekaClient eurekaClient;
+    private final Path file;
+    private final long intervalNanos;
+    private final AtomicLong writtenAtNanos;
+
+    public RegistrySnapshotWriter(EurekaClient eurekaClient, Path file, Duration interval) {
+        this.eurekaClient = eurekaClient;
+        this.file = file;
+        this.intervalNanos = interval.toNanos();
+        // the first fetch is written right away
+        this.writtenAtNanos = new AtomicLong(System.nanoTime() - intervalNanos);
+    }
+
+    // Published by the Eureka client after every registry fetch
+    @EventListener(HeartbeatEvent.class)
+    public void onRegistryFetched() {
+        long now = System.nanoTime();
+        long writtenAt = writtenAtNanos.get();
+        if (now - writtenAt < intervalNanos || !writtenAtNanos.compareAndSet(writtenAt, now)) {
+            return;
+        }
+        Applications applications = eurekaClient.getApplications();
+        if (applications == null || applications.getRegisteredApplications().isEmpty()) {
+            // keep the last useful snapshot
+            return;
+        }
+        try {
+            RegistrySnapshotFile.write(file, applications);
+        } catch (IOException e) {
+            log.warn("Could not write the registry snapshot to {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.discovery.BackupRegistry;
+import com.netflix.discovery.shared.Applications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+
+/**
+ * Registry the Eureka client falls back to when its first fetch at start fails: the {@link RegistrySnapshotFile}
+ * written on the previous run. Enabled with
+ * {@code eureka.client.backup-registry-impl=com.sathwick.ewallet.common.discovery.SnapshotBackupRegistry}, the
+ * client instantiates it reflectively. Instances of the snapshot are used until the next successful fetch replaces
+ * them, the load balancer steers away from the ones that are gone meanwhile.
+ */
+public class SnapshotBackupRegistry implements BackupRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotBackupRegistry.class);
+
+    @Override
+    public Applications fetchRegistry() {
+        Path file = RegistrySnapshotFile.location();
+        try {
+            Applications applications = RegistrySnapshotFile.read(file).orElse(null);
+            if (applications == null) {
+                log.warn("Eureka not reachable and no registry snapshot at {}, starting with an empty registry", file);
+            } else {
+                log.warn("Eureka not reachable, starting with {} services of the registry snapshot at {}",
+                        applications.getRegisteredApplications().size(), file);
+            }
+            return applications;
+        } catch (Exception e) {
+            log.warn("Could not read the registry snapshot at {}", file, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Applications fetchRegistry(String[] includeRemoteRegions) {
+        return fetchRegistry();
+    }
+}
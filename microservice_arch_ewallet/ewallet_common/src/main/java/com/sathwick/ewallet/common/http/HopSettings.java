@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.common.http;
+
+import java.time.Duration;
+
+/**
+ * Connection pool and timeout settings of one service to service hop.
+ *
+ * @param connectTimeout         TCP connect timeout, also the longest wait for a free pooled connection
+ * @param responseTimeout        longest wait for the response once the request is sent
+ * @param maxConnections         pool size over all target instances
+ * @param maxConnectionsPerRoute pool size per target instance (host and port)
+ * @param idleTimeout            kept alive connections idle for longer are closed
+ */
+public record HopSettings(Duration connectTimeout,
+                          Duration responseTimeout,
+                          int maxConnections,
+                          int maxConnectionsPerRoute,
+                          Duration idleTimeout) {
+}
@@ -0,0 +1,68 @@
+package com.sathwick.ewallet.common.http;
+
+import io.netty.channel.ChannelOption;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Keep-alive connection pools for the calls between services. A plain {@code new RestTemplate()} opens a new
+ * connection per request and has no timeouts, so a slow downstream service holds callers forever.
+ * <p>
+ * {@link #requestFactory(HopSettings)} is for a blocking {@code RestTemplate} (Apache HttpClient 5),
+ * {@link #connector(String, HopSettings)} for a non-blocking {@code WebClient} (Reactor Netty).
+ */
+public final class PooledHttpClients {
+
+    private PooledHttpClients() {
+    }
+
+    public static ClientHttpRequestFactory requestFactory(HopSettings settings) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.maxConnections())
+                .setMaxConnPerRoute(settings.maxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(settings.connectTimeout()))
+                        .setSocketTimeout(Timeout.of(settings.responseTimeout()))
+                        .build())
+                .build();
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        // waiting for a pooled connection counts as connecting
+                        .setConnectionRequestTimeout(Timeout.of(settings.connectTimeout()))
+                        .setResponseTimeout(Timeout.of(settings.responseTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(settings.idleTimeout()))
+                .build();
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    public static ClientHttpConnector connector(String name, HopSettings settings) {
+        // Reactor Netty pools per target address, maxConnections is per route here
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(settings.maxConnectionsPerRoute())
+                .pendingAcquireTimeout(settings.connectTimeout())
+                .pendingAcquireMaxCount(settings.maxConnections() * 4)
+                .maxIdleTime(settings.idleTimeout())
+                .evictInBackground(settings.idleTimeout())
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.connectTimeout().toMillis())
+                .responseTimeout(settings.responseTimeout())
+                .keepAlive(true);
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
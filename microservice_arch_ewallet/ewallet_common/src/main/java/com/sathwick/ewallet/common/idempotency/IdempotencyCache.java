@@ -0,0 +1,126 @@
+package com.sathwick.ewallet.common.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the result of a request by its idempotency key so that a retried request gets the first result back
+ * instead of being executed again.
+ * <p>
+ * Keys live in a Caffeine cache bounded by entry count and evicted a fixed time after they were written, so
+ * memory stays bounded however many keys come in; lookups are a single hash map access. A retry that arrives
+ * while the first request is still running waits for it instead of starting a second execution. An optional
+ * {@link IdempotencyStore} keeps results beyond the memory tier.
+ * <p>
+ * Results are cached whether the request succeeded or was refused, only an exception lets the key be retried.
+ */
+public class IdempotencyCache<V> {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyCache.class);
+
+    private final Cache<String, CompletableFuture<V>> inFlightOrDone;
+    private final IdempotencyStore<V> store;
+
+    public IdempotencyCache(long maximumSize, Duration ttl) {
+        this(maximumSize, ttl, null);
+    }
+
+    public IdempotencyCache(long maximumSize, Duration ttl, IdempotencyStore<V> store) {
+        this.inFlightOrDone = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.store = store;
+    }
+
+    /**
+     * Runs {@code action} for the first request with this key and returns the stored result for the following
+     * ones. A {@code null} or blank key disables deduplication.
+     */
+    public V execute(String key, Supplier<V> action) {
+        return join(executeAsync(key, () -> CompletableFuture.completedFuture(action.get())));
+    }
+
+    // Same as execute for an action that completes later, the calling thread is never blocked
+    public CompletableFuture<V> executeAsync(String key, Supplier<CompletableFuture<V>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlightOrDone.asMap().putIfAbsent(key, result);
+        if (existing != null) {
+            // copies, a caller must not be able to complete or cancel the shared future
+            return existing.copy();
+        }
+        // this thread owns the key
+        CompletableFuture<V> started;
+        try {
+            Optional<V> stored = store == null ? Optional.empty() : store.find(key);
+            if (stored.isPresent()) {
+                result.complete(stored.get());
+                return result.copy();
+            }
+            started = action.get();
+        } catch (RuntimeException | Error e) {
+            release(key, result, e);
+            throw e;
+        }
+        started.whenComplete((value, error) -> {
+            if (error != null) {
+                release(key, result, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+                return;
+            }
+            result.complete(value);
+            if (store != null) {
+                try {
+                    store.save(key, value);
+                } catch (RuntimeException e) {
+                    // the request did run, the memory tier still answers retries that reach this instance
+                    log.warn("Unable to store result of idempotency key {}: {}", key, e.getMessage());
+                }
+            }
+        });
+        return result.copy();
+    }
+
+    // Result of a key already handled by this instance, if it is still in memory
+    public Optional<V> getIfDone(String key) {
+        CompletableFuture<V> result = inFlightOrDone.getIfPresent(key);
+        if (result == null || !result.isDone() || result.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return Optional.of(result.join());
+    }
+
+    public long estimatedSize() {
+        return inFlightOrDone.estimatedSize();
+    }
+
+    // Failed requests are not remembered, the key can be retried
+    private void release(String key, CompletableFuture<V> result, Throwable error) {
+        inFlightOrDone.asMap().remove(key, result);
+        result.completeExceptionally(error);
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // same exception as the request that owns the key
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
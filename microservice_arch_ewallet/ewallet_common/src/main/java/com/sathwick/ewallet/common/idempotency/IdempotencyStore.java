@@ -0,0 +1,14 @@
+package com.sathwick.ewallet.common.idempotency;
+
+import java.util.Optional;
+
+/**
+ * Durable second tier behind {@link IdempotencyCache}, for keys that fell out of memory or were handled by another
+ * instance of the service. Only consulted on a cache miss.
+ */
+public interface IdempotencyStore<V> {
+
+    Optional<V> find(String key);
+
+    void save(String key, V result);
+}
@@ -0,0 +1,31 @@
+package com.sathwick.ewallet.common.kafka;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.MicrometerProducerListener;
+import org.springframework.kafka.core.ProducerFactory;
+
+import java.util.List;
+
+/**
+ * Producer factories built from {@link ProducerSettings}.
+ * <p>
+ * The Kafka client metrics of every producer are bound to the meter registry as {@code kafka.producer.*}, e.g.
+ * {@code kafka.producer.batch.size.avg}, {@code kafka.producer.record.send.rate} and
+ * {@code kafka.producer.request.latency.avg}, tagged with the producer profile.
+ */
+public final class KafkaProducers {
+
+    private KafkaProducers() {
+    }
+
+    public static ProducerFactory<String, byte[]> producerFactory(ProducerSettings settings, MeterRegistry meterRegistry) {
+        DefaultKafkaProducerFactory<String, byte[]> factory = new DefaultKafkaProducerFactory<>(settings.toConfig());
+        if (meterRegistry != null) {
+            factory.addListener(new MicrometerProducerListener<>(meterRegistry,
+                    List.of(Tag.of("profile", settings.profile().name().toLowerCase()))));
+        }
+        return factory;
+    }
+}
@@ -0,0 +1,27 @@
+package com.sathwick.ewallet.common.kafka;
+
+import com.sathwick.ewallet.common.money.Money;
+
+import java.util.Objects;
+
+/**
+ * Transaction outcome the notification service tells a user about. Sent by the transaction service and encoded
+ * with {@link NotificationEventCodec}, the record key is the user id.
+ */
+public record NotificationEvent(long userId, Money amount, UserType userType, Status status) {
+
+    public NotificationEvent {
+        Objects.requireNonNull(amount, "amount");
+        Objects.requireNonNull(userType, "userType");
+        Objects.requireNonNull(status, "status");
+    }
+
+    // the ordinals are part of the wire format, only append new constants
+    public enum UserType {
+        SENDER, RECEIVER
+    }
+
+    public enum Status {
+        SUCCESS, FAILURE
+    }
+}
@@ -0,0 +1,14 @@
+package com.sathwick.ewallet.common.kafka;
+
+/**
+ * Kafka record stored in a service's outbox table, see {@link OutboxRelay}.
+ */
+public interface OutboxRecord {
+
+    String getTopic();
+
+    String getMessageKey();
+
+    // encoded record value, sent as is
+    byte[] getPayload();
+}
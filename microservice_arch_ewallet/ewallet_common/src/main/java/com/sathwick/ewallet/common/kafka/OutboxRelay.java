@@ -0,0 +1,85 @@
+package com.sathwick.ewallet.common.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes an outbox to Kafka.
+ * <p>
+ * Every round locks the oldest {@code batchSize} records, hands all of them to the producer at once (so they go
+ * out in a few compressed producer batches), waits for the broker acknowledgments and deletes the records in the
+ * same DB transaction. Anything that fails rolls back and is sent again on the next round, consumers see events
+ * at least once. Instances of the service take turns on the row locks, which keeps the publish order.
+ * <p>
+ * Services declare it as a bean over their outbox repository and enable scheduling, {@link #relay()} runs every
+ * {@code ewallet.outbox.poll-interval-ms}.
+ */
+public class OutboxRelay<E extends OutboxRecord> {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final OutboxStore<E> outboxStore;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final TransactionOperations transactionOperations;
+    private final int batchSize;
+    private final Duration sendTimeout;
+
+    public OutboxRelay(OutboxStore<E> outboxStore,
+                       KafkaTemplate<String, byte[]> kafkaTemplate,
+                       TransactionOperations transactionOperations,
+                       int batchSize,
+                       Duration sendTimeout) {
+        this.outboxStore = outboxStore;
+        this.kafkaTemplate = kafkaTemplate;
+        this.transactionOperations = transactionOperations;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+    }
+
+    @Scheduled(fixedDelayString = "${ewallet.outbox.poll-interval-ms:100}")
+    public void relay() {
+        try {
+            // keep going while full batches come back, a backlog is drained without waiting for the next tick
+            while (relayBatch() == batchSize) {
+                log.debug("Outbox backlog, relaying next batch");
+            }
+        } catch (Exception e) {
+            log.warn("Outbox relay failed, retrying on the next round: {}", e.getMessage());
+        }
+    }
+
+    int relayBatch() {
+        Integer relayed = transactionOperations.execute(status -> {
+            List<E> records = outboxStore.lockOldest(batchSize);
+            if (records.isEmpty()) {
+                return 0;
+            }
+            CompletableFuture<?>[] acks = new CompletableFuture<?>[records.size()];
+            for (int i = 0; i < records.size(); i++) {
+                E record = records.get(i);
+                acks[i] = kafkaTemplate.send(record.getTopic(), record.getMessageKey(), record.getPayload());
+            }
+            try {
+                CompletableFuture.allOf(acks).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Kafka", e);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("Kafka did not acknowledge the outbox batch", e);
+            }
+            outboxStore.deleteAllInBatch(records);
+            return records.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+}
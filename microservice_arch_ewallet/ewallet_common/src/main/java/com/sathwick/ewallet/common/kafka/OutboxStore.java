@@ -0,0 +1,14 @@
+package com.sathwick.ewallet.common.kafka;
+
+import java.util.List;
+
+/**
+ * Outbox table of a service, implemented by its Spring Data repository.
+ */
+public interface OutboxStore<E extends OutboxRecord> {
+
+    // Oldest records first, locked (SELECT ... FOR UPDATE) so a second relay instance waits instead of sending them again
+    List<E> lockOldest(int limit);
+
+    void deleteAllInBatch(Iterable<E> records);
+}
@@ -0,0 +1,37 @@
+package com.sathwick.ewallet.common.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Map;
+
+/**
+ * Named sets of producer batching settings. Both keep idempotence and {@code acks=all}, so switching profiles
+ * never trades away delivery guarantees, only how long the producer waits to fill a batch.
+ */
+public enum ProducerProfile {
+
+    // relays and bulk publishers: wait up to 20ms for 128KB batches, lz4 compressed
+    THROUGHPUT(20, 128 * 1024, "lz4"),
+    // request path publishers: send as soon as the sender thread is free, small uncompressed batches
+    LATENCY(0, 16 * 1024, "none");
+
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+
+    ProducerProfile(int lingerMs, int batchSize, String compressionType) {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+    }
+
+    void applyTo(Map<String, Object> configs) {
+        configs.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configs.put(ProducerConfig.ACKS_CONFIG, "all");
+        // the most idempotence allows while keeping the order per partition
+        configs.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+    }
+}
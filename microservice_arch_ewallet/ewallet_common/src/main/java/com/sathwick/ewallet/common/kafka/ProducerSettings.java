@@ -0,0 +1,46 @@
+package com.sathwick.ewallet.common.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Producer settings of one service: a {@link ProducerProfile} plus optional overrides of single values.
+ *
+ * @param bootstrapServers Kafka brokers to connect to
+ * @param clientId         producer client id, also the {@code client.id} tag of the producer metrics
+ * @param profile          batching settings to start from
+ * @param lingerMs         overrides the {@code linger.ms} of the profile, null keeps it
+ * @param batchSize        overrides the {@code batch.size} of the profile, null keeps it
+ * @param compressionType  overrides the {@code compression.type} of the profile, null or blank keeps it
+ */
+public record ProducerSettings(String bootstrapServers,
+                               String clientId,
+                               ProducerProfile profile,
+                               Integer lingerMs,
+                               Integer batchSize,
+                               String compressionType) {
+
+    // String keys (the user id), values are already encoded bytes
+    public Map<String, Object> toConfig() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        configs.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        profile.applyTo(configs);
+        if (lingerMs != null) {
+            configs.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        }
+        if (batchSize != null) {
+            configs.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        }
+        if (compressionType != null && !compressionType.isBlank()) {
+            configs.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        }
+        return configs;
+    }
+}
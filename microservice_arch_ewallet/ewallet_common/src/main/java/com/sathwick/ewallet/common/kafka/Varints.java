@@ -0,0 +1,45 @@
+package com.sathwick.ewallet.common.kafka;
+
+// Little endian base 128 varints like in protobuf, shared by the binary codecs of this package
+final class Varints {
+
+    // bytes of the longest varint, a negative long
+    static final int MAX_LONG_SIZE = 10;
+
+    private Varints() {
+    }
+
+    static int writeLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    // Returns the position after the varint, the value goes into result[0]. What names the message in errors
+    static int readLong(byte[] bytes, int position, long[] result, String what) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated " + what);
+            }
+            byte b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                result[0] = value;
+                return position;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint in " + what);
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,35 @@
+package com.sathwick.ewallet.common.kafka;
+
+import com.sathwick.ewallet.common.money.Money;
+
+import java.util.Objects;
+
+/**
+ * Step of a transfer saga the transaction service asks the wallet service to run, encoded with
+ * {@link WalletSagaCodec}. The record key is the sender id, so the CANCEL of a transfer is always consumed after
+ * its EXECUTE.
+ *
+ * @param transferId saga id, the wallet service applies each action of a transfer at most once
+ * @param receiverId the wallet owner for deposits and withdrawals
+ */
+public record WalletCommand(long transferId, Action action, long senderId, long receiverId, Money amount,
+                            TransactionType transactionType) {
+
+    public WalletCommand {
+        Objects.requireNonNull(action, "action");
+        Objects.requireNonNull(amount, "amount");
+        Objects.requireNonNull(transactionType, "transactionType");
+    }
+
+    // the ordinals are part of the wire format, only append new constants
+    public enum Action {
+        // apply the transaction
+        EXECUTE,
+        // undo it if it was applied, or make sure a late EXECUTE is never applied
+        CANCEL
+    }
+
+    public enum TransactionType {
+        DEPOSIT, WITHDRAW, TRANSFER
+    }
+}
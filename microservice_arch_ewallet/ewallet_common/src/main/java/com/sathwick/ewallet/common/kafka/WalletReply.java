@@ -0,0 +1,17 @@
+package com.sathwick.ewallet.common.kafka;
+
+import java.util.Objects;
+
+/**
+ * Outcome of a {@link WalletCommand}, sent back by the wallet service once it is committed. Repeated commands get
+ * the same outcome again, so a reply can arrive more than once.
+ *
+ * @param success for EXECUTE whether the transaction was applied, for CANCEL whether the transfer is no longer in
+ *                effect (undone, rejected in the first place or blocked before it arrived)
+ */
+public record WalletReply(long transferId, WalletCommand.Action action, boolean success) {
+
+    public WalletReply {
+        Objects.requireNonNull(action, "action");
+    }
+}
@@ -0,0 +1,104 @@
+package com.sathwick.ewallet.common.kafka;
+
+import com.sathwick.ewallet.common.money.Money;
+
+import java.util.Arrays;
+
+/**
+ * Binary encoding of the transfer saga messages between the transaction and the wallet service, in the style of
+ * {@link NotificationEventCodec}.
+ * <pre>
+ * command:
+ * byte    schema version (1)
+ * byte    action ordinal (high nibble), transaction type ordinal (low nibble)
+ * varint  transfer id
+ * varint  sender id
+ * varint  receiver id
+ * varint  amount in minor units, zigzag encoded
+ *
+ * reply:
+ * byte    schema version (1)
+ * byte    action ordinal (high nibble), 1 for success (low nibble)
+ * varint  transfer id
+ * </pre>
+ * Decoding rejects unknown versions, unknown constants and truncated input with an {@link IllegalArgumentException}.
+ */
+public final class WalletSagaCodec {
+
+    static final byte VERSION = 1;
+    private static final String COMMAND = "wallet command";
+    private static final String REPLY = "wallet reply";
+    private static final int MAX_COMMAND_SIZE = 2 + 4 * Varints.MAX_LONG_SIZE;
+    private static final int MAX_REPLY_SIZE = 2 + Varints.MAX_LONG_SIZE;
+
+    private WalletSagaCodec() {
+    }
+
+    public static byte[] encode(WalletCommand command) {
+        byte[] buffer = new byte[MAX_COMMAND_SIZE];
+        buffer[0] = VERSION;
+        buffer[1] = (byte) (command.action().ordinal() << 4 | command.transactionType().ordinal());
+        int position = Varints.writeLong(buffer, 2, command.transferId());
+        position = Varints.writeLong(buffer, position, command.senderId());
+        position = Varints.writeLong(buffer, position, command.receiverId());
+        position = Varints.writeLong(buffer, position, Varints.zigZag(command.amount().getMinorUnits()));
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public static WalletCommand decodeCommand(byte[] bytes) {
+        checkHeader(bytes, 6, COMMAND);
+        WalletCommand.Action[] actions = WalletCommand.Action.values();
+        WalletCommand.TransactionType[] types = WalletCommand.TransactionType.values();
+        int action = (bytes[1] >> 4) & 0x0F;
+        int type = bytes[1] & 0x0F;
+        if (action >= actions.length || type >= types.length) {
+            throw new IllegalArgumentException("Unknown wallet command type " + bytes[1]);
+        }
+        long[] value = new long[1];
+        int position = Varints.readLong(bytes, 2, value, COMMAND);
+        long transferId = value[0];
+        position = Varints.readLong(bytes, position, value, COMMAND);
+        long senderId = value[0];
+        position = Varints.readLong(bytes, position, value, COMMAND);
+        long receiverId = value[0];
+        position = Varints.readLong(bytes, position, value, COMMAND);
+        checkEnd(bytes, position, COMMAND);
+        return new WalletCommand(transferId, actions[action], senderId, receiverId,
+                Money.ofMinorUnits(Varints.unZigZag(value[0])), types[type]);
+    }
+
+    public static byte[] encode(WalletReply reply) {
+        byte[] buffer = new byte[MAX_REPLY_SIZE];
+        buffer[0] = VERSION;
+        buffer[1] = (byte) (reply.action().ordinal() << 4 | (reply.success() ? 1 : 0));
+        return Arrays.copyOf(buffer, Varints.writeLong(buffer, 2, reply.transferId()));
+    }
+
+    public static WalletReply decodeReply(byte[] bytes) {
+        checkHeader(bytes, 3, REPLY);
+        WalletCommand.Action[] actions = WalletCommand.Action.values();
+        int action = (bytes[1] >> 4) & 0x0F;
+        int success = bytes[1] & 0x0F;
+        if (action >= actions.length || success > 1) {
+            throw new IllegalArgumentException("Unknown wallet reply type " + bytes[1]);
+        }
+        long[] value = new long[1];
+        checkEnd(bytes, Varints.readLong(bytes, 2, value, REPLY), REPLY);
+        return new WalletReply(value[0], actions[action], success == 1);
+    }
+
+    private static void checkHeader(byte[] bytes, int minSize, String what) {
+        if (bytes == null || bytes.length < minSize) {
+            throw new IllegalArgumentException("Not a " + what);
+        }
+        if (bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown " + what + " version " + bytes[0]);
+        }
+    }
+
+    private static void checkEnd(byte[] bytes, int position, String what) {
+        if (position != bytes.length) {
+            throw new IllegalArgumentException("Trailing bytes after " + what);
+        }
+    }
+}
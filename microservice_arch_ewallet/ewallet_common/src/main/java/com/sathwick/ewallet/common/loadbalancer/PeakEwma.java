@@ -0,0 +1,78 @@
+package com.sathwick.ewallet.common.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load estimate of one service instance: a peak-sensitive moving average of its response times multiplied by the
+ * requests in flight to it.
+ * <p>
+ * A response slower than the average replaces it at once, faster ones pull it down exponentially with
+ * {@code decayNanos} as time constant, so a slowdown is noticed on the first slow response and forgotten gradually.
+ * The average also decays towards zero while the instance gets no responses, which makes an instance that was
+ * avoided look cheap again after a while and get probed.
+ */
+public final class PeakEwma {
+
+    // cost of an instance that has requests in flight but never answered, higher than any measured one
+    static final double UNPROBED_PENALTY = 1e15;
+
+    private final long decayNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // guarded by this
+    private double ewmaNanos;
+    private long updatedAtNanos;
+
+    PeakEwma(long decayNanos, long nowNanos) {
+        this.decayNanos = decayNanos;
+        this.updatedAtNanos = nowNanos;
+    }
+
+    void start() {
+        inFlight.incrementAndGet();
+    }
+
+    // A response (or failure) after rttNanos, null rttNanos only ends the request
+    void end(Long rttNanos, long nowNanos) {
+        inFlight.decrementAndGet();
+        if (rttNanos != null) {
+            observe(rttNanos, nowNanos);
+        }
+    }
+
+    synchronized void observe(long rttNanos, long nowNanos) {
+        double weight = weight(nowNanos);
+        ewmaNanos = rttNanos > ewmaNanos ? rttNanos : ewmaNanos * weight + rttNanos * (1 - weight);
+        updatedAtNanos = nowNanos;
+    }
+
+    // Lower is better, comparable between the instances of one service only
+    synchronized double cost(long nowNanos) {
+        int pending = inFlight.get();
+        if (ewmaNanos == 0 && pending > 0) {
+            // new instance: one request at a time until it answered once
+            return UNPROBED_PENALTY + pending;
+        }
+        return decayed(nowNanos) * (pending + 1);
+    }
+
+    // Nothing in flight and no response for idleNanos: the average has faded, a new PeakEwma would do the same
+    synchronized boolean idle(long nowNanos, long idleNanos) {
+        return inFlight.get() == 0 && nowNanos - updatedAtNanos >= idleNanos;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public synchronized double ewmaMillis(long nowNanos) {
+        return decayed(nowNanos) / 1e6;
+    }
+
+    private double decayed(long nowNanos) {
+        return ewmaNanos * weight(nowNanos);
+    }
+
+    private double weight(long nowNanos) {
+        return Math.exp(-Math.max(0, nowNanos - updatedAtNanos) / (double) decayNanos);
+    }
+}
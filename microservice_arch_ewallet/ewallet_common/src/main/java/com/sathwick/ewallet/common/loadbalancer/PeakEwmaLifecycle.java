@@ -0,0 +1,63 @@
+package com.sathwick.ewallet.common.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+
+/**
+ * Feeds {@link PeakEwmaStats} from the requests of {@code @LoadBalanced} RestTemplates and WebClients: counts a
+ * request in flight once an instance is chosen and records its response time when it completes.
+ */
+public class PeakEwmaLifecycle implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private final PeakEwmaStats stats;
+
+    public PeakEwmaLifecycle(PeakEwmaStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        // the request contexts of RestTemplate and WebClient calls are timed, like for the load balancer metrics
+        if (request.getContext() instanceof TimedRequestContext context) {
+            context.setRequestStartTime(stats.now());
+        }
+        stats.started(lbResponse.getServer());
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        // DISCARD: no instance was chosen, onStartRequest didn't count anything
+        if (completionContext.status() == CompletionContext.Status.DISCARD || lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        Long rttNanos = null;
+        Request<Object> request = completionContext.getLoadBalancerRequest();
+        if (request != null && request.getContext() instanceof TimedRequestContext context && context.getRequestStartTime() > 0) {
+            rttNanos = stats.now() - context.getRequestStartTime();
+        }
+        stats.completed(lbResponse.getServer(), rttNanos, failed(completionContext));
+    }
+
+    // Exceptions and 5xx responses, a 4xx is the caller's fault and says nothing about the instance
+    private static boolean failed(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+        if (completionContext.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+        return completionContext.getClientResponse() instanceof ResponseData response
+                && response.getHttpStatus() != null
+                && response.getHttpStatus().is5xxServerError();
+    }
+}
@@ -0,0 +1,34 @@
+package com.sathwick.ewallet.common.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Replaces the round robin of every {@code @LoadBalanced} client of a service with the {@link PeakEwmaLoadBalancer},
+ * import it into a configuration of the service. Settings:
+ * <pre>
+ * ewallet.loadbalancer.decay-time       how long a latency sample keeps its weight (10s)
+ * ewallet.loadbalancer.failure-penalty  response time an exception or 5xx counts as at least (1s)
+ * spring.cloud.loadbalancer.cache.ttl   how long an instance list is reused before asking discovery again
+ * </pre>
+ */
+@Configuration(proxyBeanMethods = false)
+@LoadBalancerClients(defaultConfiguration = PeakEwmaLoadBalancerConfiguration.class)
+public class PeakEwmaLoadBalancing {
+
+    // in the service's context, the per service id load balancer contexts find it through their parent
+    @Bean
+    public PeakEwmaStats peakEwmaStats(@Value("${ewallet.loadbalancer.decay-time:10s}") Duration decayTime,
+                                       @Value("${ewallet.loadbalancer.failure-penalty:1s}") Duration failurePenalty) {
+        return new PeakEwmaStats(decayTime, failurePenalty);
+    }
+
+    @Bean
+    public PeakEwmaLifecycle peakEwmaLifecycle(PeakEwmaStats peakEwmaStats) {
+        return new PeakEwmaLifecycle(peakEwmaStats);
+    }
+}
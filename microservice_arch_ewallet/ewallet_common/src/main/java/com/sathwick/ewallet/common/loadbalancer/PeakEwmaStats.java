@@ -0,0 +1,88 @@
+package com.sathwick.ewallet.common.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link PeakEwma} per service instance, shared by the {@link PeakEwmaLoadBalancer}s that read it and the
+ * {@link PeakEwmaLifecycle} that feeds it. Instances are told apart by host and port.
+ * <p>
+ * Instances that had nothing in flight and no response for {@value #IDLE_DECAY_TIMES} decay times are dropped, so
+ * the instances of a service that scaled in or moved don't pile up. Their average has faded to nothing by then,
+ * should they come back they start over like any new instance.
+ *
+ * @see PeakEwmaLoadBalancing
+ */
+public class PeakEwmaStats {
+
+    static final int IDLE_DECAY_TIMES = 10;
+
+    private final long decayNanos;
+    private final long failurePenaltyNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, PeakEwma> instances = new ConcurrentHashMap<>();
+    private final AtomicLong evictedAtNanos;
+
+    /**
+     * @param decayTime      how long a latency sample keeps its weight, about the time a slow instance needs
+     *                       to look fast again once it answers fast
+     * @param failurePenalty response time a failed request or a 5xx response counts as at least, so an instance
+     *                       that fails fast doesn't attract all the traffic
+     */
+    public PeakEwmaStats(Duration decayTime, Duration failurePenalty) {
+        this(decayTime, failurePenalty, System::nanoTime);
+    }
+
+    PeakEwmaStats(Duration decayTime, Duration failurePenalty, LongSupplier nanoClock) {
+        this.decayNanos = Math.max(1, decayTime.toNanos());
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+        this.nanoClock = nanoClock;
+        this.evictedAtNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public PeakEwma of(ServiceInstance instance) {
+        long now = now();
+        evictIdle(now);
+        return instances.computeIfAbsent(key(instance), key -> new PeakEwma(decayNanos, now));
+    }
+
+    void started(ServiceInstance instance) {
+        long now = now();
+        evictIdle(now);
+        // counted inside the map's lock, so the instance can't be evicted between lookup and start
+        instances.compute(key(instance), (key, ewma) -> {
+            PeakEwma started = ewma != null ? ewma : new PeakEwma(decayNanos, now);
+            started.start();
+            return started;
+        });
+    }
+
+    // rttNanos is null when the duration of the request is unknown
+    void completed(ServiceInstance instance, Long rttNanos, boolean failed) {
+        Long sample = rttNanos != null && failed ? Long.valueOf(Math.max(rttNanos, failurePenaltyNanos)) : rttNanos;
+        of(instance).end(sample, now());
+    }
+
+    long now() {
+        return nanoClock.getAsLong();
+    }
+
+    // At most once per decay time, by whichever caller comes first
+    private void evictIdle(long now) {
+        long evictedAt = evictedAtNanos.get();
+        if (now - evictedAt < decayNanos || !evictedAtNanos.compareAndSet(evictedAt, now)) {
+            return;
+        }
+        long idleNanos = decayNanos * IDLE_DECAY_TIMES;
+        instances.keySet().forEach(key -> instances.computeIfPresent(key, (k, ewma) -> ewma.idle(now, idleNanos) ? null : ewma));
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+}
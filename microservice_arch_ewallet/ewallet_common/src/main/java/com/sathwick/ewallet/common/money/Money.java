@@ -0,0 +1,213 @@
+package com.sathwick.ewallet.common.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amount of money as a whole number of minor units (paise), e.g. INR 12.50 is {@code 1250}.
+ * <p>
+ * Values are immutable and exact, repeated transfers never drift the way {@code Double} does. On the wire it is a
+ * plain decimal number ({@code 12.5}, {@code 12.50} and {@code "12.50"} are all accepted, more than two decimals
+ * are rejected) so existing clients keep working. In the database it is a {@code BIGINT}, see {@link MoneyConverter}.
+ * <p>
+ * Hot paths that only need arithmetic should use the static {@code long} helpers ({@link #add(long, long)},
+ * {@link #subtract(long, long)}, {@link #parseMinorUnits(CharSequence)}, {@link #appendTo(StringBuilder, long)})
+ * which don't allocate. Overflow throws {@link ArithmeticException} instead of wrapping around.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+public final class Money implements Comparable<Money>, Serializable {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_UNITS_PER_MAJOR = 100;
+    public static final Money ZERO = new Money(0);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    public static Money of(long majorUnits) {
+        return ofMinorUnits(Math.multiplyExact(majorUnits, MINOR_UNITS_PER_MAJOR));
+    }
+
+    // Exact, throws ArithmeticException if the amount has more than two decimals
+    public static Money of(BigDecimal amount) {
+        return ofMinorUnits(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+    }
+
+    public static Money parse(CharSequence amount) {
+        return ofMinorUnits(parseMinorUnits(amount));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinorUnits(add(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinorUnits(subtract(minorUnits, other.minorUnits));
+    }
+
+    public boolean isPositive() {
+        return minorUnits > 0;
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Money other && minorUnits == other.minorUnits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    // Always two decimals, e.g. "12.50"
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24), minorUnits).toString();
+    }
+
+    public static long add(long minorUnits, long otherMinorUnits) {
+        return Math.addExact(minorUnits, otherMinorUnits);
+    }
+
+    public static long subtract(long minorUnits, long otherMinorUnits) {
+        return Math.subtractExact(minorUnits, otherMinorUnits);
+    }
+
+    /**
+     * Parses a decimal amount such as {@code 12}, {@code -0.5} or {@code 12.50} into minor units without going
+     * through {@code double} or {@link BigDecimal}. Exponent notation falls back to {@link BigDecimal}.
+     */
+    public static long parseMinorUnits(CharSequence amount) {
+        int length = amount.length();
+        if (length == 0) {
+            throw new NumberFormatException("Empty amount");
+        }
+        int i = 0;
+        boolean negative = amount.charAt(0) == '-';
+        if (negative || amount.charAt(0) == '+') {
+            i++;
+        }
+        long major = 0;
+        int digits = 0;
+        for (; i < length && amount.charAt(i) != '.'; i++, digits++) {
+            char c = amount.charAt(i);
+            if (c == 'e' || c == 'E') {
+                return of(new BigDecimal(amount.toString())).minorUnits;
+            }
+            major = Math.addExact(Math.multiplyExact(major, 10), digit(amount, c));
+        }
+        long minor = 0;
+        int decimals = 0;
+        if (i < length) {
+            // skip the '.'
+            for (i++; i < length; i++, decimals++) {
+                char c = amount.charAt(i);
+                if (c == 'e' || c == 'E') {
+                    return of(new BigDecimal(amount.toString())).minorUnits;
+                }
+                int digit = digit(amount, c);
+                if (decimals >= SCALE) {
+                    if (digit != 0) {
+                        throw new ArithmeticException("Amount has more than " + SCALE + " decimals: " + amount);
+                    }
+                    continue;
+                }
+                minor = minor * 10 + digit;
+            }
+        }
+        if (digits == 0 && decimals == 0) {
+            throw new NumberFormatException("Not an amount: " + amount);
+        }
+        for (int d = Math.min(decimals, SCALE); d < SCALE; d++) {
+            minor *= 10;
+        }
+        long total = Math.addExact(Math.multiplyExact(major, MINOR_UNITS_PER_MAJOR), minor);
+        return negative ? -total : total;
+    }
+
+    // Appends the amount with two decimals, e.g. 1250 -> "12.50"
+    public static StringBuilder appendTo(StringBuilder builder, long minorUnits) {
+        if (minorUnits < 0) {
+            builder.append('-');
+        }
+        // abs of Long.MIN_VALUE overflows, split before negating
+        long major = Math.abs(minorUnits / MINOR_UNITS_PER_MAJOR);
+        int minor = (int) Math.abs(minorUnits % MINOR_UNITS_PER_MAJOR);
+        builder.append(major).append('.');
+        if (minor < 10) {
+            builder.append('0');
+        }
+        return builder.append(minor);
+    }
+
+    private static int digit(CharSequence amount, char c) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not an amount: " + amount);
+        }
+        return c - '0';
+    }
+
+    public static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            // written as a JSON number, not a string
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    public static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            JsonToken token = p.currentToken();
+            if (token != JsonToken.VALUE_NUMBER_INT && token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_STRING) {
+                return (Money) ctxt.handleUnexpectedToken(Money.class, p);
+            }
+            try {
+                return parse(p.getText().trim());
+            } catch (ArithmeticException | NumberFormatException e) {
+                return (Money) ctxt.handleWeirdStringValue(Money.class, p.getText(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.sathwick.ewallet.common.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores {@link Money} as a {@code BIGINT} of minor units. Entities live in the services' own packages which are
+ * not scanned for converters in this library, so use it explicitly with {@code @Convert(converter = MoneyConverter.class)}.
+ */
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.getMinorUnits();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long minorUnits) {
+        return minorUnits == null ? null : Money.ofMinorUnits(minorUnits);
+    }
+}
@@ -0,0 +1,104 @@
+package com.sathwick.ewallet.common.resilience;
+
+/**
+ * Count based circuit breaker. Closed, it lets every call through and opens when the failure rate of the last calls
+ * reaches the threshold. Open, it rejects calls for the open duration, then half opens: a few trial calls go
+ * through, the circuit closes if all of them succeed and opens again on the first failure.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final ResilienceSettings settings;
+    private final long openNanos;
+    // guarded by this, ring of the outcomes of the last calls while closed
+    private final boolean[] failed;
+    private int calls;
+    private int failures;
+    private int next;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(ResilienceSettings settings) {
+        this.settings = settings;
+        this.openNanos = settings.openDuration().toNanos();
+        this.failed = new boolean[Math.max(1, settings.slidingWindowSize())];
+    }
+
+    // Whether a call may go out now, every permitted call has to be followed by onSuccess or onFailure
+    public synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openedAtNanos < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= settings.halfOpenCalls()) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= settings.halfOpenCalls()) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+        // calls let through before the circuit opened don't count
+    }
+
+    public synchronized void onFailure(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= settings.minimumCalls() && failures >= settings.failureRateThreshold() * calls) {
+                open(nowNanos);
+            }
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (calls == failed.length) {
+            // the oldest outcome drops out of the window
+            if (failed[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        failed[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % failed.length;
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openedAtNanos = nowNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        calls = 0;
+        failures = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sathwick.ewallet.common.resilience;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * 4xx responses: the target answered, the request was wrong. They don't count against the target's circuit.
+ */
+final class ClientErrors {
+
+    // services that only use RestTemplate don't have WebFlux
+    private static final boolean WEBFLUX_PRESENT = ClassUtils.isPresent(
+            "org.springframework.web.reactive.function.client.WebClientResponseException", ClientErrors.class.getClassLoader());
+
+    private ClientErrors() {
+    }
+
+    static boolean isClientError(Throwable e) {
+        if (e instanceof RestClientResponseException response) {
+            return response.getStatusCode().is4xxClientError();
+        }
+        return WEBFLUX_PRESENT && WebFlux.isClientError(e);
+    }
+
+    // Only loaded when WebFlux is there
+    private static final class WebFlux {
+        static boolean isClientError(Throwable e) {
+            return e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError();
+        }
+    }
+}
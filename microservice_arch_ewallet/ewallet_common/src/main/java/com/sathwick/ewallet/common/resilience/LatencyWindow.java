@@ -0,0 +1,43 @@
+package com.sathwick.ewallet.common.resilience;
+
+import java.util.Arrays;
+
+/**
+ * The last latencies of the calls to one target, for percentiles. Sorting a copy is cheap at this size, the sorted
+ * copy is reused until a sixteenth of the window was replaced.
+ */
+final class LatencyWindow {
+
+    static final int SIZE = 256;
+    // fewer samples say nothing about the 99th percentile
+    static final int MIN_SAMPLES = 32;
+    private static final int RESORT_EVERY = SIZE / 16;
+
+    // guarded by this
+    private final long[] samples = new long[SIZE];
+    private int count;
+    private int next;
+    private long[] sorted;
+    private int sinceSorted;
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % SIZE;
+        count = Math.min(count + 1, SIZE);
+        sinceSorted++;
+    }
+
+    // -1 while fewer than MIN_SAMPLES latencies are known
+    synchronized long percentile(double percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        if (sorted == null || sinceSorted >= RESORT_EVERY) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceSorted = 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
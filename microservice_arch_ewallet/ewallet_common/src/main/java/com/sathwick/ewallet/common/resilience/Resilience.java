@@ -0,0 +1,55 @@
+package com.sathwick.ewallet.common.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/**
+ * {@link ResilientTargets} of a service with their metrics, import it into a configuration of the service. Every
+ * setting of {@link ResilienceSettings} can be set for all targets and per target, the latter wins:
+ * <pre>
+ * ewallet.resilience.max-concurrent-calls=50
+ * ewallet.resilience.wallet.max-concurrent-calls=100
+ * </pre>
+ * Keys: max-concurrent-calls, failure-rate-threshold, sliding-window-size, minimum-calls, open-duration,
+ * half-open-calls, min-timeout, max-timeout, timeout-multiplier, hedge-after-percentile.
+ */
+@Configuration(proxyBeanMethods = false)
+public class Resilience {
+
+    private static final String PREFIX = "ewallet.resilience.";
+
+    @Bean(destroyMethod = "close")
+    public ResilientTargets resilientTargets(Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        return new ResilientTargets(target -> settings(environment, target), target -> {
+            if (registry != null) {
+                ResilienceMetrics.bind(registry, target);
+            }
+        });
+    }
+
+    static ResilienceSettings settings(Environment environment, String target) {
+        ResilienceSettings defaults = ResilienceSettings.DEFAULTS;
+        return new ResilienceSettings(
+                property(environment, target, "max-concurrent-calls", Integer.class, defaults.maxConcurrentCalls()),
+                property(environment, target, "failure-rate-threshold", Double.class, defaults.failureRateThreshold()),
+                property(environment, target, "sliding-window-size", Integer.class, defaults.slidingWindowSize()),
+                property(environment, target, "minimum-calls", Integer.class, defaults.minimumCalls()),
+                property(environment, target, "open-duration", Duration.class, defaults.openDuration()),
+                property(environment, target, "half-open-calls", Integer.class, defaults.halfOpenCalls()),
+                property(environment, target, "min-timeout", Duration.class, defaults.minTimeout()),
+                property(environment, target, "max-timeout", Duration.class, defaults.maxTimeout()),
+                property(environment, target, "timeout-multiplier", Double.class, defaults.timeoutMultiplier()),
+                property(environment, target, "hedge-after-percentile", Double.class, defaults.hedgeAfterPercentile()));
+    }
+
+    private static <T> T property(Environment environment, String target, String key, Class<T> type, T defaultValue) {
+        return environment.getProperty(PREFIX + target + "." + key, type,
+                environment.getProperty(PREFIX + key, type, defaultValue));
+    }
+}
@@ -0,0 +1,46 @@
+package com.sathwick.ewallet.common.resilience;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of a {@link ResilientTarget}, tagged with {@code target}:
+ * <pre>
+ * ewallet.resilience.calls{outcome}      calls by outcome: success, slow, failure, timeout, bulkhead_full, circuit_open
+ * ewallet.resilience.hedges              second attempts of idempotent calls
+ * ewallet.resilience.circuit.state       0 closed, 1 half open, 2 open
+ * ewallet.resilience.bulkhead.in.flight  calls in flight
+ * ewallet.resilience.timeout             current adaptive timeout
+ * </pre>
+ */
+public final class ResilienceMetrics {
+
+    private ResilienceMetrics() {
+    }
+
+    public static void bind(MeterRegistry meterRegistry, ResilientTarget target) {
+        for (ResilientTarget.Outcome outcome : ResilientTarget.Outcome.values()) {
+            FunctionCounter.builder("ewallet.resilience.calls", target, t -> t.count(outcome))
+                    .tag("target", target.name())
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+        FunctionCounter.builder("ewallet.resilience.hedges", target, ResilientTarget::hedges)
+                .tag("target", target.name())
+                .register(meterRegistry);
+        Gauge.builder("ewallet.resilience.circuit.state", target, t -> t.circuitState().ordinal())
+                .tag("target", target.name())
+                .register(meterRegistry);
+        Gauge.builder("ewallet.resilience.bulkhead.in.flight", target, ResilientTarget::callsInFlight)
+                .tag("target", target.name())
+                .register(meterRegistry);
+        TimeGauge.builder("ewallet.resilience.timeout", target, TimeUnit.MILLISECONDS, ResilientTarget::timeoutMillis)
+                .tag("target", target.name())
+                .register(meterRegistry);
+    }
+}
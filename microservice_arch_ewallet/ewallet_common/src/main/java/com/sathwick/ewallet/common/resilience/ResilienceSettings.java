@@ -0,0 +1,39 @@
+package com.sathwick.ewallet.common.resilience;
+
+import java.time.Duration;
+
+/**
+ * Guards of the calls to one target service.
+ *
+ * @param maxConcurrentCalls   bulkhead: calls in flight to the target at most, further calls are rejected at once
+ *                             instead of holding a request thread
+ * @param failureRateThreshold share of failed calls (0..1) among the last {@code slidingWindowSize} that opens the
+ *                             circuit breaker
+ * @param slidingWindowSize    number of last calls the failure rate is computed over
+ * @param minimumCalls         calls in the window before the failure rate is looked at
+ * @param openDuration         how long an open circuit rejects all calls before it lets trial calls through
+ * @param halfOpenCalls        trial calls of a half open circuit, it closes when all of them succeed
+ * @param minTimeout           lower bound of the adaptive timeout
+ * @param maxTimeout           upper bound of the adaptive timeout, also the timeout while too few latencies are known
+ * @param timeoutMultiplier    the adaptive timeout is this times the 99th percentile of the recent latencies
+ * @param hedgeAfterPercentile idempotent calls only: a second attempt goes out when the first one takes longer than
+ *                             this percentile (e.g. 0.95) of the recent latencies, 0 disables hedging
+ */
+public record ResilienceSettings(int maxConcurrentCalls,
+                                 double failureRateThreshold,
+                                 int slidingWindowSize,
+                                 int minimumCalls,
+                                 Duration openDuration,
+                                 int halfOpenCalls,
+                                 Duration minTimeout,
+                                 Duration maxTimeout,
+                                 double timeoutMultiplier,
+                                 double hedgeAfterPercentile) {
+
+    public static final ResilienceSettings DEFAULTS = new ResilienceSettings(50, 0.5, 50, 20, Duration.ofSeconds(10), 5,
+            Duration.ofMillis(100), Duration.ofSeconds(5), 3, 0);
+
+    public boolean hedging() {
+        return hedgeAfterPercentile > 0;
+    }
+}
@@ -0,0 +1,280 @@
+package com.sathwick.ewallet.common.resilience;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The calls of one service to one target service, behind a bulkhead, a {@link CircuitBreaker} and an adaptive
+ * timeout. Both fail fast with a {@link TargetUnavailableException}, so a slow target costs its callers no more
+ * than {@code maxConcurrentCalls} request threads.
+ * <p>
+ * The timeout is a multiple of the 99th percentile of recent latencies, between {@code minTimeout} and
+ * {@code maxTimeout}. An asynchronous call is cut when it runs out. A blocking call can't be cut, its hard limit is
+ * the response timeout of the HTTP client, but when it took longer it counts as a failure for the circuit.
+ * 4xx responses count as successes: the target answered.
+ *
+ * @see ResilientTargets
+ */
+public class ResilientTarget {
+
+    public enum Outcome {
+        SUCCESS, SLOW, FAILURE, TIMEOUT, BULKHEAD_FULL, CIRCUIT_OPEN
+    }
+
+    private final String name;
+    private final ResilienceSettings settings;
+    private final ScheduledExecutorService scheduler;
+    private final Executor attemptExecutor;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow();
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder hedges = new LongAdder();
+
+    /**
+     * @param scheduler       fires timeouts and hedges, its tasks must be short
+     * @param attemptExecutor runs the attempts of {@link #callIdempotent(Callable)}
+     */
+    public ResilientTarget(String name, ResilienceSettings settings, ScheduledExecutorService scheduler, Executor attemptExecutor) {
+        this.name = name;
+        this.settings = settings;
+        this.scheduler = scheduler;
+        this.attemptExecutor = attemptExecutor;
+        this.bulkhead = new Semaphore(settings.maxConcurrentCalls());
+        this.circuitBreaker = new CircuitBreaker(settings);
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Guards a call that returns a future, e.g. a WebClient call. A blocking call wrapped in an already completed
+     * future runs on the calling thread and holds its bulkhead slot until it returns. The returned future fails with
+     * a {@link TargetUnavailableException} when the call was rejected or timed out, the call's future is cancelled
+     * then.
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        TargetUnavailableException rejected = acquire();
+        if (rejected != null) {
+            return CompletableFuture.failedFuture(rejected);
+        }
+        long startNanos = System.nanoTime();
+        long timeoutNanos = timeoutNanos();
+        CompletableFuture<T> attempt;
+        try {
+            attempt = call.get();
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> running = attempt;
+        ScheduledFuture<?> timer = attempt.isDone() ? null : scheduler.schedule(() -> {
+            if (result.completeExceptionally(new TargetUnavailableException(name, TargetUnavailableException.Reason.TIMED_OUT))) {
+                // a WebClient call closes its connection
+                running.cancel(true);
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        attempt.whenComplete((value, e) -> {
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (e == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(unwrap(e));
+            }
+        });
+        result.whenComplete((value, e) -> release(startNanos, timeoutNanos, e));
+        return result;
+    }
+
+    /**
+     * Guards a blocking call that is safe to repeat, e.g. a GET. With hedging enabled the call runs on the attempt
+     * executor and a second attempt goes out when the first one is slower than the hedge percentile, the first
+     * response wins. The second attempt only goes out while the circuit is closed and the bulkhead has room, so
+     * hedging never adds load to a struggling target. Each attempt holds its bulkhead slot until it really returns.
+     * Exceptions of the call are rethrown as they are.
+     */
+    public <T> T callIdempotent(Callable<T> call) {
+        if (!settings.hedging()) {
+            return join(call(() -> completed(call)));
+        }
+        long timeoutNanos = timeoutNanos();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        attempt(call, timeoutNanos).whenComplete(firstOf(result, pending));
+        long hedgeDelayNanos = latencies.percentile(settings.hedgeAfterPercentile());
+        if (hedgeDelayNanos >= 0 && hedgeDelayNanos < timeoutNanos) {
+            ScheduledFuture<?> hedge = scheduler.schedule(() -> {
+                if (result.isDone() || circuitBreaker.state() != CircuitBreaker.State.CLOSED || bulkhead.availablePermits() == 0) {
+                    return;
+                }
+                pending.incrementAndGet();
+                hedges.increment();
+                attempt(call, timeoutNanos).whenComplete(firstOf(result, pending));
+            }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((value, e) -> hedge.cancel(false));
+        }
+        try {
+            return result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // the attempts still running count themselves when they return
+            throw new TargetUnavailableException(name, TargetUnavailableException.Reason.TIMED_OUT);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for " + name);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    public int callsInFlight() {
+        return settings.maxConcurrentCalls() - bulkhead.availablePermits();
+    }
+
+    // Current adaptive timeout
+    public long timeoutMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(timeoutNanos());
+    }
+
+    public long count(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    // One attempt on the attempt executor, with its own bulkhead slot and circuit permit
+    private <T> CompletableFuture<T> attempt(Callable<T> call, long timeoutNanos) {
+        TargetUnavailableException rejected = acquire();
+        if (rejected != null) {
+            return CompletableFuture.failedFuture(rejected);
+        }
+        CompletableFuture<T> attempt = new CompletableFuture<>();
+        long startNanos = System.nanoTime();
+        try {
+            attemptExecutor.execute(() -> {
+                try {
+                    attempt.complete(call.call());
+                } catch (Throwable e) {
+                    attempt.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            attempt.completeExceptionally(e);
+        }
+        attempt.whenComplete((value, e) -> release(startNanos, timeoutNanos, e));
+        return attempt;
+    }
+
+    private TargetUnavailableException acquire() {
+        if (!bulkhead.tryAcquire()) {
+            outcomes[Outcome.BULKHEAD_FULL.ordinal()].increment();
+            return new TargetUnavailableException(name, TargetUnavailableException.Reason.BULKHEAD_FULL);
+        }
+        if (!circuitBreaker.tryAcquire(System.nanoTime())) {
+            bulkhead.release();
+            outcomes[Outcome.CIRCUIT_OPEN.ordinal()].increment();
+            return new TargetUnavailableException(name, TargetUnavailableException.Reason.CIRCUIT_OPEN);
+        }
+        return null;
+    }
+
+    private void release(long startNanos, long timeoutNanos, Throwable failure) {
+        long nowNanos = System.nanoTime();
+        long elapsedNanos = nowNanos - startNanos;
+        bulkhead.release();
+        Throwable cause = failure == null ? null : unwrap(failure);
+        Outcome outcome;
+        if (cause == null || ClientErrors.isClientError(cause)) {
+            latencies.record(elapsedNanos);
+            outcome = elapsedNanos > timeoutNanos ? Outcome.SLOW : Outcome.SUCCESS;
+        } else if (cause instanceof TargetUnavailableException) {
+            // the timeout as a sample, so the timeout grows when the target slows down for good
+            latencies.record(timeoutNanos);
+            outcome = Outcome.TIMEOUT;
+        } else {
+            outcome = Outcome.FAILURE;
+        }
+        outcomes[outcome.ordinal()].increment();
+        if (outcome == Outcome.SUCCESS) {
+            circuitBreaker.onSuccess();
+        } else {
+            circuitBreaker.onFailure(nowNanos);
+        }
+    }
+
+    private long timeoutNanos() {
+        long maxNanos = settings.maxTimeout().toNanos();
+        long p99 = latencies.percentile(0.99);
+        if (p99 < 0) {
+            return maxNanos;
+        }
+        long timeout = (long) (p99 * settings.timeoutMultiplier());
+        return Math.max(settings.minTimeout().toNanos(), Math.min(timeout, maxNanos));
+    }
+
+    // The first success completes the result, the last failure if all attempts failed
+    private static <T> BiConsumer<T, Throwable> firstOf(CompletableFuture<T> result, AtomicInteger pending) {
+        return (value, e) -> {
+            if (e == null) {
+                result.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(e));
+            }
+        };
+    }
+
+    private static <T> CompletableFuture<T> completed(Callable<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(e);
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -0,0 +1,66 @@
+package com.sathwick.ewallet.common.resilience;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One {@link ResilientTarget} per target service, created on first use, with the threads they share: one for timeouts
+ * and hedges, and a pool for the attempts of idempotent calls. The pool needs no bound of its own, the bulkheads
+ * of the targets bound it.
+ */
+public class ResilientTargets implements AutoCloseable {
+
+    private final Function<String, ResilienceSettings> settings;
+    private final Consumer<ResilientTarget> onCreate;
+    private final Map<String, ResilientTarget> targets = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService attemptExecutor;
+
+    /**
+     * @param settings settings by target name
+     * @param onCreate called once per target when it is created, e.g. to register its metrics
+     */
+    public ResilientTargets(Function<String, ResilienceSettings> settings, Consumer<ResilientTarget> onCreate) {
+        this.settings = settings;
+        this.onCreate = onCreate;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, daemonThreads("resilience-timer-"));
+        // cancelled timers are the common case, don't keep them queued until they would have fired
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.attemptExecutor = Executors.newCachedThreadPool(daemonThreads("resilience-attempt-"));
+    }
+
+    public ResilientTarget target(String name) {
+        return targets.computeIfAbsent(name, key -> {
+            ResilientTarget target = new ResilientTarget(key, settings.apply(key), scheduler, attemptExecutor);
+            onCreate.accept(target);
+            return target;
+        });
+    }
+
+    public Collection<ResilientTarget> targets() {
+        return targets.values();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        attemptExecutor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.sathwick.ewallet.common.resilience;
+
+/**
+ * A call that was not made, or not waited for, to protect the caller from a target service that is overloaded or
+ * failing. The caller should answer 503 rather than retry right away.
+ */
+public class TargetUnavailableException extends RuntimeException {
+
+    public enum Reason {
+        // as many calls as allowed are in flight already
+        BULKHEAD_FULL,
+        // the target failed too often recently
+        CIRCUIT_OPEN,
+        // no response within the adaptive timeout
+        TIMED_OUT
+    }
+
+    private final String target;
+    private final Reason reason;
+
+    public TargetUnavailableException(String target, Reason reason) {
+        super(target + " unavailable: " + reason);
+        this.target = target;
+        this.reason = reason;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.appinfo.MyDataCenterInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+class InstanceCacheWarmerTest {
+
+    private DiscoveryClient discoveryClient;
+    private ApplicationInfoManager applicationInfoManager;
+    private ObjectProvider<LoadBalancerClientFactory> loadBalancerClientFactory;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        discoveryClient = mock(DiscoveryClient.class);
+        applicationInfoManager = mock(ApplicationInfoManager.class);
+        loadBalancerClientFactory = mock(ObjectProvider.class);
+        when(applicationInfoManager.getInfo()).thenReturn(instance(InstanceStatus.STARTING));
+    }
+
+    @Test
+    void turnsUpOnlyOnceTheCalledServiceIsKnown() throws Exception {
+        ServiceInstance wallet = new DefaultServiceInstance("wallet-1", "wallet", "localhost", 8082, false);
+        // the first registry fetches don't have it yet
+        when(discoveryClient.getInstances("wallet")).thenReturn(List.of(), List.of(), List.of(wallet));
+
+        warmer(Duration.ofSeconds(5)).run(null);
+
+        verify(discoveryClient, times(3)).getInstances("wallet");
+        verify(applicationInfoManager).setInstanceStatus(InstanceStatus.UP);
+    }
+
+    @Test
+    void turnsUpAnywayAfterTheTimeout() throws Exception {
+        when(discoveryClient.getInstances("wallet")).thenReturn(List.of());
+
+        warmer(Duration.ofMillis(50)).run(null);
+
+        verify(applicationInfoManager).setInstanceStatus(InstanceStatus.UP);
+    }
+
+    @Test
+    void leavesAnInstanceTakenOutOfServiceAlone() throws Exception {
+        when(applicationInfoManager.getInfo()).thenReturn(instance(InstanceStatus.OUT_OF_SERVICE));
+        when(discoveryClient.getInstances("wallet")).thenReturn(List.of(new DefaultServiceInstance()));
+
+        warmer(Duration.ofSeconds(5)).run(null);
+
+        verify(applicationInfoManager, never()).setInstanceStatus(any());
+    }
+
+    private InstanceCacheWarmer warmer(Duration timeout) {
+        return new InstanceCacheWarmer(discoveryClient, loadBalancerClientFactory, applicationInfoManager,
+                List.of("wallet"), timeout, Duration.ofMillis(1));
+    }
+
+    static InstanceInfo instance(InstanceStatus status) {
+        return InstanceInfo.Builder.newBuilder()
+                .setAppName("TRANSACTION")
+                .setInstanceId("transaction-1")
+                .setHostName("localhost")
+                .setIPAddr("127.0.0.1")
+                .setPort(8083)
+                .setStatus(status)
+                .setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn))
+                .build();
+    }
+}
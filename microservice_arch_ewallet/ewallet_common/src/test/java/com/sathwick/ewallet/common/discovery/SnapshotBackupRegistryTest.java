@@ -0,0 +1,67 @@
+package com.sathwick.ewallet.common.discovery;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotBackupRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("registry").resolve("eureka-registry.json");
+        System.setProperty(RegistrySnapshotFile.LOCATION_PROPERTY, file.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty(RegistrySnapshotFile.LOCATION_PROPERTY);
+    }
+
+    @Test
+    void servesTheRegistryOfThePreviousRun() throws Exception {
+        Application transaction = new Application("TRANSACTION");
+        transaction.addInstance(InstanceCacheWarmerTest.instance(InstanceStatus.UP));
+        Applications applications = new Applications();
+        applications.addApplication(transaction);
+
+        RegistrySnapshotFile.write(file, applications);
+
+        Applications restored = new SnapshotBackupRegistry().fetchRegistry();
+        InstanceInfo instance = restored.getRegisteredApplications("TRANSACTION").getInstances().get(0);
+        assertEquals("transaction-1", instance.getInstanceId());
+        assertEquals(8083, instance.getPort());
+        assertEquals(InstanceStatus.UP, instance.getStatus());
+        // the temporary file was moved into place
+        try (var files = Files.list(file.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void startsEmptyWithoutSnapshot() {
+        assertNull(new SnapshotBackupRegistry().fetchRegistry());
+    }
+
+    @Test
+    void startsEmptyWithAnUnreadableSnapshot() throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "{\"applications\":");
+
+        assertNull(new SnapshotBackupRegistry().fetchRegistry());
+    }
+}
@@ -0,0 +1,105 @@
+package com.sathwick.ewallet.common.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void repeatedKeyReturnsFirstResult() {
+        IdempotencyCache<Boolean> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1));
+        AtomicInteger executions = new AtomicInteger();
+
+        assertFalse(cache.execute("k1", () -> executions.incrementAndGet() > 1));
+        assertFalse(cache.execute("k1", () -> executions.incrementAndGet() > 1));
+        assertEquals(1, executions.get());
+        assertEquals(Optional.of(false), cache.getIfDone("k1"));
+    }
+
+    @Test
+    void concurrentRetriesWaitForTheRequestInFlight() throws Exception {
+        IdempotencyCache<Boolean> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1));
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.execute("k1", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return true;
+                })));
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+            release.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, executions.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failedRequestCanBeRetried() {
+        IdempotencyCache<Boolean> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, () -> cache.execute("k1", () -> {
+            throw new IllegalStateException("wallet unavailable");
+        }));
+        assertTrue(cache.execute("k1", () -> true));
+    }
+
+    @Test
+    void storeAnswersKeysEvictedFromMemory() {
+        Map<String, Boolean> saved = new ConcurrentHashMap<>();
+        IdempotencyStore<Boolean> store = new IdempotencyStore<>() {
+            @Override
+            public Optional<Boolean> find(String key) {
+                return Optional.ofNullable(saved.get(key));
+            }
+
+            @Override
+            public void save(String key, Boolean result) {
+                saved.put(key, result);
+            }
+        };
+        IdempotencyCache<Boolean> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1), store);
+        assertTrue(cache.execute("k1", () -> true));
+        assertEquals(Map.of("k1", true), saved);
+
+        // a fresh instance, e.g. another node or after a restart
+        IdempotencyCache<Boolean> other = new IdempotencyCache<>(100, Duration.ofMinutes(1), store);
+        assertTrue(other.execute("k1", () -> fail("must not run again")));
+    }
+
+    @Test
+    void missingKeyIsNotDeduplicated() {
+        IdempotencyCache<Integer> cache = new IdempotencyCache<>(100, Duration.ofMinutes(1));
+        AtomicInteger executions = new AtomicInteger();
+        cache.execute(null, executions::incrementAndGet);
+        cache.execute(" ", executions::incrementAndGet);
+        assertEquals(2, executions.get());
+        assertEquals(0, cache.estimatedSize());
+    }
+}
@@ -0,0 +1,44 @@
+package com.sathwick.ewallet.common.kafka;
+
+import com.sathwick.ewallet.common.money.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NotificationEventCodecTest {
+
+    @Test
+    void roundTrips() {
+        for (NotificationEvent event : new NotificationEvent[]{
+                new NotificationEvent(42L, Money.parse("1250.50"), NotificationEvent.UserType.SENDER, NotificationEvent.Status.SUCCESS),
+                new NotificationEvent(7L, Money.ZERO, NotificationEvent.UserType.RECEIVER, NotificationEvent.Status.FAILURE),
+                new NotificationEvent(Long.MAX_VALUE, Money.ofMinorUnits(Long.MIN_VALUE), NotificationEvent.UserType.RECEIVER, NotificationEvent.Status.SUCCESS),
+                new NotificationEvent(0L, Money.ofMinorUnits(-1), NotificationEvent.UserType.SENDER, NotificationEvent.Status.FAILURE)}) {
+            assertEquals(event, NotificationEventCodec.decode(NotificationEventCodec.encode(event)));
+        }
+    }
+
+    @Test
+    void typicalEventIsSmall() {
+        byte[] bytes = NotificationEventCodec.encode(new NotificationEvent(123456L, Money.parse("2500.00"),
+                NotificationEvent.UserType.SENDER, NotificationEvent.Status.SUCCESS));
+        assertEquals(8, bytes.length);
+    }
+
+    @Test
+    void rejectsBrokenInput() {
+        byte[] bytes = NotificationEventCodec.encode(new NotificationEvent(123456L, Money.parse("2500.00"),
+                NotificationEvent.UserType.SENDER, NotificationEvent.Status.SUCCESS));
+        assertThrows(IllegalArgumentException.class, () -> NotificationEventCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> NotificationEventCodec.decode(Arrays.copyOf(bytes, bytes.length + 1)));
+        byte[] unknownVersion = bytes.clone();
+        unknownVersion[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> NotificationEventCodec.decode(unknownVersion));
+        byte[] unknownStatus = bytes.clone();
+        unknownStatus[1] = 0x07;
+        assertThrows(IllegalArgumentException.class, () -> NotificationEventCodec.decode(unknownStatus));
+        assertThrows(IllegalArgumentException.class, () -> NotificationEventCodec.decode("{\"userId\":1}".getBytes()));
+    }
+}
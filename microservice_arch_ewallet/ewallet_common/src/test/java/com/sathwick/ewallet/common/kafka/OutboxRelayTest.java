@@ -0,0 +1,93 @@
+package com.sathwick.ewallet.common.kafka;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private OutboxStore<Event> outboxStore;
+    private KafkaTemplate<String, byte[]> kafkaTemplate;
+    private OutboxRelay<Event> outboxRelay;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        outboxStore = mock(OutboxStore.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        outboxRelay = new OutboxRelay<>(outboxStore, kafkaTemplate, TransactionOperations.withoutTransaction(),
+                2, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void acknowledgedEventsAreDeleted() {
+        List<Event> events = List.of(event(1L, "1"), event(2L, "2"));
+        when(outboxStore.lockOldest(2)).thenReturn(events);
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(2, outboxRelay.relayBatch());
+
+        verify(kafkaTemplate).send(eq("NOTIFICATION"), eq("1"), aryEq("payload-1".getBytes()));
+        verify(kafkaTemplate).send(eq("NOTIFICATION"), eq("2"), aryEq("payload-2".getBytes()));
+        verify(outboxStore).deleteAllInBatch(events);
+    }
+
+    @Test
+    void failedSendKeepsTheBatch() {
+        when(outboxStore.lockOldest(2)).thenReturn(List.of(event(1L, "1"), event(2L, "2")));
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class)))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        assertThrows(IllegalStateException.class, () -> outboxRelay.relayBatch());
+        verify(outboxStore, never()).deleteAllInBatch(any());
+        // relay() swallows it, the next round sends the batch again
+        assertDoesNotThrow(() -> outboxRelay.relay());
+    }
+
+    @Test
+    void backlogIsDrainedInOneRound() {
+        when(outboxStore.lockOldest(2))
+                .thenReturn(List.of(event(1L, "1"), event(2L, "2")))
+                .thenReturn(List.of(event(3L, "3")));
+        when(kafkaTemplate.send(anyString(), anyString(), any(byte[].class))).thenReturn(CompletableFuture.completedFuture(null));
+
+        outboxRelay.relay();
+
+        verify(outboxStore, times(2)).lockOldest(2);
+        verify(kafkaTemplate, times(3)).send(anyString(), anyString(), any(byte[].class));
+    }
+
+    private static Event event(Long id, String userId) {
+        return new Event(id, "NOTIFICATION", userId, ("payload-" + userId).getBytes());
+    }
+
+    private record Event(Long id, String topic, String messageKey, byte[] payload) implements OutboxRecord {
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public String getMessageKey() {
+            return messageKey;
+        }
+
+        @Override
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
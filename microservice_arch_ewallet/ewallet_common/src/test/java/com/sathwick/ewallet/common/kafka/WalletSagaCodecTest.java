@@ -0,0 +1,52 @@
+package com.sathwick.ewallet.common.kafka;
+
+import com.sathwick.ewallet.common.money.Money;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WalletSagaCodecTest {
+
+    @Test
+    void commandsRoundTrip() {
+        for (WalletCommand command : new WalletCommand[]{
+                new WalletCommand(1L, WalletCommand.Action.EXECUTE, 42L, 43L, Money.parse("1250.50"), WalletCommand.TransactionType.TRANSFER),
+                new WalletCommand(Long.MAX_VALUE, WalletCommand.Action.CANCEL, 7L, 7L, Money.ofMinorUnits(1), WalletCommand.TransactionType.DEPOSIT),
+                new WalletCommand(0L, WalletCommand.Action.CANCEL, 0L, Long.MAX_VALUE, Money.ofMinorUnits(Long.MIN_VALUE), WalletCommand.TransactionType.WITHDRAW)}) {
+            assertEquals(command, WalletSagaCodec.decodeCommand(WalletSagaCodec.encode(command)));
+        }
+    }
+
+    @Test
+    void repliesRoundTrip() {
+        for (WalletReply reply : new WalletReply[]{
+                new WalletReply(1L, WalletCommand.Action.EXECUTE, true),
+                new WalletReply(123456789L, WalletCommand.Action.EXECUTE, false),
+                new WalletReply(Long.MAX_VALUE, WalletCommand.Action.CANCEL, true),
+                new WalletReply(0L, WalletCommand.Action.CANCEL, false)}) {
+            assertEquals(reply, WalletSagaCodec.decodeReply(WalletSagaCodec.encode(reply)));
+        }
+    }
+
+    @Test
+    void rejectsBrokenInput() {
+        byte[] command = WalletSagaCodec.encode(new WalletCommand(1000L, WalletCommand.Action.EXECUTE, 42L, 43L,
+                Money.of(25), WalletCommand.TransactionType.TRANSFER));
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeCommand(Arrays.copyOf(command, command.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeCommand(Arrays.copyOf(command, command.length + 1)));
+        byte[] unknownType = command.clone();
+        unknownType[1] = 0x07;
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeCommand(unknownType));
+
+        byte[] reply = WalletSagaCodec.encode(new WalletReply(1000L, WalletCommand.Action.CANCEL, true));
+        byte[] unknownVersion = reply.clone();
+        unknownVersion[0] = 9;
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeReply(unknownVersion));
+        byte[] unknownOutcome = reply.clone();
+        unknownOutcome[1] = 0x12;
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeReply(unknownOutcome));
+        assertThrows(IllegalArgumentException.class, () -> WalletSagaCodec.decodeReply(command));
+    }
+}
@@ -0,0 +1,173 @@
+package com.sathwick.ewallet.common.loadbalancer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+import org.springframework.cloud.loadbalancer.support.ServiceInstanceListSuppliers;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeakEwmaLoadBalancerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void slowResponseRaisesTheAverageAtOnceAndFastOnesLowerItGradually() {
+        PeakEwma ewma = new PeakEwma(TimeUnit.SECONDS.toNanos(10), 0);
+        ewma.observe(10 * MS, 0);
+        ewma.observe(100 * MS, MS);
+        assertEquals(100.0, ewma.ewmaMillis(MS), 0.01);
+
+        ewma.observe(10 * MS, TimeUnit.SECONDS.toNanos(1));
+        double afterOneSecond = ewma.ewmaMillis(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(afterOneSecond > 80 && afterOneSecond < 100, "got " + afterOneSecond);
+        // without responses the average fades and the instance gets probed again
+        assertTrue(ewma.ewmaMillis(TimeUnit.SECONDS.toNanos(60)) < 1);
+    }
+
+    @Test
+    void requestsInFlightMakeAnInstanceMoreExpensive() {
+        PeakEwma idle = new PeakEwma(TimeUnit.SECONDS.toNanos(10), 0);
+        PeakEwma busy = new PeakEwma(TimeUnit.SECONDS.toNanos(10), 0);
+        idle.observe(20 * MS, 0);
+        busy.observe(10 * MS, 0);
+        busy.start();
+        busy.start();
+        assertTrue(busy.cost(0) > idle.cost(0));
+
+        // never answered, one request at a time
+        PeakEwma unprobed = new PeakEwma(TimeUnit.SECONDS.toNanos(10), 0);
+        assertEquals(0.0, unprobed.cost(0));
+        unprobed.start();
+        assertTrue(unprobed.cost(0) > busy.cost(0));
+    }
+
+    @Test
+    void cheaperOfTheTwoInstancesIsChosen() {
+        PeakEwmaStats stats = new PeakEwmaStats(Duration.ofSeconds(10), Duration.ofSeconds(1));
+        ServiceInstance fast = instance(1);
+        ServiceInstance slow = instance(2);
+        stats.of(fast).observe(5 * MS, System.nanoTime());
+        stats.of(slow).observe(100 * MS, System.nanoTime());
+        PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer(
+                ServiceInstanceListSuppliers.toProvider("wallet", fast, slow), stats);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(fast, loadBalancer.choose(new DefaultRequest<>()).block().getServer());
+        }
+    }
+
+    @Test
+    void failuresCountAsSlowResponses() {
+        PeakEwmaStats stats = new PeakEwmaStats(Duration.ofSeconds(10), Duration.ofSeconds(1));
+        ServiceInstance failing = instance(1);
+        stats.started(failing);
+        // refused right away, but counts as a 1s response
+        stats.completed(failing, MS, true);
+        assertEquals(1000.0, stats.of(failing).ewmaMillis(System.nanoTime()), 1.0);
+        assertEquals(0, stats.of(failing).inFlight());
+    }
+
+    @Test
+    void instancesThatAreGoneAreForgotten() {
+        AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        PeakEwmaStats stats = new PeakEwmaStats(Duration.ofSeconds(10), Duration.ofSeconds(1), clock::get);
+        ServiceInstance gone = instance(1);
+        ServiceInstance busy = instance(2);
+        PeakEwma goneEwma = stats.of(gone);
+        goneEwma.observe(100 * MS, clock.get());
+        stats.started(busy);
+        PeakEwma busyEwma = stats.of(busy);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10 * PeakEwmaStats.IDLE_DECAY_TIMES - 1));
+        assertSame(goneEwma, stats.of(gone));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertNotSame(goneEwma, stats.of(gone));
+        // still waiting for a response
+        assertSame(busyEwma, stats.of(busy));
+        assertEquals(1, stats.of(busy).inFlight());
+    }
+
+    /**
+     * Three instances of one service, one of them 20 times slower, and 8 callers calling one after the other, each
+     * on a synthetic clock. With round robin the slow instance would get a third of the calls, here it only gets
+     * some of the first ones, made before it answered once.
+     */
+    @Test
+    void concurrentCallersAvoidTheSlowInstance() {
+        List<ServiceInstance> instances = List.of(instance(1), instance(2), instance(3));
+        Map<ServiceInstance, Long> latencies = Map.of(instances.get(0), 2 * MS, instances.get(1), 2 * MS, instances.get(2), 40 * MS);
+        AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        PeakEwmaStats stats = new PeakEwmaStats(Duration.ofSeconds(10), Duration.ofSeconds(1), clock::get);
+        PeakEwmaLifecycle lifecycle = new PeakEwmaLifecycle(stats);
+        PeakEwmaLoadBalancer loadBalancer = new PeakEwmaLoadBalancer(
+                ServiceInstanceListSuppliers.toProvider("wallet", instances.toArray(new ServiceInstance[0])), stats);
+
+        int callers = 8;
+        int calls = callers * 100;
+        Map<ServiceInstance, Integer> callsPerInstance = new HashMap<>();
+        // calls in flight by the time they complete
+        PriorityQueue<Call> inFlight = new PriorityQueue<>(Comparator.comparingLong(Call::completesAt));
+        for (int c = 0; c < callers; c++) {
+            inFlight.add(start(loadBalancer, lifecycle, latencies, clock.get()));
+        }
+        for (int started = callers; !inFlight.isEmpty(); ) {
+            Call call = inFlight.poll();
+            clock.set(call.completesAt());
+            // what the @LoadBalanced RestTemplate interceptor does once the response is there
+            lifecycle.onComplete(new CompletionContext<>(CompletionContext.Status.SUCCESS, call.request(), call.response(), null));
+            callsPerInstance.merge(call.response().getServer(), 1, Integer::sum);
+            if (started++ < calls) {
+                inFlight.add(start(loadBalancer, lifecycle, latencies, clock.get()));
+            }
+        }
+
+        int slowCalls = callsPerInstance.getOrDefault(instances.get(2), 0);
+        assertTrue(slowCalls <= callers, "slow instance got " + slowCalls + " of " + calls + " calls");
+        assertEquals(calls, callsPerInstance.values().stream().mapToInt(Integer::intValue).sum());
+        instances.forEach(instance -> assertEquals(0, stats.of(instance).inFlight()));
+    }
+
+    private static Call start(PeakEwmaLoadBalancer loadBalancer, PeakEwmaLifecycle lifecycle,
+                              Map<ServiceInstance, Long> latencies, long now) {
+        Request<Object> request = new DefaultRequest<Object>(new TimedContext());
+        Response<ServiceInstance> response = loadBalancer.choose(request).block();
+        lifecycle.onStartRequest(request, response);
+        return new Call(request, response, now + latencies.get(response.getServer()));
+    }
+
+    private static ServiceInstance instance(int id) {
+        return new DefaultServiceInstance("wallet-" + id, "wallet", "10.0.0." + id, 8082, false);
+    }
+
+    private record Call(Request<Object> request, Response<ServiceInstance> response, long completesAt) {
+    }
+
+    private static final class TimedContext implements TimedRequestContext {
+        private long requestStartTime;
+
+        @Override
+        public long getRequestStartTime() {
+            return requestStartTime;
+        }
+
+        @Override
+        public void setRequestStartTime(long requestStartTime) {
+            this.requestStartTime = requestStartTime;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sathwick.ewallet.common.money;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The wallet transfer path (parse the request amount, check the sender balance, debit the sender, credit the
+ * receiver) done with boxed {@code Double}, {@link BigDecimal}, {@link Money} and the raw {@code long} helpers.
+ * Not part of the test run, start it from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sathwick.ewallet.common.money.MoneyBenchmark}.
+ * Use {@code -prof gc} on the JMH command line to see the allocation rate of each variant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    @Param({"12.50"})
+    String amount;
+
+    Double senderDouble;
+    Double receiverDouble;
+    BigDecimal senderDecimal;
+    BigDecimal receiverDecimal;
+    Money senderMoney;
+    Money receiverMoney;
+    long senderMinor;
+    long receiverMinor;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // enough for every transfer of an iteration
+        senderDouble = 1e12;
+        receiverDouble = 0.0;
+        senderDecimal = new BigDecimal("1000000000000.00");
+        receiverDecimal = BigDecimal.ZERO;
+        senderMoney = Money.of(1_000_000_000_000L);
+        receiverMoney = Money.ZERO;
+        senderMinor = senderMoney.getMinorUnits();
+        receiverMinor = 0;
+    }
+
+    @Benchmark
+    public Double boxedDouble() {
+        Double value = Double.valueOf(amount);
+        if (senderDouble >= value) {
+            senderDouble = senderDouble - value;
+            receiverDouble = receiverDouble + value;
+        }
+        return receiverDouble;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        BigDecimal value = new BigDecimal(amount);
+        if (senderDecimal.compareTo(value) >= 0) {
+            senderDecimal = senderDecimal.subtract(value);
+            receiverDecimal = receiverDecimal.add(value);
+        }
+        return receiverDecimal;
+    }
+
+    @Benchmark
+    public Money money() {
+        Money value = Money.parse(amount);
+        if (!senderMoney.isLessThan(value)) {
+            senderMoney = senderMoney.minus(value);
+            receiverMoney = receiverMoney.plus(value);
+        }
+        return receiverMoney;
+    }
+
+    @Benchmark
+    public long minorUnits() {
+        long value = Money.parseMinorUnits(amount);
+        if (senderMinor >= value) {
+            senderMinor = Money.subtract(senderMinor, value);
+            receiverMinor = Money.add(receiverMinor, value);
+        }
+        return receiverMinor;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MoneyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
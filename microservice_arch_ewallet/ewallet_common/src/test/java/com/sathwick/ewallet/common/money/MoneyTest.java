@@ -0,0 +1,82 @@
+package com.sathwick.ewallet.common.money;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void parsesDecimalAmounts() {
+        assertEquals(1250, Money.parseMinorUnits("12.5"));
+        assertEquals(1250, Money.parseMinorUnits("12.50"));
+        assertEquals(1250, Money.parseMinorUnits("12.500"));
+        assertEquals(1200, Money.parseMinorUnits("12"));
+        assertEquals(5, Money.parseMinorUnits("0.05"));
+        assertEquals(-50, Money.parseMinorUnits("-.5"));
+        assertEquals(120000, Money.parseMinorUnits("1.2E3"));
+        assertThrows(ArithmeticException.class, () -> Money.parseMinorUnits("0.001"));
+        assertThrows(NumberFormatException.class, () -> Money.parseMinorUnits("12,5"));
+        assertThrows(NumberFormatException.class, () -> Money.parseMinorUnits("."));
+    }
+
+    @Test
+    void formatsWithTwoDecimals() {
+        assertEquals("12.50", Money.ofMinorUnits(1250).toString());
+        assertEquals("0.05", Money.ofMinorUnits(5).toString());
+        assertEquals("-0.05", Money.ofMinorUnits(-5).toString());
+        assertEquals("-92233720368547758.08", Money.ofMinorUnits(Long.MIN_VALUE).toString());
+    }
+
+    @Test
+    void repeatedTransfersDoNotDrift() {
+        Money balance = Money.ZERO;
+        double doubleBalance = 0;
+        for (int i = 0; i < 1000; i++) {
+            balance = balance.plus(Money.parse("0.10"));
+            doubleBalance += 0.10;
+        }
+        assertEquals(Money.of(100), balance);
+        assertNotEquals(100.0, doubleBalance);
+    }
+
+    @Test
+    void arithmeticOverflowThrows() {
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.015")));
+    }
+
+    @Test
+    void jsonRoundTripAsNumber() throws Exception {
+        assertEquals("{\"amount\":12.50}", mapper.writeValueAsString(new Holder(Money.parse("12.5"))));
+        assertEquals(Money.ofMinorUnits(1250), mapper.readValue("{\"amount\":12.5}", Holder.class).amount);
+        assertEquals(Money.ofMinorUnits(1250), mapper.readValue("{\"amount\":\"12.50\"}", Holder.class).amount);
+        assertEquals(Money.of(100), mapper.readValue("{\"amount\":100}", Holder.class).amount);
+        assertThrows(InvalidFormatException.class, () -> mapper.readValue("{\"amount\":0.001}", Holder.class));
+    }
+
+    @Test
+    void converterStoresMinorUnits() {
+        MoneyConverter converter = new MoneyConverter();
+        assertEquals(1250L, converter.convertToDatabaseColumn(Money.ofMinorUnits(1250)));
+        assertEquals(Money.ofMinorUnits(1250), converter.convertToEntityAttribute(1250L));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    static class Holder {
+        public Money amount;
+
+        Holder() {
+        }
+
+        Holder(Money amount) {
+            this.amount = amount;
+        }
+    }
+}
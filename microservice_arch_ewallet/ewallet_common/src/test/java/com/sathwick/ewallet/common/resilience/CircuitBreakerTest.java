@@ -0,0 +1,91 @@
+package com.sathwick.ewallet.common.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    // window of 10, opens at 50% after 4 calls, 2 trial calls
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(new ResilienceSettings(10, 0.5, 10, 4,
+            Duration.ofSeconds(5), 2, Duration.ofMillis(100), Duration.ofSeconds(5), 3, 0));
+
+    @Test
+    void opensAtTheFailureRateOnceEnoughCallsWereMade() {
+        fail(1);
+        fail(1);
+        // 2 of 2 failed, too few calls to tell
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        succeed(1);
+        fail(1);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire(2 * SECOND));
+    }
+
+    @Test
+    void oldFailuresDropOutOfTheWindow() {
+        fail(1);
+        fail(1);
+        for (int i = 0; i < 10; i++) {
+            succeed(1);
+        }
+        fail(1);
+        fail(1);
+        fail(1);
+        // 3 of the last 10 failed
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+
+    @Test
+    void closesWhenAllTrialCallsSucceed() {
+        openAt(0);
+
+        assertTrue(circuitBreaker.tryAcquire(5 * SECOND));
+        assertTrue(circuitBreaker.tryAcquire(5 * SECOND));
+        // only two trial calls
+        assertFalse(circuitBreaker.tryAcquire(5 * SECOND));
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        circuitBreaker.onSuccess();
+        circuitBreaker.onSuccess();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        // the failures before it opened are forgotten
+        fail(6);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+    }
+
+    @Test
+    void opensAgainOnAFailedTrialCall() {
+        openAt(0);
+
+        assertTrue(circuitBreaker.tryAcquire(5 * SECOND));
+        circuitBreaker.onFailure(5 * SECOND);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire(9 * SECOND));
+        assertTrue(circuitBreaker.tryAcquire(10 * SECOND));
+    }
+
+    private void openAt(long nowNanos) {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(circuitBreaker.tryAcquire(nowNanos));
+            circuitBreaker.onFailure(nowNanos);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    private void succeed(long seconds) {
+        assertTrue(circuitBreaker.tryAcquire(seconds * SECOND));
+        circuitBreaker.onSuccess();
+    }
+
+    private void fail(long seconds) {
+        assertTrue(circuitBreaker.tryAcquire(seconds * SECOND));
+        circuitBreaker.onFailure(seconds * SECOND);
+    }
+}
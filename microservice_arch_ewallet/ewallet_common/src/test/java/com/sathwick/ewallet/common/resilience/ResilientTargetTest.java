@@ -0,0 +1,196 @@
+package com.sathwick.ewallet.common.resilience;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientTargetTest {
+
+    private ResilientTargets targets;
+
+    @AfterEach
+    void tearDown() {
+        targets.close();
+    }
+
+    /**
+     * 50 request threads call a wallet service that hangs. Without a bulkhead all of them would wait for it, with
+     * one of 5 only 5 do and the others are rejected right away.
+     */
+    @Test
+    void hangingTargetHoldsNoMoreThreadsThanTheBulkhead() throws Exception {
+        ResilientTarget wallet = target(settings(5, 0));
+        CountDownLatch hanging = new CountDownLatch(1);
+        AtomicInteger waiting = new AtomicInteger();
+        ExecutorService requestThreads = Executors.newFixedThreadPool(50);
+        List<Future<TargetUnavailableException.Reason>> requests = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            requests.add(requestThreads.submit(() -> {
+                CompletableFuture<Boolean> result = wallet.call(() -> {
+                    waiting.incrementAndGet();
+                    await(hanging);
+                    return CompletableFuture.completedFuture(true);
+                });
+                return reason(result);
+            }));
+        }
+        // the rejected ones return at once, only the 5 admitted ones are still blocked
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (countDone(requests) < 45 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(45, countDone(requests));
+        assertEquals(5, waiting.get());
+        assertEquals(5, wallet.callsInFlight());
+
+        hanging.countDown();
+        int rejected = 0;
+        for (Future<TargetUnavailableException.Reason> request : requests) {
+            if (request.get(5, TimeUnit.SECONDS) == TargetUnavailableException.Reason.BULKHEAD_FULL) {
+                rejected++;
+            }
+        }
+        requestThreads.shutdown();
+        assertEquals(45, rejected);
+        assertEquals(45, wallet.count(ResilientTarget.Outcome.BULKHEAD_FULL));
+        assertEquals(0, wallet.callsInFlight());
+    }
+
+    @Test
+    void failingTargetOpensTheCircuitAndClientErrorsDont() throws Exception {
+        ResilientTarget wallet = target(settings(10, 0));
+
+        for (int i = 0; i < 20; i++) {
+            CompletableFuture<Boolean> result = wallet.call(() -> CompletableFuture.failedFuture(new HttpClientErrorException(HttpStatus.CONFLICT)));
+            assertThrows(ExecutionException.class, result::get);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, wallet.circuitState());
+
+        for (int i = 0; i < 20; i++) {
+            wallet.call(() -> CompletableFuture.failedFuture(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, wallet.circuitState());
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Boolean> rejected = wallet.call(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        });
+        assertEquals(TargetUnavailableException.Reason.CIRCUIT_OPEN, reason(rejected));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void asynchronousCallIsCutAtTheAdaptiveTimeout() throws Exception {
+        ResilientTarget wallet = target(settings(10, 0));
+        // p99 of 1ms, timeout 3ms raised to the 100ms minimum
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            wallet.call(() -> CompletableFuture.completedFuture(true)).get();
+        }
+        assertEquals(100, wallet.timeoutMillis());
+
+        CompletableFuture<Boolean> never = new CompletableFuture<>();
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> result = wallet.call(() -> never);
+
+        assertEquals(TargetUnavailableException.Reason.TIMED_OUT, reason(result));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        // the caller is woken before the call is cancelled and counted
+        eventually(never::isCancelled);
+        eventually(() -> wallet.count(ResilientTarget.Outcome.TIMEOUT) == 1);
+        eventually(() -> wallet.callsInFlight() == 0);
+    }
+
+    @Test
+    void slowIdempotentCallIsHedged() {
+        ResilientTarget users = target(settings(10, 0.9));
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            assertEquals("fast", users.callIdempotent(() -> sleep(1, "fast")));
+        }
+
+        // the first attempt hangs for a second, the hedge answers
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        String response = users.callIdempotent(() -> attempts.incrementAndGet() == 1 ? sleep(1000, "slow") : sleep(1, "hedge"));
+
+        assertEquals("hedge", response);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, users.hedges());
+    }
+
+    @Test
+    void idempotentCallRethrowsTheExceptionOfTheCall() {
+        ResilientTarget users = target(settings(10, 0.9));
+
+        HttpClientErrorException notFound = assertThrows(HttpClientErrorException.class,
+                () -> users.callIdempotent(() -> {
+                    throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+                }));
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+    }
+
+    private ResilientTarget target(ResilienceSettings settings) {
+        targets = new ResilientTargets(name -> settings, target -> {
+        });
+        return targets.target("wallet");
+    }
+
+    private static ResilienceSettings settings(int maxConcurrentCalls, double hedgeAfterPercentile) {
+        return new ResilienceSettings(maxConcurrentCalls, 0.5, 20, 10, Duration.ofSeconds(10), 2,
+                Duration.ofMillis(100), Duration.ofSeconds(2), 3, hedgeAfterPercentile);
+    }
+
+    private static <T> TargetUnavailableException.Reason reason(CompletableFuture<T> result) throws InterruptedException {
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause() instanceof TargetUnavailableException unavailable ? unavailable.getReason() : null;
+        } catch (TimeoutException e) {
+            throw new AssertionError("not completed", e);
+        }
+    }
+
+    private static void eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private static long countDone(List<? extends Future<?>> futures) {
+        return futures.stream().filter(Future::isDone).count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String sleep(long millis, String response) throws InterruptedException {
+        Thread.sleep(millis);
+        return response;
+    }
+}
@@ -0,0 +1,26 @@
+package com.sathwick.ewallet.notification.config;
+
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.notification.service.cache.UserProfileCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    // Exposed as cache.gets{result=hit|miss}, cache.load.duration, cache.size ... with tag cache=userProfiles
+    @Bean
+    public UserProfileCache userProfileCache(RestTemplate restTemplate, ResilientTargets resilientTargets, MeterRegistry meterRegistry,
+                                             @Value("${ewallet.notification.user-cache.max-size:100000}") long maximumSize,
+                                             @Value("${ewallet.notification.user-cache.ttl:10m}") Duration ttl) {
+        UserProfileCache userProfileCache = new UserProfileCache(restTemplate, resilientTargets.target(UserProfileCache.TARGET), maximumSize, ttl);
+        CaffeineCacheMetrics.monitor(meterRegistry, userProfileCache.getCache(), "userProfiles");
+        return userProfileCache;
+    }
+}
@@ -1,9 +1,14 @@
 package com.sathwick.ewallet.notification.config;
 
+import com.sathwick.ewallet.notification.consumer.KeyedWorkerPool;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,11 +20,35 @@ public class KafkaConfig {
         return new DefaultKafkaConsumerFactory<>(consumerConfig());
     }
 
+    // Notifications are handed off to KeyedWorkerPool and acknowledged from the worker threads. Async acks let them
+    // come back out of order, the container only commits an offset once every record before it is acknowledged.
+    // Notification events are NotificationEventCodec encoded bytes
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> notificationListenerContainerFactory(
+            @Value("${ewallet.notification.consumer.concurrency:1}") int concurrency){
+        Map<String, Object> props = consumerConfig();
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        return factory;
+    }
+
+    @Bean(destroyMethod = "close")
+    public KeyedWorkerPool notificationWorkerPool(@Value("${ewallet.notification.workers.lanes:16}") int lanes,
+                                                  @Value("${ewallet.notification.workers.high-watermark:1000}") int highWatermark,
+                                                  @Value("${ewallet.notification.workers.low-watermark:250}") int lowWatermark){
+        return new KeyedWorkerPool("notification-worker", lanes, highWatermark, lowWatermark);
+    }
+
     private Map<String, Object> consumerConfig(){
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         return props;
     }
 
@@ -1,17 +1,19 @@
 package com.sathwick.ewallet.notification.config;
 
+import com.sathwick.ewallet.notification.service.mail.MailDispatcher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import java.time.Duration;
 import java.util.Properties;
 
 @Configuration
 public class MailConfig {
 
     @Bean
-    public JavaMailSender createMailSender(){
+    public JavaMailSenderImpl createMailSender(){
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
         mailSender.setHost("smtp.gmail.com");
         mailSender.setPort(587); // 465/587
@@ -20,8 +22,23 @@ public class MailConfig {
         Properties properties = new Properties();
         properties.put("mail.smtp.auth", true);
         properties.put("mail.smtp.starttls.enable", true);
+        // connections are kept open by MailDispatcher, don't let a dead one hang a worker
+        properties.put("mail.smtp.connectiontimeout", 5000);
+        properties.put("mail.smtp.timeout", 10000);
+        properties.put("mail.smtp.writetimeout", 10000);
         mailSender.setJavaMailProperties(properties);
         return mailSender;
     }
 
+    @Bean(destroyMethod = "close")
+    public MailDispatcher mailDispatcher(JavaMailSenderImpl mailSender,
+                                         @Value("${ewallet.notification.mail.connections:4}") int connections,
+                                         @Value("${ewallet.notification.mail.batch-size:50}") int batchSize,
+                                         @Value("${ewallet.notification.mail.max-attempts:5}") int maxAttempts,
+                                         @Value("${ewallet.notification.mail.initial-backoff:1s}") Duration initialBackoff,
+                                         @Value("${ewallet.notification.mail.max-backoff:1m}") Duration maxBackoff,
+                                         @Value("${ewallet.notification.mail.idle-timeout:30s}") Duration idleTimeout){
+        return new MailDispatcher(mailSender, connections, batchSize, maxAttempts, initialBackoff, maxBackoff, idleTimeout);
+    }
+
 }
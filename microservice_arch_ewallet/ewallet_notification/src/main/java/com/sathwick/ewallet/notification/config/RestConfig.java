@@ -1,15 +1,39 @@
 package com.sathwick.ewallet.notification.config;
 
+import com.sathwick.ewallet.common.discovery.DiscoveryWarmUp;
+import com.sathwick.ewallet.common.http.HopSettings;
+import com.sathwick.ewallet.common.http.PooledHttpClients;
+import com.sathwick.ewallet.common.loadbalancer.PeakEwmaLoadBalancing;
+import com.sathwick.ewallet.common.resilience.Resilience;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
+// @LoadBalanced clients pick instances by latency and requests in flight instead of round robin,
+// the instance turns UP in Eureka once the instances of the services it calls are known,
+// calls to the user service go through a bulkhead, circuit breaker and adaptive timeout
+@Import({PeakEwmaLoadBalancing.class, DiscoveryWarmUp.class, Resilience.class})
 public class RestConfig {
+
+    // Notification -> user hop, profile lookups only
+    @Bean
+    public HopSettings userHopSettings(@Value("${ewallet.http.connect-timeout:1s}") Duration connectTimeout,
+                                       @Value("${ewallet.http.response-timeout:2s}") Duration responseTimeout,
+                                       @Value("${ewallet.http.max-connections:50}") int maxConnections,
+                                       @Value("${ewallet.http.max-connections-per-route:25}") int maxConnectionsPerRoute,
+                                       @Value("${ewallet.http.idle-timeout:30s}") Duration idleTimeout) {
+        return new HopSettings(connectTimeout, responseTimeout, maxConnections, maxConnectionsPerRoute, idleTimeout);
+    }
+
     @Bean
     @LoadBalanced
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(HopSettings userHopSettings){
+        return new RestTemplate(PooledHttpClients.requestFactory(userHopSettings));
     }
 }
@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.notification.config;
+
+import com.sathwick.ewallet.notification.service.template.TemplateEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+
+@Configuration
+public class TemplateConfig {
+
+    // A template that doesn't parse fails the startup
+    @Bean
+    public TemplateEngine templateEngine(@Value("${ewallet.notification.templates.location:classpath*:templates}") String location) throws IOException {
+        return TemplateEngine.load(new PathMatchingResourcePatternResolver(), location);
+    }
+}
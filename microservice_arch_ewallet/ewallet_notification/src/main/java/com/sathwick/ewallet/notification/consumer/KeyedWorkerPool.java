@@ -0,0 +1,117 @@
+package com.sathwick.ewallet.notification.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of single threaded lanes. Tasks with the same key always go to the same lane and run in submission
+ * order, tasks with different keys run in parallel on up to {@code lanes} threads.
+ * <p>
+ * The number of queued plus running tasks is tracked: the pressure listener is called with {@code true} when it
+ * reaches {@code highWatermark} and with {@code false} once it is back down to {@code lowWatermark}, the caller is
+ * expected to stop and restart feeding tasks accordingly.
+ */
+@Slf4j
+public class KeyedWorkerPool implements AutoCloseable {
+
+    private final ExecutorService[] lanes;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean saturated = new AtomicBoolean();
+    private volatile Consumer<Boolean> pressureListener = saturated -> { };
+
+    public KeyedWorkerPool(String name, int lanes, int highWatermark, int lowWatermark) {
+        if (lanes < 1 || lowWatermark < 0 || lowWatermark >= highWatermark) {
+            throw new IllegalArgumentException("Invalid worker pool settings: lanes=" + lanes
+                    + ", high=" + highWatermark + ", low=" + lowWatermark);
+        }
+        this.lanes = new ExecutorService[lanes];
+        for (int i = 0; i < lanes; i++) {
+            String threadName = name + "-" + i;
+            this.lanes[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+    }
+
+    public void onPressureChange(Consumer<Boolean> pressureListener) {
+        this.pressureListener = pressureListener;
+    }
+
+    // onDone runs on the lane thread after the task, whether it failed or not
+    public void submit(Object key, Runnable task, Runnable onDone) {
+        submitAsync(key, () -> {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }, onDone);
+    }
+
+    /**
+     * The task only starts the work on its lane and the lane moves on to the next task right away. The task counts
+     * as in flight, and onDone is called, once the returned future completes.
+     */
+    public void submitAsync(Object key, Supplier<CompletableFuture<?>> task, Runnable onDone) {
+        if (inFlight.incrementAndGet() >= highWatermark && saturated.compareAndSet(false, true)) {
+            pressureListener.accept(true);
+        }
+        lanes[Math.floorMod(key == null ? 0 : key.hashCode(), lanes.length)].execute(() -> {
+            CompletableFuture<?> result;
+            try {
+                result = task.get();
+            } catch (Exception e) {
+                result = CompletableFuture.failedFuture(e);
+            }
+            result.whenComplete((ignored, e) -> {
+                if (e != null) {
+                    log.error("Task for key {} failed: {}", key, e.getMessage());
+                }
+                try {
+                    onDone.run();
+                } finally {
+                    if (inFlight.decrementAndGet() <= lowWatermark && saturated.compareAndSet(true, false)) {
+                        pressureListener.accept(false);
+                    }
+                }
+            });
+        });
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isSaturated() {
+        return saturated.get();
+    }
+
+    // Lets queued tasks finish for up to the given time, whatever is left is dropped and redelivered by Kafka
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                lane.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        shutdown(30, TimeUnit.SECONDS);
+    }
+}
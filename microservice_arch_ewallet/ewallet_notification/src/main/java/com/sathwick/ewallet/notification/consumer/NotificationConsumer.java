@@ -1,31 +1,75 @@
 package com.sathwick.ewallet.notification.consumer;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sathwick.ewallet.common.kafka.NotificationEvent;
+import com.sathwick.ewallet.common.kafka.NotificationEventCodec;
 import com.sathwick.ewallet.notification.service.NotificationService;
 import com.sathwick.ewallet.notification.service.resource.NotificationRequest;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
 public class NotificationConsumer {
 
+    static final String LISTENER_ID = "notificationConsumer";
+
     @Autowired
     private NotificationService notificationService;
-    ObjectMapper mapper = new ObjectMapper();
+    @Autowired
+    private KeyedWorkerPool notificationWorkerPool;
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @PostConstruct
+    public void registerBackpressure() {
+        // stop fetching while the workers are behind, the records already fetched are still processed
+        notificationWorkerPool.onPressureChange(saturated -> {
+            MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+            if (container == null) {
+                return;
+            }
+            if (saturated) {
+                log.info("Notification workers saturated ({} in flight), pausing consumer", notificationWorkerPool.inFlight());
+                container.pause();
+            } else {
+                log.info("Notification workers drained, resuming consumer");
+                container.resume();
+            }
+        });
+    }
 
-    @KafkaListener(topics = "notification-topic", groupId = "notificationGroup")
-    public void consumer(String message)  {
-        log.info("Consumed message by notification consumer: "+message);
+    // Runs on the listener thread only long enough to parse the message, the user lookup and the hand off to the
+    // mail dispatcher are done by the worker lane of the user so notifications of one user keep their order. See
+    // KafkaConfig.notificationListenerContainerFactory for how the out of order acknowledgments are committed.
+    @KafkaListener(id = LISTENER_ID, topics = "notification-topic", groupId = "notificationGroup",
+            containerFactory = "notificationListenerContainerFactory")
+    public void consumer(ConsumerRecord<String, byte[]> record, Acknowledgment acknowledgment)  {
+        NotificationRequest notificationRequest;
         try {
-            NotificationRequest notificationRequest = mapper.readValue(message, NotificationRequest.class);
-            notificationService.sendCommunication(notificationRequest);
-        } catch (JsonProcessingException e) {
+            NotificationEvent event = NotificationEventCodec.decode(record.value());
+            log.info("Consumed message by notification consumer: "+event);
+            notificationRequest = NotificationRequest.builder()
+                    .userId(event.userId())
+                    .amount(event.amount())
+                    .userType(event.userType().name())
+                    .transactionStatus(event.status().name())
+                    .build();
+        } catch (IllegalArgumentException e) {
             log.error("Error while parsing notification content : "+e.getMessage());
+            acknowledgment.acknowledge();
+            return;
         }
+        // the lane only queues the mail, the offset is acknowledged once the mail is sent (or given up on)
+        notificationWorkerPool.submitAsync(notificationRequest.getUserId(),
+                () -> notificationService.sendCommunicationAsync(notificationRequest),
+                acknowledgment::acknowledge);
     }
 
 }
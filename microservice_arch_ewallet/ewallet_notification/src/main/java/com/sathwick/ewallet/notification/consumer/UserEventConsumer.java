@@ -0,0 +1,28 @@
+package com.sathwick.ewallet.notification.consumer;
+
+import com.sathwick.ewallet.notification.service.cache.UserProfileCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+@Service
+@Slf4j
+public class UserEventConsumer {
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    // Every instance holds its own cache, so every instance needs every event: random group id per instance.
+    // It starts from the latest offset, anything older is already covered by the cache TTL.
+    @KafkaListener(topics = {"${kafka.topic.user-updated}", "${kafka.topic.user-deleted}"},
+            groupId = "notificationUserCache-${random.uuid}")
+    public void consumeUserChanged(String message) {
+        log.info("Invalidating cached profile of user " + message);
+        try {
+            userProfileCache.invalidate(Long.valueOf(message.trim()));
+        } catch (NumberFormatException e) {
+            log.error("Invalid user id in user event : " + message);
+        }
+    }
+}
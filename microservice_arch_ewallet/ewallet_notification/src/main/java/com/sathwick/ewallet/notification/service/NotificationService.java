@@ -2,7 +2,14 @@ package com.sathwick.ewallet.notification.service;
 
 import com.sathwick.ewallet.notification.service.resource.NotificationRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface NotificationService {
 
-    void sendCommunication(NotificationRequest notificationRequest);
+    default void sendCommunication(NotificationRequest notificationRequest) {
+        sendCommunicationAsync(notificationRequest).join();
+    }
+
+    // Completes once the mail is accepted by the SMTP server, see MailDispatcher
+    CompletableFuture<Void> sendCommunicationAsync(NotificationRequest notificationRequest);
 }
@@ -0,0 +1,62 @@
+package com.sathwick.ewallet.notification.service.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.sathwick.ewallet.common.resilience.ResilientTarget;
+import com.sathwick.ewallet.notification.exception.NotificationException;
+import com.sathwick.ewallet.notification.service.resource.UserResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+/**
+ * Name and email of users, loaded from the user service on first use.
+ * <p>
+ * Entries are bounded in number and expire {@code ttl} after they were loaded. Profile changes are pushed through
+ * the USER_UPDATED / USER_DELETED topics (see UserEventConsumer), the TTL only bounds staleness when one of those
+ * events is missed. Concurrent misses on the same user share one HTTP call. Failed lookups are not cached.
+ * <p>
+ * The GET is idempotent, so the calls go through the user service target with hedging: a lookup slower than most
+ * gets a second attempt and the first response wins.
+ */
+@Slf4j
+public class UserProfileCache {
+
+    static final String USER_URL = "http://USERSERVICE/users/";
+    // ResilientTargets name
+    public static final String TARGET = "userservice";
+
+    private final LoadingCache<Long, UserResponse> users;
+
+    public UserProfileCache(RestTemplate restTemplate, ResilientTarget userService, long maximumSize, Duration ttl) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build(userId -> load(restTemplate, userService, userId));
+    }
+
+    public UserResponse get(Long userId) {
+        return users.get(userId);
+    }
+
+    public void invalidate(Long userId) {
+        users.invalidate(userId);
+    }
+
+    // For CaffeineCacheMetrics, hit ratio and load times come from the recorded stats
+    public LoadingCache<Long, UserResponse> getCache() {
+        return users;
+    }
+
+    private static UserResponse load(RestTemplate restTemplate, ResilientTarget userService, Long userId) {
+        // fetch the user from userService
+        ResponseEntity<UserResponse> responseEntity = userService.callIdempotent(() -> restTemplate.getForEntity(USER_URL + userId, UserResponse.class));
+        if (!responseEntity.getStatusCode().is2xxSuccessful() || responseEntity.getBody() == null) {
+            throw new NotificationException("EWALLET_USER_NOT_FOUND", "Unable to fetch / user not found");
+        }
+        return responseEntity.getBody();
+    }
+}
@@ -1,77 +1,59 @@
 package com.sathwick.ewallet.notification.service.impl;
 
-import com.sathwick.ewallet.notification.exception.NotificationException;
 import com.sathwick.ewallet.notification.service.NotificationService;
+import com.sathwick.ewallet.notification.service.cache.UserProfileCache;
+import com.sathwick.ewallet.notification.service.mail.MailDispatcher;
 import com.sathwick.ewallet.notification.service.resource.NotificationRequest;
 import com.sathwick.ewallet.notification.service.resource.UserResponse;
-import com.sathwick.ewallet.notification.service.util.MailContentUtil;
+import com.sathwick.ewallet.notification.service.template.TemplateEngine;
+import com.sathwick.ewallet.notification.service.template.TemplateModel;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class NotificationServiceImpl implements NotificationService {
 
+    static final String MAIL_CHANNEL = "mail";
+
     @Autowired
-    RestTemplate restTemplate;
+    private UserProfileCache userProfileCache;
 
     @Autowired
-    private JavaMailSender mailSender;
-    @Override
-    public void sendCommunication(NotificationRequest notificationRequest) {
-        // get user email
-        // get notification type
-        // populate the values / template
-        // send email
-        if(notificationRequest.getTransactionStatus().equalsIgnoreCase("SUCCESS") && notificationRequest.getUserType().equalsIgnoreCase("SENDER")){
-            // fetch the user from userService
-            ResponseEntity<UserResponse> responseEntity = restTemplate.getForEntity("http://USERSERVICE/users/"+notificationRequest.getUserId(), UserResponse.class);
-            if(responseEntity.getStatusCode().is2xxSuccessful()){
-                UserResponse response = responseEntity.getBody();
-                SimpleMailMessage message = new SimpleMailMessage();
-                message.setSubject(MailContentUtil.getSubjectTransactionSuccessful());
-                message.setText(MailContentUtil.getSenderSuccessEmailContent(response.getName(), notificationRequest.getAmount()));
-                message.setTo(response.getEmail());
-                mailSender.send(message);
-            }else{
-                throw new NotificationException("EWALLET_USER_NOT_FOUND", "Unable to fetch / user not found");
-            }
-        }
-        if(notificationRequest.getTransactionStatus().equalsIgnoreCase("SUCCESS") && notificationRequest.getUserType().equalsIgnoreCase("RECEIVER")){
-            // fetch the user from userService
-            ResponseEntity<UserResponse> responseEntity = restTemplate.getForEntity("http://USERSERVICE/users/"+notificationRequest.getUserId(), UserResponse.class);
-            if(responseEntity.getStatusCode().is2xxSuccessful()){
-                UserResponse response = responseEntity.getBody();
-                SimpleMailMessage message = new SimpleMailMessage();
-                message.setSubject(MailContentUtil.getSubjectTransactionSuccessful());
-                message.setText(MailContentUtil.getReceiverSuccessEmailContent(response.getName(), notificationRequest.getAmount()));
-                message.setTo(response.getEmail());
-                mailSender.send(message);
-            }
-            else{
-                throw new NotificationException("EWALLET_USER_NOT_FOUND", "Unable to fetch / user not found");
-            }
-        }
+    private MailDispatcher mailDispatcher;
 
-        // if getTransactionStatus is FAILURE and userType is SENDER then send failure notification
-        if(notificationRequest.getTransactionStatus().equalsIgnoreCase("FAILURE") && notificationRequest.getUserType().equalsIgnoreCase("SENDER")){
-            // fetch the user from userService
-            ResponseEntity<UserResponse> responseEntity = restTemplate.getForEntity("http://USERSERVICE/users/"+notificationRequest.getUserId(), UserResponse.class);
-            if(responseEntity.getStatusCode().is2xxSuccessful()){
-                UserResponse response = responseEntity.getBody();
-                SimpleMailMessage message = new SimpleMailMessage();
-                message.setSubject(MailContentUtil.getSubjectTransactionUnsuccessful());
-                message.setText(MailContentUtil.getFailureSenderEmailContent(response.getName(), notificationRequest.getAmount()));
-                message.setTo(response.getEmail());
-                mailSender.send(message);
-            }
-            else{
-                throw new NotificationException("EWALLET_USER_NOT_FOUND", "Unable to fetch / user not found");
-            }
-        }
+    @Autowired
+    private TemplateEngine templateEngine;
+
+    private Locale locale = Locale.forLanguageTag("en-IN");
+
+    @Value("${ewallet.notification.locale:en-IN}")
+    public void setLocale(String languageTag) {
+        this.locale = Locale.forLanguageTag(languageTag);
+    }
 
+    @Override
+    public CompletableFuture<Void> sendCommunicationAsync(NotificationRequest notificationRequest) {
+        // get notification type: SENDER_SUCCESS, RECEIVER_SUCCESS, SENDER_FAILURE, see templates/mail.properties
+        String kind = notificationRequest.getUserType().toUpperCase(Locale.ROOT) + "_"
+                + notificationRequest.getTransactionStatus().toUpperCase(Locale.ROOT);
+        if (!templateEngine.hasTemplate(MAIL_CHANNEL, kind + ".body", locale)) {
+            // nothing is sent for this kind (e.g. RECEIVER_FAILURE)
+            return CompletableFuture.completedFuture(null);
+        }
+        // get user email, cached, only a miss goes to userService
+        UserResponse response = userProfileCache.get(notificationRequest.getUserId());
+        // populate the values / template
+        TemplateModel model = new TemplateModel(response.getName(), notificationRequest.getAmount());
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setSubject(templateEngine.render(MAIL_CHANNEL, kind + ".subject", locale, model));
+        message.setText(templateEngine.render(MAIL_CHANNEL, kind + ".body", locale, model));
+        message.setTo(response.getEmail());
+        // send email: queued, sent over one of the pooled SMTP connections
+        return mailDispatcher.submit(message);
     }
 }
@@ -0,0 +1,234 @@
+package com.sathwick.ewallet.notification.service.mail;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends mails over a fixed number of long lived SMTP connections.
+ * <p>
+ * Every worker thread owns one connection (opened, STARTTLS'd and authenticated once, then kept open until it has
+ * been idle for {@code idleTimeout}) and sends whatever is queued in batches of up to {@code maxBatchSize} mails
+ * over it, so the handshake cost is paid per connection instead of per mail. A failed mail is put back on the
+ * queue with exponential backoff and jitter, the caller is never blocked. Mails with rejected recipients and mails
+ * that failed {@code maxAttempts} times complete exceptionally.
+ */
+@Slf4j
+public class MailDispatcher implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 200;
+
+    private final JavaMailSenderImpl mailSender;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long idleTimeoutNanos;
+    // delayed until the next attempt is due, new mails are due right away
+    private final DelayQueue<PendingMail> queue = new DelayQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public MailDispatcher(JavaMailSenderImpl mailSender, int connections, int maxBatchSize, int maxAttempts,
+                          Duration initialBackoff, Duration maxBackoff, Duration idleTimeout) {
+        this.mailSender = mailSender;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        for (int i = 0; i < connections; i++) {
+            Thread worker = new Thread(this::run, "mail-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    // Completes once the SMTP server accepted the mail
+    public CompletableFuture<Void> submit(SimpleMailMessage message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Mail dispatcher is closed"));
+            return result;
+        }
+        queue.add(new PendingMail(message, result, 1, System.nanoTime()));
+        return result;
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // retries that were not due yet
+        for (PendingMail pending : queue) {
+            if (queue.remove(pending)) {
+                pending.result.completeExceptionally(new IllegalStateException("Mail dispatcher is closed"));
+            }
+        }
+    }
+
+    private void run() {
+        Transport transport = null;
+        long lastUsed = 0;
+        List<PendingMail> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (true) {
+                PendingMail first = running ? queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS) : queue.poll();
+                if (first == null) {
+                    if (!running) {
+                        return;
+                    }
+                    if (transport != null && System.nanoTime() - lastUsed > idleTimeoutNanos) {
+                        transport = closeQuietly(transport);
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                transport = send(transport, batch);
+                lastUsed = System.nanoTime();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    // Returns the connection to keep using, null when it had to be dropped
+    Transport send(Transport transport, List<PendingMail> batch) {
+        boolean checked = false;
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMail pending = batch.get(i);
+            try {
+                // a kept connection may have been closed by the server meanwhile, isConnected() sends a NOOP
+                if (transport != null && !checked && !transport.isConnected()) {
+                    transport = closeQuietly(transport);
+                }
+                if (transport == null) {
+                    transport = connect();
+                }
+                checked = true;
+            } catch (MessagingException e) {
+                log.warn("Unable to connect to the SMTP server: {}", e.getMessage());
+                for (int j = i; j < batch.size(); j++) {
+                    retryLater(batch.get(j), e);
+                }
+                return null;
+            }
+            try {
+                MimeMessage mimeMessage = toMimeMessage(pending.message);
+                transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+                pending.result.complete(null);
+            } catch (MessagingException e) {
+                // start the next mail from a clean session
+                transport = closeQuietly(transport);
+                retryLater(pending, e);
+            } catch (RuntimeException e) {
+                // the message itself can't be built (e.g. a malformed address), the connection is fine
+                log.error("Invalid mail to {}: {}", Arrays.toString(pending.message.getTo()), e.getMessage());
+                pending.result.completeExceptionally(e);
+            }
+        }
+        return transport;
+    }
+
+    private Transport connect() throws MessagingException {
+        // same fallback as JavaMailSenderImpl.getTransport, MailConfig doesn't set a protocol
+        Session session = mailSender.getSession();
+        String protocol = mailSender.getProtocol();
+        if (protocol == null) {
+            protocol = session.getProperty("mail.transport.protocol");
+            if (protocol == null) {
+                protocol = JavaMailSenderImpl.DEFAULT_PROTOCOL;
+            }
+        }
+        Transport transport = session.getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    private MimeMessage toMimeMessage(SimpleMailMessage message) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        message.copyTo(new MimeMailMessage(mimeMessage));
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    private void retryLater(PendingMail pending, MessagingException e) {
+        if (isPermanent(e) || pending.attempt >= maxAttempts || !running) {
+            log.error("Giving up on mail to {} after {} attempts: {}", Arrays.toString(pending.message.getTo()),
+                    pending.attempt, e.getMessage());
+            pending.result.completeExceptionally(e);
+            return;
+        }
+        long backoff = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(pending.attempt - 1, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        queue.add(new PendingMail(pending.message, pending.result, pending.attempt + 1, System.nanoTime() + delay));
+    }
+
+    // Rejected recipients won't be accepted on a retry either
+    private static boolean isPermanent(MessagingException e) {
+        return e instanceof SendFailedException failed
+                && failed.getInvalidAddresses() != null && failed.getInvalidAddresses().length > 0
+                && (failed.getValidUnsentAddresses() == null || failed.getValidUnsentAddresses().length == 0);
+    }
+
+    private static Transport closeQuietly(Transport transport) {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error while closing SMTP connection: {}", e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    record PendingMail(SimpleMailMessage message, CompletableFuture<Void> result, int attempt, long dueAt)
+            implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((PendingMail) other).dueAt);
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.sathwick.ewallet.notification.service.resource;
 
+import com.sathwick.ewallet.common.money.Money;
 import jakarta.validation.Valid;
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
@@ -13,8 +13,7 @@ import lombok.*;
 public class NotificationRequest {
     @NotBlank
     private Long userId;
-    @Min(value = 0)
-    private Double amount;
+    private Money amount;
     @NotBlank
     private String userType;
     @NotBlank
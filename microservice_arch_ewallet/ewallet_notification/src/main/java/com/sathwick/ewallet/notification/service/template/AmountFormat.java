@@ -0,0 +1,69 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Locale aware amount formatting straight from minor units into a StringBuilder, without going through
+ * NumberFormat / BigDecimal. Separators come from the locale's DecimalFormatSymbols, Indian locales group the
+ * integer part as 12,34,567 and everything else in thousands.
+ */
+final class AmountFormat {
+
+    private static final Map<Locale, AmountFormat> FORMATS = new ConcurrentHashMap<>();
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final boolean indianGrouping;
+
+    private AmountFormat(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.groupingSeparator = symbols.getGroupingSeparator();
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.indianGrouping = "IN".equals(locale.getCountry());
+    }
+
+    static AmountFormat of(Locale locale) {
+        return FORMATS.computeIfAbsent(locale, AmountFormat::new);
+    }
+
+    StringBuilder appendGrouped(StringBuilder out, long minorUnits) {
+        // quotient and remainder keep the sign, negate them separately so Long.MIN_VALUE works too
+        long major = minorUnits / 100;
+        long minor = minorUnits % 100;
+        if (minorUnits < 0) {
+            out.append('-');
+            major = -major;
+            minor = -minor;
+        }
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && major >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        for (int remaining = digits - 1; remaining >= 0; remaining--) {
+            out.append((char) ('0' + (major / POWERS_OF_TEN[remaining]) % 10));
+            if (remaining > 0 && isGroupBoundary(remaining)) {
+                out.append(groupingSeparator);
+            }
+        }
+        return out.append(decimalSeparator).append((char) ('0' + minor / 10)).append((char) ('0' + minor % 10));
+    }
+
+    // remaining = number of integer digits still to come after the one just written
+    private boolean isGroupBoundary(int remaining) {
+        if (indianGrouping) {
+            return remaining == 3 || (remaining > 3 && (remaining - 3) % 2 == 0);
+        }
+        return remaining % 3 == 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import com.sathwick.ewallet.common.money.Money;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A template parsed once into an array of segments: literal text and variables.
+ * <p>
+ * Variables are written as {@code {name}}, {@code {amount}} (plain, {@code 1234.50}) or {@code {amount:grouped}}
+ * (separators of the render locale, {@code 1,234.50}); <code>{{</code> is a literal brace. Unknown variables fail the
+ * parse, so a broken template is found at startup rather than when the first message goes out.
+ */
+public final class Template {
+
+    private final String source;
+    private final Segment[] segments;
+
+    private Template(String source, Segment[] segments) {
+        this.source = source;
+        this.segments = segments;
+    }
+
+    public static Template parse(String source) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (c != '{') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            if (source.startsWith("{{", i)) {
+                literal.append('{');
+                i += 2;
+                continue;
+            }
+            int end = source.indexOf('}', i);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed variable at " + i + " in template: " + source);
+            }
+            if (!literal.isEmpty()) {
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(variable(source.substring(i + 1, end).trim(), source));
+            i = end + 1;
+        }
+        if (!literal.isEmpty()) {
+            segments.add(new Literal(literal.toString()));
+        }
+        return new Template(source, segments.toArray(new Segment[0]));
+    }
+
+    public StringBuilder render(StringBuilder out, TemplateModel model, Locale locale) {
+        for (Segment segment : segments) {
+            segment.render(out, model, locale);
+        }
+        return out;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    private static Segment variable(String name, String source) {
+        return switch (name) {
+            case "name" -> (out, model, locale) -> out.append(model.name());
+            case "amount" -> (out, model, locale) -> Money.appendTo(out, model.amount().getMinorUnits());
+            case "amount:grouped" -> (out, model, locale) -> AmountFormat.of(locale).appendGrouped(out, model.amount().getMinorUnits());
+            default -> throw new IllegalArgumentException("Unknown variable {" + name + "} in template: " + source);
+        };
+    }
+
+    @FunctionalInterface
+    private interface Segment {
+        void render(StringBuilder out, TemplateModel model, Locale locale);
+    }
+
+    private record Literal(String text) implements Segment {
+        @Override
+        public void render(StringBuilder out, TemplateModel model, Locale locale) {
+            out.append(text);
+        }
+    }
+}
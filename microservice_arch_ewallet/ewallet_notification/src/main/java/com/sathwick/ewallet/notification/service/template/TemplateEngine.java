@@ -0,0 +1,105 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Notification templates of every channel, parsed once at startup.
+ * <p>
+ * Every {@code <channel>[_<locale>].properties} file under the template location holds the templates of one
+ * channel (mail, sms, push ...) as {@code name=template} entries, so a new channel or language is a new file. A
+ * lookup falls back from the exact locale to its language and then to the file without a locale.
+ * <p>
+ * Rendering goes into a StringBuilder kept per thread and reused, the only allocation per render is the result
+ * string.
+ */
+@Slf4j
+public class TemplateEngine {
+
+    // a buffer that grew past this is dropped instead of being kept by the thread
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+    private final Map<String, ChannelTemplates> channels;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    TemplateEngine(Map<String, Map<Locale, Map<String, Template>>> templates) {
+        this.channels = new HashMap<>();
+        templates.forEach((channel, byLocale) -> channels.put(channel, new ChannelTemplates(byLocale)));
+    }
+
+    public static TemplateEngine load(ResourcePatternResolver resolver, String location) throws IOException {
+        Map<String, Map<Locale, Map<String, Template>>> templates = new HashMap<>();
+        for (Resource resource : resolver.getResources(location + "/*.properties")) {
+            String fileName = resource.getFilename();
+            String baseName = fileName.substring(0, fileName.length() - ".properties".length());
+            int separator = baseName.indexOf('_');
+            String channel = separator < 0 ? baseName : baseName.substring(0, separator);
+            Locale locale = separator < 0 ? Locale.ROOT : Locale.forLanguageTag(baseName.substring(separator + 1).replace('_', '-'));
+
+            Properties properties = new Properties();
+            try (Reader reader = new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            Map<String, Template> parsed = templates.computeIfAbsent(channel, c -> new HashMap<>())
+                    .computeIfAbsent(locale, l -> new HashMap<>());
+            for (String name : properties.stringPropertyNames()) {
+                parsed.put(name, Template.parse(properties.getProperty(name)));
+            }
+            log.info("Loaded {} {} templates for locale '{}'", properties.size(), channel, locale);
+        }
+        return new TemplateEngine(templates);
+    }
+
+    public boolean hasTemplate(String channel, String name, Locale locale) {
+        return find(channel, name, locale) != null;
+    }
+
+    public String render(String channel, String name, Locale locale, TemplateModel model) {
+        Template template = find(channel, name, locale);
+        if (template == null) {
+            throw new IllegalArgumentException("No " + channel + " template " + name + " for locale " + locale);
+        }
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        String result = template.render(buffer, model, locale).toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+            buffers.remove();
+        }
+        return result;
+    }
+
+    private Template find(String channel, String name, Locale locale) {
+        ChannelTemplates templates = channels.get(channel);
+        return templates == null ? null : templates.forLocale(locale).get(name);
+    }
+
+    private static final class ChannelTemplates {
+        private final Map<Locale, Map<String, Template>> byLocale;
+        // fallbacks merged once per requested locale
+        private final Map<Locale, Map<String, Template>> resolved = new ConcurrentHashMap<>();
+
+        private ChannelTemplates(Map<Locale, Map<String, Template>> byLocale) {
+            this.byLocale = byLocale;
+        }
+
+        private Map<String, Template> forLocale(Locale locale) {
+            return resolved.computeIfAbsent(locale, requested -> {
+                Map<String, Template> merged = new HashMap<>(byLocale.getOrDefault(Locale.ROOT, Map.of()));
+                merged.putAll(byLocale.getOrDefault(Locale.forLanguageTag(requested.getLanguage()), Map.of()));
+                merged.putAll(byLocale.getOrDefault(requested, Map.of()));
+                return merged;
+            });
+        }
+    }
+}
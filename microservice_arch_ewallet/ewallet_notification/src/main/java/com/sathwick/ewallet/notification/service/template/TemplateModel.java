@@ -0,0 +1,7 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import com.sathwick.ewallet.common.money.Money;
+
+// Values a notification template can refer to, see Template for the variable names
+public record TemplateModel(String name, Money amount) {
+}
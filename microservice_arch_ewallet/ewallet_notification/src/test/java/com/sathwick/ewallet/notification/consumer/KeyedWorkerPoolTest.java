@@ -0,0 +1,109 @@
+package com.sathwick.ewallet.notification.consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedWorkerPoolTest {
+
+    private KeyedWorkerPool pool;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Test
+    void sameKeyRunsInOrder() throws Exception {
+        pool = new KeyedWorkerPool("test", 4, 1000, 10);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            pool.submit(42L, () -> seen.add(value), done::countDown);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, seen.get(i));
+        }
+    }
+
+    @Test
+    void blockedKeyDoesNotHoldBackOtherLanes() throws Exception {
+        pool = new KeyedWorkerPool("test", 2, 1000, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDone = new CountDownLatch(1);
+        // keys 0 and 1 land on different lanes
+        pool.submit(0L, () -> await(release), () -> { });
+        pool.submit(1L, () -> { }, otherDone::countDown);
+        assertTrue(otherDone.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void pressureListenerFollowsWatermarks() throws Exception {
+        pool = new KeyedWorkerPool("test", 1, 3, 1);
+        List<Boolean> changes = Collections.synchronizedList(new ArrayList<>());
+        pool.onPressureChange(changes::add);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            pool.submit(1L, () -> await(release), done::countDown);
+        }
+        assertTrue(pool.isSaturated());
+        assertEquals(List.of(true), changes);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // the in flight count drops right after onDone
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.isSaturated() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(List.of(true, false), changes);
+        assertEquals(0, pool.inFlight());
+    }
+
+    @Test
+    void failingTaskIsStillCompleted() throws Exception {
+        pool = new KeyedWorkerPool("test", 1, 10, 1);
+        CountDownLatch done = new CountDownLatch(1);
+        pool.submit(1L, () -> { throw new IllegalStateException("smtp down"); }, done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void asyncTaskStaysInFlightUntilItsFutureCompletes() throws Exception {
+        pool = new KeyedWorkerPool("test", 1, 10, 1);
+        CompletableFuture<Void> mail = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(1);
+        pool.submitAsync(1L, () -> {
+            started.countDown();
+            return mail;
+        }, done::countDown);
+        // the lane is free for the next task while the first one is still pending
+        pool.submit(1L, started::countDown, () -> { });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, done.getCount());
+
+        mail.complete(null);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
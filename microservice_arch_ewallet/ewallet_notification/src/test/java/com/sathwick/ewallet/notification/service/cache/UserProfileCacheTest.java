@@ -0,0 +1,72 @@
+package com.sathwick.ewallet.notification.service.cache;
+
+import com.sathwick.ewallet.common.resilience.ResilienceSettings;
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.notification.service.resource.UserResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UserProfileCacheTest {
+
+    private RestTemplate restTemplate;
+    private ResilientTargets resilientTargets;
+    private UserProfileCache userProfileCache;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = mock(RestTemplate.class);
+        resilientTargets = new ResilientTargets(target -> ResilienceSettings.DEFAULTS, target -> {
+        });
+        userProfileCache = new UserProfileCache(restTemplate, resilientTargets.target(UserProfileCache.TARGET), 100, Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        resilientTargets.close();
+    }
+
+    @Test
+    void secondLookupIsServedFromCache() {
+        when(restTemplate.getForEntity(UserProfileCache.USER_URL + 7, UserResponse.class))
+                .thenReturn(new ResponseEntity<>(new UserResponse("7", "alice", "alice@example.com"), HttpStatus.OK));
+
+        assertEquals("alice@example.com", userProfileCache.get(7L).getEmail());
+        assertEquals("alice@example.com", userProfileCache.get(7L).getEmail());
+
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(UserResponse.class));
+        assertEquals(0.5, userProfileCache.getCache().stats().hitRate());
+    }
+
+    @Test
+    void invalidatedProfileIsReloaded() {
+        when(restTemplate.getForEntity(UserProfileCache.USER_URL + 7, UserResponse.class))
+                .thenReturn(new ResponseEntity<>(new UserResponse("7", "alice", "alice@example.com"), HttpStatus.OK))
+                .thenReturn(new ResponseEntity<>(new UserResponse("7", "alice", "alice@new.example.com"), HttpStatus.OK));
+
+        userProfileCache.get(7L);
+        userProfileCache.invalidate(7L);
+
+        assertEquals("alice@new.example.com", userProfileCache.get(7L).getEmail());
+    }
+
+    @Test
+    void failedLookupIsNotCached() {
+        when(restTemplate.getForEntity(UserProfileCache.USER_URL + 7, UserResponse.class))
+                .thenReturn(new ResponseEntity<>(HttpStatus.NOT_FOUND))
+                .thenReturn(new ResponseEntity<>(new UserResponse("7", "alice", "alice@example.com"), HttpStatus.OK));
+
+        assertThrows(RuntimeException.class, () -> userProfileCache.get(7L));
+        assertEquals("alice", userProfileCache.get(7L).getName());
+    }
+}
@@ -0,0 +1,96 @@
+package com.sathwick.ewallet.notification.service.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In process SMTP stand-in: accepts EHLO / MAIL / RCPT / DATA / RSET / NOOP / QUIT, counts connections and
+ * accepted mails. {@code greetingDelayMillis} stands in for the TCP + STARTTLS + AUTH cost of a real server.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = Executors.newCachedThreadPool();
+    private final long greetingDelayMillis;
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger accepted = new AtomicInteger();
+    // the next n DATA commands are answered with 451
+    final AtomicInteger failNextData = new AtomicInteger();
+
+    FakeSmtpServer(long greetingDelayMillis) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.greetingDelayMillis = greetingDelayMillis;
+        sessions.execute(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                sessions.execute(() -> session(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void session(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1)) {
+            Thread.sleep(greetingDelayMillis);
+            reply(out, "220 localhost fake ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() < 4 ? line.toUpperCase() : line.substring(0, 4).toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO", "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                    case "DATA" -> {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // message body is discarded
+                        }
+                        if (failNextData.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                            reply(out, "451 Try again later");
+                        } else {
+                            accepted.incrementAndGet();
+                            reply(out, "250 Queued");
+                        }
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 Bye");
+                        return;
+                    }
+                    default -> reply(out, "500 Unknown command");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // client went away
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+    }
+}
@@ -0,0 +1,124 @@
+package com.sathwick.ewallet.notification.service.mail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailDispatcherTest {
+
+    private FakeSmtpServer smtpServer;
+    private JavaMailSenderImpl mailSender;
+    private MailDispatcher mailDispatcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtpServer = new FakeSmtpServer(0);
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtpServer.port());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (mailDispatcher != null) {
+            mailDispatcher.close();
+        }
+        smtpServer.close();
+    }
+
+    @Test
+    void mailsShareTheConnections() {
+        mailDispatcher = new MailDispatcher(mailSender, 2, 50, 3, Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMinutes(1));
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(mailDispatcher.submit(mail(i)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).orTimeout(30, TimeUnit.SECONDS).join();
+
+        assertEquals(200, smtpServer.accepted.get());
+        assertTrue(smtpServer.connections.get() <= 2, "connections: " + smtpServer.connections.get());
+    }
+
+    @Test
+    void temporaryFailureIsRetried() {
+        mailDispatcher = new MailDispatcher(mailSender, 1, 50, 3, Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMinutes(1));
+        smtpServer.failNextData.set(2);
+
+        mailDispatcher.submit(mail(1)).orTimeout(30, TimeUnit.SECONDS).join();
+
+        assertEquals(1, smtpServer.accepted.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        mailDispatcher = new MailDispatcher(mailSender, 1, 50, 3, Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMinutes(1));
+        smtpServer.failNextData.set(3);
+
+        CompletableFuture<Void> result = mailDispatcher.submit(mail(1)).orTimeout(30, TimeUnit.SECONDS);
+
+        assertThrows(CompletionException.class, result::join);
+        assertEquals(0, smtpServer.accepted.get());
+    }
+
+    /**
+     * Mails per second through MailDispatcher against one JavaMailSenderImpl.send per mail (a new SMTP session
+     * each), with 20ms of connection setup on the fake server. Run with {@code -Dewallet.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "ewallet.benchmark", matches = "true")
+    void compareWithSessionPerMail() throws Exception {
+        smtpServer.close();
+        smtpServer = new FakeSmtpServer(20);
+        mailSender.setPort(smtpServer.port());
+        int mails = 2_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        for (int i = 0; i < mails; i++) {
+            SimpleMailMessage message = mail(i);
+            sent.add(CompletableFuture.runAsync(() -> mailSender.send(message), executor));
+        }
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+        report("session per mail", start, mails);
+        executor.shutdown();
+
+        mailDispatcher = new MailDispatcher(mailSender, 4, 50, 3, Duration.ofMillis(10), Duration.ofMillis(100), Duration.ofMinutes(1));
+        start = System.nanoTime();
+        sent.clear();
+        for (int i = 0; i < mails; i++) {
+            sent.add(mailDispatcher.submit(mail(i)));
+        }
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+        report("pooled dispatcher", start, mails);
+    }
+
+    private void report(String name, long startNanos, int mails) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-18s %8.0f mails/s, connections so far: %d%n", name, mails / seconds, smtpServer.connections.get());
+    }
+
+    private static SimpleMailMessage mail(int i) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("ewallet@localhost");
+        message.setTo("user" + i + "@localhost");
+        message.setSubject("Transaction Successful");
+        message.setText("Hi, user" + i + "\nYour account has been credited with INR 12.50\n");
+        return message;
+    }
+}
@@ -0,0 +1,64 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import com.sathwick.ewallet.common.money.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Render throughput of the receiver mail body through TemplateEngine against the string building of the former
+ * MailContentUtil. Not part of the test run, start it from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sathwick.ewallet.notification.service.template.TemplateBenchmark}.
+ * Use {@code -prof gc} on the JMH command line to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+    TemplateEngine templateEngine;
+    Locale locale;
+    String name;
+    Money amount;
+
+    @Setup
+    public void setUp() throws IOException {
+        templateEngine = TemplateEngine.load(new PathMatchingResourcePatternResolver(), "classpath*:templates");
+        locale = Locale.forLanguageTag("en-IN");
+        name = "alice";
+        amount = Money.parse("12.50");
+    }
+
+    @Benchmark
+    public String mailContentUtil() {
+        return getReceiverSuccessEmailContent(name, amount);
+    }
+
+    @Benchmark
+    public String templateEngine() {
+        return templateEngine.render("mail", "RECEIVER_SUCCESS.body", locale, new TemplateModel(name, amount));
+    }
+
+    // MailContentUtil.getReceiverSuccessEmailContent as it was before the templates
+    static String getReceiverSuccessEmailContent(String username, Money amount){
+        StringBuilder builder = new StringBuilder();
+        builder.append("Hi, " + username + "\n");
+        builder.append("Your account has been credited with INR ");
+        Money.appendTo(builder, amount.getMinorUnits()).append("\n");
+        builder.append("Thanks for using our service\n");
+        return builder.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TemplateBenchmark.class.getSimpleName()).build()).run();
+    }
+}
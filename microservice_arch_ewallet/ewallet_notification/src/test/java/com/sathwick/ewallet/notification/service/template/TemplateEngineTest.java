@@ -0,0 +1,65 @@
+package com.sathwick.ewallet.notification.service.template;
+
+import com.sathwick.ewallet.common.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateEngineTest {
+
+    private static final Locale EN_IN = Locale.forLanguageTag("en-IN");
+
+    private TemplateEngine templateEngine;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        templateEngine = TemplateEngine.load(new PathMatchingResourcePatternResolver(), "classpath*:templates");
+    }
+
+    @Test
+    void mailTemplatesRenderLikeTheOldMailContent() {
+        TemplateModel model = new TemplateModel("alice", Money.parse("12.5"));
+
+        assertEquals("Transaction Successful", templateEngine.render("mail", "RECEIVER_SUCCESS.subject", EN_IN, model));
+        assertEquals("Hi, alice\nYour account has been credited with INR 12.50\nThanks for using our service\n",
+                templateEngine.render("mail", "RECEIVER_SUCCESS.body", EN_IN, model));
+        assertEquals("Hi, alice\nYour account has been debited with INR 12.50\nYour transaction is successful\nThanks for using our service\n",
+                templateEngine.render("mail", "SENDER_SUCCESS.body", EN_IN, model));
+        assertFalse(templateEngine.hasTemplate("mail", "RECEIVER_FAILURE.body", EN_IN));
+    }
+
+    @Test
+    void amountsAreGroupedPerLocale() {
+        Template template = Template.parse("{amount:grouped}|{amount}");
+        TemplateModel model = new TemplateModel("bob", Money.ofMinorUnits(1_234_567_850L));
+
+        assertEquals("1,23,45,678.50|12345678.50", template.render(new StringBuilder(), model, EN_IN).toString());
+        assertEquals("12,345,678.50|12345678.50", template.render(new StringBuilder(), model, Locale.US).toString());
+        assertEquals("12.345.678,50|12345678.50", template.render(new StringBuilder(), model, Locale.GERMANY).toString());
+        assertEquals("-0.05|-0.05", template.render(new StringBuilder(), new TemplateModel("bob", Money.ofMinorUnits(-5)), Locale.US).toString());
+    }
+
+    @Test
+    void localeFallsBackToLanguageThenDefault() {
+        TemplateEngine engine = new TemplateEngine(Map.of("sms", Map.of(
+                Locale.ROOT, Map.of("A", Template.parse("root A"), "B", Template.parse("root B")),
+                Locale.forLanguageTag("hi"), Map.of("A", Template.parse("hi A")))));
+        TemplateModel model = new TemplateModel("bob", Money.ZERO);
+
+        assertEquals("hi A", engine.render("sms", "A", Locale.forLanguageTag("hi-IN"), model));
+        assertEquals("root B", engine.render("sms", "B", Locale.forLanguageTag("hi-IN"), model));
+        assertEquals("root A", engine.render("sms", "A", Locale.US, model));
+    }
+
+    @Test
+    void brokenTemplatesFailTheParse() {
+        assertThrows(IllegalArgumentException.class, () -> Template.parse("Hi {nmae}"));
+        assertThrows(IllegalArgumentException.class, () -> Template.parse("Hi {name"));
+        assertEquals("{name}", Template.parse("{{name}").render(new StringBuilder(), new TemplateModel("x", Money.ZERO), Locale.ROOT).toString());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.servicediscovery;
+
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.discovery.converters.EurekaJacksonCodec;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.netflix.eureka.server.event.EurekaRegistryAvailableEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Persists the registry to a local file and loads it back when the server starts, so that clients fetching right
+ * after a restart get the instances that were UP instead of an empty registry until every instance re-registered.
+ * <p>
+ * Only a recent snapshot is restored: restored instances get a fresh lease, the ones that are gone meanwhile are
+ * evicted once it expires, and too many of them would put the server into self-preservation. An instance that
+ * re-registers replaces its restored entry.
+ */
+@Component
+public class RegistrySnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrySnapshot.class);
+
+    private final PeerAwareInstanceRegistry registry;
+    private final Path file;
+    private final Duration maxAge;
+
+    public RegistrySnapshot(PeerAwareInstanceRegistry registry,
+                            @Value("${ewallet.discovery.snapshot-file:eureka-registry.json}") Path file,
+                            @Value("${ewallet.discovery.snapshot-max-age:2m}") Duration maxAge) {
+        this.registry = registry;
+        this.file = file;
+        this.maxAge = maxAge;
+    }
+
+    @EventListener(EurekaRegistryAvailableEvent.class)
+    public void restore() {
+        try {
+            int restored = restore(Instant.now());
+            if (restored > 0) {
+                log.info("Restored {} instances from the registry snapshot at {}", restored, file);
+            }
+        } catch (Exception e) {
+            log.warn("Could not restore the registry snapshot at {}", file, e);
+        }
+    }
+
+    // @Scheduled takes milliseconds or ISO-8601 only, not the 30s of a bound Duration
+    @Scheduled(fixedDelayString = "${ewallet.discovery.snapshot-interval:PT30S}",
+            initialDelayString = "${ewallet.discovery.snapshot-interval:PT30S}")
+    public void save() {
+        try {
+            save(registry.getApplications());
+        } catch (Exception e) {
+            log.warn("Could not write the registry snapshot to {}", file, e);
+        }
+    }
+
+    // Before the registry shuts down, a server restarted right away has the latest state
+    @EventListener(ContextClosedEvent.class)
+    public void saveOnShutdown() {
+        save();
+    }
+
+    int restore(Instant now) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        Instant writtenAt = Files.getLastModifiedTime(file).toInstant();
+        if (writtenAt.plus(maxAge).isBefore(now)) {
+            log.info("Registry snapshot at {} from {} is older than {}, not restored", file, writtenAt, maxAge);
+            return 0;
+        }
+        Applications applications;
+        try (InputStream in = Files.newInputStream(file)) {
+            applications = EurekaJacksonCodec.getInstance().readValue(Applications.class, in);
+        }
+        int restored = 0;
+        for (Application application : applications.getRegisteredApplications()) {
+            for (InstanceInfo instance : application.getInstances()) {
+                if (instance.getStatus() == InstanceInfo.InstanceStatus.UP
+                        && registry.getInstanceByAppAndId(instance.getAppName(), instance.getId()) == null) {
+                    // as a replication: not forwarded to peers, which have their own registry
+                    registry.register(instance, true);
+                    restored++;
+                }
+            }
+        }
+        return restored;
+    }
+
+    void save(Applications applications) throws IOException {
+        if (applications.getRegisteredApplications().isEmpty()) {
+            // a server that just started must not replace the snapshot it could not restore
+            return;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                EurekaJacksonCodec.getInstance().writeTo(applications, out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -3,9 +3,12 @@ package com.example.servicediscovery;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.netflix.eureka.server.EnableEurekaServer;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableEurekaServer
+// registry snapshots, see RegistrySnapshot
+@EnableScheduling
 public class ServiceDiscoveryApplication {
 
     public static void main(String[] args) {
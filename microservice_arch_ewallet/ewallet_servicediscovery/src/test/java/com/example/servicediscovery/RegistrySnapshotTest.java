@@ -0,0 +1,88 @@
+package com.example.servicediscovery;
+
+import com.netflix.appinfo.DataCenterInfo;
+import com.netflix.appinfo.InstanceInfo;
+import com.netflix.appinfo.InstanceInfo.InstanceStatus;
+import com.netflix.appinfo.MyDataCenterInfo;
+import com.netflix.discovery.shared.Application;
+import com.netflix.discovery.shared.Applications;
+import com.netflix.eureka.registry.PeerAwareInstanceRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RegistrySnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private PeerAwareInstanceRegistry registry;
+    private RegistrySnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(PeerAwareInstanceRegistry.class);
+        snapshot = new RegistrySnapshot(registry, directory.resolve("eureka-registry.json"), Duration.ofMinutes(2));
+    }
+
+    @Test
+    void restoresTheInstancesThatWereUp() throws Exception {
+        Application wallet = new Application("WALLET");
+        wallet.addInstance(instance("wallet-1", InstanceStatus.UP));
+        wallet.addInstance(instance("wallet-2", InstanceStatus.UP));
+        wallet.addInstance(instance("wallet-3", InstanceStatus.STARTING));
+        Applications applications = new Applications();
+        applications.addApplication(wallet);
+        snapshot.save(applications);
+        // wallet-2 registered again before the snapshot was restored
+        when(registry.getInstanceByAppAndId("WALLET", "wallet-2")).thenReturn(instance("wallet-2", InstanceStatus.UP));
+
+        assertEquals(1, snapshot.restore(Instant.now()));
+
+        verify(registry).register(argThat(instance -> instance.getId().equals("wallet-1")), eq(true));
+        verify(registry, times(1)).register(any(), anyBoolean());
+    }
+
+    @Test
+    void staleSnapshotIsNotRestored() throws Exception {
+        Application wallet = new Application("WALLET");
+        wallet.addInstance(instance("wallet-1", InstanceStatus.UP));
+        Applications applications = new Applications();
+        applications.addApplication(wallet);
+        snapshot.save(applications);
+
+        assertEquals(0, snapshot.restore(Instant.now().plus(Duration.ofMinutes(5))));
+        verify(registry, never()).register(any(), anyBoolean());
+    }
+
+    @Test
+    void emptyRegistryDoesNotReplaceTheSnapshot() throws Exception {
+        snapshot.save(new Applications());
+
+        assertFalse(Files.exists(directory.resolve("eureka-registry.json")));
+        assertEquals(0, snapshot.restore(Instant.now()));
+    }
+
+    private static InstanceInfo instance(String instanceId, InstanceStatus status) {
+        return InstanceInfo.Builder.newBuilder()
+                .setAppName("WALLET")
+                .setInstanceId(instanceId)
+                .setHostName("localhost")
+                .setIPAddr("127.0.0.1")
+                .setPort(8082)
+                .setStatus(status)
+                .setDataCenterInfo(new MyDataCenterInfo(DataCenterInfo.Name.MyOwn))
+                .build();
+    }
+}
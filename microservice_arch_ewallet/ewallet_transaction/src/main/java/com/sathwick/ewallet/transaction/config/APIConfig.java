@@ -1,17 +1,47 @@
 package com.sathwick.ewallet.transaction.config;
 
 
+import com.sathwick.ewallet.common.discovery.DiscoveryWarmUp;
+import com.sathwick.ewallet.common.http.HopSettings;
+import com.sathwick.ewallet.common.http.PooledHttpClients;
+import com.sathwick.ewallet.common.loadbalancer.PeakEwmaLoadBalancing;
+import com.sathwick.ewallet.common.resilience.Resilience;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
 
 @Configuration
+// @LoadBalanced clients pick instances by latency and requests in flight instead of round robin,
+// the instance turns UP in Eureka once the instances of the services it calls are known,
+// calls to the wallet service go through a bulkhead, circuit breaker and adaptive timeout
+@Import({PeakEwmaLoadBalancing.class, DiscoveryWarmUp.class, Resilience.class})
 public class APIConfig {
 
+    // Transaction -> wallet hop
+    @Bean
+    public HopSettings walletHopSettings(@Value("${ewallet.http.connect-timeout:1s}") Duration connectTimeout,
+                                         @Value("${ewallet.http.response-timeout:5s}") Duration responseTimeout,
+                                         @Value("${ewallet.http.max-connections:200}") int maxConnections,
+                                         @Value("${ewallet.http.max-connections-per-route:100}") int maxConnectionsPerRoute,
+                                         @Value("${ewallet.http.idle-timeout:30s}") Duration idleTimeout) {
+        return new HopSettings(connectTimeout, responseTimeout, maxConnections, maxConnectionsPerRoute, idleTimeout);
+    }
+
+    @Bean
+    @LoadBalanced
+    public RestTemplate getRestTemplate(HopSettings walletHopSettings){
+        return new RestTemplate(PooledHttpClients.requestFactory(walletHopSettings));
+    }
+
     @Bean
     @LoadBalanced
-    public RestTemplate getRestTemplate(){
-        return new RestTemplate();
+    public WebClient.Builder loadBalancedWebClientBuilder(HopSettings walletHopSettings){
+        return WebClient.builder().clientConnector(PooledHttpClients.connector("wallet", walletHopSettings));
     }
 }
@@ -0,0 +1,24 @@
+package com.sathwick.ewallet.transaction.config;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.idempotency.IdempotencyStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+
+@Configuration
+@EnableScheduling
+public class IdempotencyConfig {
+
+    // In memory tier is bounded by entry count, roughly 200 bytes per key
+    @Bean
+    public IdempotencyCache<Boolean> idempotencyCache(@Value("${ewallet.idempotency.max-size:250000}") long maximumSize,
+                                                      @Value("${ewallet.idempotency.ttl:15m}") Duration ttl,
+                                                      ObjectProvider<IdempotencyStore<Boolean>> store) {
+        return new IdempotencyCache<>(maximumSize, ttl, store.getIfAvailable());
+    }
+}
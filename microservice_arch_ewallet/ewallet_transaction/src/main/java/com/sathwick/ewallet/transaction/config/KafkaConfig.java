@@ -1,13 +1,27 @@
 package com.sathwick.ewallet.transaction.config;
 
-import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.StringSerializer;
+import com.sathwick.ewallet.common.kafka.KafkaProducers;
+import com.sathwick.ewallet.common.kafka.OutboxRelay;
+import com.sathwick.ewallet.common.kafka.ProducerProfile;
+import com.sathwick.ewallet.common.kafka.ProducerSettings;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -24,21 +38,55 @@ public class KafkaConfig {
     // 2. Configure a template via which my code can communicate to kafka
     // 3. Send a kafka Event.
 
-    public Map<String, Object> getKafkaProducerConfig(){
-        Map<String, Object> configs = new HashMap<>();
-        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        return configs;
+    // Profile and overrides come from ewallet.kafka.producer.*, see ProducerProfile for what they set
+    @Bean
+    public ProducerSettings producerSettings(@Value("${ewallet.kafka.bootstrap-servers:localhost:9092}") String bootstrapServers,
+                                             @Value("${spring.application.name}") String clientId,
+                                             @Value("${ewallet.kafka.producer.profile:THROUGHPUT}") ProducerProfile profile,
+                                             @Value("${ewallet.kafka.producer.linger-ms:#{null}}") Integer lingerMs,
+                                             @Value("${ewallet.kafka.producer.batch-size:#{null}}") Integer batchSize,
+                                             @Value("${ewallet.kafka.producer.compression-type:}") String compressionType){
+        return new ProducerSettings(bootstrapServers, clientId, profile, lingerMs, batchSize, compressionType);
+    }
+
+    @Bean
+    public ProducerFactory<String, byte[]> kafkaProducerFactory(ProducerSettings producerSettings,
+                                                                ObjectProvider<MeterRegistry> meterRegistry){
+        return KafkaProducers.producerFactory(producerSettings, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> kafkaProducerFactory){
+        return new KafkaTemplate<>(kafkaProducerFactory);
     }
 
     @Bean
-    public ProducerFactory<String, String> kafkaProducerFactory(){
-        return new DefaultKafkaProducerFactory<String, String>(getKafkaProducerConfig());
+    public OutboxRelay<OutboxEvent> outboxRelay(OutboxEventRepository outboxEventRepository,
+                                                KafkaTemplate<String, byte[]> kafkaTemplate,
+                                                TransactionOperations transactionOperations,
+                                                @Value("${ewallet.outbox.batch-size:500}") int batchSize,
+                                                @Value("${ewallet.outbox.send-timeout:30s}") Duration sendTimeout){
+        return new OutboxRelay<>(outboxEventRepository, kafkaTemplate, transactionOperations, batchSize, sendTimeout);
     }
 
+    // Batch listener for the wallet replies of transfer sagas, one poll becomes one DB transaction.
+    // Offsets are committed by the listener (manual ack) only after the sagas are updated.
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate(){
-        return new KafkaTemplate<String, String>(kafkaProducerFactory());
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> sagaReplyListenerContainerFactory(
+            @Value("${ewallet.kafka.bootstrap-servers:localhost:9092}") String bootstrapServers,
+            @Value("${ewallet.saga.reply.max-poll-records:500}") int maxPollRecords,
+            @Value("${ewallet.saga.reply.concurrency:1}") int concurrency){
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
     }
-}
\ No newline at end of file
+}
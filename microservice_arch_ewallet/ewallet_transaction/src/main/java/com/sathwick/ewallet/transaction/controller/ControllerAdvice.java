@@ -0,0 +1,54 @@
+package com.sathwick.ewallet.transaction.controller;
+
+import com.sathwick.ewallet.common.resilience.TargetUnavailableException;
+import com.sathwick.ewallet.transaction.service.saga.TransfersDisabledException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+public class ControllerAdvice {
+
+    // how long an open circuit to the wallet service rejects calls, the Retry-After of those rejections
+    @Value("${ewallet.resilience.wallet.open-duration:${ewallet.resilience.open-duration:10s}}")
+    Duration openDuration;
+
+    // The wallet service is overloaded or failing, rejected without waiting for it, the client should retry later
+    @ExceptionHandler(TargetUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleTargetUnavailableException(TargetUnavailableException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_SERVICE_UNAVAILABLE_EXCEPTION");
+        errorsMap.put("message", e.getMessage());
+        long retryAfter = e.getReason() == TargetUnavailableException.Reason.CIRCUIT_OPEN ? Math.max(1, openDuration.toSeconds()) : 1;
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(errorsMap);
+    }
+
+    // The wallet service could not apply the transaction (503), passed on so the client retries with the same key
+    @ExceptionHandler({HttpServerErrorException.ServiceUnavailable.class, WebClientResponseException.ServiceUnavailable.class})
+    public ResponseEntity<Map<String, String>> handleWalletUnavailable(RuntimeException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_SERVICE_UNAVAILABLE_EXCEPTION");
+        errorsMap.put("message", "Wallet service could not apply the transaction, try again later");
+        return new ResponseEntity<>(errorsMap, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Sagas are off (ewallet.saga.enabled=false), nothing would answer their commands
+    @ExceptionHandler(TransfersDisabledException.class)
+    public ResponseEntity<Map<String, String>> handleTransfersDisabledException(TransfersDisabledException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_TRANSFERS_DISABLED_EXCEPTION");
+        errorsMap.put("message", e.getMessage());
+        return new ResponseEntity<>(errorsMap, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
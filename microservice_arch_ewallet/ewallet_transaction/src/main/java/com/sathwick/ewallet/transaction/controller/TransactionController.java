@@ -1,17 +1,32 @@
 package com.sathwick.ewallet.transaction.controller;
 
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.service.LedgerService;
+import com.sathwick.ewallet.transaction.domain.TransferSaga;
 import com.sathwick.ewallet.transaction.service.TransactionService;
+import com.sathwick.ewallet.transaction.service.resource.StatementResponse;
 import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
+import com.sathwick.ewallet.transaction.service.resource.TransferStatusResponse;
+import com.sathwick.ewallet.transaction.service.saga.TransferSagaOrchestrator;
+import com.sathwick.ewallet.transaction.service.saga.TransfersDisabledException;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @Slf4j
 public class TransactionController {
@@ -19,10 +34,65 @@ public class TransactionController {
     @Autowired
     TransactionService transactionService;
 
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    IdempotencyCache<Boolean> idempotencyCache;
+
+    @Autowired
+    TransferSagaOrchestrator transferSagaOrchestrator;
+
+    // false while the wallet service runs with ewallet.wallet.engine.enabled, its engine doesn't run saga commands
+    @Value("${ewallet.saga.enabled:true}")
+    boolean transfersEnabled;
+
     @PostMapping("/transactions/{user-id}")
-    public ResponseEntity<Boolean> createTransaction(@PathVariable("user-id") Long senderId, @RequestBody @Valid TransactionRequest transactionRequest) {
+    // Async response, the request thread is released while the wallet call is in flight
+    public CompletableFuture<ResponseEntity<Boolean>> createTransaction(@PathVariable("user-id") Long senderId,
+                                                                        @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                                                        @RequestBody @Valid TransactionRequest transactionRequest) {
         log.info("Transaction initiated for user "+senderId);
-        Boolean result = transactionService.performTransaction(senderId, transactionRequest);
-        return new ResponseEntity<>(result, HttpStatus.CREATED);
+        // keys are scoped to the sender, a retry with the same key gets the first result without calling the wallet again
+        String key = idempotencyKey == null ? null : senderId + ":" + idempotencyKey;
+        return idempotencyCache.executeAsync(key, () -> transactionService.performTransactionAsync(senderId, transactionRequest, key))
+                .thenApply(result -> new ResponseEntity<>(result, HttpStatus.CREATED));
+    }
+
+    // Starts a transfer saga and answers 202 right away, the outcome is polled from the Location.
+    // The saga row is the idempotency record: a retry with the same key gets the transfer the first request started
+    @PostMapping("/transfers/{user-id}")
+    public ResponseEntity<TransferStatusResponse> startTransfer(@PathVariable("user-id") Long senderId,
+                                                                @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                                                @RequestBody @Valid TransactionRequest transactionRequest) {
+        if (!transfersEnabled) {
+            throw new TransfersDisabledException();
+        }
+        log.info("Transfer initiated for user "+senderId);
+        String key = idempotencyKey == null ? null : senderId + ":" + idempotencyKey;
+        TransferSaga saga = transferSagaOrchestrator.start(senderId, transactionRequest, key);
+        return ResponseEntity.accepted()
+                .location(URI.create("/transfers/" + saga.getId()))
+                .body(saga.toTransferStatusResponse());
+    }
+
+    @GetMapping("/transfers/{transfer-id}")
+    public ResponseEntity<TransferStatusResponse> getTransfer(@PathVariable("transfer-id") Long transferId) {
+        return transferSagaOrchestrator.find(transferId)
+                .map(saga -> new ResponseEntity<>(saga.toTransferStatusResponse(), HttpStatus.OK))
+                .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @GetMapping("/transactions/{user-id}/statement")
+    public ResponseEntity<StatementResponse> getStatement(@PathVariable("user-id") Long userId,
+                                                          @RequestParam(value = "beforeId", required = false) Long beforeId,
+                                                          @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        return new ResponseEntity<>(ledgerService.getStatement(userId, beforeId, limit), HttpStatus.OK);
+    }
+
+    // Recovery after an incident: resets the balance snapshot of the user from the ledger
+    @PostMapping("/transactions/{user-id}/balance/rebuild")
+    public ResponseEntity<Money> rebuildBalance(@PathVariable("user-id") Long userId) {
+        return new ResponseEntity<>(ledgerService.rebuildBalance(userId), HttpStatus.OK);
     }
 }
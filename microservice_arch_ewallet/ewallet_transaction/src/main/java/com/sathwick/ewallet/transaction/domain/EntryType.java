@@ -0,0 +1,9 @@
+package com.sathwick.ewallet.transaction.domain;
+
+public enum EntryType {
+    DEBIT,
+    CREDIT,
+    // zero entry that starts the history of a user, written when the ledger first sees them, one per user at most.
+    // The entry_type column is 6 characters wide
+    OPEN
+}
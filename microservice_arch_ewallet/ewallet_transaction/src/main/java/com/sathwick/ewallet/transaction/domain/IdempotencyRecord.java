@@ -0,0 +1,27 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+// Result of a transaction request by idempotency key, see JpaIdempotencyStore
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idx_idempotency_record_created_at", columnList = "createdAt"))
+@Builder
+public class IdempotencyRecord {
+    @Id
+    @Column(length = 128)
+    private String idempotencyKey;
+    private Boolean result;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+    // null until persisted, makes Spring Data insert without selecting first
+    @Version
+    private Long version;
+}
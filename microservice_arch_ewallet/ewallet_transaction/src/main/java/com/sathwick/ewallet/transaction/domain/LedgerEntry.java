@@ -0,0 +1,67 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.common.money.MoneyConverter;
+import com.sathwick.ewallet.transaction.service.resource.LedgerEntryResponse;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One side of a transfer. Every transfer writes a DEBIT and a CREDIT row with the same transferId, rows are never
+ * updated or deleted. Deposits and withdrawals are booked against {@link #EXTERNAL_ACCOUNT}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Immutable
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_user_id", columnList = "userId, id"),
+        @Index(name = "idx_ledger_entry_transfer_id", columnList = "transferId")
+})
+@Builder
+public class LedgerEntry {
+    // money coming in or going out of the system, it has no wallet and no balance snapshot
+    public static final long EXTERNAL_ACCOUNT = 0L;
+
+    // pooled sequence: ids are handed out in blocks without a round trip per row, which keeps JDBC batching on
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entry_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false, length = 36)
+    private String transferId;
+    @Column(nullable = false)
+    private Long userId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 6)
+    private EntryType entryType;
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money amount;
+    // running balance of the user right after this entry, null for the external account
+    @Convert(converter = MoneyConverter.class)
+    private Money balanceAfter;
+    private String transactionType;
+    private String description;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    public LedgerEntryResponse toLedgerEntryResponse(){
+        return LedgerEntryResponse.builder()
+                .entryId(id)
+                .transferId(transferId)
+                .entryType(entryType.name())
+                .amount(amount)
+                .balanceAfter(balanceAfter)
+                .transactionType(transactionType)
+                .description(description)
+                .createdAt(createdAt)
+                .build();
+    }
+}
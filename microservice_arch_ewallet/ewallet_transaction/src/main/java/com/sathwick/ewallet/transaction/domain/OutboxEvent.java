@@ -0,0 +1,36 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import com.sathwick.ewallet.common.kafka.OutboxRecord;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kafka record waiting to be published. Written in the same DB transaction as the change it announces and
+ * removed by OutboxRelay once the broker acknowledged it.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "outbox_event")
+@Builder
+public class OutboxEvent implements OutboxRecord {
+    // pooled sequence like LedgerEntry, the events of a ledger batch are inserted with one JDBC batch
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    private String topic;
+    private String messageKey;
+    // encoded record value, sent as is
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
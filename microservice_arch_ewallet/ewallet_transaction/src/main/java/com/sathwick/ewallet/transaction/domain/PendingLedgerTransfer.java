@@ -0,0 +1,59 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.common.money.MoneyConverter;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transfer of {@code POST /transactions} the wallet service applied and the ledger doesn't have yet. Written
+ * before the ledger entries are queued, deleted in the ledger's DB transaction, the ones left are written by the
+ * sweep of TransactionServiceImpl.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "pending_ledger_transfer", indexes = @Index(name = "idx_pending_ledger_transfer_created_at", columnList = "createdAt"))
+@Builder
+public class PendingLedgerTransfer {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pending_ledger_transfer_seq")
+    @SequenceGenerator(name = "pending_ledger_transfer_seq", sequenceName = "pending_ledger_transfer_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    private Long senderId;
+    @Column(nullable = false)
+    private Long receiverId;
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
+    private String description;
+    private String transactionType;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    public static PendingLedgerTransfer of(WalletTransactionRequest request) {
+        return PendingLedgerTransfer.builder()
+                .senderId(request.getSenderId())
+                .receiverId(request.getReceiverId())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .transactionType(request.getTransactionType())
+                .build();
+    }
+
+    public WalletTransactionRequest toWalletTransactionRequest(){
+        return WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .description(description)
+                .transactionType(transactionType)
+                .build();
+    }
+}
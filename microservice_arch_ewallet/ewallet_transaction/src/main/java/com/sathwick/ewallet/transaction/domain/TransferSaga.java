@@ -0,0 +1,84 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.common.money.MoneyConverter;
+import com.sathwick.ewallet.transaction.service.resource.TransferStatusResponse;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A transfer started with {@code POST /transfers/{user-id}}. The id is the transfer id of the wallet commands and
+ * replies, the status moves as the replies come in.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "transfer_saga", indexes = {
+        @Index(name = "idx_transfer_saga_status_deadline", columnList = "status, deadline"),
+        @Index(name = "idx_transfer_saga_ledger_pending", columnList = "ledgerPending, updatedAt")
+})
+@Builder
+public class TransferSaga {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transfer_saga_seq")
+    @SequenceGenerator(name = "transfer_saga_seq", sequenceName = "transfer_saga_seq", allocationSize = 50)
+    private Long id;
+    @Column(nullable = false)
+    private Long senderId;
+    @Column(nullable = false)
+    private Long receiverId;
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
+    private String description;
+    private String transactionType;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TransferStatus status;
+    // Idempotency-Key scoped to the sender, a retried POST gets the saga the first one started
+    @Column(unique = true, length = 128)
+    private String idempotencyKey;
+    // when the reply to the last command is due, null once the saga is final
+    private LocalDateTime deadline;
+    // CANCEL commands sent so far
+    private int attempts;
+    // money moved (COMPLETED, COMPENSATION_FAILED) and the ledger doesn't have the entries yet, cleared in the
+    // ledger's DB transaction
+    @Column(nullable = false)
+    private boolean ledgerPending;
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+    @Version
+    private Long version;
+
+    public WalletTransactionRequest toWalletTransactionRequest(){
+        return WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .description(description)
+                .transactionType(transactionType)
+                .build();
+    }
+
+    public TransferStatusResponse toTransferStatusResponse(){
+        return TransferStatusResponse.builder()
+                .transferId(id)
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType(transactionType)
+                .status(status.name())
+                .createdAt(createdAt)
+                .updatedAt(updatedAt)
+                .build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.transaction.domain;
+
+// States of a TransferSaga, see TransferSagaOrchestrator for the transitions
+public enum TransferStatus {
+    // EXECUTE sent to the wallet service, waiting for its reply
+    PENDING,
+    COMPLETED,
+    // rejected by the wallet service, nothing was moved
+    FAILED,
+    // no reply in time, CANCEL sent until the wallet service confirms the transfer is not in effect
+    COMPENSATING,
+    COMPENSATED,
+    // the reverse transfer was rejected (the receiver spent the money), needs manual correction
+    COMPENSATION_FAILED;
+
+    public boolean isFinal() {
+        return this != PENDING && this != COMPENSATING;
+    }
+}
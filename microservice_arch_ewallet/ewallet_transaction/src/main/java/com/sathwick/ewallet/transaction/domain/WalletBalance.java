@@ -0,0 +1,34 @@
+package com.sathwick.ewallet.transaction.domain;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.common.money.MoneyConverter;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running balance of a user according to the ledger, as of {@code lastEntryId}. Kept up to date in the same
+ * transaction as the ledger rows so reading a balance never has to sum the history.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "wallet_balance")
+@Builder
+public class WalletBalance {
+    @Id
+    private Long userId;
+    @Convert(converter = MoneyConverter.class)
+    @Column(nullable = false)
+    private Money balance;
+    private Long lastEntryId;
+    // also tells Spring Data whether the row is new, the id is assigned by us
+    @Version
+    private Long version;
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
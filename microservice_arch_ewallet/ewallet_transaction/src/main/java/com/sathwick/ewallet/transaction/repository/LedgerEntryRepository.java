@@ -0,0 +1,28 @@
+package com.sathwick.ewallet.transaction.repository;
+
+import com.sathwick.ewallet.transaction.domain.LedgerEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    // newest first, served by the (userId, id) index
+    List<LedgerEntry> findByUserIdOrderByIdDesc(Long userId, Pageable pageable);
+
+    List<LedgerEntry> findByUserIdAndIdLessThanOrderByIdDesc(Long userId, Long beforeId, Pageable pageable);
+
+    Optional<LedgerEntry> findFirstByUserIdOrderByIdDesc(Long userId);
+
+    List<LedgerEntry> findByTransferId(String transferId);
+
+    // Balance of the user in minor units as of lastEntryId: DEBIT entries count negative, CREDIT and OPEN positive
+    @Query(value = "SELECT COALESCE(SUM(CASE WHEN entry_type = 'DEBIT' THEN -amount ELSE amount END), 0) FROM ledger_entry " +
+            "WHERE user_id = :userId AND id <= :lastEntryId", nativeQuery = true)
+    Long sumBalance(@Param("userId") Long userId, @Param("lastEntryId") Long lastEntryId);
+}
@@ -0,0 +1,26 @@
+package com.sathwick.ewallet.transaction.repository;
+
+import com.sathwick.ewallet.common.kafka.OutboxStore;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long>, OutboxStore<OutboxEvent> {
+    // Oldest events first, locked (SELECT ... FOR UPDATE) so a second relay instance waits instead of sending them again
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM OutboxEvent e ORDER BY e.id")
+    List<OutboxEvent> lockNextBatch(Pageable pageable);
+
+    @Override
+    default List<OutboxEvent> lockOldest(int limit) {
+        return lockNextBatch(PageRequest.of(0, limit));
+    }
+}
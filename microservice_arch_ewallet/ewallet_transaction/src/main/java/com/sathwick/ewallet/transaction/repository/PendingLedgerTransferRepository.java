@@ -0,0 +1,24 @@
+package com.sathwick.ewallet.transaction.repository;
+
+import com.sathwick.ewallet.transaction.domain.PendingLedgerTransfer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PendingLedgerTransferRepository extends JpaRepository<PendingLedgerTransfer, Long> {
+    // Transfers still waiting for their ledger entries although they were marked before the given time
+    @Query("SELECT p FROM PendingLedgerTransfer p WHERE p.createdAt < :before ORDER BY p.id")
+    List<PendingLedgerTransfer> findCreatedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // 1 for the one caller that gets to write the ledger entries of the transfer, 0 once they are written
+    @Modifying
+    @Query("DELETE FROM PendingLedgerTransfer p WHERE p.id = :id")
+    int claim(@Param("id") Long id);
+}
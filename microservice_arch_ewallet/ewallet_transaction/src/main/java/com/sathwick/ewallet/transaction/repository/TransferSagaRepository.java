@@ -0,0 +1,43 @@
+package com.sathwick.ewallet.transaction.repository;
+
+import com.sathwick.ewallet.transaction.domain.TransferSaga;
+import com.sathwick.ewallet.transaction.domain.TransferStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TransferSagaRepository extends JpaRepository<TransferSaga, Long> {
+    Optional<TransferSaga> findByIdempotencyKey(String idempotencyKey);
+
+    // Both lock in id order, reply batches and the timeout sweep can't deadlock on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TransferSaga s WHERE s.id IN :ids ORDER BY s.id")
+    List<TransferSaga> lockAll(@Param("ids") Collection<Long> ids);
+
+    // Sagas in one of the statuses whose reply was due before the given time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TransferSaga s WHERE s.status IN :statuses AND s.deadline < :now ORDER BY s.id")
+    List<TransferSaga> lockOverdue(@Param("statuses") Collection<TransferStatus> statuses,
+                                   @Param("now") LocalDateTime now,
+                                   Pageable pageable);
+
+    // Sagas whose ledger entries are not written yet although the status changed before the given time
+    @Query("SELECT s FROM TransferSaga s WHERE s.ledgerPending = true AND s.updatedAt < :before ORDER BY s.id")
+    List<TransferSaga> findLedgerPending(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // 1 for the one caller that gets to write the ledger entries of the saga, 0 once they are written
+    @Modifying
+    @Query("UPDATE TransferSaga s SET s.ledgerPending = false WHERE s.id = :id AND s.ledgerPending = true")
+    int claimLedgerPending(@Param("id") Long id);
+}
@@ -0,0 +1,20 @@
+package com.sathwick.ewallet.transaction.repository;
+
+import com.sathwick.ewallet.transaction.domain.WalletBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface WalletBalanceRepository extends JpaRepository<WalletBalance, Long> {
+    // SELECT ... FOR UPDATE in user id order, two ledger batches touching the same users can't deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM WalletBalance b WHERE b.userId IN :userIds ORDER BY b.userId")
+    List<WalletBalance> lockAll(@Param("userIds") Collection<Long> userIds);
+}
@@ -0,0 +1,28 @@
+package com.sathwick.ewallet.transaction.service;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.service.resource.StatementResponse;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+public interface LedgerService {
+    // Appends the DEBIT and CREDIT entries of a completed wallet transaction, completes with the transfer id
+    CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest);
+
+    // Same, the outbox events are committed in the same DB transaction as the entries
+    CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest, List<OutboxEvent> outboxEvents);
+
+    // Same, the claim runs in the DB transaction of the entries and false skips them (completes with null), so a
+    // transfer retried until its claim succeeds is recorded once
+    CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest, BooleanSupplier claim);
+
+    // Latest entries of the user, older than beforeId when it is given
+    StatementResponse getStatement(Long userId, Long beforeId, int limit);
+
+    // Resets the balance snapshot of the user to the sum of its ledger entries
+    Money rebuildBalance(Long userId);
+}
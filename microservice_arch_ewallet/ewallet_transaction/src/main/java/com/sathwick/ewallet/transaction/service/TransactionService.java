@@ -2,6 +2,13 @@ package com.sathwick.ewallet.transaction.service;
 
 import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface TransactionService {
-    boolean performTransaction(Long senderId, TransactionRequest transactionRequest);
+    default boolean performTransaction(Long senderId, TransactionRequest transactionRequest) {
+        return performTransactionAsync(senderId, transactionRequest, null).join();
+    }
+
+    // idempotencyKey is passed on to the wallet service so its retries are deduplicated as well, may be null
+    CompletableFuture<Boolean> performTransactionAsync(Long senderId, TransactionRequest transactionRequest, String idempotencyKey);
 }
@@ -0,0 +1,51 @@
+package com.sathwick.ewallet.transaction.service.client;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+// Blocks the calling thread for the whole wallet call, the returned future is always complete
+@Component
+@ConditionalOnProperty(name = "ewallet.http.client-mode", havingValue = "blocking", matchIfMissing = true)
+public class RestTemplateWalletClient implements WalletClient {
+
+    @Autowired
+    RestTemplate restTemplate;
+
+    @Autowired
+    ResilientTargets resilientTargets;
+
+    @Override
+    public CompletableFuture<Boolean> performTransaction(WalletTransactionRequest walletTransactionRequest, String idempotencyKey) {
+        HttpHeaders headers = new HttpHeaders();
+        if (idempotencyKey != null) {
+            headers.set(IdempotencyCache.HEADER, idempotencyKey);
+        }
+        // runs on this thread, holding one of the wallet bulkhead slots
+        return resilientTargets.target(TARGET).call(() -> {
+            try {
+                // By default, the RestTemplate throws an exception for 4xx and 5xx status codes.
+                ResponseEntity<Boolean> response = restTemplate.postForEntity(TRANSACTION_URL, new HttpEntity<>(walletTransactionRequest, headers), Boolean.class);
+                return CompletableFuture.completedFuture(response.getStatusCode().is2xxSuccessful());
+            } catch (HttpClientErrorException exception) {
+                if (exception.getStatusCode() == HttpStatus.BAD_REQUEST) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                return CompletableFuture.failedFuture(exception);
+            } catch (RuntimeException exception) {
+                return CompletableFuture.failedFuture(exception);
+            }
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.transaction.service.client;
+
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Call to {@code POST http://WALLET/wallet/transaction}. Completes with {@code true} when the wallets were updated,
+ * {@code false} when the wallet service refused the transaction (400) and exceptionally for anything else.
+ * The implementation is picked with {@code ewallet.http.client-mode}. Both go through the {@link #TARGET} bulkhead,
+ * circuit breaker and adaptive timeout, a rejected or timed out call fails with a TargetUnavailableException.
+ */
+public interface WalletClient {
+    String TRANSACTION_URL = "http://WALLET/wallet/transaction";
+    // ResilientTargets name
+    String TARGET = "wallet";
+
+    CompletableFuture<Boolean> performTransaction(WalletTransactionRequest walletTransactionRequest, String idempotencyKey);
+}
@@ -0,0 +1,50 @@
+package com.sathwick.ewallet.transaction.service.client;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.resilience.ResilientTarget;
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+
+// Non-blocking, no thread waits for the wallet service while the call is in flight
+@Component
+@ConditionalOnProperty(name = "ewallet.http.client-mode", havingValue = "reactive")
+public class WebClientWalletClient implements WalletClient {
+
+    private final WebClient webClient;
+    private final ResilientTarget wallet;
+
+    @Autowired
+    public WebClientWalletClient(WebClient.Builder loadBalancedWebClientBuilder, ResilientTargets resilientTargets) {
+        this.webClient = loadBalancedWebClientBuilder.build();
+        this.wallet = resilientTargets.target(TARGET);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> performTransaction(WalletTransactionRequest walletTransactionRequest, String idempotencyKey) {
+        // cancelling the future on timeout cancels the request
+        return wallet.call(() -> webClient.post()
+                .uri(TRANSACTION_URL)
+                .headers(headers -> {
+                    if (idempotencyKey != null) {
+                        headers.set(IdempotencyCache.HEADER, idempotencyKey);
+                    }
+                })
+                .bodyValue(walletTransactionRequest)
+                .retrieve()
+                .toBodilessEntity()
+                .map(response -> response.getStatusCode().is2xxSuccessful())
+                .onErrorResume(WebClientResponseException.class, exception -> exception.getStatusCode() == HttpStatus.BAD_REQUEST
+                        ? Mono.just(false)
+                        : Mono.error(exception))
+                .toFuture());
+    }
+}
@@ -0,0 +1,48 @@
+package com.sathwick.ewallet.transaction.service.idempotency;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyStore;
+import com.sathwick.ewallet.transaction.domain.IdempotencyRecord;
+import com.sathwick.ewallet.transaction.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Database tier of the transaction idempotency cache, enabled with {@code ewallet.idempotency.store=jpa}. Keeps
+ * results for {@code ewallet.idempotency.store-retention} so retries that reach another instance, or come after
+ * a restart, still get the first result.
+ */
+@Component
+@ConditionalOnProperty(name = "ewallet.idempotency.store", havingValue = "jpa")
+@Slf4j
+public class JpaIdempotencyStore implements IdempotencyStore<Boolean> {
+
+    @Autowired
+    IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Value("${ewallet.idempotency.store-retention:24h}")
+    private Duration retention;
+
+    @Override
+    public Optional<Boolean> find(String key) {
+        return idempotencyRecordRepository.findById(key).map(IdempotencyRecord::getResult);
+    }
+
+    @Override
+    public void save(String key, Boolean result) {
+        idempotencyRecordRepository.save(IdempotencyRecord.builder().idempotencyKey(key).result(result).build());
+    }
+
+    @Scheduled(fixedDelayString = "${ewallet.idempotency.store-cleanup-interval:PT10M}")
+    public void deleteExpired() {
+        int deleted = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention));
+        log.info("Deleted " + deleted + " expired idempotency records");
+    }
+}
@@ -0,0 +1,84 @@
+package com.sathwick.ewallet.transaction.service.impl;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.LedgerEntry;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.WalletBalance;
+import com.sathwick.ewallet.transaction.repository.LedgerEntryRepository;
+import com.sathwick.ewallet.transaction.repository.WalletBalanceRepository;
+import com.sathwick.ewallet.transaction.service.LedgerService;
+import com.sathwick.ewallet.transaction.service.ledger.LedgerWriter;
+import com.sathwick.ewallet.transaction.service.resource.StatementResponse;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+@Service
+@Slf4j
+public class LedgerServiceImpl implements LedgerService {
+
+    private static final int MAX_STATEMENT_SIZE = 500;
+
+    @Autowired
+    LedgerWriter ledgerWriter;
+
+    @Autowired
+    LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    WalletBalanceRepository walletBalanceRepository;
+
+    @Override
+    public CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest) {
+        return ledgerWriter.submit(walletTransactionRequest);
+    }
+
+    @Override
+    public CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest, List<OutboxEvent> outboxEvents) {
+        return ledgerWriter.submit(walletTransactionRequest, outboxEvents);
+    }
+
+    @Override
+    public CompletableFuture<String> record(WalletTransactionRequest walletTransactionRequest, BooleanSupplier claim) {
+        return ledgerWriter.submit(walletTransactionRequest, claim);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StatementResponse getStatement(Long userId, Long beforeId, int limit) {
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_STATEMENT_SIZE)));
+        List<LedgerEntry> entries = beforeId == null
+                ? ledgerEntryRepository.findByUserIdOrderByIdDesc(userId, page)
+                : ledgerEntryRepository.findByUserIdAndIdLessThanOrderByIdDesc(userId, beforeId, page);
+        // balance comes from the snapshot, never from summing the history
+        Money balance = walletBalanceRepository.findById(userId).map(WalletBalance::getBalance).orElse(Money.ZERO);
+        return StatementResponse.builder()
+                .userId(userId)
+                .balance(balance)
+                .entries(entries.stream().map(LedgerEntry::toLedgerEntryResponse).toList())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public Money rebuildBalance(Long userId) {
+        // locked first so the ledger writer can't move the snapshot while we read the history
+        List<WalletBalance> locked = walletBalanceRepository.lockAll(List.of(userId));
+        // summed from the entries themselves (the opening entry included), not taken from a stored balanceAfter
+        Optional<LedgerEntry> latest = ledgerEntryRepository.findFirstByUserIdOrderByIdDesc(userId);
+        WalletBalance balance = locked.isEmpty() ? WalletBalance.builder().userId(userId).build() : locked.get(0);
+        balance.setBalance(latest.map(entry -> Money.ofMinorUnits(ledgerEntryRepository.sumBalance(userId, entry.getId()))).orElse(Money.ZERO));
+        balance.setLastEntryId(latest.map(LedgerEntry::getId).orElse(null));
+        walletBalanceRepository.save(balance);
+        log.info("Rebuilt ledger balance of user " + userId + " as of entry " + balance.getLastEntryId());
+        return balance.getBalance();
+    }
+}
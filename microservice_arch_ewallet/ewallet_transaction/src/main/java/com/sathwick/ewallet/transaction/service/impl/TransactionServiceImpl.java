@@ -1,38 +1,58 @@
 package com.sathwick.ewallet.transaction.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.PendingLedgerTransfer;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.PendingLedgerTransferRepository;
+import com.sathwick.ewallet.transaction.service.LedgerService;
 import com.sathwick.ewallet.transaction.service.TransactionService;
-import com.sathwick.ewallet.transaction.service.resource.NotificationRequest;
+import com.sathwick.ewallet.transaction.service.client.WalletClient;
+import com.sathwick.ewallet.transaction.service.outbox.TransferNotifications;
 import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
 import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.logging.log4j.util.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
 public class TransactionServiceImpl implements TransactionService {
 
     @Autowired
-    RestTemplate restTemplate;
+    WalletClient walletClient;
+
+    @Autowired
+    OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    LedgerService ledgerService;
+
+    @Autowired
+    TransferNotifications transferNotifications;
 
     @Autowired
-    KafkaTemplate kafkaTemplate;
+    PendingLedgerTransferRepository pendingLedgerTransferRepository;
 
-    @Value("${ewallet.notification.topic}")
-    private String notificationTopic;
+    @Autowired
+    TransactionOperations transactionOperations;
+
+    @Value("${ewallet.ledger.retry-delay:10s}")
+    Duration ledgerRetryDelay;
+
+    @Value("${ewallet.ledger.retry-batch-size:500}")
+    int ledgerRetryBatchSize;
 
-    ObjectMapper objectMapper = new ObjectMapper();
     @Override
-    public boolean performTransaction(Long senderId, TransactionRequest transactionRequest) {
+    public CompletableFuture<Boolean> performTransactionAsync(Long senderId, TransactionRequest transactionRequest, String idempotencyKey) {
         log.info("Initiating transaction for user "+senderId);
         log.info("Updating wallets");
         WalletTransactionRequest walletTransactionRequest = WalletTransactionRequest.builder()
@@ -43,68 +63,93 @@ public class TransactionServiceImpl implements TransactionService {
                 .transactionType(transactionRequest.getTransactionType())
                 .build();
 
-        String url = "http://WALLET/wallet/transaction";
-        try {
-            ResponseEntity<Boolean> response = restTemplate.postForEntity(url, walletTransactionRequest, Boolean.class);
-            // Note:  By default, the RestTemplate throws an exception for 4xx and 5xx status codes.
-            /*
-             * To handle this scenario properly, you have two options:
-             * 1. Catch the HttpClientErrorException.BadRequest: You can catch the HttpClientErrorException.BadRequest and handle the error case accordingly. This approach is useful if you need to perform specific error handling or logging for the 400 Bad Request status code.
-             * Check the response status code and boolean result: As mentioned in the previous response, you can check the response status code and the boolean result in the response body to handle both successful and unsuccessful cases without throwing an exception.
-             */
-            if (response.getStatusCode().is2xxSuccessful()) {
-                log.info("Transaction successful");
-                log.info("Initiated success notifications");
-                NotificationRequest senderNotificationRequest = new NotificationRequest();
-                senderNotificationRequest.setTransactionStatus("SUCCESS");
-                senderNotificationRequest.setUserId(senderId);
-                senderNotificationRequest.setAmount(transactionRequest.getAmount());
-                senderNotificationRequest.setUserType("SENDER");
-                // send event to Notification service to both sender and receiver
-                String content = Strings.EMPTY;
-                try {
-                    content = objectMapper.writeValueAsString(senderNotificationRequest);
-                    kafkaTemplate.send(notificationTopic, content);
-                } catch (JsonProcessingException e) {
-                    log.error("Error while serializing notification request " + e.getLocalizedMessage());
-                    throw new RuntimeException(e);
-                }
-                NotificationRequest receiverNotificationRequest = new NotificationRequest();
-                receiverNotificationRequest.setTransactionStatus("SUCCESS");
-                receiverNotificationRequest.setUserId(transactionRequest.getReceiverId());
-                receiverNotificationRequest.setAmount(transactionRequest.getAmount());
-                receiverNotificationRequest.setUserType("RECEIVER");
-                try {
-                    content = objectMapper.writeValueAsString(receiverNotificationRequest);
-                    kafkaTemplate.send(notificationTopic, content);
-                } catch (JsonProcessingException e) {
-                    log.error("Error while serializing notification request " + e.getLocalizedMessage());
-                    throw new RuntimeException(e);
-                }
-                return true;
+        // the wallet call decides, 400 from the wallet service comes back as false
+        return walletClient.performTransaction(walletTransactionRequest, idempotencyKey).thenCompose(success -> {
+            if (!success) {
+                onTransactionFailed(senderId, transactionRequest);
+                return CompletableFuture.completedFuture(false);
             }
-        }
-        catch (HttpClientErrorException exception) {
-            if (exception.getStatusCode() == HttpStatus.BAD_REQUEST) {
-                // send event to FAILURE event receiver
-                log.info("Transaction failed");
-                log.info("Initiated failure notifications");
-                NotificationRequest notificationRequest = new NotificationRequest();
-                notificationRequest.setTransactionStatus("FAILURE");
-                notificationRequest.setUserId(senderId);
-                notificationRequest.setAmount(transactionRequest.getAmount());
-                notificationRequest.setUserType("SENDER");
-                String content = Strings.EMPTY;
-                try {
-                    content = objectMapper.writeValueAsString(notificationRequest);
-                    kafkaTemplate.send(notificationTopic, content);
-                } catch (JsonProcessingException e) {
-                    log.error("Error while serializing notification request " + e.getLocalizedMessage());
-                    throw new RuntimeException(e);
-                }
-                return false;
+            log.info("Transaction successful");
+            List<OutboxEvent> notifications = successNotifications(senderId, transactionRequest);
+            PendingLedgerTransfer pending = markLedgerPending(walletTransactionRequest, notifications);
+            if (pending == null) {
+                // the success notifications are committed together with the ledger entries
+                return ledgerService.record(walletTransactionRequest, notifications).handle((transferId, e) -> {
+                    if (e != null) {
+                        // the wallets are already updated, don't fail the transaction because of the audit trail
+                        log.error("Unable to record transaction of user " + senderId + " in the ledger: " + e.getMessage());
+                        saveNotifications(notifications);
+                    } else {
+                        log.info("Recorded transfer " + transferId + " in the ledger");
+                    }
+                    return true;
+                });
             }
+            recordInLedger(pending);
+            return CompletableFuture.completedFuture(true);
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${ewallet.ledger.retry-interval-ms:1000}")
+    public void recordPendingLedgerEntries() {
+        try {
+            // older than the retry delay, the write queued after the wallet call had its chance
+            pendingLedgerTransferRepository.findCreatedBefore(LocalDateTime.now().minus(ledgerRetryDelay), PageRequest.of(0, ledgerRetryBatchSize))
+                    .forEach(this::recordInLedger);
+        } catch (Exception e) {
+            log.warn("Ledger sweep of transactions failed, retrying on the next round: {}", e.getMessage());
+        }
+    }
+
+    // The mark and the success notifications in one DB transaction, null when it failed and the ledger entries
+    // can't be retried
+    private PendingLedgerTransfer markLedgerPending(WalletTransactionRequest walletTransactionRequest, List<OutboxEvent> notifications) {
+        try {
+            return transactionOperations.execute(status -> {
+                outboxEventRepository.saveAll(notifications);
+                return pendingLedgerTransferRepository.save(PendingLedgerTransfer.of(walletTransactionRequest));
+            });
+        } catch (Exception e) {
+            log.warn("Unable to mark transaction of user " + walletTransactionRequest.getSenderId() + " as ledger pending: " + e.getMessage());
+            // ids handed out to the rolled back insert are not reused
+            notifications.forEach(event -> event.setId(null));
+            return null;
+        }
+    }
+
+    // Recorded once: the claim deletes the mark in the ledger's DB transaction, a later attempt finds it gone
+    private void recordInLedger(PendingLedgerTransfer pending) {
+        Long pendingId = pending.getId();
+        ledgerService.record(pending.toWalletTransactionRequest(), () -> pendingLedgerTransferRepository.claim(pendingId) == 1)
+                .whenComplete((transferId, e) -> {
+                    if (e != null) {
+                        log.error("Unable to record transaction " + pendingId + " in the ledger, the sweep retries it: " + e.getMessage());
+                    } else if (transferId != null) {
+                        log.info("Recorded transfer " + transferId + " in the ledger");
+                    }
+                });
+    }
+
+    private List<OutboxEvent> successNotifications(Long senderId, TransactionRequest transactionRequest) {
+        log.info("Initiated success notifications");
+        return transferNotifications.success(senderId, transactionRequest.getReceiverId(), transactionRequest.getAmount());
+    }
+
+    private void onTransactionFailed(Long senderId, TransactionRequest transactionRequest) {
+        // send event to FAILURE event receiver
+        log.info("Transaction failed");
+        log.info("Initiated failure notifications");
+        outboxEventRepository.save(transferNotifications.failure(senderId, transactionRequest.getAmount()));
+    }
+
+    // On their own when the ledger batch they were part of rolled back
+    private void saveNotifications(List<OutboxEvent> notifications) {
+        try {
+            // ids handed out to the rolled back insert are not reused
+            notifications.forEach(event -> event.setId(null));
+            outboxEventRepository.saveAll(notifications);
+        } catch (Exception e) {
+            log.error("Unable to queue success notifications: " + e.getMessage());
         }
-        return false;
     }
 }
@@ -0,0 +1,258 @@
+package com.sathwick.ewallet.transaction.service.ledger;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.EntryType;
+import com.sathwick.ewallet.transaction.domain.LedgerEntry;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.WalletBalance;
+import com.sathwick.ewallet.transaction.repository.LedgerEntryRepository;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.WalletBalanceRepository;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.transaction.util.TransactionType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Append only writer of the transaction ledger.
+ * <p>
+ * Completed transfers are queued and a single flusher thread writes up to {@code maxBatchSize} of them per DB
+ * transaction: the balance snapshots of the users involved are locked in user id order, two rows per transfer
+ * (DEBIT and CREDIT) are inserted with one JDBC batch and the snapshots are moved forward. Entry ids come from a
+ * pooled sequence and are handed out by this single thread, so within one instance they increase in the order the
+ * transfers were written. Outbox events submitted with a transfer are inserted in the same DB transaction, and so is
+ * its claim: a posting whose claim returns false was written already and is left out.
+ * <p>
+ * A user without a snapshot starts at zero with an OPEN entry, a wallet is empty when it is created. The wallet
+ * service is never asked while the snapshots are locked: its balance already contains transfers that are not recorded
+ * yet, and a slow call would hold up every ledger write. The OPEN entry marks where the history of the user starts.
+ */
+@Component
+@Slf4j
+public class LedgerWriter {
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final WalletBalanceRepository walletBalanceRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionOperations transactionOperations;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingPosting> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public LedgerWriter(LedgerEntryRepository ledgerEntryRepository,
+                        WalletBalanceRepository walletBalanceRepository,
+                        OutboxEventRepository outboxEventRepository,
+                        TransactionOperations transactionOperations,
+                        @Value("${ewallet.ledger.batch.max-size:256}") int maxBatchSize) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.walletBalanceRepository = walletBalanceRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionOperations = transactionOperations;
+        this.maxBatchSize = maxBatchSize;
+        this.flusher = new Thread(this::run, "ledger-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Completes with the transfer id once the entries are committed
+    public CompletableFuture<String> submit(WalletTransactionRequest request) {
+        return submit(request, List.of());
+    }
+
+    // The events are committed together with the entries, or not at all
+    public CompletableFuture<String> submit(WalletTransactionRequest request, List<OutboxEvent> outboxEvents) {
+        return submit(new PendingPosting(request, outboxEvents, null, new CompletableFuture<>()));
+    }
+
+    // The claim runs in the DB transaction of the entries, false leaves them out and completes with null
+    public CompletableFuture<String> submit(WalletTransactionRequest request, BooleanSupplier claim) {
+        return submit(new PendingPosting(request, List.of(), claim, new CompletableFuture<>()));
+    }
+
+    private CompletableFuture<String> submit(PendingPosting posting) {
+        if (!running) {
+            posting.result.completeExceptionally(new IllegalStateException("Ledger writer is closed"));
+            return posting.result;
+        }
+        queue.add(posting);
+        return posting.result;
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingPosting pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("Ledger writer is closed"));
+        }
+    }
+
+    private void run() {
+        List<PendingPosting> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                execute(batch);
+            } catch (InterruptedException e) {
+                // close() was called, whatever is still queued is failed there
+            } catch (Exception e) {
+                log.error("Ledger batch of size {} failed: {}", batch.size(), e.getMessage());
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void execute(List<PendingPosting> batch) {
+        String[] transferIds = new String[batch.size()];
+        transactionOperations.executeWithoutResult(status -> {
+            boolean[] claimed = new boolean[batch.size()];
+            List<PendingPosting> postings = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                PendingPosting pending = batch.get(i);
+                claimed[i] = pending.claim == null || pending.claim.getAsBoolean();
+                if (claimed[i]) {
+                    postings.add(pending);
+                }
+            }
+            if (postings.isEmpty()) {
+                return;
+            }
+            Set<Long> userIds = new TreeSet<>();
+            for (PendingPosting pending : postings) {
+                userIds.add(debitAccount(pending.request));
+                userIds.add(creditAccount(pending.request));
+            }
+            userIds.remove(LedgerEntry.EXTERNAL_ACCOUNT);
+            Map<Long, WalletBalance> balances = new HashMap<>();
+            for (WalletBalance balance : walletBalanceRepository.lockAll(userIds)) {
+                balances.put(balance.getUserId(), balance);
+            }
+            // running balances in minor units while the batch is applied
+            Map<Long, Long> runningBalances = new HashMap<>();
+            List<LedgerEntry> entries = new ArrayList<>(postings.size() * 2);
+            for (Long userId : userIds) {
+                WalletBalance balance = balances.get(userId);
+                runningBalances.put(userId, balance == null ? 0L : balance.getBalance().getMinorUnits());
+                if (balance == null) {
+                    entries.add(openingEntry(userId));
+                }
+            }
+
+            for (int i = 0; i < batch.size(); i++) {
+                if (!claimed[i]) {
+                    continue;
+                }
+                WalletTransactionRequest request = batch.get(i).request;
+                transferIds[i] = UUID.randomUUID().toString();
+                long amount = request.getAmount().getMinorUnits();
+                entries.add(entry(transferIds[i], debitAccount(request), EntryType.DEBIT, request, -amount, runningBalances));
+                entries.add(entry(transferIds[i], creditAccount(request), EntryType.CREDIT, request, amount, runningBalances));
+            }
+            // ids are assigned here, the inserts themselves go out as one batch on commit
+            ledgerEntryRepository.saveAll(entries);
+
+            List<WalletBalance> snapshots = new ArrayList<>(userIds.size());
+            Map<Long, Long> lastEntryIds = new HashMap<>();
+            for (LedgerEntry entry : entries) {
+                lastEntryIds.put(entry.getUserId(), entry.getId());
+            }
+            for (Long userId : userIds) {
+                WalletBalance balance = balances.computeIfAbsent(userId, id -> WalletBalance.builder().userId(id).build());
+                balance.setBalance(Money.ofMinorUnits(runningBalances.get(userId)));
+                balance.setLastEntryId(lastEntryIds.get(userId));
+                snapshots.add(balance);
+            }
+            walletBalanceRepository.saveAll(snapshots);
+
+            List<OutboxEvent> outboxEvents = new ArrayList<>();
+            postings.forEach(pending -> outboxEvents.addAll(pending.outboxEvents));
+            if (!outboxEvents.isEmpty()) {
+                outboxEventRepository.saveAll(outboxEvents);
+            }
+        });
+        // only reached once the batch is committed, null for the postings left out
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(transferIds[i]);
+        }
+        log.debug("Committed ledger batch of size {}", batch.size());
+    }
+
+    private static LedgerEntry openingEntry(long userId) {
+        return LedgerEntry.builder()
+                .transferId(UUID.randomUUID().toString())
+                .userId(userId)
+                .entryType(EntryType.OPEN)
+                .amount(Money.ZERO)
+                .balanceAfter(Money.ZERO)
+                .description("Opening balance")
+                .build();
+    }
+
+    private static LedgerEntry entry(String transferId, long userId, EntryType entryType, WalletTransactionRequest request,
+                                     long change, Map<Long, Long> runningBalances) {
+        Money balanceAfter = null;
+        if (userId != LedgerEntry.EXTERNAL_ACCOUNT) {
+            long balance = Money.add(runningBalances.get(userId), change);
+            runningBalances.put(userId, balance);
+            balanceAfter = Money.ofMinorUnits(balance);
+        }
+        return LedgerEntry.builder()
+                .transferId(transferId)
+                .userId(userId)
+                .entryType(entryType)
+                .amount(request.getAmount())
+                .balanceAfter(balanceAfter)
+                .transactionType(request.getTransactionType())
+                .description(request.getDescription())
+                .build();
+    }
+
+    // Money leaves the sender on a transfer, the wallet owner on a withdrawal and the outside world on a deposit
+    private static long debitAccount(WalletTransactionRequest request) {
+        if (TransactionType.DEPOSIT.name().equals(request.getTransactionType())) {
+            return LedgerEntry.EXTERNAL_ACCOUNT;
+        }
+        if (TransactionType.WITHDRAW.name().equals(request.getTransactionType())) {
+            return request.getReceiverId();
+        }
+        return request.getSenderId();
+    }
+
+    private static long creditAccount(WalletTransactionRequest request) {
+        if (TransactionType.WITHDRAW.name().equals(request.getTransactionType())) {
+            return LedgerEntry.EXTERNAL_ACCOUNT;
+        }
+        return request.getReceiverId();
+    }
+
+    // claim is null for a posting that is always written
+    record PendingPosting(WalletTransactionRequest request, List<OutboxEvent> outboxEvents, BooleanSupplier claim,
+                          CompletableFuture<String> result) {
+    }
+}
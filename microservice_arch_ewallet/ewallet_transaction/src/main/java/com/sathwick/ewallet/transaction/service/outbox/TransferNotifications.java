@@ -0,0 +1,49 @@
+package com.sathwick.ewallet.transaction.service.outbox;
+
+import com.sathwick.ewallet.common.kafka.NotificationEvent;
+import com.sathwick.ewallet.common.kafka.NotificationEventCodec;
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outbox events telling the users about the outcome of a transfer, published by OutboxRelay
+@Component
+public class TransferNotifications {
+
+    private final String notificationTopic;
+
+    public TransferNotifications(@Value("${ewallet.notification.topic}") String notificationTopic) {
+        this.notificationTopic = notificationTopic;
+    }
+
+    public List<OutboxEvent> success(Long senderId, Long receiverId, Money amount) {
+        // send event to Notification service to both sender and receiver
+        List<OutboxEvent> notifications = new ArrayList<>(2);
+        notifications.add(notificationEvent(new NotificationEvent(senderId, amount,
+                NotificationEvent.UserType.SENDER, NotificationEvent.Status.SUCCESS)));
+        // deposits and withdrawals have no receiver
+        if (receiverId != null) {
+            notifications.add(notificationEvent(new NotificationEvent(receiverId, amount,
+                    NotificationEvent.UserType.RECEIVER, NotificationEvent.Status.SUCCESS)));
+        }
+        return notifications;
+    }
+
+    public OutboxEvent failure(Long senderId, Money amount) {
+        return notificationEvent(new NotificationEvent(senderId, amount,
+                NotificationEvent.UserType.SENDER, NotificationEvent.Status.FAILURE));
+    }
+
+    // keyed by user so the notifications of one user stay on one partition
+    private OutboxEvent notificationEvent(NotificationEvent event) {
+        return OutboxEvent.builder()
+                .topic(notificationTopic)
+                .messageKey(String.valueOf(event.userId()))
+                .payload(NotificationEventCodec.encode(event))
+                .build();
+    }
+}
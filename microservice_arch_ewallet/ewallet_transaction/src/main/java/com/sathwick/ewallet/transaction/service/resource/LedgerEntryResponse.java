@@ -0,0 +1,22 @@
+package com.sathwick.ewallet.transaction.service.resource;
+
+import com.sathwick.ewallet.common.money.Money;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class LedgerEntryResponse {
+    private Long entryId;
+    private String transferId;
+    private String entryType;
+    private Money amount;
+    private Money balanceAfter;
+    private String transactionType;
+    private String description;
+    private LocalDateTime createdAt;
+}
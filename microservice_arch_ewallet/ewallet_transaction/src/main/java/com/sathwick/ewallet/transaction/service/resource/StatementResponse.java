@@ -0,0 +1,18 @@
+package com.sathwick.ewallet.transaction.service.resource;
+
+import com.sathwick.ewallet.common.money.Money;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class StatementResponse {
+    private Long userId;
+    private Money balance;
+    // newest first, pass the last entryId as beforeId to get the next page
+    private List<LedgerEntryResponse> entries;
+}
@@ -1,7 +1,7 @@
 package com.sathwick.ewallet.transaction.service.resource;
 
 
-import jakarta.validation.constraints.Min;
+import com.sathwick.ewallet.common.money.Money;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
@@ -15,7 +15,6 @@ public class TransactionRequest {
     private Long receiverId;
     private String description;
     private String transactionType;
-    @Min(value = 0)
-    private Double amount;
+    private Money amount;
 
 }
@@ -0,0 +1,23 @@
+package com.sathwick.ewallet.transaction.service.resource;
+
+import com.sathwick.ewallet.common.money.Money;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TransferStatusResponse {
+    private Long transferId;
+    private Long senderId;
+    private Long receiverId;
+    private Money amount;
+    private String transactionType;
+    // PENDING and COMPENSATING are still moving, see TransferStatus
+    private String status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -1,6 +1,6 @@
 package com.sathwick.ewallet.transaction.service.resource;
 
-import jakarta.validation.constraints.Min;
+import com.sathwick.ewallet.common.money.Money;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
 
@@ -14,8 +14,7 @@ public class WalletTransactionRequest {
     private Long senderId;
     @NotBlank
     private Long receiverId;
-    @Min(value = 0)
-    private Double amount;
+    private Money amount;
     private String description;
     private String transactionType;
 }
@@ -0,0 +1,270 @@
+package com.sathwick.ewallet.transaction.service.saga;
+
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.kafka.WalletSagaCodec;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.TransferSaga;
+import com.sathwick.ewallet.transaction.domain.TransferStatus;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.TransferSagaRepository;
+import com.sathwick.ewallet.transaction.service.LedgerService;
+import com.sathwick.ewallet.transaction.service.outbox.TransferNotifications;
+import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs transfers as sagas instead of a synchronous call to the wallet service.
+ * <p>
+ * {@link #start} stores the saga as PENDING together with an EXECUTE command in the outbox and returns, the
+ * caller polls the saga for the outcome. The wallet service answers every command with a {@link WalletReply}:
+ * <pre>
+ * PENDING      --EXECUTE applied--&gt;   COMPLETED (ledger entries and success notifications)
+ * PENDING      --EXECUTE rejected--&gt;  FAILED (failure notification)
+ * PENDING      --deadline passed--&gt;   COMPENSATING, CANCEL sent
+ * COMPENSATING --CANCEL confirmed--&gt;  COMPENSATED (failure notification)
+ * COMPENSATING --CANCEL rejected--&gt;   COMPENSATION_FAILED
+ * COMPENSATING --deadline passed--&gt;   CANCEL sent again, the deadline grows with every attempt
+ * </pre>
+ * Replies that don't match the current status (duplicates, an EXECUTE reply that lost against the deadline) are
+ * ignored. Commands and notifications are written to the outbox in the DB transaction that changes the status.
+ * <p>
+ * A transfer that moved money (COMPLETED, COMPENSATION_FAILED) is marked ledger pending in that transaction too. Its
+ * ledger entries are written after the commit, the ledger clears the mark in the transaction of the entries, and
+ * the sweep writes the ones still marked a step timeout later.
+ */
+@Service
+@Slf4j
+public class TransferSagaOrchestrator {
+
+    private static final int MAX_BACKOFF_STEPS = 10;
+
+    private final TransferSagaRepository transferSagaRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final LedgerService ledgerService;
+    private final TransferNotifications transferNotifications;
+    private final TransactionOperations transactionOperations;
+    private final String commandTopic;
+    private final Duration stepTimeout;
+    private final int sweepBatchSize;
+
+    public TransferSagaOrchestrator(TransferSagaRepository transferSagaRepository,
+                                    OutboxEventRepository outboxEventRepository,
+                                    LedgerService ledgerService,
+                                    TransferNotifications transferNotifications,
+                                    TransactionOperations transactionOperations,
+                                    @Value("${ewallet.saga.command-topic:wallet-commands}") String commandTopic,
+                                    @Value("${ewallet.saga.step-timeout:10s}") Duration stepTimeout,
+                                    @Value("${ewallet.saga.sweep-batch-size:500}") int sweepBatchSize) {
+        this.transferSagaRepository = transferSagaRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.ledgerService = ledgerService;
+        this.transferNotifications = transferNotifications;
+        this.transactionOperations = transactionOperations;
+        this.commandTopic = commandTopic;
+        this.stepTimeout = stepTimeout;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    // Returns the saga of an earlier request with the same key instead of starting a second one
+    public TransferSaga start(Long senderId, TransactionRequest transactionRequest, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            Optional<TransferSaga> existing = transferSagaRepository.findByIdempotencyKey(idempotencyKey);
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+        }
+        try {
+            return transactionOperations.execute(status -> insert(senderId, transactionRequest, idempotencyKey));
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent retry with the same key got there first
+            if (idempotencyKey == null) {
+                throw e;
+            }
+            return transferSagaRepository.findByIdempotencyKey(idempotencyKey).orElseThrow(() -> e);
+        }
+    }
+
+    public Optional<TransferSaga> find(Long transferId) {
+        return transferSagaRepository.findById(transferId);
+    }
+
+    public void onReplies(List<WalletReply> replies) {
+        if (replies.isEmpty()) {
+            return;
+        }
+        List<TransferSaga> moved = new ArrayList<>();
+        transactionOperations.executeWithoutResult(status -> {
+            Map<Long, TransferSaga> sagas = new HashMap<>();
+            transferSagaRepository.lockAll(replies.stream().map(WalletReply::transferId).distinct().toList())
+                    .forEach(saga -> sagas.put(saga.getId(), saga));
+            List<OutboxEvent> notifications = new ArrayList<>();
+            for (WalletReply reply : replies) {
+                TransferSaga saga = sagas.get(reply.transferId());
+                if (saga == null) {
+                    log.warn("Wallet reply for unknown transfer {}", reply.transferId());
+                } else if (apply(saga, reply, notifications)) {
+                    if (saga.isLedgerPending()) {
+                        moved.add(saga);
+                    }
+                } else {
+                    log.debug("Ignoring {} reply for transfer {} in status {}", reply.action(), saga.getId(), saga.getStatus());
+                }
+            }
+            outboxEventRepository.saveAll(notifications);
+        });
+        // the wallets are updated and the users notified already, the ledger is the audit trail
+        moved.forEach(this::recordInLedger);
+    }
+
+    @Scheduled(fixedDelayString = "${ewallet.saga.sweep-interval-ms:1000}")
+    public void recordPendingLedgerEntries() {
+        try {
+            // older than a step timeout, the write queued with the reply had its chance
+            transferSagaRepository.findLedgerPending(LocalDateTime.now().minus(stepTimeout), PageRequest.of(0, sweepBatchSize))
+                    .forEach(this::recordInLedger);
+        } catch (Exception e) {
+            log.warn("Ledger sweep of transfer sagas failed, retrying on the next round: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ewallet.saga.sweep-interval-ms:1000}")
+    public void compensateOverdue() {
+        try {
+            // keep going while full batches come back, like OutboxRelay
+            while (compensateBatch() == sweepBatchSize) {
+                log.debug("Overdue transfer backlog, sweeping next batch");
+            }
+        } catch (Exception e) {
+            log.warn("Transfer saga sweep failed, retrying on the next round: {}", e.getMessage());
+        }
+    }
+
+    int compensateBatch() {
+        Integer swept = transactionOperations.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<TransferSaga> sagas = transferSagaRepository.lockOverdue(
+                    List.of(TransferStatus.PENDING, TransferStatus.COMPENSATING), now, PageRequest.of(0, sweepBatchSize));
+            List<OutboxEvent> commands = new ArrayList<>(sagas.size());
+            for (TransferSaga saga : sagas) {
+                if (saga.getStatus() == TransferStatus.PENDING) {
+                    log.warn("No wallet reply for transfer {} in time, compensating", saga.getId());
+                    saga.setStatus(TransferStatus.COMPENSATING);
+                } else {
+                    log.warn("Transfer {} still not compensated, sending CANCEL again", saga.getId());
+                }
+                saga.setAttempts(saga.getAttempts() + 1);
+                saga.setDeadline(now.plus(stepTimeout.multipliedBy(Math.min(saga.getAttempts(), MAX_BACKOFF_STEPS))));
+                commands.add(command(saga, WalletCommand.Action.CANCEL));
+            }
+            outboxEventRepository.saveAll(commands);
+            return sagas.size();
+        });
+        return swept == null ? 0 : swept;
+    }
+
+    private TransferSaga insert(Long senderId, TransactionRequest transactionRequest, String idempotencyKey) {
+        TransferSaga saga = TransferSaga.builder()
+                .senderId(senderId)
+                .receiverId(transactionRequest.getReceiverId())
+                .amount(transactionRequest.getAmount())
+                .description(transactionRequest.getDescription())
+                .transactionType(transactionRequest.getTransactionType())
+                .idempotencyKey(idempotencyKey)
+                .build();
+        if (transactionType(saga) == null || saga.getAmount() == null || !saga.getAmount().isPositive()) {
+            // the wallet service would reject it, no need to ask
+            saga.setStatus(TransferStatus.FAILED);
+            transferSagaRepository.saveAndFlush(saga);
+            if (saga.getAmount() != null) {
+                outboxEventRepository.save(transferNotifications.failure(senderId, saga.getAmount()));
+            }
+            return saga;
+        }
+        saga.setStatus(TransferStatus.PENDING);
+        saga.setDeadline(LocalDateTime.now().plus(stepTimeout));
+        // flushed here so a duplicate idempotency key fails inside the try of start
+        transferSagaRepository.saveAndFlush(saga);
+        outboxEventRepository.save(command(saga, WalletCommand.Action.EXECUTE));
+        log.info("Started transfer {} of user {}", saga.getId(), senderId);
+        return saga;
+    }
+
+    // False when the reply doesn't match the status of the saga
+    private boolean apply(TransferSaga saga, WalletReply reply, List<OutboxEvent> notifications) {
+        TransferStatus expected = reply.action() == WalletCommand.Action.EXECUTE ? TransferStatus.PENDING : TransferStatus.COMPENSATING;
+        if (saga.getStatus() != expected) {
+            return false;
+        }
+        saga.setDeadline(null);
+        if (reply.action() == WalletCommand.Action.EXECUTE && reply.success()) {
+            saga.setStatus(TransferStatus.COMPLETED);
+            saga.setLedgerPending(true);
+            notifications.addAll(transferNotifications.success(saga.getSenderId(), receiverToNotify(saga), saga.getAmount()));
+        } else if (reply.action() == WalletCommand.Action.EXECUTE) {
+            saga.setStatus(TransferStatus.FAILED);
+            notifications.add(transferNotifications.failure(saga.getSenderId(), saga.getAmount()));
+        } else if (reply.success()) {
+            saga.setStatus(TransferStatus.COMPENSATED);
+            notifications.add(transferNotifications.failure(saga.getSenderId(), saga.getAmount()));
+        } else {
+            // the EXECUTE stays in effect, the ledger has to show it
+            saga.setStatus(TransferStatus.COMPENSATION_FAILED);
+            saga.setLedgerPending(true);
+            log.error("Transfer {} could not be compensated, wallets of users {} and {} need a manual correction",
+                    saga.getId(), saga.getSenderId(), saga.getReceiverId());
+        }
+        log.info("Transfer {} is {}", saga.getId(), saga.getStatus());
+        return true;
+    }
+
+    // Recorded once: the claim clears the mark in the ledger's DB transaction, a later attempt finds it cleared
+    private void recordInLedger(TransferSaga saga) {
+        Long sagaId = saga.getId();
+        ledgerService.record(saga.toWalletTransactionRequest(), () -> transferSagaRepository.claimLedgerPending(sagaId) == 1)
+                .whenComplete((transferId, e) -> {
+                    if (e != null) {
+                        log.error("Unable to record transfer " + sagaId + " in the ledger, the sweep retries it: " + e.getMessage());
+                    }
+                });
+    }
+
+    // Keyed by sender, the CANCEL of a transfer lands on the partition of its EXECUTE and is consumed after it
+    private OutboxEvent command(TransferSaga saga, WalletCommand.Action action) {
+        WalletCommand command = new WalletCommand(saga.getId(), action, saga.getSenderId(), saga.getReceiverId(),
+                saga.getAmount(), transactionType(saga));
+        return OutboxEvent.builder()
+                .topic(commandTopic)
+                .messageKey(String.valueOf(saga.getSenderId()))
+                .payload(WalletSagaCodec.encode(command))
+                .build();
+    }
+
+    // only transfers have a receiver to tell
+    private static Long receiverToNotify(TransferSaga saga) {
+        return transactionType(saga) == WalletCommand.TransactionType.TRANSFER ? saga.getReceiverId() : null;
+    }
+
+    private static WalletCommand.TransactionType transactionType(TransferSaga saga) {
+        for (WalletCommand.TransactionType type : WalletCommand.TransactionType.values()) {
+            if (type.name().equals(saga.getTransactionType())) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.sathwick.ewallet.transaction.service.saga;
+
+/**
+ * POST /transfers while ewallet.saga.enabled is false: the wallet service runs its engine and rejects saga
+ * commands, a saga started now would only fail.
+ */
+public class TransfersDisabledException extends RuntimeException {
+
+    public TransfersDisabledException() {
+        super("Transfers are disabled, use POST /transactions");
+    }
+}
@@ -0,0 +1,41 @@
+package com.sathwick.ewallet.transaction.service.saga;
+
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.kafka.WalletSagaCodec;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+public class WalletReplyConsumer {
+
+    private final TransferSagaOrchestrator transferSagaOrchestrator;
+
+    public WalletReplyConsumer(TransferSagaOrchestrator transferSagaOrchestrator) {
+        this.transferSagaOrchestrator = transferSagaOrchestrator;
+    }
+
+    // Whole poll at once, see KafkaConfig.sagaReplyListenerContainerFactory
+    @KafkaListener(topics = "${ewallet.saga.reply-topic:wallet-replies}", groupId = "transactionSagaGroup",
+            containerFactory = "sagaReplyListenerContainerFactory")
+    public void consumeReplies(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        List<WalletReply> replies = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                replies.add(WalletSagaCodec.decodeReply(record.value()));
+            } catch (IllegalArgumentException e) {
+                // can never succeed, retrying the batch would block the partition
+                log.error("Skipping invalid wallet reply at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), e.getMessage());
+            }
+        }
+        // an exception leaves the offsets uncommitted and the batch is redelivered, replies are applied at most once per status
+        transferSagaOrchestrator.onReplies(replies);
+        acknowledgment.acknowledge();
+    }
+}
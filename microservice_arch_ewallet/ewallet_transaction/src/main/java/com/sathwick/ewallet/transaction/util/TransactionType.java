@@ -0,0 +1,7 @@
+package com.sathwick.ewallet.transaction.util;
+
+public enum TransactionType {
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER
+}
@@ -0,0 +1,105 @@
+package com.sathwick.ewallet.transaction.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sathwick.ewallet.common.kafka.NotificationEvent;
+import com.sathwick.ewallet.common.kafka.NotificationEventCodec;
+import com.sathwick.ewallet.common.kafka.ProducerProfile;
+import com.sathwick.ewallet.common.kafka.ProducerSettings;
+import com.sathwick.ewallet.common.money.Money;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Notification events per second, bytes on the wire, average batch size and request latency for the old setup
+ * (JSON strings with the client defaults) and the producer profiles with the binary codec, against an embedded
+ * broker. Run with {@code -Dewallet.benchmark=true}.
+ */
+class ProducerProfileBenchmarkTest {
+
+    private static final String TOPIC = "notification-benchmark";
+    private static final int EVENTS = 200_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @EnabledIfSystemProperty(named = "ewallet.benchmark", matches = "true")
+    void compareProfiles() throws Exception {
+        EmbeddedKafkaKraftBroker broker = new EmbeddedKafkaKraftBroker(1, 6, TOPIC);
+        broker.afterPropertiesSet();
+        try {
+            String servers = broker.getBrokersAsString();
+            // linger 0, 16KB batches, no compression: what the services ran with before
+            run("json, defaults", new ProducerSettings(servers, "bench-json", ProducerProfile.LATENCY, null, null, null), this::json);
+            run("binary, LATENCY", new ProducerSettings(servers, "bench-latency", ProducerProfile.LATENCY, null, null, null), NotificationEventCodec::encode);
+            run("binary, THROUGHPUT", new ProducerSettings(servers, "bench-throughput", ProducerProfile.THROUGHPUT, null, null, null), NotificationEventCodec::encode);
+        } finally {
+            broker.destroy();
+        }
+    }
+
+    private void run(String name, ProducerSettings settings, Function<NotificationEvent, byte[]> encoder) {
+        try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(settings.toConfig())) {
+            // warm up the connection and the metadata
+            producer.send(new ProducerRecord<>(TOPIC, "0", encoder.apply(event(0)))).get();
+            CompletableFuture<?>[] acks = new CompletableFuture<?>[EVENTS];
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                NotificationEvent event = event(i);
+                CompletableFuture<Void> ack = new CompletableFuture<>();
+                producer.send(new ProducerRecord<>(TOPIC, String.valueOf(event.userId()), encoder.apply(event)), (metadata, e) -> {
+                    if (e != null) {
+                        ack.completeExceptionally(e);
+                    } else {
+                        ack.complete(null);
+                    }
+                });
+                acks[i] = ack;
+            }
+            CompletableFuture.allOf(acks).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-20s %10.0f events/s %10.1f MB sent, batch avg %8.0f bytes, request latency avg %6.1f ms%n",
+                    name, EVENTS / seconds, metric(producer, "outgoing-byte-total") / 1e6,
+                    metric(producer, "batch-size-avg"), metric(producer, "request-latency-avg"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] json(NotificationEvent event) {
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("userId", event.userId());
+        request.put("amount", event.amount());
+        request.put("userType", event.userType().name());
+        request.put("transactionStatus", event.status().name());
+        try {
+            return mapper.writeValueAsString(request).getBytes();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static NotificationEvent event(int i) {
+        return new NotificationEvent(1_000 + i % 5_000, Money.ofMinorUnits(100 + i),
+                i % 2 == 0 ? NotificationEvent.UserType.SENDER : NotificationEvent.UserType.RECEIVER,
+                NotificationEvent.Status.SUCCESS);
+    }
+
+    private static double metric(KafkaProducer<?, ?> producer, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+            if (entry.getKey().name().equals(name) && entry.getKey().group().equals("producer-metrics")) {
+                return ((Number) entry.getValue().metricValue()).doubleValue();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,117 @@
+package com.sathwick.ewallet.transaction.service.impl;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.PendingLedgerTransfer;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.PendingLedgerTransferRepository;
+import com.sathwick.ewallet.transaction.service.LedgerService;
+import com.sathwick.ewallet.transaction.service.client.WalletClient;
+import com.sathwick.ewallet.transaction.service.outbox.TransferNotifications;
+import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class TransactionServiceImplTest {
+
+    private WalletClient walletClient;
+    private OutboxEventRepository outboxEventRepository;
+    private LedgerService ledgerService;
+    private PendingLedgerTransferRepository pendingLedgerTransferRepository;
+    private TransactionServiceImpl transactionService;
+
+    @BeforeEach
+    void setUp() {
+        walletClient = mock(WalletClient.class);
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        ledgerService = mock(LedgerService.class);
+        pendingLedgerTransferRepository = mock(PendingLedgerTransferRepository.class);
+        transactionService = new TransactionServiceImpl();
+        transactionService.walletClient = walletClient;
+        transactionService.outboxEventRepository = outboxEventRepository;
+        transactionService.ledgerService = ledgerService;
+        transactionService.transferNotifications = new TransferNotifications("NOTIFICATION");
+        transactionService.pendingLedgerTransferRepository = pendingLedgerTransferRepository;
+        transactionService.transactionOperations = TransactionOperations.withoutTransaction();
+        transactionService.ledgerRetryDelay = Duration.ofSeconds(10);
+        transactionService.ledgerRetryBatchSize = 100;
+        when(walletClient.performTransaction(any(), isNull())).thenReturn(CompletableFuture.completedFuture(true));
+    }
+
+    @Test
+    void failedLedgerWriteLeavesTheTransferMarkedForTheSweep() {
+        when(pendingLedgerTransferRepository.save(any(PendingLedgerTransfer.class))).thenAnswer(invocation -> {
+            PendingLedgerTransfer pending = invocation.getArgument(0);
+            pending.setId(7L);
+            return pending;
+        });
+        when(ledgerService.record(any(WalletTransactionRequest.class), any(BooleanSupplier.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("ledger down")));
+
+        assertTrue(transactionService.performTransaction(1L, request(2L, Money.of(25))));
+
+        // the notifications went out with the mark, the failed ledger write doesn't queue them again
+        verify(outboxEventRepository).saveAll(argThat((Iterable<OutboxEvent> events) -> ((List<OutboxEvent>) events).size() == 2));
+        ArgumentCaptor<PendingLedgerTransfer> marked = ArgumentCaptor.forClass(PendingLedgerTransfer.class);
+        verify(pendingLedgerTransferRepository).save(marked.capture());
+        assertEquals(1L, marked.getValue().getSenderId());
+        assertEquals(Money.of(25), marked.getValue().getAmount());
+        verify(ledgerService, never()).record(any(WalletTransactionRequest.class), anyList());
+        verifyNoMoreInteractions(outboxEventRepository);
+    }
+
+    @Test
+    void sweepRecordsMarkedTransfersOnce() {
+        PendingLedgerTransfer pending = PendingLedgerTransfer.builder().id(7L).senderId(1L).receiverId(2L)
+                .amount(Money.of(25)).transactionType("TRANSFER").build();
+        when(pendingLedgerTransferRepository.findCreatedBefore(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(pending));
+        when(pendingLedgerTransferRepository.claim(7L)).thenReturn(1, 0);
+        ArgumentCaptor<BooleanSupplier> claim = ArgumentCaptor.forClass(BooleanSupplier.class);
+        when(ledgerService.record(any(WalletTransactionRequest.class), claim.capture())).thenReturn(CompletableFuture.completedFuture("t"));
+
+        transactionService.recordPendingLedgerEntries();
+        transactionService.recordPendingLedgerEntries();
+
+        verify(ledgerService, times(2)).record(argThat(request -> request.getSenderId() == 1L && request.getAmount().equals(Money.of(25))),
+                any(BooleanSupplier.class));
+        // the second round lost its claim, the ledger writer leaves its entries out
+        assertTrue(claim.getAllValues().get(0).getAsBoolean());
+        assertFalse(claim.getAllValues().get(1).getAsBoolean());
+    }
+
+    @Test
+    void transferThatCantBeMarkedKeepsItsNotificationsWithTheEntries() {
+        when(pendingLedgerTransferRepository.save(any(PendingLedgerTransfer.class))).thenThrow(new IllegalStateException("db down"));
+        when(ledgerService.record(any(WalletTransactionRequest.class), anyList())).thenReturn(CompletableFuture.completedFuture("t"));
+
+        assertTrue(transactionService.performTransaction(1L, request(2L, Money.of(25))));
+
+        verify(ledgerService).record(any(WalletTransactionRequest.class), argThat((List<OutboxEvent> events) -> events.size() == 2));
+        verify(ledgerService, never()).record(any(WalletTransactionRequest.class), any(BooleanSupplier.class));
+    }
+
+    private static TransactionRequest request(Long receiverId, Money amount) {
+        return TransactionRequest.builder()
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType("TRANSFER")
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.sathwick.ewallet.transaction.service.ledger;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.EntryType;
+import com.sathwick.ewallet.transaction.domain.LedgerEntry;
+import com.sathwick.ewallet.transaction.domain.WalletBalance;
+import com.sathwick.ewallet.transaction.repository.LedgerEntryRepository;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.WalletBalanceRepository;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.transaction.util.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class LedgerWriterTest {
+
+    private LedgerEntryRepository ledgerEntryRepository;
+    private WalletBalanceRepository walletBalanceRepository;
+    private OutboxEventRepository outboxEventRepository;
+    private LedgerWriter ledgerWriter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ledgerEntryRepository = mock(LedgerEntryRepository.class);
+        walletBalanceRepository = mock(WalletBalanceRepository.class);
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        // stands in for the sequence
+        AtomicLong sequence = new AtomicLong();
+        when(ledgerEntryRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<LedgerEntry> entries = invocation.getArgument(0);
+            entries.forEach(entry -> entry.setId(sequence.incrementAndGet()));
+            return entries;
+        });
+        ledgerWriter = new LedgerWriter(ledgerEntryRepository, walletBalanceRepository, outboxEventRepository, TransactionOperations.withoutTransaction(), 256);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledgerWriter.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transfersAreBookedOnBothSidesWithRunningBalances() {
+        when(walletBalanceRepository.lockAll(anyCollection())).thenReturn(new ArrayList<>(List.of(
+                WalletBalance.builder().userId(1L).balance(Money.of(100)).lastEntryId(7L).version(3L).build())));
+
+        List<LedgerWriter.PendingPosting> batch = List.of(
+                posting(request(1L, 2L, Money.of(60), TransactionType.TRANSFER)),
+                posting(request(2L, 2L, Money.of(5), TransactionType.DEPOSIT)),
+                posting(request(2L, 1L, Money.of(10), TransactionType.TRANSFER)));
+
+        ledgerWriter.execute(batch);
+
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository, times(1)).saveAll(entries.capture());
+        assertEquals(7, entries.getValue().size());
+        // user 2 is new to the ledger
+        assertEquals(EntryType.OPEN, entries.getValue().get(0).getEntryType());
+        assertEquals(2L, entries.getValue().get(0).getUserId());
+        assertEquals(Money.ZERO, entries.getValue().get(0).getBalanceAfter());
+        List<LedgerEntry> written = entries.getValue().subList(1, 7);
+        // every transfer is a DEBIT + CREDIT pair of the same amount
+        for (int i = 0; i < written.size(); i += 2) {
+            assertEquals(EntryType.DEBIT, written.get(i).getEntryType());
+            assertEquals(EntryType.CREDIT, written.get(i + 1).getEntryType());
+            assertEquals(written.get(i).getTransferId(), written.get(i + 1).getTransferId());
+            assertEquals(written.get(i).getAmount(), written.get(i + 1).getAmount());
+        }
+        assertEquals(LedgerEntry.EXTERNAL_ACCOUNT, written.get(2).getUserId());
+        assertNull(written.get(2).getBalanceAfter());
+        assertEquals(Money.of(40), written.get(0).getBalanceAfter());
+        assertEquals(Money.of(65), written.get(3).getBalanceAfter());
+        assertEquals(Money.of(50), written.get(5).getBalanceAfter());
+
+        ArgumentCaptor<List<WalletBalance>> snapshots = ArgumentCaptor.forClass(List.class);
+        verify(walletBalanceRepository).saveAll(snapshots.capture());
+        Map<Long, WalletBalance> byUser = snapshots.getValue().stream()
+                .collect(Collectors.toMap(WalletBalance::getUserId, Function.identity()));
+        assertEquals(2, byUser.size());
+        assertEquals(Money.of(50), byUser.get(1L).getBalance());
+        assertEquals(7L, byUser.get(1L).getLastEntryId());
+        assertEquals(Money.of(55), byUser.get(2L).getBalance());
+        assertEquals(6L, byUser.get(2L).getLastEntryId());
+        batch.forEach(pending -> assertNotNull(pending.result().join()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void userWithoutSnapshotStartsAtZeroWithAnOpeningEntry() {
+        when(walletBalanceRepository.lockAll(anyCollection())).thenReturn(new ArrayList<>());
+
+        ledgerWriter.execute(List.of(posting(request(4L, 4L, Money.of(20), TransactionType.DEPOSIT))));
+
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository).saveAll(entries.capture());
+        List<LedgerEntry> written = entries.getValue();
+        assertEquals(3, written.size());
+        assertEquals(EntryType.OPEN, written.get(0).getEntryType());
+        assertEquals(Money.ZERO, written.get(0).getAmount());
+        assertEquals(Money.ZERO, written.get(0).getBalanceAfter());
+        assertEquals(Money.of(20), written.get(2).getBalanceAfter());
+
+        ArgumentCaptor<List<WalletBalance>> snapshots = ArgumentCaptor.forClass(List.class);
+        verify(walletBalanceRepository).saveAll(snapshots.capture());
+        assertEquals(Money.of(20), snapshots.getValue().get(0).getBalance());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void postingWhoseClaimFailsIsLeftOut() {
+        when(walletBalanceRepository.lockAll(anyCollection())).thenReturn(new ArrayList<>(List.of(
+                WalletBalance.builder().userId(1L).balance(Money.of(100)).lastEntryId(7L).build(),
+                WalletBalance.builder().userId(2L).balance(Money.of(100)).lastEntryId(8L).build())));
+        // recorded by an earlier attempt already
+        LedgerWriter.PendingPosting recorded = new LedgerWriter.PendingPosting(request(1L, 2L, Money.of(60), TransactionType.TRANSFER),
+                List.of(), () -> false, new CompletableFuture<>());
+        LedgerWriter.PendingPosting claimed = new LedgerWriter.PendingPosting(request(2L, 1L, Money.of(10), TransactionType.TRANSFER),
+                List.of(), () -> true, new CompletableFuture<>());
+
+        ledgerWriter.execute(List.of(recorded, claimed));
+
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        verify(ledgerEntryRepository).saveAll(entries.capture());
+        assertEquals(2, entries.getValue().size());
+        assertEquals(Money.of(90), entries.getValue().get(0).getBalanceAfter());
+        assertNull(recorded.result().join());
+        assertNotNull(claimed.result().join());
+    }
+
+    @Test
+    void submittedPostingsCompleteThroughTheFlusher() throws Exception {
+        when(walletBalanceRepository.lockAll(anyCollection())).thenReturn(new ArrayList<>());
+
+        CompletableFuture<String> withdrawal = ledgerWriter.submit(request(3L, 3L, Money.of(20), TransactionType.WITHDRAW));
+
+        assertNotNull(withdrawal.get(5, TimeUnit.SECONDS));
+        // the external side of a withdrawal has no snapshot to lock
+        verify(walletBalanceRepository).lockAll(argThat(userIds -> userIds.size() == 1 && userIds.contains(3L)));
+    }
+
+    private static LedgerWriter.PendingPosting posting(WalletTransactionRequest request) {
+        return new LedgerWriter.PendingPosting(request, List.of(), null, new CompletableFuture<>());
+    }
+
+    private static WalletTransactionRequest request(Long senderId, Long receiverId, Money amount, TransactionType type) {
+        return WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType(type.name())
+                .build();
+    }
+}
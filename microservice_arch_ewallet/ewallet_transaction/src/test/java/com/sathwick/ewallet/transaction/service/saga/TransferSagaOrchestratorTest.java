@@ -0,0 +1,193 @@
+package com.sathwick.ewallet.transaction.service.saga;
+
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.kafka.WalletSagaCodec;
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.transaction.domain.OutboxEvent;
+import com.sathwick.ewallet.transaction.domain.TransferSaga;
+import com.sathwick.ewallet.transaction.domain.TransferStatus;
+import com.sathwick.ewallet.transaction.repository.OutboxEventRepository;
+import com.sathwick.ewallet.transaction.repository.TransferSagaRepository;
+import com.sathwick.ewallet.transaction.service.LedgerService;
+import com.sathwick.ewallet.transaction.service.outbox.TransferNotifications;
+import com.sathwick.ewallet.transaction.service.resource.TransactionRequest;
+import com.sathwick.ewallet.transaction.service.resource.WalletTransactionRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class TransferSagaOrchestratorTest {
+
+    private TransferSagaRepository transferSagaRepository;
+    private OutboxEventRepository outboxEventRepository;
+    private LedgerService ledgerService;
+    private TransferSagaOrchestrator orchestrator;
+
+    @BeforeEach
+    void setUp() {
+        transferSagaRepository = mock(TransferSagaRepository.class);
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        ledgerService = mock(LedgerService.class);
+        orchestrator = new TransferSagaOrchestrator(transferSagaRepository, outboxEventRepository, ledgerService,
+                new TransferNotifications("NOTIFICATION"), TransactionOperations.withoutTransaction(),
+                "WALLET_COMMANDS", Duration.ofSeconds(10), 100);
+    }
+
+    @Test
+    void startStoresThePendingSagaWithItsExecuteCommand() {
+        when(transferSagaRepository.saveAndFlush(any(TransferSaga.class))).thenAnswer(invocation -> {
+            TransferSaga saga = invocation.getArgument(0);
+            saga.setId(100L);
+            return saga;
+        });
+
+        TransferSaga saga = orchestrator.start(1L, request(2L, Money.of(25), "TRANSFER"), "1:key");
+
+        assertEquals(TransferStatus.PENDING, saga.getStatus());
+        assertEquals("1:key", saga.getIdempotencyKey());
+        assertTrue(saga.getDeadline().isAfter(LocalDateTime.now()));
+        ArgumentCaptor<OutboxEvent> command = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(command.capture());
+        assertEquals("WALLET_COMMANDS", command.getValue().getTopic());
+        assertEquals("1", command.getValue().getMessageKey());
+        assertEquals(new WalletCommand(100L, WalletCommand.Action.EXECUTE, 1L, 2L, Money.of(25), WalletCommand.TransactionType.TRANSFER),
+                WalletSagaCodec.decodeCommand(command.getValue().getPayload()));
+    }
+
+    @Test
+    void retryWithTheSameKeyGetsTheFirstSaga() {
+        TransferSaga first = saga(100L, TransferStatus.COMPLETED);
+        when(transferSagaRepository.findByIdempotencyKey("1:key")).thenReturn(Optional.of(first));
+
+        assertSame(first, orchestrator.start(1L, request(2L, Money.of(25), "TRANSFER"), "1:key"));
+        verify(transferSagaRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(outboxEventRepository);
+    }
+
+    @Test
+    void invalidRequestFailsWithoutAskingTheWallet() {
+        when(transferSagaRepository.saveAndFlush(any(TransferSaga.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransferSaga saga = orchestrator.start(1L, request(2L, Money.of(25), "GIFT"), null);
+
+        assertEquals(TransferStatus.FAILED, saga.getStatus());
+        verify(outboxEventRepository).save(argThat(event -> event.getTopic().equals("NOTIFICATION")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void repliesMoveTheSagasThatExpectThem() {
+        TransferSaga applied = saga(1L, TransferStatus.PENDING);
+        TransferSaga rejected = saga(2L, TransferStatus.PENDING);
+        TransferSaga cancelled = saga(3L, TransferStatus.COMPENSATING);
+        when(transferSagaRepository.lockAll(anyCollection())).thenReturn(List.of(applied, rejected, cancelled));
+        when(ledgerService.record(any(WalletTransactionRequest.class), any(BooleanSupplier.class)))
+                .thenReturn(CompletableFuture.completedFuture("transfer"));
+
+        orchestrator.onReplies(List.of(
+                new WalletReply(1L, WalletCommand.Action.EXECUTE, true),
+                new WalletReply(2L, WalletCommand.Action.EXECUTE, false),
+                new WalletReply(3L, WalletCommand.Action.CANCEL, true),
+                // lost against the deadline, the CANCEL decides
+                new WalletReply(3L, WalletCommand.Action.EXECUTE, true),
+                new WalletReply(1L, WalletCommand.Action.EXECUTE, true)));
+
+        assertEquals(TransferStatus.COMPLETED, applied.getStatus());
+        assertEquals(TransferStatus.FAILED, rejected.getStatus());
+        assertEquals(TransferStatus.COMPENSATED, cancelled.getStatus());
+        assertNull(applied.getDeadline());
+        assertTrue(applied.isLedgerPending());
+        assertFalse(rejected.isLedgerPending());
+        assertFalse(cancelled.isLedgerPending());
+        verify(ledgerService, times(1)).record(argThat((WalletTransactionRequest request) -> request.getSenderId() == 10L),
+                any(BooleanSupplier.class));
+        ArgumentCaptor<List<OutboxEvent>> notifications = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).saveAll(notifications.capture());
+        // sender and receiver of the completed transfer, the senders of the other two
+        assertEquals(4, notifications.getValue().size());
+    }
+
+    @Test
+    void failedCompensationIsRecordedInTheLedgerOnce() {
+        TransferSaga stuck = saga(1L, TransferStatus.COMPENSATING);
+        when(transferSagaRepository.lockAll(anyCollection())).thenReturn(List.of(stuck));
+        when(ledgerService.record(any(WalletTransactionRequest.class), any(BooleanSupplier.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("ledger down")));
+
+        orchestrator.onReplies(List.of(new WalletReply(1L, WalletCommand.Action.CANCEL, false)));
+
+        // the EXECUTE moved the money and stays, the mark is committed with the status
+        assertEquals(TransferStatus.COMPENSATION_FAILED, stuck.getStatus());
+        assertTrue(stuck.isLedgerPending());
+        ArgumentCaptor<BooleanSupplier> claim = ArgumentCaptor.forClass(BooleanSupplier.class);
+        verify(ledgerService).record(any(WalletTransactionRequest.class), claim.capture());
+        when(transferSagaRepository.claimLedgerPending(1L)).thenReturn(1, 0);
+        assertTrue(claim.getValue().getAsBoolean());
+        assertFalse(claim.getValue().getAsBoolean());
+
+        // the failed write is picked up by the sweep
+        when(transferSagaRepository.findLedgerPending(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(stuck));
+        orchestrator.recordPendingLedgerEntries();
+        verify(ledgerService, times(2)).record(any(WalletTransactionRequest.class), any(BooleanSupplier.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void overdueSagasAreCancelledWithGrowingDeadlines() {
+        TransferSaga pending = saga(1L, TransferStatus.PENDING);
+        TransferSaga compensating = saga(2L, TransferStatus.COMPENSATING);
+        compensating.setAttempts(1);
+        when(transferSagaRepository.lockOverdue(anyCollection(), any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(pending, compensating));
+
+        assertEquals(2, orchestrator.compensateBatch());
+
+        assertEquals(TransferStatus.COMPENSATING, pending.getStatus());
+        assertEquals(1, pending.getAttempts());
+        assertEquals(2, compensating.getAttempts());
+        assertTrue(compensating.getDeadline().isAfter(pending.getDeadline()));
+        ArgumentCaptor<List<OutboxEvent>> commands = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).saveAll(commands.capture());
+        assertEquals(List.of(1L, 2L), commands.getValue().stream()
+                .map(event -> WalletSagaCodec.decodeCommand(event.getPayload()))
+                .peek(command -> assertEquals(WalletCommand.Action.CANCEL, command.action()))
+                .map(WalletCommand::transferId)
+                .toList());
+    }
+
+    private static TransferSaga saga(Long id, TransferStatus status) {
+        return TransferSaga.builder()
+                .id(id)
+                .senderId(10L)
+                .receiverId(20L)
+                .amount(Money.of(25))
+                .transactionType("TRANSFER")
+                .status(status)
+                .deadline(LocalDateTime.now().minusSeconds(1))
+                .build();
+    }
+
+    private static TransactionRequest request(Long receiverId, Money amount, String transactionType) {
+        return TransactionRequest.builder()
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType(transactionType)
+                .build();
+    }
+}
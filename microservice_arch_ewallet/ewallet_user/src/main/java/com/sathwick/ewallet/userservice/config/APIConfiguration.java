@@ -1,16 +1,46 @@
 package com.sathwick.ewallet.userservice.config;
 
+import com.sathwick.ewallet.common.discovery.DiscoveryWarmUp;
+import com.sathwick.ewallet.common.http.HopSettings;
+import com.sathwick.ewallet.common.http.PooledHttpClients;
+import com.sathwick.ewallet.common.loadbalancer.PeakEwmaLoadBalancing;
+import com.sathwick.ewallet.common.resilience.Resilience;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
 
 @Configuration
+// @LoadBalanced clients pick instances by latency and requests in flight instead of round robin,
+// the instance turns UP in Eureka once the instances of the services it calls are known,
+// calls to the transaction service go through a bulkhead, circuit breaker and adaptive timeout
+@Import({PeakEwmaLoadBalancing.class, DiscoveryWarmUp.class, Resilience.class})
 public class APIConfiguration {
 
+    // User -> transaction hop, the response timeout has to cover the transaction -> wallet hop as well
+    @Bean
+    public HopSettings transactionHopSettings(@Value("${ewallet.http.connect-timeout:1s}") Duration connectTimeout,
+                                              @Value("${ewallet.http.response-timeout:10s}") Duration responseTimeout,
+                                              @Value("${ewallet.http.max-connections:200}") int maxConnections,
+                                              @Value("${ewallet.http.max-connections-per-route:100}") int maxConnectionsPerRoute,
+                                              @Value("${ewallet.http.idle-timeout:30s}") Duration idleTimeout) {
+        return new HopSettings(connectTimeout, responseTimeout, maxConnections, maxConnectionsPerRoute, idleTimeout);
+    }
+
+    @Bean
+    @LoadBalanced
+    public RestTemplate getRestTemplate(HopSettings transactionHopSettings){
+        return new RestTemplate(PooledHttpClients.requestFactory(transactionHopSettings));
+    }
+
     @Bean
     @LoadBalanced
-    public RestTemplate getRestTemplate(){
-        return new RestTemplate();
+    public WebClient.Builder loadBalancedWebClientBuilder(HopSettings transactionHopSettings){
+        return WebClient.builder().clientConnector(PooledHttpClients.connector("transaction", transactionHopSettings));
     }
 }
@@ -1,17 +1,26 @@
 package com.sathwick.ewallet.userservice.config;
 
-import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.StringSerializer;
+import com.sathwick.ewallet.common.kafka.KafkaProducers;
+import com.sathwick.ewallet.common.kafka.OutboxRelay;
+import com.sathwick.ewallet.common.kafka.ProducerProfile;
+import com.sathwick.ewallet.common.kafka.ProducerSettings;
+import com.sathwick.ewallet.userservice.domain.OutboxEvent;
+import com.sathwick.ewallet.userservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.transaction.support.TransactionOperations;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
 
 @Configuration
+// OutboxRelay polls the outbox
+@EnableScheduling
 public class KafkaConfigurations {
     // User service is a producer service
     // 1. ZooKeeper running
@@ -24,21 +33,34 @@ public class KafkaConfigurations {
     // 2. Configure a template via which my code can communicate to kafka
     // 3. Send a kafka Event.
 
-    public Map<String, Object> getKafkaProducerConfig(){
-        Map<String, Object> configs = new HashMap<>();
-        configs.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        configs.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configs.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        return configs;
+    // Profile and overrides come from ewallet.kafka.producer.*, see ProducerProfile for what they set
+    @Bean
+    public ProducerSettings producerSettings(@Value("${ewallet.kafka.bootstrap-servers:localhost:9092}") String bootstrapServers,
+                                             @Value("${spring.application.name}") String clientId,
+                                             @Value("${ewallet.kafka.producer.profile:THROUGHPUT}") ProducerProfile profile,
+                                             @Value("${ewallet.kafka.producer.linger-ms:#{null}}") Integer lingerMs,
+                                             @Value("${ewallet.kafka.producer.batch-size:#{null}}") Integer batchSize,
+                                             @Value("${ewallet.kafka.producer.compression-type:}") String compressionType){
+        return new ProducerSettings(bootstrapServers, clientId, profile, lingerMs, batchSize, compressionType);
+    }
+
+    @Bean
+    public ProducerFactory<String, byte[]> kafkaProducerFactory(ProducerSettings producerSettings,
+                                                                ObjectProvider<MeterRegistry> meterRegistry){
+        return KafkaProducers.producerFactory(producerSettings, meterRegistry.getIfAvailable());
     }
 
     @Bean
-    public ProducerFactory<String, String> kafkaProducerFactory(){
-        return new DefaultKafkaProducerFactory<String, String>(getKafkaProducerConfig());
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> kafkaProducerFactory){
+        return new KafkaTemplate<>(kafkaProducerFactory);
     }
 
     @Bean
-    public KafkaTemplate<String, String> kafkaTemplate(){
-        return new KafkaTemplate<String, String>(kafkaProducerFactory());
+    public OutboxRelay<OutboxEvent> outboxRelay(OutboxEventRepository outboxEventRepository,
+                                                KafkaTemplate<String, byte[]> kafkaTemplate,
+                                                TransactionOperations transactionOperations,
+                                                @Value("${ewallet.outbox.batch-size:500}") int batchSize,
+                                                @Value("${ewallet.outbox.send-timeout:30s}") Duration sendTimeout){
+        return new OutboxRelay<>(outboxEventRepository, kafkaTemplate, transactionOperations, batchSize, sendTimeout);
     }
 }
@@ -1,5 +1,12 @@
 package com.sathwick.ewallet.userservice.config;
 
+import com.sathwick.ewallet.userservice.service.password.PasswordHasher;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -8,9 +15,27 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class SecurityConfiguration {
 
+    // Hashes made with a lower strength still match, they are upgraded on the next login (PasswordHasher.needsRehash)
     @Bean
-    public PasswordEncoder getPasswordEncoder(){
-        // prototype example.
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder getPasswordEncoder(@Value("${ewallet.password.bcrypt-strength:10}") int strength){
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    // Queue depth, active threads and completed hashes show up as executor.* with name=passwordHasher
+    @Bean(destroyMethod = "close")
+    public PasswordHasher passwordHasher(PasswordEncoder passwordEncoder,
+                                         @Value("${ewallet.password.hash-threads:0}") int threads,
+                                         @Value("${ewallet.password.queue-capacity:256}") int queueCapacity,
+                                         ObjectProvider<MeterRegistry> meterRegistry){
+        // hashing is pure CPU, one thread per core by default
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        PasswordHasher passwordHasher = new PasswordHasher(passwordEncoder, poolSize, queueCapacity);
+        meterRegistry.ifAvailable(registry -> {
+            new ExecutorServiceMetrics(passwordHasher.getExecutor(), "passwordHasher", Tags.empty()).bindTo(registry);
+            FunctionCounter.builder("ewallet.password.hash.rejected", passwordHasher, PasswordHasher::rejected)
+                    .description("Hash requests turned away because the queue was full")
+                    .register(registry);
+        });
+        return passwordHasher;
     }
 }
@@ -1,19 +1,31 @@
 package com.sathwick.ewallet.userservice.controller;
 
 
+import com.sathwick.ewallet.common.resilience.TargetUnavailableException;
 import com.sathwick.ewallet.userservice.exception.UserException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestControllerAdvice
 public class ControllerAdvice {
 
+    // how long an open circuit to the transaction service rejects calls, the Retry-After of those rejections
+    @Value("${ewallet.resilience.transaction.open-duration:${ewallet.resilience.open-duration:10s}}")
+    Duration openDuration;
+
     @ExceptionHandler(UserException.class)
     public ResponseEntity<Map<String, String>> handleUserException(UserException e) {
         Map<String, String> errorsMap = new HashMap<>();
@@ -22,6 +34,40 @@ public class ControllerAdvice {
         return new ResponseEntity<>(errorsMap, HttpStatus.BAD_REQUEST);
     }
 
+    // PasswordHasher queue is full, the client should retry later
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String>> handleRejectedExecutionException(RejectedExecutionException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_SERVER_BUSY_EXCEPTION");
+        errorsMap.put("message", "Server Busy, Try Again Later");
+        return new ResponseEntity<>(errorsMap, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // The transaction service is overloaded or failing, the transfer was not started, the client should retry later
+    // with the same Idempotency-Key
+    @ExceptionHandler(TargetUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleTargetUnavailableException(TargetUnavailableException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_SERVICE_UNAVAILABLE_EXCEPTION");
+        errorsMap.put("message", e.getMessage());
+        long retryAfter = e.getReason() == TargetUnavailableException.Reason.CIRCUIT_OPEN ? Math.max(1, openDuration.toSeconds()) : 1;
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(errorsMap);
+    }
+
+    // The transaction service turned the transfer down (400), doesn't know it (404) or refuses transfers for now (503),
+    // passed on with its status and Retry-After
+    @ExceptionHandler(HttpStatusCodeException.class)
+    public ResponseEntity<Map<String, String>> handleTransactionServiceError(HttpStatusCodeException e) {
+        return transactionServiceError(e.getStatusCode(), e.getResponseHeaders());
+    }
+
+    @ExceptionHandler(WebClientResponseException.class)
+    public ResponseEntity<Map<String, String>> handleTransactionServiceError(WebClientResponseException e) {
+        return transactionServiceError(e.getStatusCode(), e.getHeaders());
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException exception){
         Map<String, String> errorsMap = new HashMap<>();
@@ -30,4 +76,15 @@ public class ControllerAdvice {
         return new ResponseEntity<>(errorsMap, HttpStatus.BAD_REQUEST);
     }
 
+    private static ResponseEntity<Map<String, String>> transactionServiceError(HttpStatusCode status, HttpHeaders headers) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_TRANSACTION_FAILURE_EXCEPTION");
+        errorsMap.put("message", "Transaction Failure");
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        String retryAfter = headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            response.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return response.body(errorsMap);
+    }
 }
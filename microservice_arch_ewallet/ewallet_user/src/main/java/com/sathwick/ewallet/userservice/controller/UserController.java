@@ -1,7 +1,10 @@
 package com.sathwick.ewallet.userservice.controller;
 
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
 import com.sathwick.ewallet.userservice.service.UserService;
+import com.sathwick.ewallet.userservice.service.resource.LoginRequest;
 import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
 import com.sathwick.ewallet.userservice.service.resource.UserRequest;
 import com.sathwick.ewallet.userservice.service.resource.UserResponse;
 import jakarta.validation.Valid;
@@ -11,16 +14,26 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 public class UserController {
 
     @Autowired
     UserService userService;
 
+    // Async response like transfer, the request thread is released while the password is hashed
     @PostMapping("/signup")
-    public ResponseEntity<?> createUser(@RequestBody @Valid UserRequest userRequest){
-        userService.createUser(userRequest.toUser());
-        return new ResponseEntity<>(HttpEntity.EMPTY, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<?>> createUser(@RequestBody @Valid UserRequest userRequest){
+        return userService.createUserAsync(userRequest.toUser())
+                .thenApply(created -> new ResponseEntity<>(HttpEntity.EMPTY, HttpStatus.CREATED));
+    }
+
+    @PostMapping("/login")
+    public CompletableFuture<ResponseEntity<UserResponse>> login(@RequestBody @Valid LoginRequest loginRequest){
+        return userService.loginAsync(loginRequest.getName(), loginRequest.getPassword())
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
     }
 
     @GetMapping("/users/{id}")
@@ -36,20 +49,27 @@ public class UserController {
     }
 
     @PutMapping("/users/{id}")
-    public ResponseEntity<UserResponse> updateUser(@RequestBody @Valid UserRequest userRequest, @PathVariable("id") String userId){
-        UserResponse response = userService.updateUser(userRequest, userId);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<UserResponse>> updateUser(@RequestBody @Valid UserRequest userRequest, @PathVariable("id") String userId){
+        return userService.updateUserAsync(userRequest, userId)
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
     }
 
+    // Answers 202 once the transaction service started the transfer, the outcome is polled from the Location
     @PostMapping("/users/{id}/transfer")
-    public ResponseEntity<String> performTransaction(@PathVariable("id") String userId, @RequestBody @Valid TransactionRequest transactionRequest){
-        boolean success = userService.transfer(Long.valueOf(userId), transactionRequest);
-        if(success){
-            return new ResponseEntity<>("Transaction Succesful", HttpStatus.OK);
-        }
-        else {
-            return new ResponseEntity<>("Transaction Failure", HttpStatus.BAD_REQUEST);
-        }
+    public CompletableFuture<ResponseEntity<TransferResponse>> performTransaction(@PathVariable("id") String userId,
+                                                                                 @RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                                                                 @RequestBody @Valid TransactionRequest transactionRequest){
+        return userService.transferAsync(Long.valueOf(userId), transactionRequest, idempotencyKey)
+                .thenApply(response -> ResponseEntity.accepted()
+                        .location(URI.create("/users/" + userId + "/transfers/" + response.getTransferId()))
+                        .body(response));
+    }
+
+    @GetMapping("/users/{id}/transfers/{transfer-id}")
+    public CompletableFuture<ResponseEntity<TransferResponse>> getTransfer(@PathVariable("id") String userId,
+                                                                           @PathVariable("transfer-id") Long transferId){
+        return userService.getTransferAsync(Long.valueOf(userId), transferId)
+                .thenApply(response -> new ResponseEntity<>(response, HttpStatus.OK));
     }
 
 }
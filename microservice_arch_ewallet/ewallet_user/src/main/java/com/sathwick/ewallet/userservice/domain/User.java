@@ -10,11 +10,15 @@ import lombok.*;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(name = User.NAME_CONSTRAINT, columnNames = "name"))
 public class User {
+    // also the index behind findByName / existsByName
+    public static final String NAME_CONSTRAINT = "uk_users_name";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long  userId;
+    @Column(nullable = false)
     private String name;
     private String password;
     private String email;
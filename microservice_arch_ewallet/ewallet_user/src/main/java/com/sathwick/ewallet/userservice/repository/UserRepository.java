@@ -1,12 +1,35 @@
 package com.sathwick.ewallet.userservice.repository;
 
 import com.sathwick.ewallet.userservice.domain.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByName(String name);
+
+    // SELECT ... LIMIT 1 on the unique index of users.name, nothing is loaded
+    boolean existsByName(String name);
+
+    @Query("SELECT u.userId AS userId, u.name AS name FROM User u WHERE u.userId > :afterId ORDER BY u.userId")
+    List<IdAndName> findNamesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Only replaces the hash it was computed from, a password changed meanwhile is left alone
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.userId = :userId AND u.password = :oldPassword")
+    int replacePassword(@Param("userId") Long userId, @Param("oldPassword") String oldPassword, @Param("newPassword") String newPassword);
+
+    interface IdAndName {
+        Long getUserId();
+        String getName();
+    }
 }
@@ -2,13 +2,26 @@ package com.sathwick.ewallet.userservice.service;
 
 import com.sathwick.ewallet.userservice.domain.User;
 import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
 import com.sathwick.ewallet.userservice.service.resource.UserRequest;
 import com.sathwick.ewallet.userservice.service.resource.UserResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
     void createUser(User user);
+    // Password hashing runs on PasswordHasher, the calling thread only does the lookups
+    CompletableFuture<Void> createUserAsync(User user);
     UserResponse getUser(String userId);
     UserResponse deleteUser(String userId);
     UserResponse updateUser(UserRequest userRequest, String id);
-    boolean transfer(Long userId, TransactionRequest request);
+    CompletableFuture<UserResponse> updateUserAsync(UserRequest userRequest, String id);
+    // Fails with EWALLET_INVALID_CREDENTIALS_EXCEPTION, rehashes the password if it was hashed with older parameters
+    CompletableFuture<UserResponse> loginAsync(String name, String password);
+    TransferResponse transfer(Long userId, TransactionRequest request);
+    // Completes once the transaction service accepted the transfer, its outcome is read with getTransferAsync. Fails
+    // with a TargetUnavailableException when the transaction service is overloaded or failing
+    CompletableFuture<TransferResponse> transferAsync(Long userId, TransactionRequest request, String idempotencyKey);
+    // Fails with EWALLET_TRANSFER_NOT_FOUND_EXCEPTION unless the user sent or received the transfer
+    CompletableFuture<TransferResponse> getTransferAsync(Long userId, Long transferId);
 }
@@ -0,0 +1,55 @@
+package com.sathwick.ewallet.userservice.service.client;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+// Blocks the calling thread until the transaction service answered, the returned futures are always complete
+@Component
+@ConditionalOnProperty(name = "ewallet.http.client-mode", havingValue = "blocking", matchIfMissing = true)
+public class RestTemplateTransactionClient implements TransactionClient {
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ResilientTargets resilientTargets;
+
+    @Override
+    public CompletableFuture<TransferResponse> transfer(Long senderId, TransactionRequest request, String idempotencyKey) {
+        HttpHeaders headers = new HttpHeaders();
+        if (idempotencyKey != null) {
+            headers.set(IdempotencyCache.HEADER, idempotencyKey);
+        }
+        // runs on this thread, holding one of the transaction bulkhead slots
+        return resilientTargets.target(TARGET).call(() -> {
+            try {
+                ResponseEntity<TransferResponse> response = restTemplate.postForEntity(TRANSFERS_URL + senderId, new HttpEntity<>(request, headers), TransferResponse.class);
+                return CompletableFuture.completedFuture(response.getBody());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<TransferResponse> getTransfer(Long transferId) {
+        return resilientTargets.target(TARGET).call(() -> {
+            try {
+                return CompletableFuture.completedFuture(restTemplate.getForObject(TRANSFERS_URL + transferId, TransferResponse.class));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.sathwick.ewallet.userservice.service.client;
+
+import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Calls to the transfer sagas of the transaction service: {@code POST http://transaction/transfers/{user-id}} starts
+ * one and completes as soon as it is accepted, {@code GET http://transaction/transfers/{transfer-id}} reads its
+ * status. The implementation is picked with {@code ewallet.http.client-mode}. Both go through the {@link #TARGET}
+ * bulkhead, circuit breaker and adaptive timeout.
+ */
+public interface TransactionClient {
+    String TRANSFERS_URL = "http://transaction/transfers/";
+    // ResilientTargets name
+    String TARGET = "transaction";
+
+    CompletableFuture<TransferResponse> transfer(Long senderId, TransactionRequest request, String idempotencyKey);
+
+    // Fails with the 404 of the transaction service for an unknown transfer
+    CompletableFuture<TransferResponse> getTransfer(Long transferId);
+}
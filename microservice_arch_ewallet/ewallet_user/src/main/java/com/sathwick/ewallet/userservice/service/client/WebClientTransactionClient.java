@@ -0,0 +1,53 @@
+package com.sathwick.ewallet.userservice.service.client;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import com.sathwick.ewallet.common.resilience.ResilientTarget;
+import com.sathwick.ewallet.common.resilience.ResilientTargets;
+import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.concurrent.CompletableFuture;
+
+// Non-blocking, no thread waits for the transaction service while a call is in flight
+@Component
+@ConditionalOnProperty(name = "ewallet.http.client-mode", havingValue = "reactive")
+public class WebClientTransactionClient implements TransactionClient {
+
+    private final WebClient webClient;
+    private final ResilientTarget transaction;
+
+    @Autowired
+    public WebClientTransactionClient(WebClient.Builder loadBalancedWebClientBuilder, ResilientTargets resilientTargets) {
+        this.webClient = loadBalancedWebClientBuilder.build();
+        this.transaction = resilientTargets.target(TARGET);
+    }
+
+    @Override
+    public CompletableFuture<TransferResponse> transfer(Long senderId, TransactionRequest request, String idempotencyKey) {
+        // cancelling the future on timeout cancels the request
+        return transaction.call(() -> webClient.post()
+                .uri(TRANSFERS_URL + senderId)
+                .headers(headers -> {
+                    if (idempotencyKey != null) {
+                        headers.set(IdempotencyCache.HEADER, idempotencyKey);
+                    }
+                })
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(TransferResponse.class)
+                .toFuture());
+    }
+
+    @Override
+    public CompletableFuture<TransferResponse> getTransfer(Long transferId) {
+        return transaction.call(() -> webClient.get()
+                .uri(TRANSFERS_URL + transferId)
+                .retrieve()
+                .bodyToMono(TransferResponse.class)
+                .toFuture());
+    }
+}
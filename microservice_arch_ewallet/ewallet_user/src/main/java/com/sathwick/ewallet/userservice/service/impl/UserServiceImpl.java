@@ -1,22 +1,32 @@
 package com.sathwick.ewallet.userservice.service.impl;
 
+import com.sathwick.ewallet.userservice.domain.OutboxEvent;
 import com.sathwick.ewallet.userservice.domain.User;
 import com.sathwick.ewallet.userservice.exception.UserException;
+import com.sathwick.ewallet.userservice.repository.OutboxEventRepository;
 import com.sathwick.ewallet.userservice.repository.UserRepository;
 import com.sathwick.ewallet.userservice.service.UserService;
+import com.sathwick.ewallet.userservice.service.client.TransactionClient;
+import com.sathwick.ewallet.userservice.service.password.PasswordHasher;
+import com.sathwick.ewallet.userservice.service.signup.KnownUsernames;
 import com.sathwick.ewallet.userservice.service.resource.TransactionRequest;
+import com.sathwick.ewallet.userservice.service.resource.TransferResponse;
 import com.sathwick.ewallet.userservice.service.resource.UserRequest;
 import com.sathwick.ewallet.userservice.service.resource.UserResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Service
 @Slf4j
@@ -28,42 +38,64 @@ public class UserServiceImpl implements UserService {
     @Value("${kafka.topic.user-deleted}")
     private String USER_DELETED_TOPIC;
 
+    @Value("${kafka.topic.user-updated}")
+    private String USER_UPDATED_TOPIC;
+
     @Autowired
-    private RestTemplate restTemplate;
+    private TransactionClient transactionClient;
 
     private final UserRepository userRepository;
 
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+
+    private final OutboxEventRepository outboxEventRepository;
+
+    private final TransactionOperations transactionOperations;
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KnownUsernames knownUsernames;
 
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, KafkaTemplate<String, String> kafkaTemplate) {
+    // Continues requests once their password is hashed, the DB work doesn't hold the hashing threads
+    private final Executor taskExecutor;
+
+    public UserServiceImpl(UserRepository userRepository, PasswordHasher passwordHasher, OutboxEventRepository outboxEventRepository,
+                           TransactionOperations transactionOperations, KnownUsernames knownUsernames,
+                           @Qualifier("applicationTaskExecutor") Executor taskExecutor) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
-        this.kafkaTemplate = kafkaTemplate;
+        this.passwordHasher = passwordHasher;
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionOperations = transactionOperations;
+        this.knownUsernames = knownUsernames;
+        this.taskExecutor = taskExecutor;
     }
 
     @Override
     public void createUser(User user) {
-        Optional<User> optionalUser = userRepository.findByName(user.getName());
-        // check if user is valid
-        // check if username exists
-        if (optionalUser.isPresent()) {
-            throw new UserException("EWALLET_USER_EXISTS_EXCEPTION", "User " + optionalUser.get().getName() + " Already Exists");
+        join(createUserAsync(user));
+    }
+
+    @Override
+    public CompletableFuture<Void> createUserAsync(User user) {
+        // check if username exists, only an early exit that saves hashing the password: names the filter has never
+        // seen are free unless another instance just took them, which the unique constraint catches below
+        if (knownUsernames.mightExist(user.getName()) && userRepository.existsByName(user.getName())) {
+            throw userExists(user.getName());
         }
         // Encode the password before storing
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
-        // save the user to db
-        userRepository.save(user);
-        try {
-            // create a user created event and wallet service will consume this event and creates the wallet service asynchronously
-            kafkaTemplate.send(USER_CREATED_TOPIC, String.valueOf(user.getUserId()));
-        }
-        catch (Exception e){
-            // Rollback user creation
-            userRepository.delete(user);
-            log.error("Kafka Exception "+e.getMessage());
-        }
+        return passwordHasher.encode(user.getPassword()).thenAcceptAsync(encodedPassword -> {
+            user.setPassword(encodedPassword);
+            try {
+                transactionOperations.executeWithoutResult(status -> {
+                    // save the user to db
+                    userRepository.save(user);
+                    // user created event, wallet service consumes it and creates the wallet asynchronously.
+                    // Committed together with the user, OutboxRelay publishes it
+                    publish(USER_CREATED_TOPIC, String.valueOf(user.getUserId()));
+                });
+            } catch (DataIntegrityViolationException e) {
+                throw duplicateName(e, user.getName());
+            }
+            knownUsernames.add(user.getName());
+        }, taskExecutor);
     }
 
     @Override
@@ -74,65 +106,156 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public UserResponse deleteUser(String userId) {
         User user = userRepository.findById(Long.valueOf(userId)).orElseThrow(() -> new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "User Not Found"));
         userRepository.deleteById(Long.valueOf(userId));
-        // send event to wallet service to delete wallet
-        kafkaTemplate.send(USER_DELETED_TOPIC, userId);
+        // send event to wallet service to delete wallet, notification service drops its cached profile on it too
+        publish(USER_DELETED_TOPIC, userId);
         return new UserResponse(user);
     }
 
     @Override
     public UserResponse updateUser(UserRequest userRequest, String id) {
+        return join(updateUserAsync(userRequest, id));
+    }
+
+    @Override
+    public CompletableFuture<UserResponse> updateUserAsync(UserRequest userRequest, String id) {
         // Fetch user, if not present throw exception
         User existingUser = userRepository.findById(Long.valueOf(id))
                 .orElseThrow(() -> new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "User Not Found"));
 
         // Check if there are any changes between the existing user and the user request
-        boolean hasChanges = !userRequest.getEmail().equals(existingUser.getEmail()) ||
+        boolean detailsChanged = !userRequest.getEmail().equals(existingUser.getEmail()) ||
                 !userRequest.getName().equals(existingUser.getName()) ||
-                !passwordEncoder.matches(userRequest.getPassword(), existingUser.getPassword()) ||
                 !userRequest.getPhone().equals(existingUser.getPhone());
 
-        if (!hasChanges) {
-            throw new UserException("EWALLET_NO_CHANGES_FOUND_EXCEPTION", "No Changes Found");
-        }
-
-        // Update the user object with the new values from the request
-        existingUser.setEmail(userRequest.getEmail());
-        existingUser.setName(userRequest.getName());
-        existingUser.setPassword(passwordEncoder.encode(userRequest.getPassword()));
-        existingUser.setPhone(userRequest.getPhone());
-
-        // Save the updated user to the repository
-        User updatedUser = userRepository.save(existingUser);
+        return passwordHasher.matches(userRequest.getPassword(), existingUser.getPassword()).thenCompose(samePassword -> {
+            if (!samePassword) {
+                return passwordHasher.encode(userRequest.getPassword());
+            }
+            if (!detailsChanged) {
+                throw new UserException("EWALLET_NO_CHANGES_FOUND_EXCEPTION", "No Changes Found");
+            }
+            // unchanged password keeps its hash, unless that was made with older parameters
+            return passwordHasher.needsRehash(existingUser.getPassword())
+                    ? passwordHasher.encode(userRequest.getPassword())
+                    : CompletableFuture.completedFuture(existingUser.getPassword());
+        }).thenApplyAsync(encodedPassword -> {
+            // Update the user object with the new values from the request
+            existingUser.setEmail(userRequest.getEmail());
+            existingUser.setName(userRequest.getName());
+            existingUser.setPassword(encodedPassword);
+            existingUser.setPhone(userRequest.getPhone());
 
-        // Return the updated user response
-        return new UserResponse(updatedUser);
+            User updatedUser;
+            try {
+                updatedUser = transactionOperations.execute(status -> {
+                    // Save the updated user to the repository
+                    User saved = userRepository.saveAndFlush(existingUser);
+                    // notification service caches name and email, tell it to reload them
+                    publish(USER_UPDATED_TOPIC, id);
+                    return saved;
+                });
+            } catch (DataIntegrityViolationException e) {
+                throw duplicateName(e, userRequest.getName());
+            }
+            knownUsernames.add(updatedUser.getName());
+            // Return the updated user response
+            return new UserResponse(updatedUser);
+        }, taskExecutor);
     }
 
     @Override
-    public boolean transfer(Long senderId, TransactionRequest request) {
-        try {
-            log.info("Initiaing transfer from user "+senderId+" with request "+request.toString());
-            Optional<User> senderOptional = userRepository.findById(senderId);
-            if (senderOptional.isEmpty()) {
-                throw new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "Sender with id +" + senderId + "+ Not Found");
+    public CompletableFuture<UserResponse> loginAsync(String name, String password) {
+        User user = userRepository.findByName(name)
+                .orElseThrow(() -> new UserException("EWALLET_INVALID_CREDENTIALS_EXCEPTION", "Invalid Credentials"));
+        String storedPassword = user.getPassword();
+        return passwordHasher.matches(password, storedPassword).thenCompose(matches -> {
+            if (!matches) {
+                throw new UserException("EWALLET_INVALID_CREDENTIALS_EXCEPTION", "Invalid Credentials");
             }
-            Optional<User> receiverOptional = userRepository.findById(request.getReceiverId());
-            if (receiverOptional.isEmpty()) {
-                throw new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "Receiver with id +" + request.getReceiverId() + "+ Not Found");
+            if (!passwordHasher.needsRehash(storedPassword)) {
+                return CompletableFuture.completedFuture(new UserResponse(user));
             }
-            // balance validation will be done at wallet service
-            // now perform a rest call to Transaction Service and call should be according to controller of transaction service.
-            ResponseEntity<Boolean> response = restTemplate.postForEntity("http://transaction/transactions/" + senderId, request, Boolean.class);
-            log.info("Transfer response "+response.getBody());
-            return response.getBody();
+            // hashed with an older work factor, store a hash with the current one while we have the password
+            return passwordHasher.encode(password).thenApplyAsync(encodedPassword -> {
+                if (userRepository.replacePassword(user.getUserId(), storedPassword, encodedPassword) == 1) {
+                    log.info("Upgraded password hash of user " + user.getUserId());
+                }
+                return new UserResponse(user);
+            }, taskExecutor);
+        });
+    }
+
+    @Override
+    public TransferResponse transfer(Long senderId, TransactionRequest request) {
+        return join(transferAsync(senderId, request, null));
+    }
+
+    @Override
+    public CompletableFuture<TransferResponse> transferAsync(Long senderId, TransactionRequest request, String idempotencyKey) {
+        log.info("Initiaing transfer from user "+senderId+" with request "+request.toString());
+        Optional<User> senderOptional = userRepository.findById(senderId);
+        if (senderOptional.isEmpty()) {
+            throw new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "Sender with id +" + senderId + "+ Not Found");
         }
-        catch (Exception e){
-            log.error("Internal Server Error: Exception in transfer "+e.getMessage());
-            return false;
+        Optional<User> receiverOptional = userRepository.findById(request.getReceiverId());
+        if (receiverOptional.isEmpty()) {
+            throw new UserException("EWALLET_USER_NOT_FOUND_EXCEPTION", "Receiver with id +" + request.getReceiverId() + "+ Not Found");
         }
+        // balance validation will be done at wallet service, the transaction service runs the transfer as a saga
+        // and answers once it is started. Failures of the call reach the caller as they are
+        return transactionClient.transfer(senderId, request, idempotencyKey).thenApply(response -> {
+            log.info("Transfer " + response.getTransferId() + " is " + response.getStatus());
+            return response;
+        });
     }
 
+    @Override
+    public CompletableFuture<TransferResponse> getTransferAsync(Long userId, Long transferId) {
+        return transactionClient.getTransfer(transferId).thenApply(response -> {
+            // transfer ids are sequential, nobody reads the transfers of other users by counting
+            if (!userId.equals(response.getSenderId()) && !userId.equals(response.getReceiverId())) {
+                throw new UserException("EWALLET_TRANSFER_NOT_FOUND_EXCEPTION", "Transfer " + transferId + " Not Found");
+            }
+            return response;
+        });
+    }
+
+    // Keyed and valued by user id (plain UTF-8 text, the consumers read it as a String), so all events of one
+    // user land on one partition in order
+    private void publish(String topic, String userId) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .topic(topic)
+                .messageKey(userId)
+                .payload(userId.getBytes(StandardCharsets.UTF_8))
+                .build());
+    }
+
+    private static UserException userExists(String name) {
+        return new UserException("EWALLET_USER_EXISTS_EXCEPTION", "User " + name + " Already Exists");
+    }
+
+    // The unique constraint on users.name is the only reliable duplicate check, concurrent signups race past any read
+    private static RuntimeException duplicateName(DataIntegrityViolationException e, String name) {
+        String message = e.getMostSpecificCause().getMessage();
+        if (message != null && message.contains(User.NAME_CONSTRAINT)) {
+            return userExists(name);
+        }
+        return e;
+    }
+
+    // Rethrows what failed the future, e.g. the UserException, instead of the CompletionException around it
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
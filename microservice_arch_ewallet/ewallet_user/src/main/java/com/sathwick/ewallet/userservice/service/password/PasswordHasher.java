@@ -0,0 +1,80 @@
+package com.sathwick.ewallet.userservice.service.password;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing and verification off the request threads.
+ * <p>
+ * A BCrypt call costs about 100ms of CPU at strength 10 and doubles with every step, so they run on a fixed pool
+ * of {@code threads} with at most {@code queueCapacity} waiting. Beyond that the returned future fails right away
+ * with a {@link RejectedExecutionException} (answered with 503) instead of a signup storm holding every Tomcat
+ * thread. See SecurityConfiguration for the queue depth metrics.
+ */
+@Slf4j
+public class PasswordHasher implements AutoCloseable {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public PasswordHasher(PasswordEncoder passwordEncoder, int threads, int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "password-hasher-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // True when the hash was made with other parameters (e.g. a lower strength) than the encoder uses now
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    public ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> hashing) {
+        try {
+            return CompletableFuture.supplyAsync(hashing, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            log.warn("Password hashing queue full ({} queued), rejecting request", executor.getQueue().size());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
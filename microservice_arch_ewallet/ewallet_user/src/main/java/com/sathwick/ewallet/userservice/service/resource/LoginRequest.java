@@ -0,0 +1,18 @@
+package com.sathwick.ewallet.userservice.service.resource;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoginRequest {
+    @NotBlank
+    private String name;
+    @NotBlank
+    private String password;
+}
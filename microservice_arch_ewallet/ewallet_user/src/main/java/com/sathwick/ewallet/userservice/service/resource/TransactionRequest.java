@@ -1,6 +1,7 @@
 package com.sathwick.ewallet.userservice.service.resource;
 
 
+import com.sathwick.ewallet.common.money.Money;
 import lombok.*;
 
 @NoArgsConstructor
@@ -10,7 +11,7 @@ import lombok.*;
 @Builder
 public class TransactionRequest {
     private Long receiverId;
-    private Double amount;
+    private Money amount;
     private String description;
     private String transactionType;
 
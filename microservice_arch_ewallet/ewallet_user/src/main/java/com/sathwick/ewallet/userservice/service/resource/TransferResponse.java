@@ -0,0 +1,24 @@
+package com.sathwick.ewallet.userservice.service.resource;
+
+import com.sathwick.ewallet.common.money.Money;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Transfer saga as the transaction service reports it on POST and GET /transfers
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TransferResponse {
+    private Long transferId;
+    private Long senderId;
+    private Long receiverId;
+    private Money amount;
+    private String transactionType;
+    // PENDING and COMPENSATING are still moving, COMPLETED, FAILED, COMPENSATED and COMPENSATION_FAILED are final
+    private String status;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
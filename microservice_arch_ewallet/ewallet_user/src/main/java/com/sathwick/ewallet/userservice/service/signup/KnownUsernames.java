@@ -0,0 +1,79 @@
+package com.sathwick.ewallet.userservice.service.signup;
+
+import com.sathwick.ewallet.userservice.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Answers "is this name definitely free" without a DB round trip, from a {@link UsernameBloomFilter} over all user
+ * names. Filled in the background after startup, until then every name counts as possibly taken.
+ * <p>
+ * Only a shortcut: names signed up on other instances are missing here, the unique constraint on users.name is
+ * what actually rejects duplicates.
+ */
+@Component
+@Slf4j
+public class KnownUsernames {
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final UsernameBloomFilter filter;
+    private final long expectedNames;
+    private volatile boolean loaded;
+
+    public KnownUsernames(UserRepository userRepository,
+                          @Value("${ewallet.signup.bloom.expected-names:10000000}") long expectedNames,
+                          @Value("${ewallet.signup.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.expectedNames = expectedNames;
+        this.filter = new UsernameBloomFilter(expectedNames, falsePositiveRate);
+    }
+
+    public boolean mightExist(String name) {
+        return !loaded || filter.mightContain(name);
+    }
+
+    // Called after the user is committed
+    public void add(String name) {
+        filter.put(name);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(this::load, "username-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    void load() {
+        long start = System.nanoTime();
+        try {
+            // keyset pages over the primary key, no offset scans on a large table
+            long afterId = 0;
+            List<UserRepository.IdAndName> page;
+            do {
+                page = userRepository.findNamesAfter(afterId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+                for (UserRepository.IdAndName user : page) {
+                    filter.put(user.getName());
+                    afterId = user.getUserId();
+                }
+            } while (page.size() == LOAD_BATCH_SIZE);
+            loaded = true;
+            log.info("Loaded {} user names into the signup filter ({} KB) in {} ms", filter.insertions(),
+                    filter.sizeInBytes() / 1024, (System.nanoTime() - start) / 1_000_000);
+            if (filter.insertions() > expectedNames) {
+                log.warn("More users than ewallet.signup.bloom.expected-names, the filter is less selective than configured");
+            }
+        } catch (Exception e) {
+            // signups keep working, every name is checked against the DB
+            log.error("Unable to load the signup filter: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sathwick.ewallet.userservice.service.signup;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over user names. {@link #mightContain(String)} returning false means the name was never added,
+ * true means it probably was (false positives at about {@code falsePositiveRate} while no more than
+ * {@code expectedInsertions} names were added). Names can't be removed.
+ * <p>
+ * Thread safe without locks, bits are only ever set. Sized at about 1.2 bytes per expected name for a 1% rate.
+ */
+public class UsernameBloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public UsernameBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid bloom filter settings: expected=" + expectedInsertions
+                    + ", fpp=" + falsePositiveRate);
+        }
+        // m = -n ln p / (ln 2)^2, k = m / n ln 2
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = Math.toIntExact((optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public void put(String name) {
+        long hash1 = hash(name);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        // Kirsch-Mitzenmacher: the k indexes are hash1 + i * hash2
+        for (int i = 1; i <= hashCount; i++) {
+            setBit(((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount);
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String name) {
+        long hash1 = hash(name);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L);
+        for (int i = 1; i <= hashCount; i++) {
+            if (!getBit(((hash1 + i * hash2) & Long.MAX_VALUE) % bitCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long insertions() {
+        return insertions.get();
+    }
+
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+
+    private void setBit(long index) {
+        int word = (int) (index >>> 6);
+        long mask = 1L << index;
+        long current;
+        while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+            // lost the race against another bit of the same word, retry
+        }
+    }
+
+    private boolean getBit(long index) {
+        return (bits.get((int) (index >>> 6)) & (1L << index)) != 0;
+    }
+
+    // FNV-1a over the chars, mixed so that similar names spread over the whole range
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // murmur3 64 bit finalizer
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sathwick.ewallet.userservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Signup throughput against a running user service with a large users table. Seeds the table up to
+ * {@code SEEDED_USERS} rows over JDBC first (restart the service afterwards so the signup filter is loaded), then
+ * ramps in-flight signups with new names and with names that are already taken, printing throughput, p50 / p99
+ * latency and the status codes seen. Not part of the test run, start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sathwick.ewallet.userservice.loadtest.SignupLoadTest -Dexec.args="http://localhost:8081 jdbc:mysql://localhost:3306/user sathwick password"}
+ * Seeded users get a fixed password hash, they are not meant to log in.
+ */
+public class SignupLoadTest {
+
+    private static final long SEEDED_USERS = 10_000_000;
+    private static final int SEED_BATCH_SIZE = 5_000;
+    private static final int[] CONCURRENCY = {16, 64, 256};
+    private static final int REQUESTS_PER_STEP = 5_000;
+    private static final String SEEDED_PASSWORD = "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5ZKx/4Z1Iu0nG5G6d1l6Q5K";
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8081";
+        if (args.length > 3) {
+            seed(args[1], args[2], args[3]);
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        URI uri = URI.create(baseUrl + "/signup");
+        String run = UUID.randomUUID().toString().substring(0, 8);
+
+        System.out.printf("%-10s %8s %12s %10s %10s  %s%n", "names", "inflight", "signups/s", "p50 ms", "p99 ms", "status codes");
+        for (int concurrency : CONCURRENCY) {
+            int step = concurrency;
+            runStep(client, uri, "new", concurrency, i -> "load-" + run + "-" + step + "-" + i);
+            // seeded names, rejected by the existence check without hashing a password
+            runStep(client, uri, "taken", concurrency, i -> "seed-" + (i * 1_999L % SEEDED_USERS));
+        }
+    }
+
+    private static void seed(String jdbcUrl, String username, String password) throws Exception {
+        String url = jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            long existing;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM users WHERE name LIKE 'seed-%'")) {
+                rs.next();
+                existing = rs.getLong(1);
+            }
+            if (existing >= SEEDED_USERS) {
+                return;
+            }
+            System.out.printf("Seeding %d users...%n", SEEDED_USERS - existing);
+            connection.setAutoCommit(false);
+            long start = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT IGNORE INTO users (name, password, email, phone) VALUES (?, ?, ?, ?)")) {
+                for (long i = existing; i < SEEDED_USERS; i++) {
+                    insert.setString(1, "seed-" + i);
+                    insert.setString(2, SEEDED_PASSWORD);
+                    insert.setString(3, "seed-" + i + "@example.com");
+                    insert.setString(4, String.valueOf(9_000_000_000L + i));
+                    insert.addBatch();
+                    if ((i + 1) % SEED_BATCH_SIZE == 0 || i + 1 == SEEDED_USERS) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            System.out.printf("Seeded in %.0f s%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private static void runStep(HttpClient client, URI uri, String names, int concurrency, IntFunction<String> name)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(REQUESTS_PER_STEP));
+        AtomicInteger[] statusCounts = new AtomicInteger[6];
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new AtomicInteger();
+        }
+        List<CompletableFuture<?>> pending = new ArrayList<>(REQUESTS_PER_STEP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_PER_STEP; i++) {
+            inFlight.acquire();
+            String userName = name.apply(i);
+            String body = "{\"name\":\"" + userName + "\",\"password\":\"load-test\",\"email\":\"" + userName
+                    + "@example.com\",\"phone\":\"9999999999\"}";
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long sent = System.nanoTime();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies.add(System.nanoTime() - sent);
+                        // 0 counts connection errors, 2 to 5 the status classes
+                        statusCounts[error != null ? 0 : response.statusCode() / 100].incrementAndGet();
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%-10s %8d %12.0f %10.1f %10.1f  2xx=%d 4xx=%d 5xx=%d errors=%d%n", names, concurrency,
+                REQUESTS_PER_STEP / seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+                statusCounts[2].get(), statusCounts[4].get(), statusCounts[5].get(), statusCounts[0].get());
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+}
@@ -0,0 +1,84 @@
+package com.sathwick.ewallet.userservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ramps the number of in-flight transfers against a running user service and prints throughput, p50 / p99 latency
+ * and errors for every step, to compare {@code ewallet.http.client-mode=blocking} with {@code reactive}.
+ * Not part of the test run, start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sathwick.ewallet.userservice.loadtest.TransferLoadTest -Dexec.args="http://localhost:8081 1 2"}
+ * where the arguments are the base url, the sender id and the receiver id. Both users need a funded wallet.
+ */
+public class TransferLoadTest {
+
+    private static final int[] CONCURRENCY = {16, 64, 256, 1024};
+    private static final int REQUESTS_PER_STEP = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8081";
+        long senderId = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        long receiverId = args.length > 2 ? Long.parseLong(args[2]) : 2L;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        URI uri = URI.create(baseUrl + "/users/" + senderId + "/transfer");
+        String body = "{\"receiverId\":" + receiverId + ",\"amount\":0.01,\"description\":\"load test\"}";
+
+        System.out.printf("%8s %12s %10s %10s %8s%n", "inflight", "requests/s", "p50 ms", "p99 ms", "errors");
+        for (int concurrency : CONCURRENCY) {
+            runStep(client, uri, body, concurrency);
+        }
+    }
+
+    private static void runStep(HttpClient client, URI uri, String body, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(REQUESTS_PER_STEP));
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<?>> pending = new ArrayList<>(REQUESTS_PER_STEP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_PER_STEP; i++) {
+            inFlight.acquire();
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", UUID.randomUUID().toString())
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long sent = System.nanoTime();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies.add(System.nanoTime() - sent);
+                        if (error != null || response.statusCode() != 202) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("%8d %12.0f %10.1f %10.1f %8d%n", concurrency, REQUESTS_PER_STEP / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), errors.get());
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+}
@@ -0,0 +1,69 @@
+package com.sathwick.ewallet.userservice.service.password;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PasswordHasherTest {
+
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        passwordHasher.close();
+    }
+
+    @Test
+    void hashesOffTheCallingThread() throws Exception {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(4), 2, 16);
+
+        String encoded = passwordHasher.encode("secret").get(5, TimeUnit.SECONDS);
+
+        assertTrue(passwordHasher.matches("secret", encoded).get(5, TimeUnit.SECONDS));
+        assertFalse(passwordHasher.matches("other", encoded).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void hashesWithALowerStrengthNeedARehash() throws Exception {
+        String weak = new BCryptPasswordEncoder(4).encode("secret");
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), 1, 16);
+
+        assertTrue(passwordHasher.matches("secret", weak).get(5, TimeUnit.SECONDS));
+        assertTrue(passwordHasher.needsRehash(weak));
+        assertFalse(passwordHasher.needsRehash(passwordHasher.encode("secret").get(5, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    void rejectsOnceTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.encode(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return "hash";
+        });
+        passwordHasher = new PasswordHasher(slowEncoder, 1, 1);
+
+        CompletableFuture<String> running = passwordHasher.encode("a");
+        CompletableFuture<String> queued = passwordHasher.encode("b");
+        CompletableFuture<String> rejected = passwordHasher.encode("c");
+
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, passwordHasher.rejected());
+        release.countDown();
+        assertEquals("hash", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash", queued.get(5, TimeUnit.SECONDS));
+    }
+}
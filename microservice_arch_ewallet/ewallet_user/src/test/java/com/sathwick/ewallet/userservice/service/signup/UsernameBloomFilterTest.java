@@ -0,0 +1,43 @@
+package com.sathwick.ewallet.userservice.service.signup;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsernameBloomFilterTest {
+
+    @Test
+    void addedNamesAreAlwaysFound() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("user" + i);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("user" + i));
+        }
+        assertEquals(100_000, filter.insertions());
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredOne() {
+        UsernameBloomFilter filter = new UsernameBloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("someone" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 1_500, "false positives: " + falsePositives);
+        // about 9.6 bits per name
+        assertTrue(filter.sizeInBytes() < 130_000);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new UsernameBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new UsernameBloomFilter(100, 1));
+    }
+}
@@ -6,10 +6,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 
-@SpringBootApplication
+// Redis is only used by the optional balance cache tier, see BalanceCacheConfiguration.RedisTier
+@SpringBootApplication(exclude = RedisAutoConfiguration.class)
 public class WalletApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,77 @@
+package com.sathwick.ewallet.wallet.config;
+
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.cache.RedisBalanceCache;
+import com.sathwick.ewallet.wallet.service.cache.RemoteBalanceCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+
+@Configuration
+public class BalanceCacheConfiguration {
+
+    @Bean
+    public BalanceCache balanceCache(@Value("${ewallet.wallet.cache.enabled:true}") boolean enabled,
+                                     @Value("${ewallet.wallet.cache.near.max-size:100000}") long maximumSize,
+                                     @Value("${ewallet.wallet.cache.near.ttl:30s}") Duration ttl,
+                                     ObjectProvider<RemoteBalanceCache> remoteBalanceCache) {
+        if (!enabled) {
+            return BalanceCache.disabled();
+        }
+        return new BalanceCache(maximumSize, ttl, remoteBalanceCache.getIfAvailable());
+    }
+
+    // Shared tier for more than one wallet service instance, needs spring.data.redis.* to point at a Redis server.
+    // RedisAutoConfiguration is excluded in WalletApplication, the connection only exists while this tier is enabled.
+    @Configuration
+    @ConditionalOnProperty(name = "ewallet.wallet.cache.redis.enabled", havingValue = "true")
+    @EnableConfigurationProperties(RedisProperties.class)
+    static class RedisTier {
+
+        @Bean
+        public LettuceConnectionFactory redisConnectionFactory(RedisProperties redisProperties) {
+            RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(redisProperties.getHost(),
+                    redisProperties.getPort());
+            configuration.setDatabase(redisProperties.getDatabase());
+            configuration.setUsername(redisProperties.getUsername());
+            configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+            return new LettuceConnectionFactory(configuration);
+        }
+
+        @Bean
+        public StringRedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory) {
+            return new StringRedisTemplate(redisConnectionFactory);
+        }
+
+        @Bean(destroyMethod = "close")
+        public RedisBalanceCache redisBalanceCache(StringRedisTemplate redisTemplate,
+                                                   @Value("${ewallet.wallet.cache.redis.channel:wallet-balance-evictions}") String channel,
+                                                   @Value("${ewallet.wallet.cache.redis.ttl:60s}") Duration ttl,
+                                                   @Value("${ewallet.wallet.cache.redis.second-eviction-delay:500ms}") Duration secondEvictionDelay) {
+            return new RedisBalanceCache(redisTemplate, channel, ttl, secondEvictionDelay);
+        }
+
+        @Bean
+        public RedisMessageListenerContainer balanceEvictionListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                              RedisBalanceCache redisBalanceCache,
+                                                                              @Value("${ewallet.wallet.cache.redis.channel:wallet-balance-evictions}") String channel) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            container.addMessageListener(redisBalanceCache, new ChannelTopic(channel));
+            return container;
+        }
+    }
+}
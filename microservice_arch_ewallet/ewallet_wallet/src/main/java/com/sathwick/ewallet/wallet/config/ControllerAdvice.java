@@ -1,6 +1,7 @@
 package com.sathwick.ewallet.wallet.config;
 
 import com.sathwick.ewallet.wallet.exception.WalletException;
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestControllerAdvice
 public class ControllerAdvice {
@@ -21,6 +23,24 @@ public class ControllerAdvice {
         return new ResponseEntity<>(errorsMap, HttpStatus.BAD_REQUEST);
     }
 
+    // Failed batch or stopped batcher, the transaction was not applied and can be retried
+    @ExceptionHandler(WalletUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleWalletUnavailableException(WalletUnavailableException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", e.getType());
+        errorsMap.put("message", e.getMessage());
+        return new ResponseEntity<>(errorsMap, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // WalletEngine shard mailbox is full, the client should retry later
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<Map<String, String>> handleRejectedExecutionException(RejectedExecutionException e) {
+        Map<String, String> errorsMap = new HashMap<>();
+        errorsMap.put("type", "EWALLET_SERVER_BUSY_EXCEPTION");
+        errorsMap.put("message", "Server Busy, Try Again Later");
+        return new ResponseEntity<>(errorsMap, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException exception){
         Map<String, String> errorsMap = new HashMap<>();
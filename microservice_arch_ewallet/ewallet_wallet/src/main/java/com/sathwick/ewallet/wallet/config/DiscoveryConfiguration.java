@@ -0,0 +1,11 @@
+package com.sathwick.ewallet.wallet.config;
+
+import com.sathwick.ewallet.common.discovery.DiscoveryWarmUp;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+// The wallet turns UP in Eureka only once started, callers never see a wallet instance that can't serve yet
+@Configuration
+@Import(DiscoveryWarmUp.class)
+public class DiscoveryConfiguration {
+}
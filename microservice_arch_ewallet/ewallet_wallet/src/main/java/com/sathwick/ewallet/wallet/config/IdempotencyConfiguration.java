@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.wallet.config;
+
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class IdempotencyConfiguration {
+
+    // Keys come from the transaction service, which scopes them per sender
+    @Bean
+    public IdempotencyCache<Boolean> idempotencyCache(@Value("${ewallet.idempotency.max-size:250000}") long maximumSize,
+                                                      @Value("${ewallet.idempotency.ttl:15m}") Duration ttl) {
+        return new IdempotencyCache<>(maximumSize, ttl);
+    }
+}
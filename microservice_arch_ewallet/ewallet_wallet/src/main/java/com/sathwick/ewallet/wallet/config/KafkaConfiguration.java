@@ -1,9 +1,17 @@
 package com.sathwick.ewallet.wallet.config;
 
+import com.sathwick.ewallet.common.kafka.ProducerProfile;
+import com.sathwick.ewallet.common.kafka.ProducerSettings;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +23,63 @@ public class KafkaConfiguration {
         return new DefaultKafkaConsumerFactory<>(consumerConfig());
     }
 
+    // Batch listener for USER_CREATED, one poll of up to max-poll-records users becomes one DB transaction.
+    // Offsets are committed by the listener (manual ack) only after the wallets are stored.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchListenerContainerFactory(
+            @Value("${ewallet.wallet.create.max-poll-records:1000}") int maxPollRecords,
+            @Value("${ewallet.wallet.create.concurrency:1}") int concurrency){
+        Map<String, Object> props = consumerConfig();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    // Batch listener for the transfer saga commands, same manual ack as above: offsets are committed once the
+    // outcomes are stored and the replies are acknowledged by the broker
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> sagaCommandListenerContainerFactory(
+            @Value("${ewallet.saga.command.max-poll-records:256}") int maxPollRecords,
+            @Value("${ewallet.saga.command.concurrency:1}") int concurrency){
+        Map<String, Object> props = consumerConfig();
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setBatchListener(true);
+        factory.setConcurrency(concurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    // Saga replies are on the path of every transfer, hence the LATENCY profile by default
+    @Bean
+    public ProducerSettings producerSettings(@Value("${ewallet.kafka.bootstrap-servers:localhost:9092}") String bootstrapServers,
+                                             @Value("${spring.application.name}") String clientId,
+                                             @Value("${ewallet.kafka.producer.profile:LATENCY}") ProducerProfile profile,
+                                             @Value("${ewallet.kafka.producer.linger-ms:#{null}}") Integer lingerMs,
+                                             @Value("${ewallet.kafka.producer.batch-size:#{null}}") Integer batchSize,
+                                             @Value("${ewallet.kafka.producer.compression-type:}") String compressionType){
+        return new ProducerSettings(bootstrapServers, clientId, profile, lingerMs, batchSize, compressionType);
+    }
+
+    // No actuator in this service, so no producer metrics (KafkaProducers would bind them)
+    @Bean
+    public ProducerFactory<String, byte[]> kafkaProducerFactory(ProducerSettings producerSettings){
+        return new DefaultKafkaProducerFactory<>(producerSettings.toConfig());
+    }
+
+    @Bean
+    public KafkaTemplate<String, byte[]> kafkaTemplate(ProducerFactory<String, byte[]> kafkaProducerFactory){
+        return new KafkaTemplate<>(kafkaProducerFactory);
+    }
+
     private Map<String, Object> consumerConfig(){
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
@@ -0,0 +1,34 @@
+package com.sathwick.ewallet.wallet.config;
+
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.engine.WalletEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+// Without the engine wallet transactions go through the WalletTransferBatcher
+@Configuration
+@ConditionalOnProperty(name = "ewallet.wallet.engine.enabled", havingValue = "true")
+public class WalletEngineConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public WalletEngine walletEngine(WalletRepository walletRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     BalanceCache balanceCache,
+                                     @Value("${ewallet.wallet.engine.shards:8}") int shards,
+                                     @Value("${ewallet.wallet.engine.mailbox-capacity:65536}") int mailboxCapacity,
+                                     @Value("${ewallet.wallet.engine.max-batch-size:1024}") int maxBatchSize,
+                                     @Value("${ewallet.wallet.engine.checkpoint-interval:50ms}") Duration checkpointInterval,
+                                     @Value("${ewallet.wallet.engine.max-accounts-per-shard:100000}") int maxAccountsPerShard,
+                                     @Value("${ewallet.wallet.engine.log-dir:wallet-engine}") String logDirectory) throws IOException {
+        return new WalletEngine(walletRepository, transactionManager, balanceCache, new WalletEngine.Settings(
+                shards, mailboxCapacity, maxBatchSize, checkpointInterval, maxAccountsPerShard, Path.of(logDirectory)));
+    }
+}
@@ -1,7 +1,9 @@
 package com.sathwick.ewallet.wallet.controller;
 
+import com.sathwick.ewallet.common.idempotency.IdempotencyCache;
 import com.sathwick.ewallet.wallet.domain.Wallet;
 import com.sathwick.ewallet.wallet.service.WalletService;
+import com.sathwick.ewallet.wallet.service.resource.WalletBatchTransactionRequest;
 import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
 import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
 import jakarta.validation.Valid;
@@ -10,20 +12,34 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 public class WalletController {
 
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private IdempotencyCache<Boolean> idempotencyCache;
+
     @GetMapping("/wallet/{user-id}")
     public ResponseEntity<WalletResponse> getWalletDetails(@PathVariable("user-id") Long userId){
         return new ResponseEntity<>(walletService.getWallet(userId), HttpStatus.OK);
     }
 
     @PostMapping("/wallet/transaction")
-    public ResponseEntity<Boolean> performTransaction(@RequestBody @Valid WalletTransactionRequest walletTransactionRequest) {
-        Boolean response = walletService.performTransaction(walletTransactionRequest);
+    public ResponseEntity<Boolean> performTransaction(@RequestHeader(value = IdempotencyCache.HEADER, required = false) String idempotencyKey,
+                                                      @RequestBody @Valid WalletTransactionRequest walletTransactionRequest) {
+        // a retried request with the same key gets the first result, the balances are not touched again.
+        // Only results are remembered: a WalletUnavailableException (503) releases the key for the retry
+        Boolean response = idempotencyCache.execute(idempotencyKey, () -> WalletService.await(walletService.submitTransaction(walletTransactionRequest)));
         return Boolean.TRUE.equals(response) ? new ResponseEntity<>(response, HttpStatus.NO_CONTENT) : new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
+
+    // Result of every transaction in request order, each one succeeds or fails on its own
+    @PostMapping("/wallet/transactions/batch")
+    public ResponseEntity<List<Boolean>> performTransactions(@RequestBody @Valid WalletBatchTransactionRequest batchTransactionRequest) {
+        return new ResponseEntity<>(walletService.performTransactions(batchTransactionRequest.getTransactions()), HttpStatus.OK);
+    }
 }
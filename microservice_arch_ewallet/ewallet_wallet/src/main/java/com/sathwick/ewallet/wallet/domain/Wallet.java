@@ -1,8 +1,9 @@
 package com.sathwick.ewallet.wallet.domain;
 
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.common.money.MoneyConverter;
 import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
@@ -17,17 +18,27 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "wallet")
+@Table(name = "wallet", uniqueConstraints = @UniqueConstraint(name = Wallet.USER_ID_CONSTRAINT, columnNames = "user_id"))
 @Builder
 public class Wallet {
+    // one wallet per user, also the index behind the user_id lookups, row locks and guarded updates
+    public static final String USER_ID_CONSTRAINT = "uk_wallet_user_id";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     @NotNull
+    @Column(name = "user_id")
     private Long userId;
-    @Min(value = 0)
-    private Double balance;
+    // minor units (paise), never negative: debits are guarded in WalletRepository
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "balance_minor", columnDefinition = "bigint default 0")
+    private Money balance;
     private Boolean active;
+    // optimistic locking for code paths that still load and save the entity
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private Long version;
     @CreationTimestamp
     private LocalDateTime createdAt;
     @UpdateTimestamp
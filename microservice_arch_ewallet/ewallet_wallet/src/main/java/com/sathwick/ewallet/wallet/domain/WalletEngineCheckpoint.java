@@ -0,0 +1,22 @@
+package com.sathwick.ewallet.wallet.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Last write-ahead log record of a WalletEngine shard whose balance change is in the wallet table. Written in the
+ * same DB transaction as the balances, records after it are replayed from the log on startup.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "wallet_engine_checkpoint")
+@Builder
+public class WalletEngineCheckpoint {
+    @Id
+    private Integer shard;
+    @Column(nullable = false)
+    private Long lsn;
+}
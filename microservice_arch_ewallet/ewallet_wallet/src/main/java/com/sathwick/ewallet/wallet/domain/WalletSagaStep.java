@@ -0,0 +1,33 @@
+package com.sathwick.ewallet.wallet.domain;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * What the wallet service did for a transfer saga of the transaction service. Written in the same DB transaction
+ * as the balances by the WalletTransferBatcher, a redelivered saga command is answered from here.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "wallet_saga_step")
+@Builder
+public class WalletSagaStep {
+    @Id
+    private Long transferId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 12)
+    private Outcome outcome;
+
+    public enum Outcome {
+        APPLIED,
+        // the EXECUTE was rejected, nothing was moved
+        REJECTED,
+        // the CANCEL came first, the EXECUTE will be rejected
+        CANCELLED,
+        // applied and undone
+        COMPENSATED
+    }
+}
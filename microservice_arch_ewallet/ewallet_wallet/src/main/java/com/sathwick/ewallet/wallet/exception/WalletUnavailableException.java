@@ -0,0 +1,13 @@
+package com.sathwick.ewallet.wallet.exception;
+
+/**
+ * The transaction was not applied because the wallet service could not run it (failed batch, shutting down). Unlike
+ * a refused transaction it may succeed when retried, so it is answered with 503 and never cached as a result.
+ */
+public class WalletUnavailableException extends WalletException {
+
+    public WalletUnavailableException(String message, Throwable cause) {
+        super("EWALLET_SERVICE_UNAVAILABLE_EXCEPTION", message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,61 @@
+package com.sathwick.ewallet.wallet.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSetMetaData;
+
+/**
+ * Moves the balances of wallets created before amounts were fixed-point from the old {@code balance} column
+ * (DOUBLE, rupees) to {@code balance_minor} (BIGINT, paise), then drops the old column. ddl-auto=update only adds
+ * balance_minor, without this every existing wallet would read as 0.
+ * <p>
+ * Runs while the context starts, after Hibernate updated the schema and before the consumers and the web server
+ * take any transaction. Once the old column is gone there is nothing left to do, a restart after a failure between
+ * the copy and the drop copies the same balances again.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class WalletBalanceMigration implements InitializingBean {
+
+    static final String LEGACY_COLUMN = "balance";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WalletBalanceMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        migrate();
+    }
+
+    // Number of wallets whose balance was copied, 0 when there is no old column
+    int migrate() {
+        if (!hasLegacyColumn()) {
+            return 0;
+        }
+        int copied = jdbcTemplate.update("UPDATE wallet SET balance_minor = ROUND(" + LEGACY_COLUMN + " * 100) WHERE " + LEGACY_COLUMN + " IS NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE wallet DROP COLUMN " + LEGACY_COLUMN);
+        log.info("Moved the balances of {} wallets to balance_minor and dropped the old balance column", copied);
+        return copied;
+    }
+
+    private boolean hasLegacyColumn() {
+        Boolean found = jdbcTemplate.query("SELECT * FROM wallet WHERE 1 = 0", rs -> {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (LEGACY_COLUMN.equalsIgnoreCase(metaData.getColumnName(i))) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+}
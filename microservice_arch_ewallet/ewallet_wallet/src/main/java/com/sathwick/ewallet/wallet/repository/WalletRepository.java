@@ -3,11 +3,26 @@ package com.sathwick.ewallet.wallet.repository;
 import com.sathwick.ewallet.wallet.domain.Wallet;
 import org.hibernate.Session;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
-public interface WalletRepository extends JpaRepository<Wallet, Long>{
+public interface WalletRepository extends JpaRepository<Wallet, Long>, WalletRepositoryCustom {
     Optional<Wallet> findByUserId(Long userId);
+
+    // Amounts are in minor units. Returns 0 when the wallet does not exist or its balance is lower than the amount.
+    // Both updates find their row through the uk_wallet_user_id index and lock only that row
+    @Modifying
+    @Query(value = "UPDATE wallet SET balance_minor = balance_minor - :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE user_id = :userId AND balance_minor >= :amount", nativeQuery = true)
+    int debit(@Param("userId") Long userId, @Param("amount") long amount);
+
+    @Modifying
+    @Query(value = "UPDATE wallet SET balance_minor = balance_minor + :amount, version = version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE user_id = :userId", nativeQuery = true)
+    int credit(@Param("userId") Long userId, @Param("amount") long amount);
 }
@@ -0,0 +1,44 @@
+package com.sathwick.ewallet.wallet.repository;
+
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+// Plain JDBC operations used by the transfer batcher and the wallet engine, see WalletRepositoryImpl
+public interface WalletRepositoryCustom {
+
+    /**
+     * Locks the wallet rows of the given users (SELECT ... FOR UPDATE) in ascending user id order and returns
+     * their balances in minor units. Must run inside a transaction, the locks are held until it ends.
+     */
+    Map<Long, Long> lockBalances(Collection<Long> userIds);
+
+    // Writes all balances with a single JDBC batch
+    void updateBalances(Map<Long, Long> balances);
+
+    // User ids out of the given ones that already have a wallet, one IN (...) query per chunk of ids
+    Set<Long> findExistingUserIds(Collection<Long> userIds);
+
+    // Inserts an empty active wallet for every user id with a single JDBC batch, users that have one already are skipped
+    void insertWallets(Collection<Long> userIds);
+
+    // Balances in minor units of the users that have a wallet, without locking
+    Map<Long, Long> findBalances(Collection<Long> userIds);
+
+    // Adds the deltas (minor units) to the balances with a single JDBC batch, returns the users without a wallet
+    Set<Long> addToBalances(Map<Long, Long> deltas);
+
+    // Checkpointed log sequence number per WalletEngine shard
+    Map<Integer, Long> findEngineCheckpoints();
+
+    void saveEngineCheckpoint(int shard, long lsn);
+
+    // Recorded saga outcomes of the given transfers, locked (SELECT ... FOR UPDATE) until the transaction ends
+    Map<Long, WalletSagaStep.Outcome> lockSagaSteps(Collection<Long> transferIds);
+
+    void insertSagaSteps(Map<Long, WalletSagaStep.Outcome> outcomes);
+
+    void updateSagaSteps(Map<Long, WalletSagaStep.Outcome> outcomes);
+}
@@ -0,0 +1,172 @@
+package com.sathwick.ewallet.wallet.repository;
+
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class WalletRepositoryImpl implements WalletRepositoryCustom {
+
+    // bind parameters per IN (...) query
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public WalletRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Map<Long, Long> lockBalances(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        // rows are locked in user id order through uk_wallet_user_id, two batches touching the same wallets can't deadlock on each other
+        List<Long> sortedIds = new ArrayList<>(userIds);
+        Collections.sort(sortedIds);
+        String placeholders = String.join(",", Collections.nCopies(sortedIds.size(), "?"));
+        Map<Long, Long> balances = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, balance_minor FROM wallet WHERE user_id IN (" + placeholders + ") ORDER BY user_id FOR UPDATE",
+                (RowCallbackHandler) rs -> balances.put(rs.getLong("user_id"), rs.getLong("balance_minor")),
+                sortedIds.toArray());
+        return balances;
+    }
+
+    @Override
+    public void updateBalances(Map<Long, Long> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        new TreeMap<>(balances).forEach((userId, balance) -> rows.add(new Object[]{balance, now, userId}));
+        jdbcTemplate.batchUpdate("UPDATE wallet SET balance_minor = ?, version = version + 1, updated_at = ? WHERE user_id = ?", rows);
+    }
+
+    @Override
+    public Set<Long> findExistingUserIds(Collection<Long> userIds) {
+        Set<Long> existing = new HashSet<>();
+        List<Long> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT user_id FROM wallet WHERE user_id IN (" + placeholders + ")",
+                    (RowCallbackHandler) rs -> existing.add(rs.getLong("user_id")),
+                    chunk.toArray());
+        }
+        return existing;
+    }
+
+    @Override
+    public void insertWallets(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        // Wallet ids are IDENTITY generated, Hibernate can't batch those inserts so they go through JDBC.
+        // A wallet inserted meanwhile by a redelivery hits uk_wallet_user_id and the row is left as it is
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        userIds.forEach(userId -> rows.add(new Object[]{userId, now, now}));
+        jdbcTemplate.batchUpdate("INSERT INTO wallet (user_id, balance_minor, active, version, created_at, updated_at) " +
+                "VALUES (?, 0, true, 0, ?, ?) ON DUPLICATE KEY UPDATE user_id = user_id", rows);
+    }
+
+    @Override
+    public Map<Long, Long> findBalances(Collection<Long> userIds) {
+        Map<Long, Long> balances = new HashMap<>();
+        List<Long> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query("SELECT user_id, balance_minor FROM wallet WHERE user_id IN (" + placeholders + ")",
+                    (RowCallbackHandler) rs -> balances.put(rs.getLong("user_id"), rs.getLong("balance_minor")),
+                    chunk.toArray());
+        }
+        return balances;
+    }
+
+    @Override
+    public Set<Long> addToBalances(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> userIds = new ArrayList<>(new TreeMap<>(deltas).keySet());
+        List<Object[]> rows = new ArrayList<>(userIds.size());
+        userIds.forEach(userId -> rows.add(new Object[]{deltas.get(userId), now, userId}));
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE wallet SET balance_minor = balance_minor + ?, version = version + 1, updated_at = ? WHERE user_id = ?", rows);
+        Set<Long> missing = new HashSet<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(userIds.get(i));
+            }
+        }
+        return missing;
+    }
+
+    @Override
+    public Map<Integer, Long> findEngineCheckpoints() {
+        Map<Integer, Long> checkpoints = new HashMap<>();
+        jdbcTemplate.query("SELECT shard, lsn FROM wallet_engine_checkpoint",
+                (RowCallbackHandler) rs -> checkpoints.put(rs.getInt("shard"), rs.getLong("lsn")));
+        return checkpoints;
+    }
+
+    @Override
+    public void saveEngineCheckpoint(int shard, long lsn) {
+        // a shard is the only writer of its row
+        if (jdbcTemplate.update("UPDATE wallet_engine_checkpoint SET lsn = ? WHERE shard = ?", lsn, shard) == 0) {
+            jdbcTemplate.update("INSERT INTO wallet_engine_checkpoint (shard, lsn) VALUES (?, ?)", shard, lsn);
+        }
+    }
+
+    @Override
+    public Map<Long, WalletSagaStep.Outcome> lockSagaSteps(Collection<Long> transferIds) {
+        if (transferIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<Long> sortedIds = new ArrayList<>(transferIds);
+        Collections.sort(sortedIds);
+        String placeholders = String.join(",", Collections.nCopies(sortedIds.size(), "?"));
+        Map<Long, WalletSagaStep.Outcome> outcomes = new HashMap<>();
+        jdbcTemplate.query("SELECT transfer_id, outcome FROM wallet_saga_step WHERE transfer_id IN (" + placeholders + ") ORDER BY transfer_id FOR UPDATE",
+                (RowCallbackHandler) rs -> outcomes.put(rs.getLong("transfer_id"), WalletSagaStep.Outcome.valueOf(rs.getString("outcome"))),
+                sortedIds.toArray());
+        return outcomes;
+    }
+
+    @Override
+    public void insertSagaSteps(Map<Long, WalletSagaStep.Outcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        // a concurrent insert of the same transfer fails on the primary key (or deadlocks on the gap lock of
+        // lockSagaSteps) and rolls back the caller's transaction, WalletTransferBatcher runs the batch again
+        List<Object[]> rows = new ArrayList<>(outcomes.size());
+        new TreeMap<>(outcomes).forEach((transferId, outcome) -> rows.add(new Object[]{transferId, outcome.name()}));
+        jdbcTemplate.batchUpdate("INSERT INTO wallet_saga_step (transfer_id, outcome) VALUES (?, ?)", rows);
+    }
+
+    @Override
+    public void updateSagaSteps(Map<Long, WalletSagaStep.Outcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(outcomes.size());
+        new TreeMap<>(outcomes).forEach((transferId, outcome) -> rows.add(new Object[]{outcome.name(), transferId}));
+        jdbcTemplate.batchUpdate("UPDATE wallet_saga_step SET outcome = ? WHERE transfer_id = ?", rows);
+    }
+}
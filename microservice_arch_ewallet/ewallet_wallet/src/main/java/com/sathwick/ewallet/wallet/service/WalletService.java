@@ -1,12 +1,38 @@
 package com.sathwick.ewallet.wallet.service;
 
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
 import com.sathwick.ewallet.wallet.domain.Wallet;
 import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
 import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public interface WalletService {
     void createWallet(Long userId);
+    // Creates the missing wallets of a batch of users in one DB transaction, returns how many were created
+    int createWallets(Collection<Long> userIds);
     Wallet deleteWallet(Long userId);
     WalletResponse getWallet(Long userId);
     boolean performTransaction(WalletTransactionRequest walletTransactionRequest);
+    // Goes through the wallet engine when it is enabled, the micro batcher otherwise (concurrent requests share one DB transaction)
+    CompletableFuture<Boolean> submitTransaction(WalletTransactionRequest walletTransactionRequest);
+    List<Boolean> performTransactions(List<WalletTransactionRequest> walletTransactionRequests);
+    // Transfer saga steps through the micro batcher, one reply per command once the outcomes are committed
+    List<WalletReply> performSagaCommands(List<WalletCommand> commands);
+
+    // Waits for a queued transaction, a WalletUnavailableException is thrown as is instead of wrapped in a CompletionException
+    static boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
@@ -0,0 +1,320 @@
+package com.sathwick.ewallet.wallet.service.batch;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro batcher for wallet transactions.
+ * <p>
+ * Requests from concurrent callers are queued and a single flusher thread drains up to {@code maxBatchSize} of
+ * them at once. A batch runs in one DB transaction: the wallet rows of every user in the batch are locked in
+ * ascending user id order (so concurrent batches can't deadlock), the transactions are applied in arrival order
+ * in memory and the new balances are written back with one JDBC batch update.
+ * <p>
+ * When traffic is low a batch holds a single request and nothing waits; {@code lingerMillis} optionally lets the
+ * flusher wait a little longer for a fuller batch.
+ * <p>
+ * Saga steps ({@link #submitStep}) share the batches. Their outcome is stored per transfer id in the batch's DB
+ * transaction, so a redelivered command is answered from the stored outcome instead of being applied twice. When
+ * another instance stores the outcome of the same transfer concurrently the batch is rolled back and run again.
+ */
+@Component
+@Slf4j
+public class WalletTransferBatcher {
+
+    // a conflict needs a concurrent redelivery of the same transfer, a second one in a row is very unlikely
+    private static final int MAX_STEP_CONFLICT_ATTEMPTS = 3;
+
+    private final WalletRepository walletRepository;
+    private final TransactionOperations transactionOperations;
+    private final BalanceCache balanceCache;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final BlockingQueue<PendingTransaction> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public WalletTransferBatcher(WalletRepository walletRepository,
+                                 TransactionOperations transactionOperations,
+                                 BalanceCache balanceCache,
+                                 @Value("${ewallet.wallet.batch.max-size:256}") int maxBatchSize,
+                                 @Value("${ewallet.wallet.batch.linger-ms:0}") long lingerMillis) {
+        this.walletRepository = walletRepository;
+        this.transactionOperations = transactionOperations;
+        this.balanceCache = balanceCache;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerMillis = lingerMillis;
+        this.flusher = new Thread(this::run, "wallet-transfer-batcher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // False when the transaction was refused, fails with a WalletUnavailableException when its batch failed
+    public CompletableFuture<Boolean> submit(WalletTransactionRequest request) {
+        PendingTransaction pending = new PendingTransaction(request, new CompletableFuture<>());
+        if (!running) {
+            pending.fail(new IllegalStateException("Wallet transfer batcher is stopped"));
+            return pending.result;
+        }
+        queue.add(pending);
+        return pending.result;
+    }
+
+    /**
+     * Runs a step of a transfer saga at most once per transfer: EXECUTE applies the request, CANCEL undoes it when
+     * it was applied or blocks a later EXECUTE when it wasn't. Completes exceptionally when the batch fails, so the
+     * caller doesn't report an outcome that was never committed.
+     */
+    public CompletableFuture<Boolean> submitStep(WalletTransactionRequest request, long transferId, boolean cancel) {
+        PendingTransaction pending = new PendingTransaction(request, new CompletableFuture<>(), transferId, cancel);
+        if (!running) {
+            pending.fail(new IllegalStateException("Wallet transfer batcher is stopped"));
+            return pending.result;
+        }
+        queue.add(pending);
+        return pending.result;
+    }
+
+    public List<CompletableFuture<Boolean>> submitAll(List<WalletTransactionRequest> requests) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(requests.size());
+        for (WalletTransactionRequest request : requests) {
+            results.add(submit(request));
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingTransaction pending;
+        IllegalStateException stopped = new IllegalStateException("Wallet transfer batcher is stopped");
+        while ((pending = queue.poll()) != null) {
+            pending.fail(stopped);
+        }
+    }
+
+    private void run() {
+        List<PendingTransaction> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                if (lingerMillis > 0) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                    while (batch.size() < maxBatchSize) {
+                        PendingTransaction next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                execute(batch);
+            } catch (InterruptedException e) {
+                // close() was called, whatever is still queued is failed there
+                IllegalStateException stopped = new IllegalStateException("Wallet transfer batcher is stopped");
+                batch.forEach(pending -> pending.fail(stopped));
+            } catch (Exception e) {
+                log.error("Wallet transaction batch of size {} failed: {}", batch.size(), e.getMessage());
+                batch.forEach(pending -> pending.fail(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void execute(List<PendingTransaction> batch) {
+        boolean[] results = new boolean[batch.size()];
+        for (int attempt = 1; ; attempt++) {
+            try {
+                applyBatch(batch, results);
+                break;
+            } catch (DuplicateKeyException | PessimisticLockingFailureException e) {
+                // another instance recorded a step of one of the transfers first (a redelivery after a consumer
+                // rebalance): the whole transaction rolled back, the next attempt answers that step from the stored
+                // outcome and applies the rest of the batch again
+                if (attempt == MAX_STEP_CONFLICT_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Wallet transaction batch of size {} conflicted with a concurrent saga step, retrying: {}", batch.size(), e.getMessage());
+            }
+        }
+        // only reached once the batch is committed
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result.complete(results[i]);
+        }
+        log.debug("Committed wallet transaction batch of size {}", batch.size());
+    }
+
+    private void applyBatch(List<PendingTransaction> batch, boolean[] results) {
+        transactionOperations.executeWithoutResult(status -> {
+            Set<Long> userIds = new HashSet<>();
+            Set<Long> transferIds = new HashSet<>();
+            for (PendingTransaction pending : batch) {
+                userIds.add(pending.request.getReceiverId());
+                if (TransactionType.TRANSFER.name().equals(pending.request.getTransactionType())) {
+                    userIds.add(pending.request.getSenderId());
+                }
+                if (pending.transferId != null) {
+                    transferIds.add(pending.transferId);
+                }
+            }
+            // outcomes of earlier deliveries, locked before the wallets so a concurrent redelivery waits for us
+            Map<Long, WalletSagaStep.Outcome> outcomes = new HashMap<>(walletRepository.lockSagaSteps(transferIds));
+            Set<Long> recorded = new HashSet<>(outcomes.keySet());
+            Set<Long> changedSteps = new HashSet<>();
+            Map<Long, Long> balances = walletRepository.lockBalances(userIds);
+            Map<Long, Long> updated = new HashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                PendingTransaction pending = batch.get(i);
+                results[i] = pending.transferId == null
+                        ? apply(pending.request, balances, updated)
+                        : applyStep(pending, outcomes, changedSteps, balances, updated);
+            }
+            walletRepository.updateBalances(updated);
+            if (!changedSteps.isEmpty()) {
+                Map<Long, WalletSagaStep.Outcome> inserted = new HashMap<>();
+                Map<Long, WalletSagaStep.Outcome> changed = new HashMap<>();
+                changedSteps.forEach(transferId -> (recorded.contains(transferId) ? changed : inserted).put(transferId, outcomes.get(transferId)));
+                walletRepository.insertSagaSteps(inserted);
+                walletRepository.updateSagaSteps(changed);
+            }
+            balanceCache.evictAfterCommit(updated.keySet());
+        });
+    }
+
+    // Saga step on the locked balances, the outcome it leaves for the transfer goes into outcomes
+    private boolean applyStep(PendingTransaction pending, Map<Long, WalletSagaStep.Outcome> outcomes, Set<Long> changedSteps,
+                              Map<Long, Long> balances, Map<Long, Long> updated) {
+        Long transferId = pending.transferId;
+        WalletSagaStep.Outcome outcome = outcomes.get(transferId);
+        if (!pending.cancel) {
+            if (outcome == null) {
+                outcome = apply(pending.request, balances, updated) ? WalletSagaStep.Outcome.APPLIED : WalletSagaStep.Outcome.REJECTED;
+                outcomes.put(transferId, outcome);
+                changedSteps.add(transferId);
+            }
+            // a repeated EXECUTE gets the first result, one after a CANCEL is never applied
+            return outcome == WalletSagaStep.Outcome.APPLIED;
+        }
+        if (outcome == null) {
+            // the EXECUTE hasn't arrived (yet), the tombstone keeps it from being applied
+            outcomes.put(transferId, WalletSagaStep.Outcome.CANCELLED);
+            changedSteps.add(transferId);
+        } else if (outcome == WalletSagaStep.Outcome.APPLIED) {
+            if (!apply(reverse(pending.request), balances, updated)) {
+                // the money is gone already, the transfer stays applied
+                return false;
+            }
+            outcomes.put(transferId, WalletSagaStep.Outcome.COMPENSATED);
+            changedSteps.add(transferId);
+        }
+        return true;
+    }
+
+    // The transaction that undoes the given one, it touches the same wallets
+    private static WalletTransactionRequest reverse(WalletTransactionRequest request) {
+        String type = request.getTransactionType();
+        boolean transfer = TransactionType.TRANSFER.name().equals(type);
+        String reverseType = transfer ? type
+                : TransactionType.DEPOSIT.name().equals(type) ? TransactionType.WITHDRAW.name() : TransactionType.DEPOSIT.name();
+        return WalletTransactionRequest.builder()
+                .senderId(transfer ? request.getReceiverId() : request.getSenderId())
+                .receiverId(transfer ? request.getSenderId() : request.getReceiverId())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .transactionType(reverseType)
+                .build();
+    }
+
+    // Applies one transaction on the locked balances (minor units), a rejected one leaves them untouched
+    private boolean apply(WalletTransactionRequest request, Map<Long, Long> balances, Map<Long, Long> updated) {
+        if (request.getAmount() == null || !request.getAmount().isPositive()) {
+            return false;
+        }
+        long amount = request.getAmount().getMinorUnits();
+        Long receiverBalance = balances.get(request.getReceiverId());
+        if (receiverBalance == null) {
+            log.error("Wallet not found for user " + request.getReceiverId());
+            return false;
+        }
+        String type = request.getTransactionType();
+        if (TransactionType.DEPOSIT.name().equals(type)) {
+            setBalance(request.getReceiverId(), Money.add(receiverBalance, amount), balances, updated);
+            return true;
+        }
+        if (TransactionType.WITHDRAW.name().equals(type)) {
+            if (receiverBalance < amount) {
+                return false;
+            }
+            setBalance(request.getReceiverId(), Money.subtract(receiverBalance, amount), balances, updated);
+            return true;
+        }
+        if (TransactionType.TRANSFER.name().equals(type)) {
+            Long senderBalance = balances.get(request.getSenderId());
+            if (senderBalance == null) {
+                log.error("Wallet not found for user " + request.getSenderId());
+                return false;
+            }
+            if (senderBalance < amount || request.getSenderId().equals(request.getReceiverId())) {
+                return false;
+            }
+            setBalance(request.getSenderId(), Money.subtract(senderBalance, amount), balances, updated);
+            setBalance(request.getReceiverId(), Money.add(balances.get(request.getReceiverId()), amount), balances, updated);
+            return true;
+        }
+        return false;
+    }
+
+    private static void setBalance(Long userId, long balance, Map<Long, Long> balances, Map<Long, Long> updated) {
+        balances.put(userId, balance);
+        updated.put(userId, balance);
+    }
+
+    // transferId is null unless the transaction is a saga step
+    record PendingTransaction(WalletTransactionRequest request, CompletableFuture<Boolean> result, Long transferId,
+                              boolean cancel) {
+
+        PendingTransaction(WalletTransactionRequest request, CompletableFuture<Boolean> result) {
+            this(request, result, null, false);
+        }
+
+        // Never completes with false, that would tell the caller the transaction was refused
+        void fail(Exception e) {
+            if (transferId == null) {
+                result.completeExceptionally(new WalletUnavailableException("Wallet transaction not applied: " + e.getMessage(), e));
+            } else {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
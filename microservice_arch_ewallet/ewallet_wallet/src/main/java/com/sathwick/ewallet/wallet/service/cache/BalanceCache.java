@@ -0,0 +1,104 @@
+package com.sathwick.ewallet.wallet.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of wallet balances keyed by user id: a local Caffeine near cache, optionally in front of a
+ * {@link RemoteBalanceCache} shared by all instances, in front of the DB.
+ * <p>
+ * Writers don't update entries, they evict them once their DB transaction committed
+ * ({@link #evictAfterCommit(Collection)}). A reader that loaded the old balance just before the commit can't put it
+ * back afterwards: Caffeine makes the eviction wait for a load of the same key in progress. Without the remote tier,
+ * other instances only see the change once their near cache entry expires after {@code ttl}.
+ */
+@Slf4j
+public class BalanceCache {
+
+    private final Cache<Long, WalletResponse> near;
+    private final RemoteBalanceCache remote;
+
+    public BalanceCache(long maximumSize, Duration ttl, RemoteBalanceCache remote) {
+        this.near = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.remote = remote;
+        if (remote != null) {
+            remote.onRemoteEviction(near::invalidateAll);
+        }
+    }
+
+    private BalanceCache() {
+        this.near = null;
+        this.remote = null;
+    }
+
+    // Every read goes to the DB, for ewallet.wallet.cache.enabled=false
+    public static BalanceCache disabled() {
+        return new BalanceCache();
+    }
+
+    // The loader returns null for a missing wallet, misses are not cached
+    public WalletResponse get(Long userId, Function<Long, WalletResponse> loader) {
+        if (near == null) {
+            return loader.apply(userId);
+        }
+        return near.get(userId, id -> {
+            if (remote == null) {
+                return loader.apply(id);
+            }
+            WalletResponse wallet = remote.get(id);
+            if (wallet == null) {
+                wallet = loader.apply(id);
+                if (wallet != null) {
+                    remote.put(wallet);
+                }
+            }
+            return wallet;
+        });
+    }
+
+    // Evicts once the surrounding DB transaction committed, right away when there is none
+    public void evictAfterCommit(Collection<Long> userIds) {
+        if (near == null || userIds.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(userIds);
+            return;
+        }
+        List<Long> evicted = List.copyOf(userIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(evicted);
+            }
+        });
+    }
+
+    public void evict(Collection<Long> userIds) {
+        if (near == null) {
+            return;
+        }
+        if (remote != null) {
+            remote.evict(userIds);
+        }
+        near.invalidateAll(userIds);
+    }
+
+    public CacheStats stats() {
+        return near == null ? CacheStats.empty() : near.stats();
+    }
+}
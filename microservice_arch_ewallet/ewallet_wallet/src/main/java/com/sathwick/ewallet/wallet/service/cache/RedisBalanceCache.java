@@ -0,0 +1,129 @@
+package com.sathwick.ewallet.wallet.service.cache;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Redis tier of the balance cache. Entries are {@code wallet:balance:<userId> = <walletId>:<balance minor units>}
+ * with a TTL, evictions are published on {@code channel} so the other instances drop their near cache copies.
+ * <p>
+ * A reader that loaded a balance from the DB just before a commit may write it to Redis just after the eviction.
+ * Every eviction is therefore repeated after {@code secondEvictionDelay}, and the TTL bounds whatever is left.
+ */
+@Slf4j
+public class RedisBalanceCache implements RemoteBalanceCache, MessageListener, AutoCloseable {
+
+    private static final String KEY_PREFIX = "wallet:balance:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channel;
+    private final Duration ttl;
+    private final Duration secondEvictionDelay;
+    // evictions published by this instance are ignored when they come back
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ScheduledExecutorService scheduler;
+    private volatile Consumer<Collection<Long>> evictionListener = userIds -> { };
+
+    public RedisBalanceCache(StringRedisTemplate redisTemplate, String channel, Duration ttl, Duration secondEvictionDelay) {
+        this.redisTemplate = redisTemplate;
+        this.channel = channel;
+        this.ttl = ttl;
+        this.secondEvictionDelay = secondEvictionDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "balance-cache-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public WalletResponse get(Long userId) {
+        try {
+            String value = redisTemplate.opsForValue().get(KEY_PREFIX + userId);
+            if (value == null) {
+                return null;
+            }
+            int separator = value.indexOf(':');
+            return WalletResponse.builder()
+                    .userId(userId)
+                    .walletId(Long.parseLong(value, 0, separator, 10))
+                    .balance(Money.ofMinorUnits(Long.parseLong(value, separator + 1, value.length(), 10)))
+                    .build();
+        } catch (Exception e) {
+            log.debug("Balance cache read of user {} failed: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void put(WalletResponse wallet) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + wallet.getUserId(),
+                    wallet.getWalletId() + ":" + wallet.getBalance().getMinorUnits(), ttl);
+        } catch (Exception e) {
+            log.debug("Balance cache write of user {} failed: {}", wallet.getUserId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void evict(Collection<Long> userIds) {
+        List<Long> ids = List.copyOf(userIds);
+        delete(ids);
+        try {
+            redisTemplate.convertAndSend(channel, instanceId + "|" + ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.warn("Unable to publish balance cache eviction, other instances catch up within the near cache TTL: {}", e.getMessage());
+        }
+        scheduler.schedule(() -> delete(ids), secondEvictionDelay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onRemoteEviction(Consumer<Collection<Long>> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.startsWith(instanceId + "|")) {
+            return;
+        }
+        List<Long> userIds = new ArrayList<>();
+        for (String userId : body.substring(separator + 1).split(",")) {
+            if (!userId.isEmpty()) {
+                userIds.add(Long.valueOf(userId));
+            }
+        }
+        evictionListener.accept(userIds);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+
+    private void delete(List<Long> userIds) {
+        try {
+            redisTemplate.delete(userIds.stream().map(userId -> KEY_PREFIX + userId).toList());
+        } catch (Exception e) {
+            log.warn("Balance cache eviction failed, entries expire within {}: {}", ttl, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.sathwick.ewallet.wallet.service.cache;
+
+import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Cache tier shared by all wallet service instances, behind the near cache of {@link BalanceCache}.
+ * Implementations treat an unreachable backend as a miss, the DB is always there to fall back on.
+ */
+public interface RemoteBalanceCache {
+
+    // null on a miss
+    WalletResponse get(Long userId);
+
+    void put(WalletResponse wallet);
+
+    // Removes the entries and tells the other instances to drop their near cache copies
+    void evict(Collection<Long> userIds);
+
+    // Called with the user ids other instances evicted
+    void onRemoteEviction(Consumer<Collection<Long>> listener);
+}
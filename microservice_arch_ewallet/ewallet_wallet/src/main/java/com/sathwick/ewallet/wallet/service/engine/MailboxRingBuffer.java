@@ -0,0 +1,92 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer, the mailbox of a {@link WalletShard}.
+ * <p>
+ * Every slot carries a sequence number: a producer claims a position with a CAS on {@code tail} once the slot is
+ * free for it ({@code sequence == position}), stores the element and publishes it by setting the sequence to
+ * {@code position + 1}. The consumer takes a slot when its sequence says it was published and hands it back to the
+ * producers one lap later ({@code position + capacity}). Nothing is allocated per element.
+ */
+final class MailboxRingBuffer<E> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only read and written by the consumer thread
+    private long head;
+
+    MailboxRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, was " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // False when the buffer is full, safe to call from any thread
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the slot still holds the element of the previous lap
+                return false;
+            } else {
+                // another producer claimed this position
+                position = tail.get();
+            }
+        }
+    }
+
+    // Consumer thread only
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.set(index, head + mask + 1);
+        head++;
+        return element;
+    }
+
+    // Consumer thread only, moves up to max published elements to the list and returns how many
+    int drainTo(List<E> sink, int max) {
+        int drained = 0;
+        E element;
+        while (drained < max && (element = poll()) != null) {
+            sink.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    int capacity() {
+        return elements.length;
+    }
+
+    // Approximate when producers are active
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+}
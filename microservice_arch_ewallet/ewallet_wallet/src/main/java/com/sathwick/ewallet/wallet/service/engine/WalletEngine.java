@@ -0,0 +1,200 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Applies wallet transactions in memory on single-threaded shards instead of locking wallet rows, for wallets that
+ * receive more transactions than one row lock can serialize.
+ * <p>
+ * A transaction is routed to the shard owning the user it debits (the receiver for a deposit), see
+ * {@link WalletShard}. It is acknowledged once its record is forced to the shard's write-ahead log; the balance
+ * change reaches the wallet table with the shard's next checkpoint, so {@code GET /wallet/{user-id}} can trail a
+ * completed transaction by up to one checkpoint interval. On startup the records of every log that are newer than
+ * its shard's checkpoint are added to the balances before the shards start.
+ * <p>
+ * The shards assume they are the only writers of the balances: all transactions of this instance go through the
+ * engine, and only one wallet service instance may run with it.
+ */
+@Slf4j
+public class WalletEngine implements AutoCloseable {
+
+    private static final String LOG_PREFIX = "shard-";
+    private static final String LOG_SUFFIX = ".wal";
+
+    private final WalletShard[] shards;
+
+    public WalletEngine(WalletRepository walletRepository, PlatformTransactionManager transactionManager,
+                        BalanceCache balanceCache, Settings settings) throws IOException {
+        TransactionTemplate writeTransaction = new TransactionTemplate(transactionManager);
+        TransactionTemplate snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshotTransaction.setReadOnly(true);
+
+        Files.createDirectories(settings.logDirectory());
+        Map<Integer, Long> checkpoints = recover(walletRepository, writeTransaction, balanceCache, settings);
+
+        this.shards = new WalletShard[settings.shards()];
+        for (int i = 0; i < shards.length; i++) {
+            WriteAheadLog wal = new WriteAheadLog(logFile(settings.logDirectory(), i), settings.maxBatchSize());
+            shards[i] = new WalletShard(i, this, walletRepository, writeTransaction, snapshotTransaction, balanceCache,
+                    wal, checkpoints.getOrDefault(i, 0L), settings);
+        }
+        for (WalletShard shard : shards) {
+            shard.start();
+        }
+        log.info("Wallet engine started with {} shards, write-ahead logs in {}", shards.length, settings.logDirectory());
+    }
+
+    /**
+     * Completes with the result once the transaction is durable in the log, false if it was rejected (unknown
+     * wallet, balance too low). Completes with a {@link WalletUnavailableException} when the shard could not run it
+     * or is stopped.
+     *
+     * @throws RejectedExecutionException when the shard's mailbox is full
+     */
+    public CompletableFuture<Boolean> submit(WalletTransactionRequest request) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Long ownerId = ownerId(request);
+        if (ownerId == null) {
+            result.complete(false);
+            return result;
+        }
+        WalletShard shard = shardOf(ownerId);
+        if (!shard.accepting()) {
+            result.completeExceptionally(new WalletUnavailableException("Wallet transaction not applied: wallet engine is stopped",
+                    new IllegalStateException("Wallet shard of user " + ownerId + " is stopped")));
+            return result;
+        }
+        if (!shard.offer(new WalletShard.Command(request, result))) {
+            throw new RejectedExecutionException("Wallet shard of user " + ownerId + " is full");
+        }
+        return result;
+    }
+
+    // A transaction that doesn't fit in its shard's mailbox fails on its own, the others still run
+    public List<CompletableFuture<Boolean>> submitAll(List<WalletTransactionRequest> requests) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(requests.size());
+        for (WalletTransactionRequest request : requests) {
+            try {
+                results.add(submit(request));
+            } catch (RejectedExecutionException e) {
+                results.add(CompletableFuture.failedFuture(new WalletUnavailableException("Wallet transaction not applied: " + e.getMessage(), e)));
+            }
+        }
+        return results;
+    }
+
+    // Transactions waiting in the shards' mailboxes
+    public int queued() {
+        int queued = 0;
+        for (WalletShard shard : shards) {
+            queued += shard.queued();
+        }
+        return queued;
+    }
+
+    @Override
+    public void close() {
+        for (WalletShard shard : shards) {
+            shard.close();
+        }
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    WalletShard shardOf(long userId) {
+        return shards[(int) Math.floorMod(userId, (long) shards.length)];
+    }
+
+    long checkpointedLsn(int shard) {
+        return shards[shard].checkpointedLsn();
+    }
+
+    // The user whose balance the transaction checks: the sender of a transfer, the wallet owner otherwise
+    static Long ownerId(WalletTransactionRequest request) {
+        return TransactionType.TRANSFER.name().equals(request.getTransactionType()) ? request.getSenderId() : request.getReceiverId();
+    }
+
+    // Adds what the logs hold beyond their shard's checkpoint to the balances and empties the logs, including the
+    // logs of shards that no longer exist after ewallet.wallet.engine.shards was lowered
+    private static Map<Integer, Long> recover(WalletRepository walletRepository, TransactionTemplate writeTransaction,
+                                              BalanceCache balanceCache, Settings settings) throws IOException {
+        Map<Integer, Long> checkpoints = new HashMap<>(walletRepository.findEngineCheckpoints());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(settings.logDirectory(), LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int shard = Integer.parseInt(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()));
+                long checkpoint = checkpoints.getOrDefault(shard, 0L);
+                try (WriteAheadLog wal = new WriteAheadLog(file, 1)) {
+                    long lastLsn = checkpoint;
+                    int replayed = 0;
+                    Map<Long, Long> deltas = new HashMap<>();
+                    for (WriteAheadLog.Entry entry : wal.readAll()) {
+                        if (entry.lsn() <= checkpoint) {
+                            // committed, the log was not emptied before the process stopped
+                            continue;
+                        }
+                        if (entry.debitUserId() != WriteAheadLog.Entry.NO_USER) {
+                            deltas.merge(entry.debitUserId(), -entry.amount(), Long::sum);
+                        }
+                        if (entry.creditUserId() != WriteAheadLog.Entry.NO_USER) {
+                            deltas.merge(entry.creditUserId(), entry.amount(), Long::sum);
+                        }
+                        lastLsn = entry.lsn();
+                        replayed++;
+                    }
+                    if (!deltas.isEmpty()) {
+                        long lsn = lastLsn;
+                        writeTransaction.executeWithoutResult(status -> {
+                            walletRepository.addToBalances(deltas);
+                            walletRepository.saveEngineCheckpoint(shard, lsn);
+                            balanceCache.evictAfterCommit(new ArrayList<>(deltas.keySet()));
+                        });
+                        log.info("Replayed {} records of {} up to lsn {}", replayed, file, lsn);
+                    }
+                    checkpoints.put(shard, lastLsn);
+                    wal.reset();
+                }
+            }
+        }
+        return checkpoints;
+    }
+
+    private static Path logFile(Path directory, int shard) {
+        return directory.resolve(LOG_PREFIX + shard + LOG_SUFFIX);
+    }
+
+    /**
+     * @param shards              single-threaded partitions, about the number of cores left for the engine
+     * @param mailboxCapacity     queued transactions per shard before submit is refused, a power of two
+     * @param maxBatchSize        transactions applied per log sync
+     * @param checkpointInterval  how often the balance changes are written to the wallet table
+     * @param maxAccountsPerShard balances a shard keeps in memory, beyond that they are dropped after a checkpoint
+     * @param logDirectory        write-ahead logs, on a local disk that survives a restart
+     */
+    public record Settings(int shards, int mailboxCapacity, int maxBatchSize, Duration checkpointInterval,
+                           int maxAccountsPerShard, Path logDirectory) {
+    }
+}
@@ -0,0 +1,494 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One partition of the {@link WalletEngine}: a single thread that owns the balances of its users, so a debit can
+ * be checked and applied in memory without any lock.
+ * <p>
+ * The thread drains its mailbox in batches. For each batch it loads the balances it doesn't hold yet with one
+ * query, applies the requests in arrival order, appends one log record per applied request and forces the log to
+ * disk once (group commit) before completing the callers. Every {@code checkpointInterval} the deltas coalesced
+ * since the last checkpoint are added to the wallet rows in one DB transaction together with the shard's log
+ * position, after which the log is emptied.
+ * <p>
+ * Only debits need the owner. The credit side of a transfer to a user of another shard is logged and checkpointed
+ * by the sender's shard and announced to the receiver's shard as a {@link Credit} after the log sync. That shard
+ * applies it to its in-memory balance unless the balance it loaded already contains it, which it tells from the
+ * checkpoint positions read in the same DB snapshot as the balance. An account dropped from memory hands the credits
+ * its sender hasn't checkpointed yet back to the held credits, they are applied again when the balance is reloaded.
+ * <p>
+ * A request the shard could not run (failed load, failed log, stopped shard) completes with a
+ * {@link WalletUnavailableException}, false always means the request was refused.
+ */
+@Slf4j
+final class WalletShard implements Runnable {
+
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 10;
+
+    private final int id;
+    private final WalletEngine engine;
+    private final WalletRepository walletRepository;
+    private final TransactionOperations writeTransaction;
+    // REPEATABLE READ, balances and checkpoint positions are read from one snapshot
+    private final TransactionOperations snapshotTransaction;
+    private final BalanceCache balanceCache;
+    private final WriteAheadLog wal;
+    private final MailboxRingBuffer<Command> mailbox;
+    private final Queue<Credit> credits = new ConcurrentLinkedQueue<>();
+    private final int maxBatchSize;
+    private final long checkpointIntervalNanos;
+    private final int maxAccounts;
+    private final Thread thread;
+
+    // owned by the shard thread
+    private final Map<Long, Account> accounts = new HashMap<>();
+    // receivers on other shards that have a wallet
+    private final Set<Long> knownWallets = new HashSet<>();
+    // credits for users whose balance isn't loaded, kept until it is or the sending shard checkpointed them
+    private final Map<Long, List<Credit>> heldCredits = new HashMap<>();
+    // loaded users with credits whose sending shard may not have checkpointed them yet
+    private final Set<Long> creditedAccounts = new HashSet<>();
+    private final Map<Long, Long> deltas = new HashMap<>();
+    private long nextLsn;
+    private long lastCheckpointNanos = System.nanoTime();
+
+    private volatile long checkpointedLsn;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private volatile boolean parked;
+
+    WalletShard(int id, WalletEngine engine, WalletRepository walletRepository, TransactionOperations writeTransaction,
+                TransactionOperations snapshotTransaction, BalanceCache balanceCache, WriteAheadLog wal, long checkpointedLsn,
+                WalletEngine.Settings settings) {
+        this.id = id;
+        this.engine = engine;
+        this.walletRepository = walletRepository;
+        this.writeTransaction = writeTransaction;
+        this.snapshotTransaction = snapshotTransaction;
+        this.balanceCache = balanceCache;
+        this.wal = wal;
+        this.mailbox = new MailboxRingBuffer<>(settings.mailboxCapacity());
+        this.maxBatchSize = settings.maxBatchSize();
+        this.checkpointIntervalNanos = settings.checkpointInterval().toNanos();
+        this.maxAccounts = settings.maxAccountsPerShard();
+        this.checkpointedLsn = checkpointedLsn;
+        this.nextLsn = checkpointedLsn + 1;
+        this.thread = new Thread(this, "wallet-shard-" + id);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    boolean accepting() {
+        return running && !failed;
+    }
+
+    // False when the mailbox is full
+    boolean offer(Command command) {
+        if (!mailbox.offer(command)) {
+            return false;
+        }
+        wakeUp();
+        return true;
+    }
+
+    // Credit side of a transfer logged by another shard, never refused
+    void credited(Credit credit) {
+        credits.add(credit);
+        wakeUp();
+    }
+
+    // Highest log position whose balance changes are committed to the DB
+    long checkpointedLsn() {
+        return checkpointedLsn;
+    }
+
+    int queued() {
+        return mailbox.size();
+    }
+
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Command> batch = new ArrayList<>(maxBatchSize);
+        while (running && !failed) {
+            try {
+                applyCredits();
+                if (mailbox.drainTo(batch, maxBatchSize) > 0) {
+                    process(batch);
+                    batch.clear();
+                } else {
+                    idle();
+                }
+                if (System.nanoTime() - lastCheckpointNanos >= checkpointIntervalNanos) {
+                    checkpoint();
+                }
+            } catch (Exception e) {
+                // a failed load or checkpoint, the deltas stay and the checkpoint is tried again next interval
+                log.error("Wallet shard {} failed: {}", id, e.getMessage());
+                batch.forEach(command -> unavailable(command, e));
+                batch.clear();
+            }
+        }
+        shutDown(batch);
+    }
+
+    private void process(List<Command> batch) {
+        load(batch);
+        // credits announced before these requests were queued, e.g. the incoming transfer a caller just got back
+        applyCredits();
+        boolean[] results = new boolean[batch.size()];
+        List<Credit> outgoing = new ArrayList<>();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    results[i] = apply(batch.get(i).request(), outgoing);
+                } catch (RuntimeException e) {
+                    // thrown before anything was changed, e.g. a balance that would overflow
+                    log.error("Rejected wallet transaction: {}", e.getMessage());
+                }
+            }
+            wal.sync();
+        } catch (IOException e) {
+            // the balances in memory are ahead of the log now, stop before they reach the DB
+            fail(e);
+            batch.forEach(command -> unavailable(command, e));
+            return;
+        }
+        // durable from here on. Receivers hear of their credits before the callers do, so a caller can spend
+        // the money right away
+        for (Credit credit : outgoing) {
+            engine.shardOf(credit.userId()).credited(credit);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(results[i]);
+        }
+    }
+
+    // Reads the balances of the batch's users this shard doesn't hold yet, one DB snapshot per batch
+    private void load(List<Command> batch) {
+        Set<Long> owned = new HashSet<>();
+        Set<Long> receivers = new HashSet<>();
+        for (Command command : batch) {
+            WalletTransactionRequest request = command.request();
+            Long ownerId = WalletEngine.ownerId(request);
+            if (ownerId != null && !accounts.containsKey(ownerId)) {
+                owned.add(ownerId);
+            }
+            Long receiverId = request.getReceiverId();
+            if (TransactionType.TRANSFER.name().equals(request.getTransactionType()) && receiverId != null) {
+                if (engine.shardOf(receiverId) == this) {
+                    if (!accounts.containsKey(receiverId)) {
+                        owned.add(receiverId);
+                    }
+                } else if (!knownWallets.contains(receiverId)) {
+                    receivers.add(receiverId);
+                }
+            }
+        }
+        if (owned.isEmpty() && receivers.isEmpty()) {
+            return;
+        }
+        Set<Long> userIds = new HashSet<>(owned);
+        userIds.addAll(receivers);
+        // Not every DB keeps one snapshot for a whole REPEATABLE READ transaction (H2 doesn't), the balances only go
+        // with the checkpoint positions read before them if no checkpoint was committed until after the transaction
+        Snapshot snapshot = null;
+        for (int attempt = 0; snapshot == null; attempt++) {
+            if (attempt == MAX_SNAPSHOT_ATTEMPTS) {
+                throw new IllegalStateException("No stable snapshot of " + userIds.size() + " balances, checkpoints kept moving");
+            }
+            Snapshot read = snapshotTransaction.execute(status -> {
+                long[] checkpoints = checkpoints();
+                return new Snapshot(walletRepository.findBalances(userIds), checkpoints);
+            });
+            if (read != null && Arrays.equals(read.checkpoints(), checkpoints())) {
+                snapshot = read;
+            }
+        }
+        for (Long userId : owned) {
+            Long balance = snapshot.balances().get(userId);
+            if (balance != null) {
+                Account account = new Account(balance, snapshot.checkpoints());
+                accounts.put(userId, account);
+                List<Credit> held = heldCredits.remove(userId);
+                if (held != null) {
+                    held.forEach(account::credit);
+                    creditedAccounts.add(userId);
+                }
+            }
+        }
+        for (Long userId : receivers) {
+            if (snapshot.balances().containsKey(userId)) {
+                knownWallets.add(userId);
+            }
+        }
+    }
+
+    private long[] checkpoints() {
+        long[] checkpoints = new long[engine.shardCount()];
+        walletRepository.findEngineCheckpoints().forEach((shard, lsn) -> {
+            if (shard < checkpoints.length) {
+                checkpoints[shard] = lsn;
+            }
+        });
+        return checkpoints;
+    }
+
+    // Applies one request to the balances in memory and logs it, a rejected one leaves them untouched
+    private boolean apply(WalletTransactionRequest request, List<Credit> outgoing) throws IOException {
+        if (request.getAmount() == null || !request.getAmount().isPositive()) {
+            return false;
+        }
+        long amount = request.getAmount().getMinorUnits();
+        String type = request.getTransactionType();
+        if (TransactionType.DEPOSIT.name().equals(type)) {
+            Account receiver = account(request.getReceiverId());
+            if (receiver == null) {
+                return false;
+            }
+            receiver.balance = Money.add(receiver.balance, amount);
+            append(WriteAheadLog.Entry.NO_USER, request.getReceiverId(), amount);
+            return true;
+        }
+        if (TransactionType.WITHDRAW.name().equals(type)) {
+            Account receiver = account(request.getReceiverId());
+            if (receiver == null || receiver.balance < amount) {
+                return false;
+            }
+            receiver.balance = Money.subtract(receiver.balance, amount);
+            append(request.getReceiverId(), WriteAheadLog.Entry.NO_USER, amount);
+            return true;
+        }
+        if (TransactionType.TRANSFER.name().equals(type)) {
+            Long senderId = request.getSenderId();
+            Long receiverId = request.getReceiverId();
+            if (senderId.equals(receiverId)) {
+                return false;
+            }
+            Account sender = account(senderId);
+            if (sender == null || sender.balance < amount) {
+                return false;
+            }
+            boolean localReceiver = engine.shardOf(receiverId) == this;
+            Account receiver = localReceiver ? account(receiverId) : null;
+            if (localReceiver ? receiver == null : !knownWallets.contains(receiverId)) {
+                log.error("Wallet not found for user " + receiverId);
+                return false;
+            }
+            long senderBalance = Money.subtract(sender.balance, amount);
+            long receiverBalance = receiver != null ? Money.add(receiver.balance, amount) : 0;
+            sender.balance = senderBalance;
+            if (receiver != null) {
+                receiver.balance = receiverBalance;
+            }
+            long lsn = append(senderId, receiverId, amount);
+            if (!localReceiver) {
+                outgoing.add(new Credit(receiverId, amount, id, lsn));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Account account(Long userId) {
+        Account account = accounts.get(userId);
+        if (account == null) {
+            log.error("Wallet not found for user " + userId);
+        }
+        return account;
+    }
+
+    private long append(long debitUserId, long creditUserId, long amount) throws IOException {
+        long lsn = nextLsn++;
+        wal.append(new WriteAheadLog.Entry(lsn, debitUserId, creditUserId, amount));
+        if (debitUserId != WriteAheadLog.Entry.NO_USER) {
+            deltas.merge(debitUserId, -amount, Long::sum);
+        }
+        if (creditUserId != WriteAheadLog.Entry.NO_USER) {
+            deltas.merge(creditUserId, amount, Long::sum);
+        }
+        return lsn;
+    }
+
+    private void applyCredits() {
+        Credit credit;
+        while ((credit = credits.poll()) != null) {
+            Account account = accounts.get(credit.userId());
+            if (account != null) {
+                account.credit(credit);
+                creditedAccounts.add(credit.userId());
+            } else {
+                heldCredits.computeIfAbsent(credit.userId(), userId -> new ArrayList<>(1)).add(credit);
+            }
+        }
+    }
+
+    // Group commit of everything logged since the last checkpoint
+    private void checkpoint() {
+        lastCheckpointNanos = System.nanoTime();
+        // a held credit that reached the DB is in any balance loaded from now on
+        heldCredits.values().removeIf(held -> {
+            held.removeIf(credit -> credit.lsn() <= engine.checkpointedLsn(credit.shard()));
+            return held.isEmpty();
+        });
+        creditedAccounts.removeIf(userId -> accounts.get(userId).unconfirmedCredits(engine).isEmpty());
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long lsn = nextLsn - 1;
+        List<Long> userIds = new ArrayList<>(deltas.keySet());
+        Set<Long> missing = writeTransaction.execute(status -> {
+            Set<Long> withoutWallet = walletRepository.addToBalances(deltas);
+            walletRepository.saveEngineCheckpoint(id, lsn);
+            balanceCache.evictAfterCommit(userIds);
+            return withoutWallet;
+        });
+        checkpointedLsn = lsn;
+        deltas.clear();
+        if (missing != null && !missing.isEmpty()) {
+            // wallets deleted while the shard still held their balance
+            log.error("Wallet shard {} checkpointed balance changes of users without a wallet: {}", id, missing);
+        }
+        try {
+            wal.reset();
+        } catch (IOException e) {
+            fail(e);
+            return;
+        }
+        // nothing of this shard is waiting for the DB now, balances can be read again when needed. Credits of other
+        // shards may still be, those go back to the held credits and are applied again on the next load
+        if (accounts.size() > maxAccounts) {
+            for (Long userId : creditedAccounts) {
+                List<Credit> unconfirmed = accounts.get(userId).unconfirmedCredits(engine);
+                if (!unconfirmed.isEmpty()) {
+                    heldCredits.computeIfAbsent(userId, key -> new ArrayList<>()).addAll(unconfirmed);
+                }
+            }
+            creditedAccounts.clear();
+            accounts.clear();
+        }
+        if (knownWallets.size() > maxAccounts) {
+            knownWallets.clear();
+        }
+    }
+
+    private void idle() {
+        parked = true;
+        if (mailbox.size() == 0 && credits.isEmpty() && running) {
+            long untilCheckpoint = lastCheckpointNanos + checkpointIntervalNanos - System.nanoTime();
+            LockSupport.parkNanos(this, Math.max(untilCheckpoint, 0));
+        }
+        parked = false;
+    }
+
+    private void wakeUp() {
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void shutDown(List<Command> batch) {
+        if (!failed) {
+            // engine is closed, finish what was accepted and leave nothing to replay
+            try {
+                applyCredits();
+                while (mailbox.drainTo(batch, maxBatchSize) > 0) {
+                    process(batch);
+                    batch.clear();
+                }
+                checkpoint();
+            } catch (Exception e) {
+                log.error("Wallet shard {} could not checkpoint on close, the log is replayed on startup: {}", id, e.getMessage());
+            }
+        }
+        Command command;
+        while ((command = mailbox.poll()) != null) {
+            unavailable(command, new IllegalStateException("Wallet shard " + id + " is stopped"));
+        }
+        try {
+            wal.close();
+        } catch (IOException e) {
+            log.warn("Unable to close {}: {}", wal.file(), e.getMessage());
+        }
+    }
+
+    // Never completes with false, that would tell the caller the transaction was refused
+    private static void unavailable(Command command, Exception e) {
+        command.result().completeExceptionally(new WalletUnavailableException("Wallet transaction not applied: " + e.getMessage(), e));
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        log.error("Wallet shard {} stopped, write-ahead log {} failed: {}", id, wal.file(), e.getMessage());
+    }
+
+    record Command(WalletTransactionRequest request, CompletableFuture<Boolean> result) {
+    }
+
+    record Credit(long userId, long amount, int shard, long lsn) {
+    }
+
+    // Balances and the checkpoint positions of all shards they contain
+    private record Snapshot(Map<Long, Long> balances, long[] checkpoints) {
+    }
+
+    // In-memory balance of a user and the checkpoint positions of all shards in the snapshot it was read from
+    private static final class Account {
+        private long balance;
+        private final long[] checkpoints;
+        // applied credits that may not be in the wallet table yet
+        private final List<Credit> credits = new ArrayList<>(0);
+
+        private Account(long balance, long[] checkpoints) {
+            this.balance = balance;
+            this.checkpoints = checkpoints;
+        }
+
+        private void credit(Credit credit) {
+            if (credit.lsn() > checkpoints[credit.shard()]) {
+                balance = Money.add(balance, credit.amount());
+                credits.add(credit);
+            }
+        }
+
+        // Applied credits their sending shard hasn't checkpointed yet
+        private List<Credit> unconfirmedCredits(WalletEngine engine) {
+            credits.removeIf(credit -> credit.lsn() <= engine.checkpointedLsn(credit.shard()));
+            return credits;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of the balance changes of one {@link WalletShard}, a file of fixed size records:
+ * lsn, debited user id, credited user id, amount in minor units (0 for "no user") and a CRC32C of the four.
+ * <p>
+ * Records are buffered by {@link #append(Entry)} and written and forced to disk together by {@link #sync()}, once
+ * per batch of requests (group commit). A crash while writing leaves a torn or partial last record, {@link #readAll()}
+ * stops at the first record whose checksum doesn't match and cuts the file there. Not thread safe, owned by the
+ * shard thread.
+ */
+final class WriteAheadLog implements Closeable {
+
+    static final int RECORD_SIZE = 4 * Long.BYTES + Integer.BYTES;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private final ByteBuffer checksumInput = ByteBuffer.allocate(4 * Long.BYTES);
+
+    WriteAheadLog(Path file, int bufferRecords) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferRecords, 1) * RECORD_SIZE);
+    }
+
+    // All intact records, oldest first. The file is truncated after the last one and new records go after it
+    List<Entry> readAll() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = 0;
+        while (position + RECORD_SIZE <= channel.size()) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record, position + record.position()) > 0) {
+                // read the whole record
+            }
+            record.flip();
+            long lsn = record.getLong();
+            long debitUserId = record.getLong();
+            long creditUserId = record.getLong();
+            long amount = record.getLong();
+            if (record.getInt() != checksum(lsn, debitUserId, creditUserId, amount)) {
+                break;
+            }
+            entries.add(new Entry(lsn, debitUserId, creditUserId, amount));
+            position += RECORD_SIZE;
+        }
+        channel.truncate(position);
+        channel.position(position);
+        return entries;
+    }
+
+    void append(Entry entry) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            write();
+        }
+        buffer.putLong(entry.lsn())
+                .putLong(entry.debitUserId())
+                .putLong(entry.creditUserId())
+                .putLong(entry.amount())
+                .putInt(checksum(entry.lsn(), entry.debitUserId(), entry.creditUserId(), entry.amount()));
+    }
+
+    // Everything appended so far is on disk when this returns
+    void sync() throws IOException {
+        write();
+        channel.force(false);
+    }
+
+    // Drops all records, called once they are checkpointed to the DB
+    void reset() throws IOException {
+        buffer.clear();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(false);
+    }
+
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int checksum(long lsn, long debitUserId, long creditUserId, long amount) {
+        checksumInput.clear();
+        checksumInput.putLong(lsn).putLong(debitUserId).putLong(creditUserId).putLong(amount);
+        crc.reset();
+        crc.update(checksumInput.array(), 0, checksumInput.position());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * One applied request. A deposit only credits, a withdrawal only debits, a transfer does both; the missing side
+     * is {@link #NO_USER}.
+     */
+    record Entry(long lsn, long debitUserId, long creditUserId, long amount) {
+        static final long NO_USER = 0L;
+    }
+}
@@ -1,9 +1,16 @@
 package com.sathwick.ewallet.wallet.service.impl;
 
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.money.Money;
 import com.sathwick.ewallet.wallet.domain.Wallet;
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
 import com.sathwick.ewallet.wallet.exception.WalletException;
 import com.sathwick.ewallet.wallet.repository.WalletRepository;
 import com.sathwick.ewallet.wallet.service.WalletService;
+import com.sathwick.ewallet.wallet.service.batch.WalletTransferBatcher;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.engine.WalletEngine;
 import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
 import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
 import com.sathwick.ewallet.wallet.util.TransactionType;
@@ -13,12 +20,22 @@ import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
@@ -27,12 +44,44 @@ public class WalletServiceImpl implements WalletService {
     private WalletRepository walletRepository;
     @Getter
     private KafkaTemplate kafkaTemplate;
+    private WalletTransferBatcher transferBatcher;
+    private BalanceCache balanceCache = BalanceCache.disabled();
+    // only with ewallet.wallet.engine.enabled=true, then it replaces the transfer batcher
+    private WalletEngine walletEngine;
+    // with ewallet.wallet.batch.enabled=false every transaction runs on its own through performTransaction
+    private boolean batchingEnabled = true;
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
 
     @Autowired
     public void setWalletRepository(WalletRepository walletRepository) {
         this.walletRepository = walletRepository;
     }
 
+    @Autowired
+    public void setTransferBatcher(WalletTransferBatcher transferBatcher) {
+        this.transferBatcher = transferBatcher;
+    }
+
+    @Autowired
+    public void setBalanceCache(BalanceCache balanceCache) {
+        this.balanceCache = balanceCache;
+    }
+
+    @Value("${ewallet.wallet.batch.enabled:true}")
+    public void setBatchingEnabled(boolean batchingEnabled) {
+        this.batchingEnabled = batchingEnabled;
+    }
+
+    @Autowired
+    public void setTransactionOperations(TransactionOperations transactionOperations) {
+        this.transactionOperations = transactionOperations;
+    }
+
+    @Autowired(required = false)
+    public void setWalletEngine(WalletEngine walletEngine) {
+        this.walletEngine = walletEngine;
+    }
+
     @Override
     public void createWallet(Long userId) {
         try{
@@ -43,7 +92,11 @@ public class WalletServiceImpl implements WalletService {
                 log.info("Wallet already exists and assigned to user with id: "+userId);
                 return;
             }
-            walletRepository.save(Wallet.builder().userId(userId).balance(0.0).active(true).build());
+            walletRepository.save(Wallet.builder().userId(userId).balance(Money.ZERO).active(true).build());
+        }
+        catch (DataIntegrityViolationException e){
+            // a concurrent redelivery created it between the check and the insert, uk_wallet_user_id kept it single
+            log.info("Wallet already exists and assigned to user with id: "+userId);
         }
         catch (Exception e){
             log.error("Exception while creating wallet: {}", e.getMessage());
@@ -51,11 +104,24 @@ public class WalletServiceImpl implements WalletService {
         }
     }
 
+    @Override
+    @Transactional
+    public int createWallets(Collection<Long> userIds) {
+        // duplicates in the batch and users that already have a wallet (redelivered messages) are skipped. The check
+        // only saves work, a concurrent redelivery inserting the same wallets is stopped by uk_wallet_user_id
+        Set<Long> missing = new LinkedHashSet<>(userIds);
+        missing.removeAll(walletRepository.findExistingUserIds(missing));
+        walletRepository.insertWallets(missing);
+        log.info("Created {} wallets for a batch of {} users", missing.size(), userIds.size());
+        return missing.size();
+    }
+
     @Override
     public Wallet deleteWallet(Long userId) {
         try{
             Wallet wallet = walletRepository.findByUserId(userId).orElseThrow(() -> new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet not found"));
             walletRepository.delete(wallet);
+            balanceCache.evict(List.of(userId));
             return wallet;
         }
         catch (Exception e){
@@ -67,12 +133,13 @@ public class WalletServiceImpl implements WalletService {
 
     @Override
     public WalletResponse getWallet(Long userId) {
-        Optional<Wallet> optionalWallet = walletRepository.findByUserId(userId);
-        if(optionalWallet.isEmpty()){
+        // balance checks far outnumber transfers, most of them are answered from the cache
+        WalletResponse wallet = balanceCache.get(userId, id -> walletRepository.findByUserId(id).map(WalletResponse::new).orElse(null));
+        if(wallet == null){
             log.error("Wallet for user "+userId+" Not found");
             throw new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet for user "+userId+" not found");
         }
-        return new WalletResponse(optionalWallet.get());
+        return wallet;
     }
 
 //    @Override
@@ -99,43 +166,165 @@ public class WalletServiceImpl implements WalletService {
 //    }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = WalletException.class, noRollbackFor = NullPointerException.class)
     public boolean performTransaction(WalletTransactionRequest walletTransactionRequest) {
-        // Transaction with Transactional Annotation
+        log.info("Performing transaction from : "+walletTransactionRequest.getSenderId()+" to: "+walletTransactionRequest.getReceiverId());
         try {
-            log.info("Performing transaction from : "+walletTransactionRequest.getSenderId()+" to: "+walletTransactionRequest.getReceiverId());
-            Wallet senderWallet = walletRepository.findByUserId(walletTransactionRequest.getSenderId()).orElseThrow(() -> new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet not found for user "+walletTransactionRequest.getSenderId()));
-            Wallet receiverWallet = walletRepository.findByUserId(walletTransactionRequest.getReceiverId()).orElseThrow(() -> new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet not found for user "+walletTransactionRequest.getReceiverId()));
-            if(TransactionType.DEPOSIT.name().equals(walletTransactionRequest.getTransactionType())){
-                // update wallet
-                updateWallet(receiverWallet, walletTransactionRequest.getAmount());
-                return true;
-            }
-            if(TransactionType.WITHDRAW.name().equals(walletTransactionRequest.getTransactionType())){
-                // update wallet
-                updateWallet(receiverWallet, -walletTransactionRequest.getAmount());
-                return true;
+            // a WalletException (or a DB error) rolls the whole transaction back
+            return Boolean.TRUE.equals(transactionOperations.execute(status -> applyTransaction(walletTransactionRequest)));
+        } catch (Exception e){
+            log.error("Exception while performing transaction: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Balances are changed with guarded UPDATE statements (balance = balance +/- amount), the row lock of the
+    // UPDATE makes concurrent transactions on the same wallet queue up instead of overwriting each other.
+    private boolean applyTransaction(WalletTransactionRequest walletTransactionRequest) {
+        Long senderId = walletTransactionRequest.getSenderId();
+        Long receiverId = walletTransactionRequest.getReceiverId();
+        if(walletTransactionRequest.getAmount() == null || !walletTransactionRequest.getAmount().isPositive()){
+            throw new WalletException("EWALLET_INVALID_AMOUNT", "Amount must be positive");
+        }
+        long amount = walletTransactionRequest.getAmount().getMinorUnits();
+        if(TransactionType.DEPOSIT.name().equals(walletTransactionRequest.getTransactionType())){
+            // update wallet
+            return updateWallet(receiverId, amount);
+        }
+        if(TransactionType.WITHDRAW.name().equals(walletTransactionRequest.getTransactionType())){
+            // update wallet
+            return updateWallet(receiverId, -amount);
+        }
+        if(TransactionType.TRANSFER.name().equals(walletTransactionRequest.getTransactionType())) {
+            if (senderId.equals(receiverId)) {
+                throw new WalletException("EWALLET_INVALID_TRANSFER", "Sender and receiver must be different");
             }
-            if(TransactionType.TRANSFER.name().equals(walletTransactionRequest.getTransactionType())) {
-                if (senderWallet.getBalance() < walletTransactionRequest.getAmount()) {
+            // rows are always locked in user id order, so two opposite transfers can't deadlock
+            if (senderId < receiverId) {
+                if (!updateWallet(senderId, -amount)) {
+                    throw new WalletException("EWALLET_INSUFFICIENT_BALANCE", "Insufficient Balance in sender account");
+                }
+                if (!updateWallet(receiverId, amount)) {
+                    // give the money back, still under the sender row lock
+                    walletRepository.credit(senderId, amount);
+                    throw new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet not found for user "+receiverId);
+                }
+            } else {
+                if (!updateWallet(receiverId, amount)) {
+                    throw new WalletException("EWALLET_WALLET_NOT_FOUND", "Wallet not found for user "+receiverId);
+                }
+                if (!updateWallet(senderId, -amount)) {
+                    // undo the credit, the receiver row is still locked by us so it can't have been spent
+                    walletRepository.debit(receiverId, amount);
                     throw new WalletException("EWALLET_INSUFFICIENT_BALANCE", "Insufficient Balance in sender account");
                 }
-                senderWallet.setBalance(senderWallet.getBalance() - walletTransactionRequest.getAmount());
-                receiverWallet.setBalance(receiverWallet.getBalance() + walletTransactionRequest.getAmount());
-                walletRepository.save(senderWallet);
-                walletRepository.save(receiverWallet);
-                log.info("Updated wallets: Transaction successful");
-                return true;
             }
-        } catch (Exception e){
-            log.error("Exception while performing transaction: {}", e.getMessage());
+            log.info("Updated wallets: Transaction successful");
+            return true;
         }
         return false;
     }
 
-    private void updateWallet(Wallet receiverWallet, Double amount) {
-        receiverWallet.setBalance(receiverWallet.getBalance()+amount);
-        walletRepository.save(receiverWallet);
+    @Override
+    public CompletableFuture<Boolean> submitTransaction(WalletTransactionRequest walletTransactionRequest) {
+        if (walletEngine != null) {
+            log.info("Queueing transaction from : "+walletTransactionRequest.getSenderId()+" to: "+walletTransactionRequest.getReceiverId());
+            return walletEngine.submit(walletTransactionRequest);
+        }
+        if (!batchingEnabled) {
+            return CompletableFuture.completedFuture(performTransaction(walletTransactionRequest));
+        }
+        log.info("Queueing transaction from : "+walletTransactionRequest.getSenderId()+" to: "+walletTransactionRequest.getReceiverId());
+        return transferBatcher.submit(walletTransactionRequest);
+    }
+
+    @Override
+    public List<Boolean> performTransactions(List<WalletTransactionRequest> walletTransactionRequests) {
+        if (walletEngine == null && !batchingEnabled) {
+            return walletTransactionRequests.stream()
+                    .map(this::performTransaction)
+                    .toList();
+        }
+        log.info("Queueing batch of "+walletTransactionRequests.size()+" transactions");
+        List<CompletableFuture<Boolean>> results = walletEngine != null
+                ? walletEngine.submitAll(walletTransactionRequests)
+                : transferBatcher.submitAll(walletTransactionRequests);
+        return results.stream()
+                .map(WalletService::await)
+                .toList();
+    }
+
+    @Override
+    public List<WalletReply> performSagaCommands(List<WalletCommand> commands) {
+        if (walletEngine != null) {
+            return rejectSagaCommands(commands);
+        }
+        log.info("Queueing batch of "+commands.size()+" saga commands");
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(commands.size());
+        for (WalletCommand command : commands) {
+            WalletTransactionRequest request = WalletTransactionRequest.builder()
+                    .senderId(command.senderId())
+                    .receiverId(command.receiverId())
+                    .amount(command.amount())
+                    .transactionType(command.transactionType().name())
+                    .build();
+            results.add(transferBatcher.submitStep(request, command.transferId(), command.action() == WalletCommand.Action.CANCEL));
+        }
+        // a failed batch throws here and no reply goes out for any of the commands
+        List<WalletReply> replies = new ArrayList<>(commands.size());
+        for (int i = 0; i < commands.size(); i++) {
+            replies.add(new WalletReply(commands.get(i).transferId(), commands.get(i).action(), results.get(i).join()));
+        }
+        return replies;
+    }
+
+    // The engine is the only writer of the balances and doesn't keep outcomes per transfer. Sagas that reach it anyway
+    // (ewallet.saga.enabled is still on at the transaction service) end instead of timing out: a new EXECUTE is
+    // rejected and a CANCEL confirmed, the recorded outcomes keep the answers the same after the engine is off again
+    private List<WalletReply> rejectSagaCommands(List<WalletCommand> commands) {
+        log.warn("Rejecting batch of "+commands.size()+" saga commands, the wallet engine is enabled");
+        return transactionOperations.execute(status -> {
+            Map<Long, WalletSagaStep.Outcome> recorded = walletRepository.lockSagaSteps(
+                    commands.stream().map(WalletCommand::transferId).toList());
+            Map<Long, WalletSagaStep.Outcome> outcomes = new HashMap<>(recorded);
+            Map<Long, WalletSagaStep.Outcome> inserted = new HashMap<>();
+            List<WalletReply> replies = new ArrayList<>(commands.size());
+            for (WalletCommand command : commands) {
+                WalletSagaStep.Outcome outcome = outcomes.get(command.transferId());
+                boolean success;
+                if (command.action() == WalletCommand.Action.EXECUTE) {
+                    if (outcome == null) {
+                        outcome = WalletSagaStep.Outcome.REJECTED;
+                        outcomes.put(command.transferId(), outcome);
+                        inserted.put(command.transferId(), outcome);
+                    }
+                    success = outcome == WalletSagaStep.Outcome.APPLIED;
+                } else {
+                    if (outcome == null) {
+                        outcome = WalletSagaStep.Outcome.CANCELLED;
+                        outcomes.put(command.transferId(), outcome);
+                        inserted.put(command.transferId(), outcome);
+                    }
+                    // applied before the engine was enabled, undoing it would write the balances behind its back
+                    success = outcome != WalletSagaStep.Outcome.APPLIED;
+                    if (!success) {
+                        log.error("Transfer " + command.transferId() + " can't be compensated while the wallet engine is enabled");
+                    }
+                }
+                replies.add(new WalletReply(command.transferId(), command.action(), success));
+            }
+            walletRepository.insertSagaSteps(inserted);
+            return replies;
+        });
+    }
+
+    // Credit for a positive amount (minor units), guarded debit for a negative one. False if the wallet is missing or too low
+    private boolean updateWallet(Long userId, long amount) {
+        int updated = amount >= 0 ? walletRepository.credit(userId, amount) : walletRepository.debit(userId, -amount);
+        if (updated == 1) {
+            // a rolled back transaction leaves the cached balance as it is
+            balanceCache.evictAfterCommit(List.of(userId));
+        }
+        return updated == 1;
     }
 
     @Autowired
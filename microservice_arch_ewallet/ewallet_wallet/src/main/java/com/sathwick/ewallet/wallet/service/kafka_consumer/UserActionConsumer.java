@@ -2,12 +2,15 @@ package com.sathwick.ewallet.wallet.service.kafka_consumer;
 
 import com.sathwick.ewallet.wallet.service.WalletService;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.logging.log4j.Logger;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 @Service
 public class UserActionConsumer {
@@ -16,12 +19,22 @@ public class UserActionConsumer {
     private WalletService walletService;
 
 
-    @KafkaListener(topics = "${kafka.topic.user-created}", groupId = "walletGroup")
-    public void consumeUserCreated(String message) {
-        // log below message
-        log.info("Consumed message from topic: " + "USER_CREATED" + " - " + message);
-        // trigger create wallet service
-        walletService.createWallet(Long.valueOf(message));
+    // Whole poll at once, see KafkaConfiguration.batchListenerContainerFactory
+    @KafkaListener(topics = "${kafka.topic.user-created}", groupId = "walletGroup", containerFactory = "batchListenerContainerFactory")
+    public void consumeUserCreated(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        log.info("Consumed {} messages from topic: USER_CREATED", records.size());
+        List<Long> userIds = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                userIds.add(Long.valueOf(record.value().trim()));
+            } catch (NumberFormatException | NullPointerException e) {
+                // can never succeed, retrying the batch would block the partition
+                log.error("Skipping invalid user id '{}' at {}-{}@{}", record.value(), record.topic(), record.partition(), record.offset());
+            }
+        }
+        // trigger create wallet service, an exception leaves the offsets uncommitted and the batch is redelivered
+        walletService.createWallets(userIds);
+        acknowledgment.acknowledge();
     }
 
     @KafkaListener(topics = "${kafka.topic.user-deleted}", groupId = "walletGroup")
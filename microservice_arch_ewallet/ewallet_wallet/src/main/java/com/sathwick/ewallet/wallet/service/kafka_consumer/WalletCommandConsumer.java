@@ -0,0 +1,82 @@
+package com.sathwick.ewallet.wallet.service.kafka_consumer;
+
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.kafka.WalletSagaCodec;
+import com.sathwick.ewallet.wallet.service.WalletService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the transfer saga commands of the transaction service. A poll of commands becomes one or a few batches of
+ * the WalletTransferBatcher, the replies are sent once the outcomes are committed and the offsets are committed
+ * after the broker acknowledged the replies. A crash in between repeats the commands, which only repeats the replies.
+ * <p>
+ * While the wallet engine is enabled the commands are answered without touching the balances, the engine must be
+ * their only writer: EXECUTE is rejected and CANCEL confirmed, so the sagas end as FAILED instead of timing out. The
+ * transaction service should refuse new transfers meanwhile, see ewallet.saga.enabled.
+ */
+@Slf4j
+@Service
+public class WalletCommandConsumer {
+
+    private final WalletService walletService;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final String replyTopic;
+    private final Duration sendTimeout;
+
+    public WalletCommandConsumer(WalletService walletService,
+                                 KafkaTemplate<String, byte[]> kafkaTemplate,
+                                 @Value("${ewallet.saga.reply-topic:wallet-replies}") String replyTopic,
+                                 @Value("${ewallet.saga.send-timeout:30s}") Duration sendTimeout) {
+        this.walletService = walletService;
+        this.kafkaTemplate = kafkaTemplate;
+        this.replyTopic = replyTopic;
+        this.sendTimeout = sendTimeout;
+    }
+
+    // Whole poll at once, see KafkaConfiguration.sagaCommandListenerContainerFactory
+    @KafkaListener(topics = "${ewallet.saga.command-topic:wallet-commands}", groupId = "walletSagaGroup",
+            containerFactory = "sagaCommandListenerContainerFactory")
+    public void consumeCommands(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        log.info("Consumed {} saga commands", records.size());
+        List<WalletCommand> commands = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                commands.add(WalletSagaCodec.decodeCommand(record.value()));
+            } catch (IllegalArgumentException e) {
+                // can never succeed, retrying the batch would block the partition
+                log.error("Skipping invalid saga command at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(), e.getMessage());
+            }
+        }
+        // an exception leaves the offsets uncommitted and the batch is redelivered
+        List<WalletReply> replies = walletService.performSagaCommands(commands);
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[replies.size()];
+        for (int i = 0; i < replies.size(); i++) {
+            // keyed by sender like the commands
+            acks[i] = kafkaTemplate.send(replyTopic, String.valueOf(commands.get(i).senderId()), WalletSagaCodec.encode(replies.get(i)));
+        }
+        try {
+            CompletableFuture.allOf(acks).get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Kafka", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Kafka did not acknowledge the saga replies", e);
+        }
+        acknowledgment.acknowledge();
+    }
+}
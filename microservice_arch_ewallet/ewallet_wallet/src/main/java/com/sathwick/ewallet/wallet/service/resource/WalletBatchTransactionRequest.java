@@ -0,0 +1,19 @@
+package com.sathwick.ewallet.wallet.service.resource;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class WalletBatchTransactionRequest {
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid WalletTransactionRequest> transactions;
+}
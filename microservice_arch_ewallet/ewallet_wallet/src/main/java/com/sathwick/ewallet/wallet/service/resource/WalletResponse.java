@@ -1,5 +1,6 @@
 package com.sathwick.ewallet.wallet.service.resource;
 
+import com.sathwick.ewallet.common.money.Money;
 import com.sathwick.ewallet.wallet.domain.Wallet;
 import lombok.*;
 
@@ -11,7 +12,7 @@ import lombok.*;
 public class WalletResponse {
     private Long userId;
     private Long walletId;
-    private Double balance;
+    private Money balance;
 
     public WalletResponse(Wallet wallet){
         this.userId = wallet.getUserId();
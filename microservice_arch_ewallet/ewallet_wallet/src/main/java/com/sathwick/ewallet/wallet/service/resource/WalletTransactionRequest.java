@@ -1,7 +1,6 @@
 package com.sathwick.ewallet.wallet.service.resource;
 
-import com.sathwick.ewallet.wallet.util.TransactionType;
-import jakarta.validation.constraints.Min;
+import com.sathwick.ewallet.common.money.Money;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
@@ -15,8 +14,7 @@ public class WalletTransactionRequest {
     private Long senderId;
     @NotNull
     private Long receiverId;
-    @Min(value = 0)
-    private Double amount;
+    private Money amount;
     private String description;
     private String transactionType;
 }
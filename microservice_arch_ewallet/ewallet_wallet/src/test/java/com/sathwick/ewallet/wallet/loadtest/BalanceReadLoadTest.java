@@ -0,0 +1,100 @@
+package com.sathwick.ewallet.wallet.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of {@code GET /wallet/{user-id}} under the production mix of 20 balance checks per transfer, against a
+ * running wallet service. Run it once against a service started normally and once with
+ * {@code --ewallet.wallet.cache.enabled=false} to compare p99 with and without the balance cache. Not part of the
+ * test run, start it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.sathwick.ewallet.wallet.loadtest.BalanceReadLoadTest -Dexec.args="http://localhost:8082 1 1000"}
+ * where the arguments are the base url and the first and last user id. Those users need wallets.
+ */
+public class BalanceReadLoadTest {
+
+    private static final int[] CONCURRENCY = {16, 64, 256};
+    private static final int REQUESTS_PER_STEP = 50_000;
+    private static final int READS_PER_TRANSFER = 20;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8082";
+        long firstUserId = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+        long lastUserId = args.length > 2 ? Long.parseLong(args[2]) : 1000L;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        System.out.printf("%8s %12s %12s %12s %8s%n", "inflight", "requests/s", "GET p50 ms", "GET p99 ms", "errors");
+        for (int concurrency : CONCURRENCY) {
+            runStep(client, baseUrl, firstUserId, lastUserId, concurrency);
+        }
+    }
+
+    private static void runStep(HttpClient client, String baseUrl, long firstUserId, long lastUserId, int concurrency)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> readLatencies = Collections.synchronizedList(new ArrayList<>(REQUESTS_PER_STEP));
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<?>> pending = new ArrayList<>(REQUESTS_PER_STEP);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS_PER_STEP; i++) {
+            inFlight.acquire();
+            long userId = ThreadLocalRandom.current().nextLong(firstUserId, lastUserId + 1);
+            boolean read = i % (READS_PER_TRANSFER + 1) != 0;
+            HttpRequest request = read ? balanceCheck(baseUrl, userId) : deposit(baseUrl, userId);
+            long sent = System.nanoTime();
+            pending.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (read) {
+                            readLatencies.add(System.nanoTime() - sent);
+                        }
+                        if (error != null || response.statusCode() >= 300) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        List<Long> sorted = new ArrayList<>(readLatencies);
+        Collections.sort(sorted);
+        System.out.printf("%8d %12.0f %12.2f %12.2f %8d%n", concurrency, REQUESTS_PER_STEP / seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), errors.get());
+    }
+
+    private static HttpRequest balanceCheck(String baseUrl, long userId) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/wallet/" + userId))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    // a deposit evicts the cached balance of the user, like a transfer would
+    private static HttpRequest deposit(String baseUrl, long userId) {
+        String body = "{\"senderId\":" + userId + ",\"receiverId\":" + userId + ",\"amount\":0.01,\"transactionType\":\"DEPOSIT\"}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/wallet/transaction"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+}
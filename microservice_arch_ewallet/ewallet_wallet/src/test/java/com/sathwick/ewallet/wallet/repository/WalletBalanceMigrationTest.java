@@ -0,0 +1,45 @@
+package com.sathwick.ewallet.wallet.repository;
+
+import com.sathwick.ewallet.common.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // H2 commits the DDL anyway
+class WalletBalanceMigrationTest {
+
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        walletRepository.deleteAll();
+    }
+
+    @Test
+    void balancesOfTheOldColumnAreCopiedOnce() {
+        // a wallet table from before fixed-point amounts, balance_minor just added by ddl-auto=update
+        jdbcTemplate.execute("ALTER TABLE wallet ADD COLUMN balance DOUBLE");
+        jdbcTemplate.update("INSERT INTO wallet (user_id, balance, balance_minor, active, version) VALUES (1, 12.34, 0, TRUE, 0)");
+        jdbcTemplate.update("INSERT INTO wallet (user_id, balance, balance_minor, active, version) VALUES (2, 0.1, 0, TRUE, 0)");
+        WalletBalanceMigration migration = new WalletBalanceMigration(jdbcTemplate);
+
+        assertEquals(2, migration.migrate());
+        assertEquals(Money.ofMinorUnits(1234), walletRepository.findByUserId(1L).orElseThrow().getBalance());
+        assertEquals(Money.ofMinorUnits(10), walletRepository.findByUserId(2L).orElseThrow().getBalance());
+
+        // the old column is gone, later starts leave the balances alone
+        jdbcTemplate.update("UPDATE wallet SET balance_minor = balance_minor + 100 WHERE user_id = 1");
+        assertEquals(0, migration.migrate());
+        assertEquals(Money.ofMinorUnits(1334), walletRepository.findByUserId(1L).orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,181 @@
+package com.sathwick.ewallet.wallet.repository;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.domain.Wallet;
+import com.sathwick.ewallet.wallet.service.impl.WalletServiceImpl;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads move money in and out of one hot wallet at the same time through
+ * {@link WalletServiceImpl#performTransaction}, every committed transfer has to show up in the final balances.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every worker commits its own transaction
+class WalletRepositoryConcurrencyTest {
+
+    private static final long HOT_WALLET = 1L;
+    private static final int OTHER_WALLETS = 8;
+    private static final int THREADS = 16;
+    private static final int TRANSFERS_PER_THREAD = 200;
+
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private WalletServiceImpl walletService;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // the unbatched path, guarded UPDATE statements in one transaction per transfer
+        walletService = new WalletServiceImpl();
+        walletService.setWalletRepository(walletRepository);
+        walletService.setTransactionOperations(transactionTemplate);
+        walletRepository.save(Wallet.builder().userId(HOT_WALLET).balance(Money.of(1_000)).active(true).build());
+        for (long userId = 2; userId <= OTHER_WALLETS + 1; userId++) {
+            walletRepository.save(Wallet.builder().userId(userId).balance(Money.of(1_000)).active(true).build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        walletRepository.deleteAll();
+    }
+
+    @Test
+    void guardedUpdatesDoNotLoseMoney() throws Exception {
+        long totalBefore = totalBalance();
+
+        AtomicInteger rejected = new AtomicInteger();
+        run((thread, i) -> {
+            long other = 2 + (thread + i) % OTHER_WALLETS;
+            // half of the threads drain the hot wallet, the other half refill it
+            boolean fromHot = thread % 2 == 0;
+            if (!guardedTransfer(fromHot ? HOT_WALLET : other, fromHot ? other : HOT_WALLET, 700)) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        assertEquals(totalBefore, totalBalance());
+        walletRepository.findAll().forEach(wallet -> assertFalse(wallet.getBalance().isNegative()));
+        assertTrue(walletRepository.findByUserId(HOT_WALLET).orElseThrow().getVersion() > 0);
+    }
+
+    @Test
+    void guardedDebitNeverOverdraws() throws Exception {
+        AtomicInteger debited = new AtomicInteger();
+        run((thread, i) -> {
+            Integer updated = transactionTemplate.execute(status -> walletRepository.debit(HOT_WALLET, 300));
+            if (updated != null && updated == 1) {
+                debited.incrementAndGet();
+            }
+        });
+
+        // 1000 / 3 debits fit in the wallet, the rest must be refused by the balance >= amount guard
+        assertEquals(333, debited.get());
+        assertEquals(Money.of(1), walletRepository.findByUserId(HOT_WALLET).orElseThrow().getBalance());
+    }
+
+    /**
+     * Throughput of the guarded updates against the previous find + mutate + save path on the hot wallet. Slow,
+     * run with {@code -Dewallet.benchmark=true}. The old path doesn't lose money either, {@code @Version} makes the
+     * transfers that lose the race fail instead of overwriting each other.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "ewallet.benchmark", matches = "true")
+    void compareWithReadModifyWrite() throws Exception {
+        long totalBefore = totalBalance();
+        long start = System.nanoTime();
+        run((thread, i) -> guardedTransfer(2 + (thread + i) % OTHER_WALLETS, HOT_WALLET, 100));
+        report("guarded update", start, totalBefore);
+
+        totalBefore = totalBalance();
+        start = System.nanoTime();
+        run((thread, i) -> readModifyWriteTransfer(2 + (thread + i) % OTHER_WALLETS, HOT_WALLET, 100));
+        report("read-modify-write", start, totalBefore);
+    }
+
+    private boolean guardedTransfer(long senderId, long receiverId, long amount) {
+        return walletService.performTransaction(WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(Money.ofMinorUnits(amount))
+                .transactionType(TransactionType.TRANSFER.name())
+                .build());
+    }
+
+    private void readModifyWriteTransfer(long senderId, long receiverId, long amount) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Wallet sender = walletRepository.findByUserId(senderId).orElseThrow();
+                Wallet receiver = walletRepository.findByUserId(receiverId).orElseThrow();
+                sender.setBalance(sender.getBalance().minus(Money.ofMinorUnits(amount)));
+                receiver.setBalance(receiver.getBalance().plus(Money.ofMinorUnits(amount)));
+                walletRepository.save(sender);
+                walletRepository.save(receiver);
+            });
+        } catch (Exception e) {
+            // optimistic lock failures, the caller would have to retry
+        }
+    }
+
+    private void report(String name, long startNanos, long totalBefore) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-18s %8.0f transfers/s, money lost: %s%n",
+                name, THREADS * TRANSFERS_PER_THREAD / seconds, Money.ofMinorUnits(totalBefore - totalBalance()));
+    }
+
+    // minor units
+    private long totalBalance() {
+        return walletRepository.findAll().stream().mapToLong(wallet -> wallet.getBalance().getMinorUnits()).sum();
+    }
+
+    private void run(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    worker.run(thread, i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    private interface Worker {
+        void run(int thread, int i);
+    }
+}
@@ -0,0 +1,206 @@
+package com.sathwick.ewallet.wallet.service.batch;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class WalletTransferBatcherTest {
+
+    private WalletRepository walletRepository;
+    private BalanceCache balanceCache;
+    private WalletTransferBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        walletRepository = mock(WalletRepository.class);
+        balanceCache = mock(BalanceCache.class);
+        batcher = new WalletTransferBatcher(walletRepository, TransactionOperations.withoutTransaction(), balanceCache, 256, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchIsAppliedInOrderAndWrittenOnce() {
+        Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, 10000L);
+        balances.put(2L, 0L);
+        when(walletRepository.lockBalances(anyCollection())).thenReturn(balances);
+
+        List<WalletTransactionRequest> requests = List.of(
+                transfer(1L, 2L, Money.of(60)),
+                // only 40 left with user 1
+                transfer(1L, 2L, Money.of(60)),
+                transfer(2L, 1L, Money.of(10)));
+        List<WalletTransferBatcher.PendingTransaction> batch = requests.stream()
+                .map(request -> new WalletTransferBatcher.PendingTransaction(request, new CompletableFuture<>()))
+                .toList();
+
+        batcher.execute(batch);
+
+        assertTrue(batch.get(0).result().join());
+        assertFalse(batch.get(1).result().join());
+        assertTrue(batch.get(2).result().join());
+        ArgumentCaptor<Map<Long, Long>> updated = ArgumentCaptor.forClass(Map.class);
+        verify(walletRepository, times(1)).updateBalances(updated.capture());
+        assertEquals(5000L, updated.getValue().get(1L));
+        assertEquals(5000L, updated.getValue().get(2L));
+        verify(balanceCache).evictAfterCommit(argThat(userIds -> userIds.size() == 2 && userIds.containsAll(List.of(1L, 2L))));
+    }
+
+    @Test
+    void submittedTransactionsCompleteThroughTheFlusher() throws Exception {
+        Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, 10000L);
+        when(walletRepository.lockBalances(anyCollection())).thenReturn(balances);
+
+        CompletableFuture<Boolean> deposit = batcher.submit(WalletTransactionRequest.builder()
+                .senderId(1L).receiverId(1L).amount(Money.of(25)).transactionType(TransactionType.DEPOSIT.name()).build());
+        CompletableFuture<Boolean> unknownWallet = batcher.submit(transfer(1L, 3L, Money.of(10)));
+
+        assertTrue(deposit.get(5, TimeUnit.SECONDS));
+        assertFalse(unknownWallet.get(5, TimeUnit.SECONDS));
+        verify(walletRepository, atLeastOnce()).updateBalances(anyMap());
+    }
+
+    @Test
+    void sagaStepsAreAppliedOncePerTransfer() {
+        Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, 10000L);
+        balances.put(2L, 0L);
+        when(walletRepository.lockBalances(anyCollection())).thenReturn(balances);
+        // transfer 7 was applied by an earlier delivery
+        when(walletRepository.lockSagaSteps(anyCollection())).thenReturn(Map.of(7L, WalletSagaStep.Outcome.APPLIED));
+
+        List<WalletTransferBatcher.PendingTransaction> batch = List.of(
+                step(transfer(1L, 2L, Money.of(30)), 7L, false),
+                step(transfer(1L, 2L, Money.of(20)), 8L, false),
+                // redelivered in the same poll
+                step(transfer(1L, 2L, Money.of(20)), 8L, false),
+                step(transfer(1L, 2L, Money.of(20)), 8L, true));
+
+        batcher.execute(batch);
+
+        assertTrue(batch.get(0).result().join());
+        assertTrue(batch.get(1).result().join());
+        assertTrue(batch.get(2).result().join());
+        assertTrue(batch.get(3).result().join());
+        // 8 was applied and undone, 7 is not applied again
+        assertEquals(10000L, balances.get(1L));
+        assertEquals(0L, balances.get(2L));
+        verify(walletRepository).insertSagaSteps(Map.of(8L, WalletSagaStep.Outcome.COMPENSATED));
+    }
+
+    @Test
+    void cancelBeforeExecuteBlocksTheTransfer() {
+        Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, 10000L);
+        balances.put(2L, 0L);
+        when(walletRepository.lockBalances(anyCollection())).thenReturn(balances);
+
+        List<WalletTransferBatcher.PendingTransaction> batch = List.of(
+                step(transfer(1L, 2L, Money.of(20)), 9L, true),
+                step(transfer(1L, 2L, Money.of(20)), 9L, false));
+
+        batcher.execute(batch);
+
+        assertTrue(batch.get(0).result().join());
+        assertFalse(batch.get(1).result().join());
+        assertEquals(10000L, balances.get(1L));
+        verify(walletRepository).insertSagaSteps(Map.of(9L, WalletSagaStep.Outcome.CANCELLED));
+    }
+
+    @Test
+    void cancelOfASpentTransferFailsAndKeepsItApplied() {
+        Map<Long, Long> balances = new HashMap<>();
+        balances.put(1L, 0L);
+        // the receiver spent most of the 20 already
+        balances.put(2L, 500L);
+        when(walletRepository.lockBalances(anyCollection())).thenReturn(balances);
+        when(walletRepository.lockSagaSteps(anyCollection())).thenReturn(Map.of(10L, WalletSagaStep.Outcome.APPLIED));
+
+        WalletTransferBatcher.PendingTransaction cancel = step(transfer(1L, 2L, Money.of(20)), 10L, true);
+        batcher.execute(List.of(cancel));
+
+        assertFalse(cancel.result().join());
+        verify(walletRepository, never()).updateSagaSteps(anyMap());
+        verify(walletRepository, never()).insertSagaSteps(anyMap());
+    }
+
+    @Test
+    void failedBatchFailsTransactionsInsteadOfRejectingThem() {
+        when(walletRepository.lockBalances(anyCollection())).thenThrow(new IllegalStateException("DB down"));
+
+        CompletableFuture<Boolean> plain = batcher.submit(transfer(1L, 2L, Money.of(10)));
+        CompletableFuture<Boolean> step = batcher.submitStep(transfer(1L, 2L, Money.of(10)), 11L, false);
+
+        CompletionException unavailable = assertThrows(CompletionException.class, plain::join);
+        assertInstanceOf(WalletUnavailableException.class, unavailable.getCause());
+        CompletionException failure = assertThrows(CompletionException.class, step::join);
+        assertEquals("DB down", failure.getCause().getMessage());
+    }
+
+    @Test
+    void batchConflictingWithAConcurrentStepRunsAgain() {
+        // every attempt reads the balances again, the failed one was rolled back
+        when(walletRepository.lockBalances(anyCollection())).thenAnswer(invocation -> new HashMap<>(Map.of(1L, 10000L, 2L, 0L)));
+        // another instance stored the outcome of transfer 9 between our lock and our insert
+        when(walletRepository.lockSagaSteps(anyCollection()))
+                .thenReturn(Map.of())
+                .thenReturn(Map.of(9L, WalletSagaStep.Outcome.REJECTED));
+        doThrow(new DuplicateKeyException("Duplicate entry '9' for key 'PRIMARY'"))
+                .doNothing()
+                .when(walletRepository).insertSagaSteps(anyMap());
+
+        List<WalletTransferBatcher.PendingTransaction> batch = List.of(
+                new WalletTransferBatcher.PendingTransaction(transfer(1L, 2L, Money.of(10)), new CompletableFuture<>()),
+                step(transfer(1L, 2L, Money.of(20)), 9L, false));
+
+        batcher.execute(batch);
+
+        // the unrelated transfer is applied, the step gets the outcome the other instance stored
+        assertTrue(batch.get(0).result().join());
+        assertFalse(batch.get(1).result().join());
+        verify(walletRepository, times(2)).updateBalances(anyMap());
+        verify(walletRepository).updateBalances(Map.of(1L, 9000L, 2L, 1000L));
+    }
+
+    private static WalletTransferBatcher.PendingTransaction step(WalletTransactionRequest request, long transferId, boolean cancel) {
+        return new WalletTransferBatcher.PendingTransaction(request, new CompletableFuture<>(), transferId, cancel);
+    }
+
+    private static WalletTransactionRequest transfer(Long senderId, Long receiverId, Money amount) {
+        return WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType(TransactionType.TRANSFER.name())
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.sathwick.ewallet.wallet.service.cache;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.service.resource.WalletResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BalanceCacheTest {
+
+    @Test
+    void readsThroughOnceUntilEvicted() {
+        BalanceCache cache = new BalanceCache(100, Duration.ofMinutes(1), null);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(Money.of(10), cache.get(1L, id -> wallet(id, Money.of(10), loads)).getBalance());
+        assertEquals(Money.of(10), cache.get(1L, id -> wallet(id, Money.of(20), loads)).getBalance());
+        assertEquals(1, loads.get());
+
+        cache.evictAfterCommit(List.of(1L));
+
+        assertEquals(Money.of(20), cache.get(1L, id -> wallet(id, Money.of(20), loads)).getBalance());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missingWalletsAreNotCached() {
+        BalanceCache cache = new BalanceCache(100, Duration.ofMinutes(1), null);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertNull(cache.get(1L, id -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertNotNull(cache.get(1L, id -> wallet(id, Money.ZERO, loads)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictionWaitsForTheCommit() {
+        BalanceCache cache = new BalanceCache(100, Duration.ofMinutes(1), null);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(1L, id -> wallet(id, Money.of(10), loads));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evictAfterCommit(List.of(1L));
+            // not committed yet, readers still get the committed balance
+            assertEquals(Money.of(10), cache.get(1L, id -> wallet(id, Money.of(20), loads)).getBalance());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Money.of(20), cache.get(1L, id -> wallet(id, Money.of(20), loads)).getBalance());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void remoteTierIsCheckedBeforeTheDb() {
+        RemoteBalanceCache remote = mock(RemoteBalanceCache.class);
+        ArgumentCaptor<Consumer<Collection<Long>>> remoteEvictions = ArgumentCaptor.forClass(Consumer.class);
+        BalanceCache cache = new BalanceCache(100, Duration.ofMinutes(1), remote);
+        verify(remote).onRemoteEviction(remoteEvictions.capture());
+        AtomicInteger loads = new AtomicInteger();
+        when(remote.get(1L)).thenReturn(WalletResponse.builder().userId(1L).walletId(7L).balance(Money.of(5)).build());
+
+        assertEquals(Money.of(5), cache.get(1L, id -> wallet(id, Money.of(99), loads)).getBalance());
+        assertEquals(Money.of(99), cache.get(2L, id -> wallet(id, Money.of(99), loads)).getBalance());
+        assertEquals(1, loads.get());
+        verify(remote).put(argThat(wallet -> wallet.getUserId() == 2L));
+
+        // another instance changed user 1
+        when(remote.get(1L)).thenReturn(null);
+        remoteEvictions.getValue().accept(List.of(1L));
+        assertEquals(Money.of(99), cache.get(1L, id -> wallet(id, Money.of(99), loads)).getBalance());
+
+        cache.evict(List.of(2L));
+        verify(remote).evict(List.of(2L));
+    }
+
+    private static WalletResponse wallet(Long userId, Money balance, AtomicInteger loads) {
+        loads.incrementAndGet();
+        return WalletResponse.builder().userId(userId).walletId(userId + 100).balance(balance).build();
+    }
+}
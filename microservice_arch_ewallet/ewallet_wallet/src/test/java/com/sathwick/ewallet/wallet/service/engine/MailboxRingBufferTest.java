@@ -0,0 +1,75 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailboxRingBufferTest {
+
+    @Test
+    void refusesWhenFullAndReusesSlots() {
+        MailboxRingBuffer<Integer> mailbox = new MailboxRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(mailbox.offer(i));
+        }
+        assertFalse(mailbox.offer(4));
+        assertEquals(0, mailbox.poll());
+        assertTrue(mailbox.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, mailbox.drainTo(drained, 10));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertNull(mailbox.poll());
+    }
+
+    @Test
+    void rejectsCapacityThatIsNotAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new MailboxRingBuffer<>(1000));
+    }
+
+    @Test
+    void everyElementOfConcurrentProducersIsTakenOnceAndInProducerOrder() throws Exception {
+        int producers = 8;
+        int perProducer = 100_000;
+        MailboxRingBuffer<long[]> mailbox = new MailboxRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            futures.add(executor.submit(() -> {
+                for (long i = 0; i < perProducer; i++) {
+                    while (!mailbox.offer(new long[]{producer, i})) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+
+        long[] next = new long[producers];
+        int taken = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (taken < producers * perProducer && System.nanoTime() < deadline) {
+            long[] element = mailbox.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(next[(int) element[0]]++, element[1]);
+            taken++;
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(producers * perProducer, taken);
+        assertNull(mailbox.poll());
+    }
+}
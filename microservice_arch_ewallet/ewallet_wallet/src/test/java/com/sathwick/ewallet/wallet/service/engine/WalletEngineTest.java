@@ -0,0 +1,301 @@
+package com.sathwick.ewallet.wallet.service.engine;
+
+import com.sathwick.ewallet.common.money.Money;
+import com.sathwick.ewallet.wallet.domain.Wallet;
+import com.sathwick.ewallet.wallet.exception.WalletUnavailableException;
+import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.batch.WalletTransferBatcher;
+import com.sathwick.ewallet.wallet.service.cache.BalanceCache;
+import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
+import com.sathwick.ewallet.wallet.util.TransactionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The engine against a real DB: concurrent transfers around one hot wallet across shards, and the replay of a log
+ * left behind by a crash.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the engine commits its own transactions
+class WalletEngineTest {
+
+    private static final long HOT_WALLET = 1L;
+    private static final int OTHER_WALLETS = 8;
+
+    @Autowired
+    private WalletRepository walletRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    Path logDirectory;
+
+    private WalletEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        walletRepository.save(Wallet.builder().userId(HOT_WALLET).balance(Money.of(1_000)).active(true).build());
+        for (long userId = 2; userId <= OTHER_WALLETS + 1; userId++) {
+            walletRepository.save(Wallet.builder().userId(userId).balance(Money.of(1_000)).active(true).build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+        walletRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM wallet_engine_checkpoint");
+    }
+
+    @Test
+    void concurrentTransfersAcrossShardsKeepTheTotal() throws Exception {
+        engine = engine(4, Duration.ofMillis(5));
+        long totalBefore = totalBalance();
+
+        AtomicInteger accepted = new AtomicInteger();
+        run(16, 200, (thread, i) -> {
+            long other = 2 + (thread + i) % OTHER_WALLETS;
+            // half of the threads drain the hot wallet, the other half refill it
+            boolean fromHot = thread % 2 == 0;
+            if (engine.submit(transfer(fromHot ? HOT_WALLET : other, fromHot ? other : HOT_WALLET, Money.of(7))).join()) {
+                accepted.incrementAndGet();
+            }
+        });
+        engine.close();
+        engine = null;
+
+        assertTrue(accepted.get() > 0);
+        assertEquals(totalBefore, totalBalance());
+        walletRepository.findAll().forEach(wallet -> assertFalse(wallet.getBalance().isNegative()));
+    }
+
+    @Test
+    void debitsNeverOverdrawTheHotWallet() throws Exception {
+        engine = engine(4, Duration.ofMillis(5));
+
+        AtomicInteger debited = new AtomicInteger();
+        run(16, 200, (thread, i) -> {
+            if (engine.submit(request(TransactionType.WITHDRAW, HOT_WALLET, HOT_WALLET, Money.of(3))).join()) {
+                debited.incrementAndGet();
+            }
+        });
+        engine.close();
+        engine = null;
+
+        // 1000 / 3 withdrawals fit in the wallet
+        assertEquals(333, debited.get());
+        assertEquals(Money.of(1), walletRepository.findByUserId(HOT_WALLET).orElseThrow().getBalance());
+    }
+
+    @Test
+    void creditFromAnotherShardCanBeSpentBeforeItIsCheckpointed() {
+        // checkpoints only on close, the credit is known to user 3's shard from the announcement alone
+        engine = engine(2, Duration.ofHours(1));
+
+        assertTrue(engine.submit(transfer(2L, 3L, Money.of(1_000))).join());
+        assertTrue(engine.submit(transfer(3L, 4L, Money.of(2_000))).join());
+        assertFalse(engine.submit(transfer(3L, 4L, Money.of(1))).join());
+        assertEquals(Money.of(1_000), walletRepository.findByUserId(3L).orElseThrow().getBalance());
+
+        engine.close();
+        engine = null;
+        assertEquals(Money.ZERO, walletRepository.findByUserId(2L).orElseThrow().getBalance());
+        assertEquals(Money.ZERO, walletRepository.findByUserId(3L).orElseThrow().getBalance());
+        assertEquals(Money.of(3_000), walletRepository.findByUserId(4L).orElseThrow().getBalance());
+    }
+
+    @Test
+    void rejectsUnknownWalletsAndInvalidAmounts() {
+        engine = engine(2, Duration.ofMillis(5));
+
+        assertFalse(engine.submit(request(TransactionType.DEPOSIT, 99L, 99L, Money.of(1))).join());
+        assertFalse(engine.submit(transfer(2L, 99L, Money.of(1))).join());
+        assertFalse(engine.submit(transfer(2L, 2L, Money.of(1))).join());
+        assertFalse(engine.submit(request(TransactionType.DEPOSIT, 2L, 2L, Money.ZERO)).join());
+        assertFalse(engine.submit(request(TransactionType.WITHDRAW, 2L, 2L, Money.of(1_001))).join());
+    }
+
+    @Test
+    void replaysTheLogBeyondTheCheckpointOnStartup() throws Exception {
+        walletRepository.saveEngineCheckpoint(0, 1);
+        try (WriteAheadLog wal = new WriteAheadLog(logDirectory.resolve("shard-0.wal"), 8)) {
+            // lsn 1 is committed already, 2 and 3 were acknowledged but not checkpointed before the crash
+            wal.append(new WriteAheadLog.Entry(1, WriteAheadLog.Entry.NO_USER, 2L, 500_00));
+            wal.append(new WriteAheadLog.Entry(2, WriteAheadLog.Entry.NO_USER, 2L, 100_00));
+            wal.append(new WriteAheadLog.Entry(3, 2L, HOT_WALLET, 30_00));
+            wal.sync();
+        }
+        // half written record of the crash
+        Files.write(logDirectory.resolve("shard-0.wal"), new byte[]{1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        engine = engine(2, Duration.ofHours(1));
+
+        assertEquals(Money.of(1_070), walletRepository.findByUserId(2L).orElseThrow().getBalance());
+        assertEquals(Money.of(1_030), walletRepository.findByUserId(HOT_WALLET).orElseThrow().getBalance());
+        assertEquals(3L, walletRepository.findEngineCheckpoints().get(0));
+        assertEquals(0L, Files.size(logDirectory.resolve("shard-0.wal")));
+
+        // the shard continues after the replayed records and sees the replayed balance
+        assertTrue(engine.submit(request(TransactionType.WITHDRAW, 2L, 2L, Money.of(1_070))).join());
+        engine.close();
+        engine = null;
+        assertEquals(Money.ZERO, walletRepository.findByUserId(2L).orElseThrow().getBalance());
+        assertEquals(4L, walletRepository.findEngineCheckpoints().get(0));
+    }
+
+    @Test
+    void droppedAccountKeepsCreditsItsSenderHasNotCheckpointed() {
+        // every checkpoint drops all balances, user 3's shard reloads it while user 2's shard may not have
+        // checkpointed the credit yet
+        engine = engine(2, Duration.ofMillis(1), 0);
+
+        for (int i = 0; i < 200; i++) {
+            assertTrue(engine.submit(transfer(2L, 3L, Money.of(1_000))).join());
+            assertTrue(engine.submit(transfer(3L, 2L, Money.of(2_000))).join());
+            assertTrue(engine.submit(transfer(2L, 3L, Money.of(1_000))).join());
+        }
+
+        engine.close();
+        engine = null;
+        assertEquals(Money.of(1_000), walletRepository.findByUserId(2L).orElseThrow().getBalance());
+        assertEquals(Money.of(1_000), walletRepository.findByUserId(3L).orElseThrow().getBalance());
+    }
+
+    @Test
+    void stoppedEngineFailsTransactionsInsteadOfRejectingThem() {
+        engine = engine(2, Duration.ofHours(1));
+        engine.close();
+
+        CompletableFuture<Boolean> result = engine.submit(request(TransactionType.DEPOSIT, 2L, 2L, Money.of(1)));
+        engine = null;
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(WalletUnavailableException.class, e.getCause());
+        assertEquals(Money.of(1_000), walletRepository.findByUserId(2L).orElseThrow().getBalance());
+    }
+
+    /**
+     * Deposits to one hot wallet from 32 producers through the engine, the micro batcher and one guarded UPDATE
+     * per request. Slow, run with {@code -Dewallet.benchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "ewallet.benchmark", matches = "true")
+    void compareHotWalletThroughput() throws Exception {
+        int producers = 32;
+        int perProducer = 2_000;
+        WalletTransactionRequest deposit = request(TransactionType.DEPOSIT, HOT_WALLET, HOT_WALLET, Money.ofMinorUnits(1));
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        benchmark("guarded update", producers, perProducer,
+                request -> CompletableFuture.completedFuture(transactionTemplate.execute(status -> walletRepository.credit(HOT_WALLET, 1L)) == 1),
+                deposit);
+
+        WalletTransferBatcher batcher = new WalletTransferBatcher(walletRepository, transactionTemplate, BalanceCache.disabled(), 256, 0);
+        try {
+            benchmark("micro batcher", producers, perProducer, batcher::submit, deposit);
+        } finally {
+            batcher.close();
+        }
+
+        engine = engine(8, Duration.ofMillis(50));
+        benchmark("wallet engine", producers, perProducer, engine::submit, deposit);
+    }
+
+    private void benchmark(String name, int producers, int perProducer,
+                           Function<WalletTransactionRequest, CompletableFuture<Boolean>> submit,
+                           WalletTransactionRequest request) throws Exception {
+        long start = System.nanoTime();
+        // every producer waits for its result like a request thread, throughput comes from concurrency
+        run(producers, perProducer, (thread, i) -> assertTrue(submit.apply(request).join()));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-15s %10.0f deposits/s%n", name, producers * perProducer / seconds);
+    }
+
+    private WalletEngine engine(int shards, Duration checkpointInterval) {
+        return engine(shards, checkpointInterval, 100_000);
+    }
+
+    private WalletEngine engine(int shards, Duration checkpointInterval, int maxAccountsPerShard) {
+        try {
+            return new WalletEngine(walletRepository, transactionManager, BalanceCache.disabled(),
+                    new WalletEngine.Settings(shards, 1 << 16, 1024, checkpointInterval, maxAccountsPerShard, logDirectory));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static WalletTransactionRequest transfer(long senderId, long receiverId, Money amount) {
+        return request(TransactionType.TRANSFER, senderId, receiverId, amount);
+    }
+
+    private static WalletTransactionRequest request(TransactionType type, long senderId, long receiverId, Money amount) {
+        return WalletTransactionRequest.builder()
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .amount(amount)
+                .transactionType(type.name())
+                .build();
+    }
+
+    // minor units
+    private long totalBalance() {
+        return walletRepository.findAll().stream().mapToLong(wallet -> wallet.getBalance().getMinorUnits()).sum();
+    }
+
+    private void run(int threads, int perThread, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    worker.run(thread, i);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+    }
+
+    private interface Worker {
+        void run(int thread, int i);
+    }
+}
@@ -1,19 +1,31 @@
 package com.sathwick.ewallet.wallet.service.impl;
 
+import com.sathwick.ewallet.common.kafka.WalletCommand;
+import com.sathwick.ewallet.common.kafka.WalletReply;
+import com.sathwick.ewallet.common.money.Money;
 import com.sathwick.ewallet.wallet.domain.Wallet;
-import com.sathwick.ewallet.wallet.exception.WalletException;
+import com.sathwick.ewallet.wallet.domain.WalletSagaStep;
 import com.sathwick.ewallet.wallet.repository.WalletRepository;
+import com.sathwick.ewallet.wallet.service.batch.WalletTransferBatcher;
+import com.sathwick.ewallet.wallet.service.engine.WalletEngine;
 import com.sathwick.ewallet.wallet.service.resource.WalletTransactionRequest;
 import com.sathwick.ewallet.wallet.util.TransactionType;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 class WalletServiceImplTest {
 
@@ -24,33 +36,60 @@ class WalletServiceImplTest {
         WalletRepository walletRepository = mock(WalletRepository.class);
         walletService.setWalletRepository(walletRepository);
 
-        Wallet wallet = new Wallet();
-        wallet.setBalance(100.0);
-        wallet.setUserId(102L);
-        wallet.setId(1L);
-
-        // after deposit of 100
-        Wallet expectedWallet = new Wallet();
-        expectedWallet.setBalance(200.0);
-        expectedWallet.setUserId(102L);
-        expectedWallet.setId(1L);
-
         // Act
         WalletTransactionRequest walletTransactionRequest = new WalletTransactionRequest();
-        walletTransactionRequest.setAmount(100.0);
+        walletTransactionRequest.setAmount(Money.of(100));
         walletTransactionRequest.setReceiverId(102L); // dummy id
         walletTransactionRequest.setSenderId(102L);
         walletTransactionRequest.setTransactionType(TransactionType.DEPOSIT.name());
 
-        when(walletRepository.findByUserId(anyLong())).thenReturn(Optional.of(wallet)); // make sures we receive the wallet always to avoid exception
-        when(walletRepository.save(any(Wallet.class))).thenReturn(wallet);
-
-        walletService.performTransaction(walletTransactionRequest);
+        when(walletRepository.credit(anyLong(), anyLong())).thenReturn(1); // one wallet row updated
 
         // assert
-        assertNotNull(wallet);
-        assertEquals(expectedWallet.getBalance(), wallet.getBalance());
-        // Add more assertions as needed
+        assertTrue(walletService.performTransaction(walletTransactionRequest));
+        verify(walletRepository).credit(102L, 10000L);
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    void performTransferLocksLowerUserIdFirst() {
+        WalletServiceImpl walletService = new WalletServiceImpl();
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        walletService.setWalletRepository(walletRepository);
+
+        WalletTransactionRequest walletTransactionRequest = new WalletTransactionRequest();
+        walletTransactionRequest.setAmount(Money.of(40));
+        walletTransactionRequest.setReceiverId(101L);
+        walletTransactionRequest.setSenderId(102L);
+        walletTransactionRequest.setTransactionType(TransactionType.TRANSFER.name());
+
+        when(walletRepository.credit(anyLong(), anyLong())).thenReturn(1);
+        when(walletRepository.debit(anyLong(), anyLong())).thenReturn(1);
+
+        assertTrue(walletService.performTransaction(walletTransactionRequest));
+        InOrder inOrder = inOrder(walletRepository);
+        inOrder.verify(walletRepository).credit(101L, 4000L);
+        inOrder.verify(walletRepository).debit(102L, 4000L);
+    }
+
+    @Test
+    void performTransferWithInsufficientBalanceUndoesCredit() {
+        WalletServiceImpl walletService = new WalletServiceImpl();
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        walletService.setWalletRepository(walletRepository);
+
+        WalletTransactionRequest walletTransactionRequest = new WalletTransactionRequest();
+        walletTransactionRequest.setAmount(Money.of(40));
+        walletTransactionRequest.setReceiverId(101L);
+        walletTransactionRequest.setSenderId(102L);
+        walletTransactionRequest.setTransactionType(TransactionType.TRANSFER.name());
+
+        when(walletRepository.credit(anyLong(), anyLong())).thenReturn(1);
+        when(walletRepository.debit(102L, 4000L)).thenReturn(0); // guard balance >= amount not met
+        when(walletRepository.debit(101L, 4000L)).thenReturn(1);
+
+        assertFalse(walletService.performTransaction(walletTransactionRequest));
+        verify(walletRepository).debit(101L, 4000L);
     }
 
     @Test
@@ -61,12 +100,12 @@ class WalletServiceImplTest {
         walletService.setWalletRepository(walletRepository);
 
         WalletTransactionRequest walletTransactionRequest = new WalletTransactionRequest();
-        walletTransactionRequest.setAmount(100.0);
+        walletTransactionRequest.setAmount(Money.of(100));
         walletTransactionRequest.setReceiverId(102L); // dummy id
         walletTransactionRequest.setSenderId(102L);
         walletTransactionRequest.setTransactionType(TransactionType.DEPOSIT.name());
 
-        when(walletRepository.findByUserId(anyLong())).thenReturn(Optional.empty());
+        when(walletRepository.credit(anyLong(), anyLong())).thenReturn(0); // no wallet row for the user
 
         // will not work as the exception is being handled there itself
         //        assertThrows(WalletException.class, () -> {
@@ -74,4 +113,84 @@ class WalletServiceImplTest {
         //        });
         assertFalse(walletService.performTransaction(walletTransactionRequest));
     }
-}
\ No newline at end of file
+
+    @Test
+    void unbatchedTransactionRunsGuardedUpdatesInItsOwnTransaction() {
+        WalletServiceImpl walletService = new WalletServiceImpl();
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        WalletTransferBatcher transferBatcher = mock(WalletTransferBatcher.class);
+        walletService.setWalletRepository(walletRepository);
+        walletService.setTransferBatcher(transferBatcher);
+        walletService.setBatchingEnabled(false);
+        TransactionStatus status = mock(TransactionStatus.class);
+        walletService.setTransactionOperations(new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                return action.doInTransaction(status);
+            }
+        });
+
+        WalletTransactionRequest walletTransactionRequest = new WalletTransactionRequest();
+        walletTransactionRequest.setAmount(Money.of(25));
+        walletTransactionRequest.setReceiverId(102L);
+        walletTransactionRequest.setSenderId(102L);
+        walletTransactionRequest.setTransactionType(TransactionType.WITHDRAW.name());
+        when(walletRepository.debit(102L, 2500L)).thenReturn(1);
+
+        assertTrue(walletService.submitTransaction(walletTransactionRequest).join());
+        verify(walletRepository).debit(102L, 2500L);
+        verifyNoInteractions(transferBatcher);
+    }
+
+    @Test
+    void createWalletsInsertsOnlyMissingOnes() {
+        WalletServiceImpl walletService = new WalletServiceImpl();
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        walletService.setWalletRepository(walletRepository);
+
+        // 2 already has a wallet, 3 arrives twice
+        when(walletRepository.findExistingUserIds(anyCollection())).thenReturn(Set.of(2L));
+
+        assertEquals(2, walletService.createWallets(List.of(1L, 2L, 3L, 3L)));
+        verify(walletRepository).insertWallets(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of(1L, 3L))));
+        verify(walletRepository, never()).save(any(Wallet.class));
+    }
+
+    @Test
+    void sagaCommandsAreAnsweredWithoutTheBalancesWhileTheEngineRuns() {
+        WalletServiceImpl walletService = new WalletServiceImpl();
+        WalletRepository walletRepository = mock(WalletRepository.class);
+        WalletTransferBatcher transferBatcher = mock(WalletTransferBatcher.class);
+        walletService.setWalletRepository(walletRepository);
+        walletService.setTransferBatcher(transferBatcher);
+        walletService.setWalletEngine(mock(WalletEngine.class));
+        // 3 was applied before the engine was enabled, 4 was rejected then
+        when(walletRepository.lockSagaSteps(anyCollection())).thenReturn(Map.of(
+                3L, WalletSagaStep.Outcome.APPLIED, 4L, WalletSagaStep.Outcome.REJECTED));
+
+        List<WalletReply> replies = walletService.performSagaCommands(List.of(
+                command(1L, WalletCommand.Action.EXECUTE),
+                command(2L, WalletCommand.Action.CANCEL),
+                command(1L, WalletCommand.Action.CANCEL),
+                command(3L, WalletCommand.Action.EXECUTE),
+                command(3L, WalletCommand.Action.CANCEL),
+                command(4L, WalletCommand.Action.CANCEL)));
+
+        assertEquals(List.of(
+                new WalletReply(1L, WalletCommand.Action.EXECUTE, false),
+                new WalletReply(2L, WalletCommand.Action.CANCEL, true),
+                new WalletReply(1L, WalletCommand.Action.CANCEL, true),
+                new WalletReply(3L, WalletCommand.Action.EXECUTE, true),
+                new WalletReply(3L, WalletCommand.Action.CANCEL, false),
+                new WalletReply(4L, WalletCommand.Action.CANCEL, true)), replies);
+        // a later EXECUTE of 2 stays rejected once the engine is off again
+        verify(walletRepository).insertSagaSteps(Map.of(
+                1L, WalletSagaStep.Outcome.REJECTED, 2L, WalletSagaStep.Outcome.CANCELLED));
+        verifyNoInteractions(transferBatcher);
+        verify(walletRepository, never()).updateBalances(any());
+    }
+
+    private static WalletCommand command(long transferId, WalletCommand.Action action) {
+        return new WalletCommand(transferId, action, 1L, 2L, Money.of(10), WalletCommand.TransactionType.TRANSFER);
+    }
+}
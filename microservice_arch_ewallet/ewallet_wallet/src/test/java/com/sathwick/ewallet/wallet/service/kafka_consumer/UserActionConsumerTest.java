@@ -0,0 +1,49 @@
+package com.sathwick.ewallet.wallet.service.kafka_consumer;
+
+import com.sathwick.ewallet.wallet.service.WalletService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserActionConsumerTest {
+
+    @Mock
+    private WalletService walletService;
+    @Mock
+    private Acknowledgment acknowledgment;
+    @InjectMocks
+    private UserActionConsumer userActionConsumer;
+
+    @Test
+    void batchIsStoredThenAcknowledged() {
+        userActionConsumer.consumeUserCreated(List.of(record(0, "1"), record(1, "not-a-user"), record(2, "3")), acknowledgment);
+
+        var inOrder = inOrder(walletService, acknowledgment);
+        inOrder.verify(walletService).createWallets(List.of(1L, 3L));
+        inOrder.verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void failedBatchIsNotAcknowledged() {
+        when(walletService.createWallets(anyCollection())).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class,
+                () -> userActionConsumer.consumeUserCreated(List.of(record(0, "1")), acknowledgment));
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    private static ConsumerRecord<String, String> record(long offset, String value) {
+        return new ConsumerRecord<>("USER_CREATED", 0, offset, null, value);
+    }
+}